@@ -0,0 +1,23 @@
+package com.github.melihemreguler.turknetmessagingservice.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+
+/**
+ * Encodes Kafka event payloads in one wire format. The format is announced to
+ * consumers through the {@link EventCodecRegistry#CONTENT_TYPE_HEADER} header.
+ */
+public interface EventCodec {
+
+    /**
+     * Short name used to select this codec in {@code app.kafka.codec.format}.
+     */
+    String name();
+
+    String contentType();
+
+    byte[] encode(Object event) throws JsonProcessingException;
+
+    <T> T decode(byte[] payload, Class<T> type) throws IOException;
+}
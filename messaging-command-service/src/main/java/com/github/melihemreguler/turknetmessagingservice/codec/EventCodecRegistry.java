@@ -0,0 +1,56 @@
+package com.github.melihemreguler.turknetmessagingservice.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses the codec for outgoing events from {@code app.kafka.codec.format} and,
+ * for incoming records, from their content-type header, so producers can switch
+ * format without a coordinated consumer deploy once every consumer reads both.
+ */
+@Component
+@Slf4j
+public class EventCodecRegistry {
+
+    public static final String CONTENT_TYPE_HEADER = "x-contentType";
+    public static final String SCHEMA_VERSION_HEADER = "x-schemaVersion";
+
+    private final Map<String, EventCodec> byContentType;
+    private final EventCodec encoder;
+
+    public EventCodecRegistry(List<EventCodec> codecs,
+                              @Value("${app.kafka.codec.format:" + JsonEventCodec.NAME + "}") String format) {
+        this.byContentType = codecs.stream().collect(Collectors.toMap(EventCodec::contentType, Function.identity()));
+        this.encoder = codecs.stream()
+                .filter(codec -> codec.name().equals(format))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown app.kafka.codec.format: " + format));
+        log.info("Kafka events are encoded as {} ({})", encoder.name(), encoder.contentType());
+    }
+
+    public EventCodec encoder() {
+        return encoder;
+    }
+
+    public <T> T decode(byte[] payload, Headers headers, Class<T> type) throws IOException {
+        String contentType = EventHeaders.value(headers, CONTENT_TYPE_HEADER);
+        EventCodec codec = byContentType.get(contentType != null ? contentType : JsonEventCodec.CONTENT_TYPE);
+        if (codec == null) {
+            throw new IOException("Unsupported event content type: " + contentType);
+        }
+
+        String version = EventHeaders.value(headers, SCHEMA_VERSION_HEADER);
+        if (version != null && Integer.parseInt(version) > EventSchemas.CURRENT_VERSION) {
+            throw new IOException("Unsupported event schema version: " + version);
+        }
+        return codec.decode(payload, type);
+    }
+}
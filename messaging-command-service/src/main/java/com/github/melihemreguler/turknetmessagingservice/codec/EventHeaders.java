@@ -0,0 +1,32 @@
+package com.github.melihemreguler.turknetmessagingservice.codec;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Routing headers written next to every event payload, so consumers can pick a
+ * handler, or skip the record, without decoding it.
+ */
+public final class EventHeaders {
+
+    public static final String COMMAND_HEADER = "x-command";
+    public static final String USER_ID_HEADER = "x-userId";
+    // Only set on session commands that target a single session.
+    public static final String SESSION_ID_HEADER = "x-sessionId";
+
+    private EventHeaders() {
+    }
+
+    public static void add(Headers headers, String name, String value) {
+        if (value != null) {
+            headers.add(name, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static String value(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.melihemreguler.turknetmessagingservice.codec;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import com.github.melihemreguler.turknetmessagingservice.model.event.UserActivityEvent;
+
+/**
+ * Positional layouts of the Kafka events for compact formats, shared with
+ * messaging-consumer, which declares the same orders.
+ *
+ * <p>Fields may only be appended to a layout; a reader fills fields missing from
+ * an older, shorter record with defaults. Reordering or removing a field needs a
+ * new {@link #CURRENT_VERSION}, which consumers reject until they are upgraded.
+ */
+public final class EventSchemas {
+
+    public static final int CURRENT_VERSION = 1;
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"command", "threadId", "senderId", "senderUsername", "content", "timestamp",
+            "recipientId", "recipientUsername", "messageId"})
+    private interface MessageCommandV1 {}
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"command", "hashedSessionId", "userId", "expiresAt", "ipAddress", "userAgent", "timestamp"})
+    private interface SessionEventV1 {}
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"command", "username", "userId", "ipAddress", "userAgent", "successful", "timestamp",
+            "failureReason", "email"})
+    private interface UserActivityEventV1 {}
+
+    private EventSchemas() {
+    }
+
+    static ObjectMapper register(ObjectMapper mapper) {
+        return mapper
+                .addMixIn(MessageCommand.class, MessageCommandV1.class)
+                .addMixIn(SessionEvent.class, SessionEventV1.class)
+                .addMixIn(UserActivityEvent.class, UserActivityEventV1.class);
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.melihemreguler.turknetmessagingservice.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Plain JSON with named fields; what every record carried before the codec
+ * header existed, so it is also assumed for records without one.
+ */
+@Component
+@RequiredArgsConstructor
+public class JsonEventCodec implements EventCodec {
+
+    public static final String NAME = "json";
+    public static final String CONTENT_TYPE = "application/json";
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public byte[] encode(Object event) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Override
+    public <T> T decode(byte[] payload, Class<T> type) throws IOException {
+        return objectMapper.readValue(payload, type);
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.melihemreguler.turknetmessagingservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Executor for the history queries that run alongside the page query, such as
+ * the thread's message count. When it is saturated the query runs on the
+ * request thread instead, which is no slower than before it existed.
+ */
+@Configuration
+public class HistoryQueryConfig {
+
+    @Bean(name = "historyQueryExecutor")
+    public ThreadPoolTaskExecutor historyQueryExecutor(
+            @Value("${app.messages.history.query-threads:8}") int threads,
+            @Value("${app.messages.history.query-queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("history-query-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+}
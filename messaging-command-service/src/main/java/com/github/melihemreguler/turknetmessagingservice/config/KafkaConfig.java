@@ -1,16 +1,37 @@
 package com.github.melihemreguler.turknetmessagingservice.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
 public class KafkaConfig {
+
+    static final String BATCH_FILL_RATIO_METRIC = "kafka.producer.batch.fill.ratio";
+    static final String QUEUE_TIME_METRIC = "kafka.producer.queue.time";
+
+    // Kafka's own default for batch.size.
+    private static final int DEFAULT_BATCH_SIZE = 16384;
     
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
@@ -21,4 +42,85 @@ public class KafkaConfig {
         configs.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         return new KafkaAdmin(configs);
     }
+
+    /**
+     * For listeners that every replica runs under its own throwaway group. They
+     * pick their start position on assignment and never commit, so a group
+     * holds no offsets and the broker drops it once its pod is gone.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> broadcastListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        // Nothing acknowledges, so nothing is committed.
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAssignmentCommitOption(ContainerProperties.AssignmentCommitOption.NEVER);
+        return factory;
+    }
+
+    @Bean
+    public KafkaProducerTemplates kafkaProducerTemplates(KafkaProperties kafkaProperties,
+                                                         SslBundles sslBundles,
+                                                         ObjectProvider<DefaultKafkaProducerFactoryCustomizer> customizers,
+                                                         KafkaProducerProfiles producerProfiles,
+                                                         MessagingConfig messagingConfig,
+                                                         KafkaTemplate<String, byte[]> kafkaTemplate,
+                                                         MeterRegistry meterRegistry) {
+        Map<String, String> topics = new HashMap<>();
+        topics.put("message-commands", messagingConfig.getMessageCommands());
+        topics.put("session-commands", messagingConfig.getSessionCommands());
+        topics.put("user-commands", messagingConfig.getUserCommands());
+
+        Map<String, Object> defaults = kafkaProperties.buildProducerProperties(sslBundles);
+        Map<String, KafkaTemplate<String, byte[]>> templatesByTopic = new HashMap<>();
+        Map<String, Integer> batchSizeByTopic = new HashMap<>();
+        List<DefaultKafkaProducerFactory<String, byte[]>> factories = new ArrayList<>();
+
+        producerProfiles.getProfiles().forEach((name, profile) -> {
+            String topic = topics.get(name);
+            if (topic == null) {
+                throw new IllegalStateException("Producer profile '" + name + "' does not match a configured topic; expected one of " + topics.keySet());
+            }
+            Map<String, Object> config = new HashMap<>(defaults);
+            if (profile.getLingerMs() != null) {
+                config.put(ProducerConfig.LINGER_MS_CONFIG, profile.getLingerMs());
+            }
+            if (profile.getBatchSize() != null) {
+                config.put(ProducerConfig.BATCH_SIZE_CONFIG, (int) profile.getBatchSize().toBytes());
+            }
+            if (profile.getCompressionType() != null) {
+                config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, profile.getCompressionType());
+            }
+            Object clientId = defaults.get(ProducerConfig.CLIENT_ID_CONFIG);
+            config.put(ProducerConfig.CLIENT_ID_CONFIG, clientId == null ? "producer-" + name : clientId + "-" + name);
+
+            DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(config);
+            customizers.orderedStream().forEach(customizer -> customizer.customize(factory));
+            factories.add(factory);
+            templatesByTopic.put(topic, new KafkaTemplate<>(factory));
+            batchSizeByTopic.put(topic, batchSize(config));
+        });
+
+        KafkaProducerTemplates templates = new KafkaProducerTemplates(kafkaTemplate, templatesByTopic, factories);
+        topics.values().forEach(topic -> {
+            int batchSize = batchSizeByTopic.getOrDefault(topic, batchSize(defaults));
+            Gauge.builder(BATCH_FILL_RATIO_METRIC, templates, t -> t.averageBatchBytes(topic) / batchSize)
+                    .description("Average producer batch size as a fraction of batch.size")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            Gauge.builder(QUEUE_TIME_METRIC, templates, t -> t.averageQueueTimeMs(topic))
+                    .description("Average time a record waits in the producer before its batch is sent")
+                    .baseUnit("milliseconds")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+        });
+        return templates;
+    }
+
+    private static int batchSize(Map<String, Object> config) {
+        Object value = config.get(ProducerConfig.BATCH_SIZE_CONFIG);
+        return value == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(value.toString());
+    }
 }
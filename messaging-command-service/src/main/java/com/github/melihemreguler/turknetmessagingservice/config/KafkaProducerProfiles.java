@@ -0,0 +1,36 @@
+package com.github.melihemreguler.turknetmessagingservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Producer tuning per command topic.
+ *
+ * <p>Profiles are keyed by the names used under {@code app.kafka.topics}
+ * ({@code message-commands}, {@code session-commands}, {@code user-commands}).
+ * Each profile gets its own producer so batching and compression can differ
+ * between the interactive message path and the bulkier session and user
+ * streams. Fields left unset inherit {@code spring.kafka.producer}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.kafka.producer")
+@Getter
+@Setter
+public class KafkaProducerProfiles {
+
+    private Map<String, Profile> profiles = new HashMap<>();
+
+    @Getter
+    @Setter
+    public static class Profile {
+        private Integer lingerMs;
+        private DataSize batchSize;
+        private String compressionType;
+    }
+}
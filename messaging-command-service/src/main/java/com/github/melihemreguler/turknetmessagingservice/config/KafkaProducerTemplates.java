@@ -0,0 +1,64 @@
+package com.github.melihemreguler.turknetmessagingservice.config;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the {@link KafkaTemplate} a topic is published through. Topics
+ * without a profile share the auto-configured template.
+ */
+public class KafkaProducerTemplates implements DisposableBean {
+
+    private final KafkaTemplate<String, byte[]> defaultTemplate;
+    private final Map<String, KafkaTemplate<String, byte[]>> templatesByTopic;
+    private final List<DefaultKafkaProducerFactory<String, byte[]>> ownedFactories;
+
+    public KafkaProducerTemplates(KafkaTemplate<String, byte[]> defaultTemplate,
+                                  Map<String, KafkaTemplate<String, byte[]>> templatesByTopic,
+                                  List<DefaultKafkaProducerFactory<String, byte[]>> ownedFactories) {
+        this.defaultTemplate = defaultTemplate;
+        this.templatesByTopic = Map.copyOf(templatesByTopic);
+        this.ownedFactories = List.copyOf(ownedFactories);
+    }
+
+    public KafkaTemplate<String, byte[]> forTopic(String topic) {
+        return templatesByTopic.getOrDefault(topic, defaultTemplate);
+    }
+
+    /**
+     * Average bytes per batch sent by the producer behind {@code topic} over the
+     * client's metrics window, or NaN before anything has been sent.
+     */
+    public double averageBatchBytes(String topic) {
+        return producerMetric(topic, "batch-size-avg");
+    }
+
+    /**
+     * Average milliseconds a record for {@code topic} waited in the producer's
+     * accumulator before its batch was sent, or NaN before anything has been sent.
+     */
+    public double averageQueueTimeMs(String topic) {
+        return producerMetric(topic, "record-queue-time-avg");
+    }
+
+    private double producerMetric(String topic, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : forTopic(topic).metrics().entrySet()) {
+            if (name.equals(entry.getKey().name()) && "producer-metrics".equals(entry.getKey().group())) {
+                return ((Number) entry.getValue().metricValue()).doubleValue();
+            }
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public void destroy() {
+        // Flushes anything still lingering in the profile producers' accumulators.
+        ownedFactories.forEach(DefaultKafkaProducerFactory::destroy);
+    }
+}
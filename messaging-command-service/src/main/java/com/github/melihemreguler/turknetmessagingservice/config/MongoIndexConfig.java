@@ -23,12 +23,24 @@ import java.util.concurrent.TimeUnit;
  * <p>Indexes covered:
  * <ul>
  *   <li>{@code messages}: compound {@code (threadId asc, timestamp desc)} —
- *       covers paginated thread history sort and the inbox aggregation
- *       {@code $match}+{@code $sort} prefix.</li>
+ *       covers the conversations backfill. Compound {@code (threadId asc, _id desc)}
+ *       — offset and cursor pages of a thread, ordered by the time-ordered
+ *       message id.</li>
+ *   <li>{@code conversations}: compound {@code (userId asc, lastMessageAt desc)} —
+ *       the inbox is a single range scan over this index.</li>
  *   <li>{@code sessions}: TTL on {@code expiresAt} — MongoDB removes expired
- *       sessions automatically; the scheduled cleanup becomes a safety net.</li>
- *   <li>{@code activity_logs}: unique on {@code userId} — there is at most one
- *       log document per user (the consumer's upsert pattern depends on this).</li>
+ *       sessions automatically; the scheduled cleanup becomes a safety net.
+ *       Unique on {@code hashedSessionId} — session validation is a point
+ *       lookup on the HMAC digest of the presented token. Compound
+ *       {@code (userId asc, expiresAt desc)} — the cleanup job's per-user
+ *       session cap counts and pages live sessions off this index.</li>
+ *   <li>{@code activity_log_buckets}: compound {@code (userId asc, bucketStart desc,
+ *       firstAt desc)} — activity reads walk a user's buckets newest first.</li>
+ *   <li>{@code users}: unique on {@code username} — registration skips its
+ *       existence check when the username filter rules the name out, so the
+ *       index is what rejects a name taken on another replica.</li>
+ *   <li>{@code idempotency_keys}: TTL on {@code expiresAt} — a send's
+ *       {@code Idempotency-Key} is forgotten once its replay window ends.</li>
  * </ul>
  */
 @Component
@@ -43,8 +55,11 @@ public class MongoIndexConfig {
         // Each createIndex is wrapped — an IndexOptionsConflict on one collection
         // (e.g. a legacy non-unique index already present) shouldn't abort startup.
         tryEnsure("messages", this::ensureMessagesIndexes);
+        tryEnsure("conversations", this::ensureConversationsIndexes);
         tryEnsure("sessions", this::ensureSessionsIndexes);
-        tryEnsure("activity_logs", this::ensureActivityLogsIndexes);
+        tryEnsure("activity_log_buckets", this::ensureActivityLogBucketsIndexes);
+        tryEnsure("idempotency_keys", this::ensureIdempotencyKeysIndexes);
+        tryEnsure("users", this::ensureUsersIndexes);
     }
 
     private void tryEnsure(String collection, Runnable action) {
@@ -58,13 +73,30 @@ public class MongoIndexConfig {
 
     private void ensureMessagesIndexes() {
         IndexOperations ops = mongoTemplate.indexOps("messages");
-        // Powers findByThreadIdOrderByTimestampDesc + the inbox aggregation
-        // (which sorts by timestamp desc within each threadId).
+        // Powers the conversations backfill
+        // (which takes the newest message within each threadId).
         String name = ops.createIndex(new Index()
                 .on("threadId", Sort.Direction.ASC)
                 .on("timestamp", Sort.Direction.DESC)
                 .named("threadId_1_timestamp_-1"));
         log.info("Ensured index on messages: {}", name);
+
+        // Powers findThreadPageAt/Before/After: message ids sort by creation time.
+        name = ops.createIndex(new Index()
+                .on("threadId", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.DESC)
+                .named("threadId_1__id_-1"));
+        log.info("Ensured index on messages: {}", name);
+    }
+
+    private void ensureConversationsIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps("conversations");
+        // Inbox page + count for a user, newest conversation first.
+        String name = ops.createIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("lastMessageAt", Sort.Direction.DESC)
+                .named("userId_1_lastMessageAt_-1"));
+        log.info("Ensured index on conversations: {}", name);
     }
 
     private void ensureSessionsIndexes() {
@@ -76,17 +108,52 @@ public class MongoIndexConfig {
                 .expire(0, TimeUnit.SECONDS)
                 .named("expiresAt_ttl"));
         log.info("Ensured TTL index on sessions: {}", name);
+
+        // Session tokens are stored as a deterministic HMAC, so every
+        // authenticated request resolves its session through this index.
+        String digestIndex = ops.createIndex(new Index()
+                .on("hashedSessionId", Sort.Direction.ASC)
+                .unique()
+                .named("hashedSessionId_unique"));
+        log.info("Ensured unique index on sessions: {}", digestIndex);
+
+        // Live sessions per user, newest first, used when enforcing the per-user session cap.
+        // expiresAt is createdAt plus a fixed lifetime, so it orders sessions by age as well.
+        String userIndex = ops.createIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("expiresAt", Sort.Direction.DESC)
+                .named("userId_1_expiresAt_-1"));
+        log.info("Ensured index on sessions: {}", userIndex);
     }
 
-    private void ensureActivityLogsIndexes() {
-        IndexOperations ops = mongoTemplate.indexOps("activity_logs");
-        // One activity log document per user. Unique guards against the race
-        // condition where two consumer threads insert simultaneously when no
-        // document exists yet.
+    private void ensureActivityLogBucketsIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps("activity_log_buckets");
+        // Bucket headers for a user in read order; also serves the consumer's
+        // open-bucket lookup on (userId, bucketStart).
         String name = ops.createIndex(new Index()
                 .on("userId", Sort.Direction.ASC)
+                .on("bucketStart", Sort.Direction.DESC)
+                .on("firstAt", Sort.Direction.DESC)
+                .named("userId_1_bucketStart_-1_firstAt_-1"));
+        log.info("Ensured index on activity_log_buckets: {}", name);
+    }
+
+    private void ensureIdempotencyKeysIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps("idempotency_keys");
+        // Lookups are by _id (<senderId>:<key>); only expiry needs an index.
+        String name = ops.createIndex(new Index()
+                .on("expiresAt", Sort.Direction.ASC)
+                .expire(0, TimeUnit.SECONDS)
+                .named("expiresAt_ttl"));
+        log.info("Ensured TTL index on idempotency_keys: {}", name);
+    }
+
+    private void ensureUsersIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps("users");
+        String name = ops.createIndex(new Index()
+                .on("username", Sort.Direction.ASC)
                 .unique()
-                .named("userId_unique"));
-        log.info("Ensured unique index on activity_logs: {}", name);
+                .named("username_unique"));
+        log.info("Ensured unique index on users: {}", name);
     }
 }
@@ -12,6 +12,9 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 @Slf4j
 public class SchedulingConfig {
 
+    // Runs the long jobs (session cleanup, username filter rebuild) so they never hold up the short ones.
+    public static final String MAINTENANCE_SCHEDULER = "maintenanceScheduler";
+
     @Value("${app.session.cleanup-interval-minutes:60}")
     private int sessionCleanupIntervalMinutes;
 
@@ -27,4 +30,14 @@ public class SchedulingConfig {
         
         return scheduler;
     }
+
+    @Bean(name = MAINTENANCE_SCHEDULER)
+    public ThreadPoolTaskScheduler maintenanceScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("maintenance-task-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(60);
+        return scheduler;
+    }
 }
@@ -0,0 +1,20 @@
+package com.github.melihemreguler.turknetmessagingservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.session.signing")
+@Getter
+@Setter
+public class SessionSigningConfig {
+    // Key id stamped into newly issued signed session tokens
+    private String activeKeyId;
+    // Verification keys by id; keep a retired key here until its tokens have expired
+    private Map<String, String> keys = new HashMap<>();
+}
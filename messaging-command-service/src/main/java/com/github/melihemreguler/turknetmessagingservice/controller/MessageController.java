@@ -1,23 +1,29 @@
 package com.github.melihemreguler.turknetmessagingservice.controller;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.enums.SendMode;
 import com.github.melihemreguler.turknetmessagingservice.enums.SessionConstants;
 import com.github.melihemreguler.turknetmessagingservice.model.request.HistoryRequest;
 import com.github.melihemreguler.turknetmessagingservice.model.request.MessageRequest;
 import com.github.melihemreguler.turknetmessagingservice.model.response.ApiResponse;
 import com.github.melihemreguler.turknetmessagingservice.model.response.ConversationResponse;
+import com.github.melihemreguler.turknetmessagingservice.model.response.CursorPageResponse;
 import com.github.melihemreguler.turknetmessagingservice.model.response.MessageResponse;
 import com.github.melihemreguler.turknetmessagingservice.model.response.PaginatedResponse;
+import com.github.melihemreguler.turknetmessagingservice.service.IdempotencyKeys;
 import com.github.melihemreguler.turknetmessagingservice.service.MessageService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.Objects;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -27,25 +33,52 @@ public class MessageController {
 
     private final MessageService messageService;
 
+    // How long a durable send waits for the broker before answering 202 instead.
+    @Value("${app.messages.durable-send-timeout-ms:5000}")
+    private long durableSendTimeoutMs = 5000;
+
+    /**
+     * {@code mode=accept} (default) answers 202 once the command is handed to the
+     * producer. {@code mode=durable} answers 201 after the broker acknowledges it,
+     * without holding the request thread while waiting, or 202 with the message
+     * if the broker has not answered in time. A retry with the same
+     * {@code Idempotency-Key} header gets the original message back instead of
+     * sending it again.
+     */
     @PostMapping("/send")
-    public ResponseEntity<ApiResponse<MessageResponse>> sendMessage(
+    public DeferredResult<ResponseEntity<ApiResponse<MessageResponse>>> sendMessage(
             @RequestBody @Valid MessageRequest request,
+            @RequestParam(defaultValue = "accept") String mode,
+            @RequestHeader(value = IdempotencyKeys.HEADER, required = false) String idempotencyKey,
             HttpServletRequest httpRequest) {
 
         String senderId = (String) httpRequest.getAttribute(SessionConstants.USER_ID_ATTRIBUTE.toString());
+        SendMode sendMode = SendMode.from(mode);
 
-        log.info("Message send request from user ID {} to {}", senderId, request.recipient());
-        MessageDto message = messageService.sendMessage(senderId, request);
+        log.info("Message send request ({}) from user ID {} to {}", sendMode, senderId, request.recipient());
 
-        MessageResponse responseData = new MessageResponse(
-                message.getThreadId(),
-                message.getSenderId(),
-                message.getContent(),
-                message.getTimestamp()
-        );
+        if (sendMode == SendMode.ACCEPT) {
+            MessageDto message = messageService.sendMessage(senderId, request, idempotencyKey);
+            DeferredResult<ResponseEntity<ApiResponse<MessageResponse>>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Message accepted for delivery", toResponse(message))));
+            return result;
+        }
 
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(ApiResponse.success("Message sent successfully", responseData));
+        MessageService.PendingMessage pending = messageService.sendMessageAcknowledged(senderId, request, idempotencyKey);
+        DeferredResult<ResponseEntity<ApiResponse<MessageResponse>>> result = new DeferredResult<>(durableSendTimeoutMs,
+                () -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .body(ApiResponse.success("Message accepted; delivery not yet confirmed",
+                                toResponse(pending.message()))));
+        pending.acknowledged().whenComplete((message, error) -> {
+            if (error != null) {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                result.setResult(ResponseEntity.status(HttpStatus.CREATED)
+                        .body(ApiResponse.success("Message sent successfully", toResponse(message))));
+            }
+        });
+        return result;
     }
 
     @GetMapping("/history")
@@ -84,11 +117,47 @@ public class MessageController {
         log.info("Fetching conversation between current user {} and target user {} (limit: {}, offset: {})",
                 currentUserId, securityInfo.user2Id(), request.limit(), request.offset());
 
-        PaginatedResponse<MessageDto> paginatedMessages = messageService.getConversationPaginated(request);
+        PaginatedResponse<MessageDto> paginatedMessages = messageService.getConversationPaginated(securityInfo, request);
 
         return ResponseEntity.ok(ApiResponse.success("Conversation retrieved successfully", paginatedMessages));
     }
 
+    @GetMapping("/history/cursor")
+    public ResponseEntity<ApiResponse<CursorPageResponse<MessageDto>>> getConversationByCursor(
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String username,
+            @RequestParam(defaultValue = "50") Integer limit,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            HttpServletRequest httpRequest) {
+
+        String currentUserId = (String) httpRequest.getAttribute(SessionConstants.USER_ID_ATTRIBUTE.toString());
+
+        if (isNullOrEmpty(userId) && isNullOrEmpty(username)) {
+            log.warn("User {} attempted to fetch conversation without providing userId or username", currentUserId);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Either userId or username parameter must be provided"));
+        }
+
+        int safeLimit = (limit == null || limit <= 0) ? 50 : Math.min(limit, 100);
+        HistoryRequest request = new HistoryRequest(currentUserId, userId, username, safeLimit, 0);
+
+        MessageService.ConversationSecurityInfo securityInfo = messageService.getConversationSecurityInfo(request);
+
+        if (!securityInfo.isUserPartOfConversation(currentUserId)) {
+            log.warn("User {} attempted to access conversation between {} and {}",
+                    currentUserId, securityInfo.user1Id(), securityInfo.user2Id());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("Access denied to this conversation"));
+        }
+
+        log.info("Fetching conversation page between current user {} and target user {} (limit: {}, before: {}, after: {})",
+                currentUserId, securityInfo.user2Id(), safeLimit, before, after);
+
+        CursorPageResponse<MessageDto> page = messageService.getConversationByCursor(securityInfo, request, before, after);
+
+        return ResponseEntity.ok(ApiResponse.success("Conversation retrieved successfully", page));
+    }
 
     @GetMapping("/inbox")
     public ResponseEntity<ApiResponse<PaginatedResponse<ConversationResponse>>> getInbox(
@@ -108,6 +177,16 @@ public class MessageController {
         return ResponseEntity.ok(ApiResponse.success("Inbox retrieved successfully", inbox));
     }
 
+    private MessageResponse toResponse(MessageDto message) {
+        return new MessageResponse(
+                message.getId(),
+                message.getThreadId(),
+                message.getSenderId(),
+                message.getContent(),
+                message.getTimestamp()
+        );
+    }
+
     private boolean isNullOrEmpty(String value) {
         return Objects.isNull(value) || value.trim().isEmpty();
     }
@@ -0,0 +1,43 @@
+package com.github.melihemreguler.turknetmessagingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One bounded slice of a user's activity log, written by messaging-consumer:
+ * entries from a single day in arrival order, with {@code count} kept in step
+ * with {@code logs}.
+ */
+@Document(collection = "activity_log_buckets")
+@CompoundIndex(
+        name = "userId_1_bucketStart_-1_firstAt_-1",
+        def = "{'userId': 1, 'bucketStart': -1, 'firstAt': -1}"
+)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityLogBucketDto {
+
+    @Id
+    private String id;
+
+    private String userId;
+
+    private LocalDateTime bucketStart;
+
+    private int count;
+
+    private LocalDateTime firstAt;
+
+    private LocalDateTime lastAt;
+
+    private List<ActivityLogDto.ActivityEntry> logs = new ArrayList<>();
+}
@@ -0,0 +1,40 @@
+package com.github.melihemreguler.turknetmessagingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inbox read model maintained by messaging-consumer: one document per
+ * (user, thread) with the thread's latest message.
+ */
+@Document(collection = "conversations")
+@CompoundIndex(
+        name = "userId_1_lastMessageAt_-1",
+        def = "{'userId': 1, 'lastMessageAt': -1}"
+)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationDto {
+
+    @Id
+    private String id;
+
+    private String userId;
+
+    private String threadId;
+
+    private String otherUserId;
+
+    private String otherUsername;
+
+    private MessageDto lastMessage;
+
+    private LocalDateTime lastMessageAt;
+}
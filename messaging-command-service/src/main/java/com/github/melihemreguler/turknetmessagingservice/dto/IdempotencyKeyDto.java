@@ -0,0 +1,43 @@
+package com.github.melihemreguler.turknetmessagingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * The message accepted for a client's {@code Idempotency-Key}, kept until
+ * {@code expiresAt} so a retry landing on any replica gets the original
+ * response back. The id is {@code <senderId>:<key>}.
+ */
+@Document(collection = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyKeyDto {
+
+    @Id
+    private String id;
+
+    private String messageId;
+
+    private String threadId;
+
+    private String senderId;
+
+    private String senderUsername;
+
+    private String content;
+
+    private LocalDateTime timestamp;
+
+    // Hash of the request the key was first used with.
+    private int fingerprint;
+
+    @Indexed(name = "expiresAt_ttl", expireAfterSeconds = 0)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,32 @@
+package com.github.melihemreguler.turknetmessagingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Per-thread counters maintained by messaging-consumer with {@code $inc} as
+ * messages are stored.
+ */
+@Document(collection = "thread_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ThreadStatsDto {
+
+    @Id
+    private String threadId;
+
+    private long messageCount;
+
+    private LocalDateTime firstMessageAt;
+
+    private LocalDateTime lastMessageAt;
+
+    private Map<String, Long> senderCounts;
+}
@@ -0,0 +1,25 @@
+package com.github.melihemreguler.turknetmessagingservice.enums;
+
+import java.util.Locale;
+
+/**
+ * When {@code POST /api/messages/send} answers the client.
+ */
+public enum SendMode {
+    /**
+     * As soon as the command is handed to the producer; answers 202.
+     */
+    ACCEPT,
+    /**
+     * Once the broker has acknowledged the command; answers 201.
+     */
+    DURABLE;
+
+    public static SendMode from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported send mode: " + value);
+        }
+    }
+}
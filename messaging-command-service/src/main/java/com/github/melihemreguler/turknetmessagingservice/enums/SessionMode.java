@@ -0,0 +1,15 @@
+package com.github.melihemreguler.turknetmessagingservice.enums;
+
+/**
+ * How newly created sessions are represented.
+ */
+public enum SessionMode {
+    /**
+     * Random token; its HMAC digest is persisted in the {@code sessions} collection.
+     */
+    STORED,
+    /**
+     * Self-contained signed token verified in memory; revocations arrive over Kafka.
+     */
+    SIGNED
+}
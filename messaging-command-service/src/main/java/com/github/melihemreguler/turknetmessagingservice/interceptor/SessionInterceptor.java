@@ -64,6 +64,7 @@ public class SessionInterceptor implements HandlerInterceptor {
         
         // Set user context and response headers
         SessionDto session = sessionOpt.get();
+        sessionService.recordActivity(session);
         setUserContext(request, session);
         setResponseHeaders(response, sessionId, userId);
         
@@ -11,12 +11,18 @@ public record MessageCommand(
     String senderUsername,
     String content,
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSSSS")
-    LocalDateTime timestamp
+    LocalDateTime timestamp,
+    String recipientId,
+    String recipientUsername,
+    // Assigned by MessageIdGenerator; the consumer stores the message under it as _id.
+    String messageId
 ) {
     public static MessageCommand create(
+            String messageId,
             String threadId,
             String senderId,
             String senderUsername,
+            String recipientId,
             String recipient,
             String content) {
         return new MessageCommand(
@@ -25,7 +31,10 @@ public record MessageCommand(
             senderId,
             senderUsername,
             content,
-            LocalDateTime.now()
+            LocalDateTime.now(),
+            recipientId,
+            recipient,
+            messageId
         );
     }
 }
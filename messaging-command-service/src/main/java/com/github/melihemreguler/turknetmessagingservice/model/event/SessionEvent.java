@@ -49,6 +49,36 @@ public record SessionEvent(
         );
     }
 
+    public static SessionEvent delete(
+            String hashedSessionId,
+            String userId,
+            LocalDateTime expiresAt) {
+        return new SessionEvent(
+            com.github.melihemreguler.turknetmessagingservice.enums.SessionCommand.DELETE_SESSION.getCommand(),
+            hashedSessionId,
+            userId,
+            expiresAt,
+            null,
+            null,
+            LocalDateTime.now()
+        );
+    }
+
+    public static SessionEvent touch(
+            String hashedSessionId,
+            String userId,
+            LocalDateTime lastAccessedAt) {
+        return new SessionEvent(
+            com.github.melihemreguler.turknetmessagingservice.enums.SessionCommand.UPDATE_SESSION.getCommand(),
+            hashedSessionId,
+            userId,
+            null,
+            null,
+            null,
+            lastAccessedAt
+        );
+    }
+
     public static SessionEvent deleteUserSessions(String userId) {
         return new SessionEvent(
             com.github.melihemreguler.turknetmessagingservice.enums.SessionCommand.DELETE_SESSION.getCommand(),
@@ -0,0 +1,35 @@
+package com.github.melihemreguler.turknetmessagingservice.model.request;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a thread's history. Message ids are time-ordered (see
+ * {@code MessageIdGenerator}), so the id alone orders a thread.
+ * Clients only ever see the opaque base64url form produced by {@link #encode()}.
+ */
+public record MessageCursor(String id) {
+
+    // Cursors issued before ids were time-ordered were "<timestamp>|<id>".
+    private static final String LEGACY_SEPARATOR = "|";
+
+    public static MessageCursor of(MessageDto message) {
+        return new MessageCursor(message.getId());
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String id = raw.substring(raw.indexOf(LEGACY_SEPARATOR) + 1);
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new MessageCursor(id);
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.melihemreguler.turknetmessagingservice.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+
+    private List<T> data;
+    private int limit;
+    // Pass back as the same parameter (before/after) to continue; null when there is nothing further.
+    private String nextCursor;
+    private boolean hasMore;
+
+    public static <T> CursorPageResponse<T> of(List<T> data, int limit, String nextCursor) {
+        return new CursorPageResponse<>(data, limit, nextCursor, nextCursor != null);
+    }
+}
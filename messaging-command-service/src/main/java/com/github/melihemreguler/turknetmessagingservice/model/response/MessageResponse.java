@@ -11,11 +11,16 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class MessageResponse {
 
+    private String id;
     private String threadId;
     private String sender;
     private String content;
     private LocalDateTime timestamp;
 
+    public MessageResponse(String threadId, String sender, String content, LocalDateTime timestamp) {
+        this(null, threadId, sender, content, timestamp);
+    }
+
     public MessageResponse(String threadId, String sender, String content) {
         this.threadId = threadId;
         this.sender = sender;
@@ -0,0 +1,10 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.ActivityLogBucketDto;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ActivityLogBucketRepository
+        extends MongoRepository<ActivityLogBucketDto, String>, ActivityLogBucketRepositoryCustom {
+}
@@ -0,0 +1,14 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.ActivityLogBucketDto;
+
+import java.util.List;
+
+public interface ActivityLogBucketRepositoryCustom {
+
+    /**
+     * Id and entry count of every bucket for the user, newest bucket first, without
+     * the entries themselves.
+     */
+    List<ActivityLogBucketDto> findBucketHeaders(String userId);
+}
@@ -0,0 +1,25 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.ActivityLogBucketDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ActivityLogBucketRepositoryImpl implements ActivityLogBucketRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<ActivityLogBucketDto> findBucketHeaders(String userId) {
+        Query query = new Query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "bucketStart").and(Sort.by(Sort.Direction.DESC, "firstAt")));
+        query.fields().include("_id", "count");
+
+        return mongoTemplate.find(query, ActivityLogBucketDto.class);
+    }
+}
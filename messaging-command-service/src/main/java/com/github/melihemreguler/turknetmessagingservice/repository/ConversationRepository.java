@@ -0,0 +1,12 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.ConversationDto;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConversationRepository
+        extends MongoRepository<ConversationDto, String>, ConversationRepositoryCustom {
+
+    long countByUserId(String userId);
+}
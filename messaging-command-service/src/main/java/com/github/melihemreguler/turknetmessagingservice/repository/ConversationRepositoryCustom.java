@@ -0,0 +1,14 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.ConversationDto;
+
+import java.util.List;
+
+public interface ConversationRepositoryCustom {
+
+    /**
+     * Returns the user's conversations, most recently active first, paginated.
+     * Served entirely by the {@code (userId, lastMessageAt desc)} index.
+     */
+    List<ConversationDto> findInboxPage(String userId, int limit, int offset);
+}
@@ -0,0 +1,11 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.IdempotencyKeyDto;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IdempotencyKeyRepository extends MongoRepository<IdempotencyKeyDto, String> {
+
+    void deleteByIdAndMessageId(String id, String messageId);
+}
@@ -1,19 +1,27 @@
 package com.github.melihemreguler.turknetmessagingservice.repository;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.model.request.MessageCursor;
 
 import java.util.List;
 
 public interface MessageRepositoryCustom {
 
     /**
-     * Returns the latest message of each thread the given user participates in,
-     * sorted by recency (newest first), paginated.
+     * Returns up to {@code limit} messages of the thread in id order, newest first, after
+     * skipping the newest {@code offset}. Any offset is honoured, not only multiples of {@code limit}.
      */
-    List<MessageDto> findLatestPerThreadForUser(String userId, int limit, int offset);
+    List<MessageDto> findThreadPageAt(String threadId, int offset, int limit);
 
     /**
-     * Counts distinct threads the given user participates in.
+     * Returns up to {@code limit} messages of the thread strictly older than {@code cursor}
+     * (or the newest messages when {@code cursor} is null), newest first.
      */
-    long countThreadsForUser(String userId);
+    List<MessageDto> findThreadPageBefore(String threadId, MessageCursor cursor, int limit);
+
+    /**
+     * Returns up to {@code limit} messages of the thread strictly newer than {@code cursor},
+     * oldest first.
+     */
+    List<MessageDto> findThreadPageAfter(String threadId, MessageCursor cursor, int limit);
 }
@@ -1,73 +1,61 @@
 package com.github.melihemreguler.turknetmessagingservice.repository;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.model.request.MessageCursor;
 import lombok.RequiredArgsConstructor;
-import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
 @RequiredArgsConstructor
 public class MessageRepositoryImpl implements MessageRepositoryCustom {
 
-    static final String COLLECTION = "messages";
-
     private final MongoTemplate mongoTemplate;
 
     @Override
-    public List<MessageDto> findLatestPerThreadForUser(String userId, int limit, int offset) {
-        Criteria match = buildThreadCriteria(userId);
-
-        // Raw $group with $$ROOT — spring-data's GroupOperation.first(String) would
-        // re-interpret "$$ROOT" as a field reference, so build the stage by hand.
-        AggregationOperation groupLatest = ctx -> new Document(
-                "$group",
-                new Document("_id", "$threadId")
-                        .append("latest", new Document("$first", "$$ROOT"))
-        );
-        AggregationOperation replaceRoot = ctx -> new Document(
-                "$replaceRoot", new Document("newRoot", "$latest")
-        );
-
-        Aggregation aggregation = Aggregation.newAggregation(
-                Aggregation.match(match),
-                Aggregation.sort(Sort.Direction.DESC, "timestamp"),
-                groupLatest,
-                replaceRoot,
-                Aggregation.sort(Sort.Direction.DESC, "timestamp"),
-                Aggregation.skip((long) offset),
-                Aggregation.limit(limit)
-        );
+    public List<MessageDto> findThreadPageAt(String threadId, int offset, int limit) {
+        // Same order as the cursor pages and RecentMessages, so a page reads the same from either.
+        Query query = new Query(Criteria.where("threadId").is(threadId))
+                .with(Sort.by(Sort.Direction.DESC, "_id"))
+                .skip(offset)
+                .limit(limit);
+        return mongoTemplate.find(query, MessageDto.class);
+    }
 
-        AggregationResults<MessageDto> results = mongoTemplate.aggregate(
-                aggregation, COLLECTION, MessageDto.class);
-        return results.getMappedResults();
+    @Override
+    public List<MessageDto> findThreadPageBefore(String threadId, MessageCursor cursor, int limit) {
+        Criteria criteria = Criteria.where("threadId").is(threadId);
+        if (cursor != null) {
+            criteria = criteria.and("_id").lt(toObjectId(cursor.id()));
+        }
+        return findPage(criteria, Sort.Direction.DESC, limit);
     }
 
     @Override
-    public long countThreadsForUser(String userId) {
-        Criteria match = buildThreadCriteria(userId);
-        return mongoTemplate.getCollection(COLLECTION)
-                .distinct("threadId", new Query(match).getQueryObject(), String.class)
-                .into(new ArrayList<>())
-                .size();
+    public List<MessageDto> findThreadPageAfter(String threadId, MessageCursor cursor, int limit) {
+        Criteria criteria = Criteria.where("threadId").is(threadId).and("_id").gt(toObjectId(cursor.id()));
+        return findPage(criteria, Sort.Direction.ASC, limit);
     }
 
     /**
-     * threadId is `<minId>-<maxId>` (lex). Match threads containing this user
-     * either as prefix (`userId-...`) or suffix (`...-userId`).
+     * Bounded range scan on {@code (threadId, _id)}. Ids are time-ordered, so this is
+     * creation order with no ties to break.
      */
-    private Criteria buildThreadCriteria(String userId) {
-        String quoted = Pattern.quote(userId);
-        Pattern threadPattern = Pattern.compile("^" + quoted + "-|-" + quoted + "$");
-        return Criteria.where("threadId").regex(threadPattern);
+    private List<MessageDto> findPage(Criteria criteria, Sort.Direction direction, int limit) {
+        Query query = new Query(criteria)
+                .with(Sort.by(direction, "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, MessageDto.class);
+    }
+
+    private static ObjectId toObjectId(String id) {
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new ObjectId(id);
     }
 }
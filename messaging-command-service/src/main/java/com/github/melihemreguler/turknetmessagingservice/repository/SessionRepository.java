@@ -5,8 +5,11 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface SessionRepository extends MongoRepository<SessionDto, String> {
+public interface SessionRepository extends MongoRepository<SessionDto, String>, SessionRepositoryCustom {
     List<SessionDto> findByUserId(String userId);
+
+    Optional<SessionDto> findByHashedSessionId(String hashedSessionId);
 }
@@ -0,0 +1,33 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.SessionDto;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface SessionRepositoryCustom {
+
+    /**
+     * Returns the ids of up to {@code limit} sessions whose {@code expiresAt} is at or before {@code now},
+     * walking the {@code expiresAt} index.
+     */
+    List<String> findExpiredSessionIds(LocalDateTime now, int limit);
+
+    /**
+     * Returns the users holding more than {@code maxSessionsPerUser} live sessions, counted off the
+     * {@code (userId, expiresAt)} index without reading the session documents.
+     */
+    List<String> findUserIdsOverSessionCap(LocalDateTime now, int maxSessionsPerUser);
+
+    /**
+     * Returns the user's live sessions beyond the newest {@code keep}, oldest last.
+     * Only {@code id}, {@code hashedSessionId}, {@code userId} and {@code expiresAt} are populated.
+     */
+    List<SessionDto> findSessionsBeyondNewest(String userId, LocalDateTime now, int keep);
+
+    /**
+     * Deletes the given sessions with a single server-side {@code deleteMany}.
+     */
+    long deleteByIds(Collection<String> ids);
+}
@@ -0,0 +1,70 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.SessionDto;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+@RequiredArgsConstructor
+public class SessionRepositoryImpl implements SessionRepositoryCustom {
+
+    static final String COLLECTION = "sessions";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<String> findExpiredSessionIds(LocalDateTime now, int limit) {
+        Query query = new Query(Criteria.where("expiresAt").lte(now))
+                .with(Sort.by(Sort.Direction.ASC, "expiresAt"))
+                .limit(limit);
+        query.fields().include("_id");
+        return mongoTemplate.find(query, SessionDto.class, COLLECTION).stream()
+                .map(SessionDto::getId)
+                .toList();
+    }
+
+    @Override
+    public List<String> findUserIdsOverSessionCap(LocalDateTime now, int maxSessionsPerUser) {
+        // Sorting on the index prefix and keeping only indexed fields lets the
+        // planner answer this from the (userId, expiresAt) index alone.
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("expiresAt").gt(now)),
+                Aggregation.sort(Sort.by(Sort.Direction.ASC, "userId")),
+                Aggregation.project("userId").andExclude("_id"),
+                Aggregation.group("userId").count().as("count"),
+                Aggregation.match(Criteria.where("count").gt(maxSessionsPerUser))
+        );
+        return mongoTemplate.aggregate(aggregation, COLLECTION, Document.class).getMappedResults().stream()
+                .map(row -> row.getString("_id"))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public List<SessionDto> findSessionsBeyondNewest(String userId, LocalDateTime now, int keep) {
+        Query query = new Query(Criteria.where("userId").is(userId).and("expiresAt").gt(now))
+                .with(Sort.by(Sort.Direction.DESC, "expiresAt"))
+                .skip(keep);
+        query.fields().include("_id", "hashedSessionId", "userId", "expiresAt");
+        return mongoTemplate.find(query, SessionDto.class, COLLECTION);
+    }
+
+    @Override
+    public long deleteByIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        // Entity-typed remove so the string ids are converted back to ObjectIds.
+        return mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), SessionDto.class, COLLECTION)
+                .getDeletedCount();
+    }
+}
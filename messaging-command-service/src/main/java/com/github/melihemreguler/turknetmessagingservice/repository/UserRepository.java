@@ -2,9 +2,13 @@ package com.github.melihemreguler.turknetmessagingservice.repository;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.UserDto;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends MongoRepository<UserDto, String> {
@@ -12,4 +16,10 @@ public interface UserRepository extends MongoRepository<UserDto, String> {
     Optional<UserDto> findByUsername(String username);
     
     boolean existsByUsername(String username);
+
+    List<UserDto> findByIdInOrUsernameIn(Collection<String> ids, Collection<String> usernames);
+
+    // Cursor over every username, without the rest of each user document.
+    @Query(value = "{}", fields = "{ 'username' : 1 }")
+    Stream<UserDto> streamAllUsernames();
 }
@@ -1,44 +1,75 @@
 package com.github.melihemreguler.turknetmessagingservice.service;
 
+import com.github.melihemreguler.turknetmessagingservice.dto.ActivityLogBucketDto;
 import com.github.melihemreguler.turknetmessagingservice.dto.ActivityLogDto;
 import com.github.melihemreguler.turknetmessagingservice.model.request.ActivityLogsRequest;
 import com.github.melihemreguler.turknetmessagingservice.model.response.PaginatedResponse;
-import com.github.melihemreguler.turknetmessagingservice.repository.ActivityLogRepository;
+import com.github.melihemreguler.turknetmessagingservice.repository.ActivityLogBucketRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ActivityService {
 
-    private final ActivityLogRepository activityLogRepository;
+    private final ActivityLogBucketRepository activityLogBucketRepository;
 
+    /**
+     * Returns the user's activity newest first. The total is the sum of the bucket
+     * counters, and only the buckets overlapping the requested window are loaded.
+     */
     public PaginatedResponse<ActivityLogDto.ActivityEntry> getUserActivitiesPaginated(String userId, ActivityLogsRequest request) {
-        Optional<ActivityLogDto> activityLogOpt = activityLogRepository.findByUserIdWithPagination(
-                userId, request.offset(), request.limit());
+        List<ActivityLogBucketDto> headers = activityLogBucketRepository.findBucketHeaders(userId);
+        long total = headers.stream().mapToLong(ActivityLogBucketDto::getCount).sum();
+        int offset = Math.max(0, request.offset());
+        int limit = Math.max(0, request.limit());
 
-        Optional<Integer> totalCountOpt = activityLogRepository.countLogsByUserId(userId);
-        long total = totalCountOpt.orElse(0);
+        // Walk the headers to find which buckets cover [offset, offset + limit).
+        List<String> pageBucketIds = new ArrayList<>();
+        int skipInFirstBucket = 0;
+        long seen = 0;
+        for (ActivityLogBucketDto header : headers) {
+            long bucketEnd = seen + header.getCount();
+            if (bucketEnd > offset && seen < (long) offset + limit) {
+                if (pageBucketIds.isEmpty()) {
+                    skipInFirstBucket = (int) (offset - seen);
+                }
+                pageBucketIds.add(header.getId());
+            }
+            seen = bucketEnd;
+        }
 
-        if (activityLogOpt.isEmpty() || activityLogOpt.get().getLogs().isEmpty()) {
+        if (pageBucketIds.isEmpty()) {
             log.info("No activity logs found for user: {} (offset: {}, limit: {})", userId, request.offset(), request.limit());
-            return PaginatedResponse.of(
-                    java.util.List.of(),
-                    total,
-                    request.limit(),
-                    request.offset()
-            );
+            return PaginatedResponse.of(List.of(), total, request.limit(), request.offset());
+        }
+
+        Map<String, ActivityLogBucketDto> bucketsById = activityLogBucketRepository.findAllById(pageBucketIds).stream()
+                .collect(Collectors.toMap(ActivityLogBucketDto::getId, Function.identity()));
+
+        List<ActivityLogDto.ActivityEntry> page = new ArrayList<>(limit);
+        int skip = skipInFirstBucket;
+        for (String bucketId : pageBucketIds) {
+            ActivityLogBucketDto bucket = bucketsById.get(bucketId);
+            if (bucket == null || bucket.getLogs() == null) {
+                continue;
+            }
+            // Entries are appended oldest first within a bucket.
+            List<ActivityLogDto.ActivityEntry> logs = bucket.getLogs();
+            for (int i = logs.size() - 1 - skip; i >= 0 && page.size() < limit; i--) {
+                page.add(logs.get(i));
+            }
+            skip = 0;
         }
 
-        return PaginatedResponse.of(
-                activityLogOpt.get().getLogs(),
-                total,
-                request.limit(),
-                request.offset()
-        );
+        return PaginatedResponse.of(page, total, request.limit(), request.offset());
     }
 }
@@ -0,0 +1,236 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.IdempotencyKeyDto;
+import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers which message each client {@code Idempotency-Key} produced, so
+ * {@link MessageService} can answer a retried send with the original message
+ * instead of publishing it again.
+ *
+ * <p>Keys are scoped to the sender and live for {@code window-seconds}. Recent
+ * keys are held in a bounded, lock-striped table: each stripe is an
+ * insertion-ordered map, so expired keys are always at its head and the oldest
+ * key is the one dropped when the stripe is full. Every new key is also
+ * inserted into the {@code idempotency_keys} collection, whose unique
+ * {@code _id} decides between replicas and whose TTL index on
+ * {@code expiresAt} drops it after the window. Replays are counted as
+ * {@code messages.idempotency.replays}, tagged by where the key was found.
+ */
+@Component
+@Slf4j
+public class IdempotencyKeys {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    static final String REPLAYS_METRIC = "messages.idempotency.replays";
+    static final String SOURCE_LOCAL = "local";
+    static final String SOURCE_STORE = "store";
+
+    private final IdempotencyKeyRepository repository;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier clock;
+    private final long windowMillis;
+    private final Stripe[] stripes;
+
+    @Autowired
+    public IdempotencyKeys(IdempotencyKeyRepository repository,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.messages.idempotency.window-seconds:86400}") long windowSeconds,
+                           @Value("${app.messages.idempotency.maximum-keys:100000}") int maximumKeys,
+                           @Value("${app.messages.idempotency.stripes:64}") int stripes) {
+        this(repository, meterRegistry, windowSeconds, maximumKeys, stripes, System::currentTimeMillis);
+    }
+
+    IdempotencyKeys(IdempotencyKeyRepository repository, MeterRegistry meterRegistry, long windowSeconds,
+                    int maximumKeys, int stripes, LongSupplier clock) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.windowMillis = windowSeconds * 1000L;
+        this.stripes = new Stripe[stripes];
+        int perStripe = Math.max(1, maximumKeys / stripes);
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * The message a send with this key produced, the fingerprint of the request
+     * it was produced for, and a future completing once the broker acknowledged
+     * it (already complete for keys read back from MongoDB).
+     */
+    public record Entry(MessageDto message, int fingerprint, CompletableFuture<MessageDto> acknowledged) {
+    }
+
+    /**
+     * Looks the key up in this replica's table only; a miss here is settled by
+     * {@link #recordIfAbsent}.
+     */
+    public Optional<Entry> find(String senderId, String key) {
+        String id = scope(senderId, key);
+        Stripe stripe = stripeFor(id);
+        Slot slot;
+        synchronized (stripe) {
+            stripe.purgeExpired(clock.getAsLong());
+            slot = stripe.get(id);
+        }
+        if (slot == null) {
+            return Optional.empty();
+        }
+        countReplay(SOURCE_LOCAL);
+        return Optional.of(slot.entry());
+    }
+
+    /**
+     * Records {@code entry} for the key unless this replica or MongoDB already
+     * holds one, in which case that earlier entry is returned instead.
+     */
+    public Optional<Entry> recordIfAbsent(String senderId, String key, Entry entry) {
+        String id = scope(senderId, key);
+        Stripe stripe = stripeFor(id);
+        // Concurrent retries of one key must serialize on the insert; other keys
+        // wait only if they share the stripe, and only for that one round trip.
+        synchronized (stripe) {
+            long now = clock.getAsLong();
+            stripe.purgeExpired(now);
+            Slot local = stripe.get(id);
+            if (local != null) {
+                countReplay(SOURCE_LOCAL);
+                return Optional.of(local.entry());
+            }
+
+            long expiresAt = now + windowMillis;
+            Entry recorded = persist(id, entry, now, expiresAt);
+            stripe.put(id, new Slot(recorded, expiresAt));
+            if (recorded != entry) {
+                countReplay(SOURCE_STORE);
+                return Optional.of(recorded);
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Forgets the key if it still maps to {@code entry}, so that a retry after a
+     * failed publish is sent again rather than answered with a message that was
+     * never delivered.
+     */
+    public void release(String senderId, String key, Entry entry) {
+        String id = scope(senderId, key);
+        Stripe stripe = stripeFor(id);
+        synchronized (stripe) {
+            Slot slot = stripe.get(id);
+            if (slot != null && slot.entry() == entry) {
+                stripe.remove(id);
+            }
+        }
+        try {
+            repository.deleteByIdAndMessageId(id, entry.message().getId());
+        } catch (DataAccessException e) {
+            log.warn("Failed to release idempotency key for sender {}; retries will replay until it expires: {}",
+                    senderId, e.getMessage());
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Entry persist(String id, Entry entry, long now, long expiresAt) {
+        MessageDto message = entry.message();
+        IdempotencyKeyDto document = new IdempotencyKeyDto(id, message.getId(), message.getThreadId(),
+                message.getSenderId(), message.getSenderUsername(), message.getContent(), message.getTimestamp(),
+                entry.fingerprint(), toLocalDateTime(expiresAt));
+        try {
+            repository.insert(document);
+            return entry;
+        } catch (DuplicateKeyException e) {
+            // Another replica took the key first, unless what it left has expired and not been purged yet.
+            Optional<IdempotencyKeyDto> stored = repository.findById(id)
+                    .filter(existing -> existing.getExpiresAt().isAfter(toLocalDateTime(now)));
+            if (stored.isPresent()) {
+                return toEntry(stored.get());
+            }
+            repository.save(document);
+            return entry;
+        } catch (DataAccessException e) {
+            // Deduplication then only covers retries that reach this replica; that beats refusing the send.
+            log.warn("Failed to store idempotency key for sender {}: {}", message.getSenderId(), e.getMessage());
+            return entry;
+        }
+    }
+
+    private void countReplay(String source) {
+        meterRegistry.counter(REPLAYS_METRIC, "source", source).increment();
+    }
+
+    private Stripe stripeFor(String id) {
+        int hash = id.hashCode();
+        return stripes[((hash ^ (hash >>> 16)) & 0x7fffffff) % stripes.length];
+    }
+
+    private static String scope(String senderId, String key) {
+        return senderId + ":" + key;
+    }
+
+    private static Entry toEntry(IdempotencyKeyDto stored) {
+        MessageDto message = new MessageDto(stored.getMessageId(), stored.getThreadId(), stored.getSenderId(),
+                stored.getSenderUsername(), stored.getContent(), stored.getTimestamp());
+        return new Entry(message, stored.getFingerprint(), CompletableFuture.completedFuture(message));
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private record Slot(Entry entry, long expiresAt) {
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Slot> {
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        // Every key gets the same window, so insertion order is expiry order.
+        void purgeExpired(long now) {
+            Iterator<Slot> slots = values().iterator();
+            while (slots.hasNext() && slots.next().expiresAt() <= now) {
+                slots.remove();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Slot> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.melihemreguler.turknetmessagingservice.dto.ConversationDto;
+import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import com.github.melihemreguler.turknetmessagingservice.repository.ConversationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Users' inboxes kept on each replica, so inbox polls are answered without
+ * counting and paging the {@code conversations} collection every time.
+ *
+ * <p>A user's inbox is loaded from {@code conversations} with one query on
+ * their first poll, unless they have more than
+ * {@code max-conversations-per-user} conversations; such inboxes are always
+ * read from MongoDB. After that, each message messaging-consumer stores, seen
+ * through {@link MessageEventListener}, moves its thread to the front of both
+ * participants' inboxes in O(log n), with the same newer-message-wins rule
+ * as the read model. Participants whose inbox is neither cached nor loading
+ * are skipped, so only users who poll take up room; that is safe because the
+ * consumer announces a message only after updating {@code conversations}, so
+ * a later load already has it. Inboxes are held in a
+ * cache bounded by the total number of conversations
+ * ({@code max-conversations}), so rarely seen users are evicted first.
+ *
+ * <p>As with {@link RecentMessages}, an inbox is only served while it was
+ * loaded from MongoDB within {@code verify-interval-seconds} and in the
+ * listener's current generation; messages stored while it loads are merged in
+ * rather than lost.
+ *
+ * <p>Publishes {@code messages.inbox.cache.lookups} tagged {@code result}
+ * ({@code hit}, {@code miss}) and {@code cache.*} meters tagged
+ * {@code cache=inboxes}.
+ */
+@Component
+public class InboxCache implements MessageEventSubscriber {
+
+    static final String LOOKUPS_METRIC = "messages.inbox.cache.lookups";
+    static final String CACHE_NAME = "inboxes";
+
+    private static final Comparator<Entry> MOST_RECENT_FIRST = Comparator
+            .comparing(Entry::lastMessageAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Entry::threadId);
+
+    private final ConversationRepository conversationRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxConversationsPerUser;
+    private final long verifyIntervalMillis;
+    private final LongSupplier clock;
+    private final Cache<String, Inbox> inboxes;
+    // Messages stored while a user's inbox is being read from MongoDB, merged in once it is.
+    private final ConcurrentMap<String, Inbox> loading = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean ready;
+
+    @Autowired
+    public InboxCache(ConversationRepository conversationRepository,
+                      MeterRegistry meterRegistry,
+                      @Value("${app.messages.inbox-cache.enabled:true}") boolean enabled,
+                      @Value("${app.messages.inbox-cache.max-conversations:1000000}") long maxConversations,
+                      @Value("${app.messages.inbox-cache.max-conversations-per-user:1000}") int maxConversationsPerUser,
+                      @Value("${app.messages.inbox-cache.verify-interval-seconds:300}") long verifyIntervalSeconds) {
+        this(conversationRepository, meterRegistry, enabled, maxConversations, maxConversationsPerUser,
+                verifyIntervalSeconds, System::currentTimeMillis);
+    }
+
+    InboxCache(ConversationRepository conversationRepository, MeterRegistry meterRegistry, boolean enabled,
+               long maxConversations, int maxConversationsPerUser, long verifyIntervalSeconds, LongSupplier clock) {
+        this.conversationRepository = conversationRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxConversationsPerUser = maxConversationsPerUser;
+        this.verifyIntervalMillis = verifyIntervalSeconds * 1000;
+        this.clock = clock;
+        this.inboxes = Caffeine.newBuilder()
+                .maximumWeight(maxConversations)
+                .weigher((String userId, Inbox inbox) -> inbox.size() + 1)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, inboxes, CACHE_NAME);
+    }
+
+    /**
+     * A page of the user's conversations, most recently active first, with
+     * their total. Empty when this inbox is not cached here and has to be read
+     * from MongoDB.
+     */
+    public Optional<InboxPage> page(String userId, int limit, int offset) {
+        if (!enabled || !ready) {
+            return Optional.empty();
+        }
+
+        long current = generation.get();
+        Inbox inbox = inboxes.getIfPresent(userId);
+        boolean hit = inbox != null && inbox.isConfirmed(current, clock.getAsLong() - verifyIntervalMillis);
+        meterRegistry.counter(LOOKUPS_METRIC, "result", hit ? "hit" : "miss").increment();
+        if (!hit) {
+            inbox = load(userId, current);
+            if (inbox == null) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(inbox.page(userId, offset, limit));
+    }
+
+    /**
+     * Moves the message's thread to the front of both participants' inboxes.
+     */
+    @Override
+    public void onMessageStored(MessageCommand event) {
+        if (!enabled || !ready || event.threadId() == null || event.senderId() == null) {
+            return;
+        }
+        String senderId = event.senderId();
+        String recipientId = event.recipientId() != null
+                ? event.recipientId()
+                : otherParticipant(event.threadId(), senderId);
+        // MongoDB keeps milliseconds; so does the inbox, so a message reads the same from either.
+        LocalDateTime timestamp = event.timestamp() == null ? null : event.timestamp().truncatedTo(ChronoUnit.MILLIS);
+        MessageDto message = new MessageDto(event.messageId(), event.threadId(), senderId, event.senderUsername(),
+                event.content(), timestamp);
+
+        apply(senderId, new Entry(event.threadId(), recipientId, event.recipientUsername(), message, timestamp));
+        if (!recipientId.equals(senderId)) {
+            apply(recipientId, new Entry(event.threadId(), senderId, event.senderUsername(), message, timestamp));
+        }
+    }
+
+    @Override
+    public void restart() {
+        generation.incrementAndGet();
+        inboxes.invalidateAll();
+        loading.clear();
+        ready = true;
+    }
+
+    @Override
+    public void suspend() {
+        ready = false;
+        generation.incrementAndGet();
+        inboxes.invalidateAll();
+        loading.clear();
+    }
+
+    public record InboxPage(List<ConversationDto> conversations, long total) {
+    }
+
+    private void apply(String userId, Entry entry) {
+        long current = generation.get();
+        // The buffer first: a load that finishes in between has put its inbox in the cache by the time we look.
+        loading.computeIfPresent(userId, (id, pending) -> {
+            pending.apply(entry);
+            return pending;
+        });
+        inboxes.asMap().computeIfPresent(userId, (id, inbox) -> {
+            if (inbox.generation != current) {
+                return null;
+            }
+            inbox.apply(entry);
+            // Grown past what is cached per user: dropped, and read from MongoDB from now on.
+            return inbox.size() > maxConversationsPerUser ? null : inbox;
+        });
+    }
+
+    private Inbox load(String userId, long expectedGeneration) {
+        Inbox pending = loading.computeIfAbsent(userId, id -> new Inbox(expectedGeneration));
+        List<ConversationDto> rows;
+        try {
+            rows = conversationRepository.findInboxPage(userId, maxConversationsPerUser + 1, 0);
+        } catch (RuntimeException e) {
+            loading.remove(userId, pending);
+            throw e;
+        }
+        if (rows.size() > maxConversationsPerUser) {
+            loading.remove(userId, pending);
+            return null;
+        }
+        long now = clock.getAsLong();
+        return inboxes.asMap().compute(userId, (id, inbox) -> {
+            Inbox buffered = loading.remove(userId);
+            if (generation.get() != expectedGeneration) {
+                return inbox;
+            }
+            Inbox target = inbox == null || inbox.generation != expectedGeneration ? new Inbox(expectedGeneration) : inbox;
+            for (ConversationDto row : rows) {
+                target.apply(new Entry(row.getThreadId(), row.getOtherUserId(), row.getOtherUsername(),
+                        row.getLastMessage(), row.getLastMessageAt()));
+            }
+            if (buffered != null && buffered.generation == expectedGeneration) {
+                buffered.entries().forEach(target::apply);
+            }
+            target.confirm(now);
+            return target.size() > maxConversationsPerUser ? null : target;
+        });
+    }
+
+    /**
+     * threadId is {@code <minId>-<maxId>}; returns the participant that is not {@code selfId}.
+     */
+    private static String otherParticipant(String threadId, String selfId) {
+        int dash = threadId.indexOf('-');
+        if (dash < 0) {
+            return selfId;
+        }
+        String left = threadId.substring(0, dash);
+        String right = threadId.substring(dash + 1);
+        return left.equals(selfId) ? right : left;
+    }
+
+    private record Entry(String threadId, String otherUserId, String otherUsername, MessageDto lastMessage,
+                         LocalDateTime lastMessageAt) {
+    }
+
+    /**
+     * One user's conversations, both by thread and in inbox order. Changed
+     * inside the cache's compute, read by polls; the monitor covers both.
+     */
+    private static final class Inbox {
+
+        private final long generation;
+        // Loaded from MongoDB at this time; 0 while it only buffers a load's events.
+        private long confirmedAt;
+        private final Map<String, Entry> byThread = new HashMap<>();
+        private final TreeSet<Entry> byRecency = new TreeSet<>(MOST_RECENT_FIRST);
+
+        Inbox(long generation) {
+            this.generation = generation;
+        }
+
+        synchronized boolean isConfirmed(long currentGeneration, long confirmedSince) {
+            return generation == currentGeneration && confirmedAt > 0 && confirmedAt >= confirmedSince;
+        }
+
+        synchronized void confirm(long now) {
+            confirmedAt = now;
+        }
+
+        synchronized int size() {
+            return byThread.size();
+        }
+
+        synchronized List<Entry> entries() {
+            return new ArrayList<>(byThread.values());
+        }
+
+        /**
+         * Keeps the newer of {@code entry} and the thread's current entry; a
+         * username is never replaced by a missing one.
+         */
+        synchronized void apply(Entry entry) {
+            Entry current = byThread.get(entry.threadId());
+            if (current != null) {
+                if (!isNewer(entry, current)) {
+                    return;
+                }
+                byRecency.remove(current);
+                if (entry.otherUsername() == null && current.otherUsername() != null) {
+                    entry = new Entry(entry.threadId(), entry.otherUserId(), current.otherUsername(),
+                            entry.lastMessage(), entry.lastMessageAt());
+                }
+            }
+            byThread.put(entry.threadId(), entry);
+            byRecency.add(entry);
+        }
+
+        synchronized InboxPage page(String userId, int offset, int limit) {
+            List<ConversationDto> page = new ArrayList<>(Math.min(limit, Math.max(0, byRecency.size() - offset)));
+            Iterator<Entry> entries = byRecency.iterator();
+            for (int skipped = 0; skipped < offset && entries.hasNext(); skipped++) {
+                entries.next();
+            }
+            while (page.size() < limit && entries.hasNext()) {
+                Entry entry = entries.next();
+                page.add(new ConversationDto(userId + ":" + entry.threadId(), userId, entry.threadId(),
+                        entry.otherUserId(), entry.otherUsername(), entry.lastMessage(), entry.lastMessageAt()));
+            }
+            return new InboxPage(page, byThread.size());
+        }
+
+        private static boolean isNewer(Entry candidate, Entry current) {
+            return current.lastMessageAt() == null
+                    || (candidate.lastMessageAt() != null && candidate.lastMessageAt().isAfter(current.lastMessageAt()));
+        }
+    }
+}
@@ -1,32 +1,64 @@
 package com.github.melihemreguler.turknetmessagingservice.service;
 
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodec;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodecRegistry;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventHeaders;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventSchemas;
+import com.github.melihemreguler.turknetmessagingservice.config.KafkaProducerTemplates;
 import com.github.melihemreguler.turknetmessagingservice.config.MessagingConfig;
 import com.github.melihemreguler.turknetmessagingservice.exception.KafkaPublishingException;
 import com.github.melihemreguler.turknetmessagingservice.exception.MessageSerializationException;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
 import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
 import com.github.melihemreguler.turknetmessagingservice.model.event.UserActivityEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes commands to Kafka without blocking the caller.
+ *
+ * <p>Each send returns the producer's acknowledgement future. Encoding and
+ * producer errors raised while handing the record over are thrown directly;
+ * a failed acknowledgement is logged, counted under {@value #ACK_LATENCY_METRIC}
+ * and completes the future with a {@link KafkaPublishingException}, so callers
+ * that ignore the future no longer lose failures silently.
+ *
+ * <p>Message commands are keyed by thread (see {@link ThreadPartitioning}), user
+ * and session commands by userId. Acknowledged partitions feed
+ * {@link PartitionSkewMeter}.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KafkaProducerService {
     
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    static final String ACK_LATENCY_METRIC = "kafka.producer.ack.latency";
+    
+    private static final byte[] SCHEMA_VERSION = String.valueOf(EventSchemas.CURRENT_VERSION).getBytes(StandardCharsets.UTF_8);
+    
+    private final KafkaProducerTemplates kafkaTemplates;
     private final MessagingConfig messagingConfig;
-    private final ObjectMapper objectMapper;
+    private final EventCodecRegistry eventCodecs;
+    private final ThreadPartitioning threadPartitioning;
+    private final PartitionSkewMeter partitionSkew;
+    private final MeterRegistry meterRegistry;
     
-    public void sendMessageCommand(MessageCommand messageCommand, String userId) {
+    public CompletableFuture<SendResult<String, byte[]>> sendMessageCommand(MessageCommand messageCommand, String userId) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(messageCommand);
-            kafkaTemplate.send(messagingConfig.getMessageCommands(), userId, jsonMessage);
-            log.debug("Message command sent to topic: {} with userId key: {}", messagingConfig.getMessageCommands(), userId);
+            String key = threadPartitioning.key(messageCommand.threadId());
+            CompletableFuture<SendResult<String, byte[]>> ack = send(toRecord(
+                    messagingConfig.getMessageCommands(), key, userId, messageCommand.command(), messageCommand), "message command");
+            log.debug("Message command sent to topic: {} with key: {}", messagingConfig.getMessageCommands(), key);
+            return ack;
         } catch (JsonProcessingException e) {
             log.error("Failed to serialize message command for user {}: {}", userId, e.getMessage(), e);
             throw new MessageSerializationException("Failed to serialize message command", e);
@@ -36,11 +68,12 @@ public class KafkaProducerService {
         }
     }
     
-    public void sendUserCommand(UserActivityEvent userCommand, String userId) {
+    public CompletableFuture<SendResult<String, byte[]>> sendUserCommand(UserActivityEvent userCommand, String userId) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(userCommand);
-            kafkaTemplate.send(messagingConfig.getUserCommands(), userId, jsonMessage);
+            CompletableFuture<SendResult<String, byte[]>> ack = send(
+                    toRecord(messagingConfig.getUserCommands(), userId, userId, userCommand.command(), userCommand), "user command");
             log.debug("User command sent to topic: {} with userId key: {}", messagingConfig.getUserCommands(), userId);
+            return ack;
         } catch (JsonProcessingException e) {
             log.error("Failed to serialize user command for user {}: {}", userId, e.getMessage(), e);
             throw new MessageSerializationException("Failed to serialize user command", e);
@@ -50,11 +83,14 @@ public class KafkaProducerService {
         }
     }
     
-    public void sendSessionCommand(SessionEvent sessionCommand, String userId) {
+    public CompletableFuture<SendResult<String, byte[]>> sendSessionCommand(SessionEvent sessionCommand, String userId) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(sessionCommand);
-            kafkaTemplate.send(messagingConfig.getSessionCommands(), userId, jsonMessage);
+            ProducerRecord<String, byte[]> record =
+                    toRecord(messagingConfig.getSessionCommands(), userId, userId, sessionCommand.command(), sessionCommand);
+            EventHeaders.add(record.headers(), EventHeaders.SESSION_ID_HEADER, sessionCommand.hashedSessionId());
+            CompletableFuture<SendResult<String, byte[]>> ack = send(record, "session command");
             log.debug("Session command sent to topic: {} with userId key: {}", messagingConfig.getSessionCommands(), userId);
+            return ack;
         } catch (JsonProcessingException e) {
             log.error("Failed to serialize session command for user {}: {}", userId, e.getMessage(), e);
             throw new MessageSerializationException("Failed to serialize session command", e);
@@ -63,4 +99,31 @@ public class KafkaProducerService {
             throw new KafkaPublishingException("Failed to send session command to Kafka", e);
         }
     }
+    
+    private CompletableFuture<SendResult<String, byte[]>> send(ProducerRecord<String, byte[]> record, String description) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return kafkaTemplates.forTopic(record.topic()).send(record).handle((result, error) -> {
+            sample.stop(meterRegistry.timer(ACK_LATENCY_METRIC,
+                    "topic", record.topic(), "outcome", error == null ? "success" : "failure"));
+            if (error != null) {
+                log.error("Kafka did not acknowledge {} with key {}: {}", description, record.key(), error.getMessage(), error);
+                throw new KafkaPublishingException("Kafka did not acknowledge " + description, error);
+            }
+            if (result != null && result.getRecordMetadata() != null) {
+                partitionSkew.record(record.topic(), result.getRecordMetadata().partition());
+            }
+            return result;
+        });
+    }
+    
+    private ProducerRecord<String, byte[]> toRecord(String topic, String key, String userId, String command, Object event)
+            throws JsonProcessingException {
+        EventCodec codec = eventCodecs.encoder();
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, key, codec.encode(event));
+        record.headers().add(EventCodecRegistry.CONTENT_TYPE_HEADER, codec.contentType().getBytes(StandardCharsets.UTF_8));
+        record.headers().add(EventCodecRegistry.SCHEMA_VERSION_HEADER, SCHEMA_VERSION);
+        EventHeaders.add(record.headers(), EventHeaders.COMMAND_HEADER, command);
+        EventHeaders.add(record.headers(), EventHeaders.USER_ID_HEADER, userId);
+        return record;
+    }
 }
@@ -0,0 +1,75 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodecRegistry;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventHeaders;
+import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broadcast consumer of the message-events topic, on which messaging-consumer
+ * republishes every message command once the message is stored. It fans each
+ * message out to the local {@link MessageEventSubscriber}s.
+ *
+ * <p>Like {@link SessionEventListener}, every replica joins under its own
+ * consumer group, but starts from the latest offset: subscribers only need
+ * what is stored from now on, and start over whenever partitions are assigned.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageEventListener implements ConsumerSeekAware {
+
+    private final EventCodecRegistry eventCodecs;
+    private final List<MessageEventSubscriber> subscribers;
+
+    @KafkaListener(
+            topics = "${app.kafka.topics.message-events}",
+            groupId = "${spring.application.name}-message-events-${random.uuid}",
+            containerFactory = "broadcastListenerContainerFactory",
+            autoStartup = "${app.messages.events.listener-enabled:true}",
+            properties = "auto.offset.reset=latest")
+    public void onMessage(ConsumerRecord<String, byte[]> record) {
+        String command = EventHeaders.value(record.headers(), EventHeaders.COMMAND_HEADER);
+        if (command != null && !com.github.melihemreguler.turknetmessagingservice.enums.MessageCommand.SEND_MESSAGE
+                .getCommand().equals(command)) {
+            return;
+        }
+
+        MessageCommand event;
+        try {
+            event = eventCodecs.decode(record.value(), record.headers(), MessageCommand.class);
+        } catch (Exception e) {
+            log.warn("Skipping unreadable message event: {}", e.getMessage());
+            return;
+        }
+
+        for (MessageEventSubscriber subscriber : subscribers) {
+            try {
+                subscriber.onMessageStored(event);
+            } catch (Exception e) {
+                log.error("Message event subscriber {} failed for thread {}: {}",
+                        subscriber.getClass().getSimpleName(), event.threadId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        subscribers.forEach(MessageEventSubscriber::restart);
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        subscribers.forEach(MessageEventSubscriber::suspend);
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+
+/**
+ * Receives every stored message seen on the message-events topic by this replica.
+ * Implementations keep node-local copies of message read models in line with MongoDB.
+ *
+ * <p>The listener starts from the latest offset, so whatever was published while
+ * it held no partitions is never seen: implementations stop serving on
+ * {@link #suspend} and start over on {@link #restart}.
+ */
+public interface MessageEventSubscriber {
+
+    void onMessageStored(MessageCommand event);
+
+    /**
+     * Called whenever the listener has been assigned partitions.
+     */
+    void restart();
+
+    /**
+     * Called whenever the listener loses its partitions.
+     */
+    void suspend();
+}
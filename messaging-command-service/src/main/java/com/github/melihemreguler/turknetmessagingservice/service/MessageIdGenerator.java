@@ -0,0 +1,94 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Assigns message ids in the command service, before the command is published,
+ * so a redelivered record is written under the same {@code _id}.
+ *
+ * <p>Ids are 12-byte ObjectIds laid out Snowflake-style as
+ * {@code [epoch seconds:4][millisecond:2][node:2][sequence:4]}. The leading
+ * seconds match the ObjectId format, so new ids sort after every id MongoDB
+ * assigned before, and ids sort by creation time to the millisecond. Within one
+ * node they are strictly increasing: the millisecond and sequence are advanced
+ * together with a single compare-and-set, and a clock that steps back keeps
+ * the last millisecond rather than going back with it.
+ *
+ * <p>Uniqueness across replicas rests on each one having its own
+ * {@code app.messages.node-id}, since every node restarts its sequence each
+ * millisecond; startup fails without one rather than risk two replicas issuing
+ * the same id, which the consumer would drop as a redelivery. The node id is
+ * claimed through {@link MessageNodeLease}, so a second replica configured
+ * with the same one fails to start, and ids are refused while the lease is not
+ * held.
+ */
+@Component
+public class MessageIdGenerator {
+
+    private static final int SEQUENCE_BITS = 22;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int MAX_NODE_ID = (1 << 16) - 1;
+
+    private final short node;
+    private final LongSupplier clock;
+    private final BooleanSupplier leaseHeld;
+    // Last issued (epochMillis << SEQUENCE_BITS | sequence).
+    private final AtomicLong state = new AtomicLong();
+
+    @Autowired
+    public MessageIdGenerator(@Value("${app.messages.node-id:-1}") int nodeId, MessageNodeLease lease) {
+        this(nodeId, System::currentTimeMillis, lease::isHeld);
+        lease.acquire(nodeId);
+    }
+
+    MessageIdGenerator(int nodeId, LongSupplier clock) {
+        this(nodeId, clock, () -> true);
+    }
+
+    MessageIdGenerator(int nodeId, LongSupplier clock, BooleanSupplier leaseHeld) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("app.messages.node-id must be set to a value between 0 and " + MAX_NODE_ID
+                    + ", unique per replica; got " + nodeId);
+        }
+        this.node = (short) nodeId;
+        this.clock = clock;
+        this.leaseHeld = leaseHeld;
+    }
+
+    public String next() {
+        if (!leaseHeld.getAsBoolean()) {
+            throw new IllegalStateException("Message node id " + (node & 0xffff) + " is not leased to this replica");
+        }
+        long now = clock.getAsLong();
+        long current;
+        long next;
+        do {
+            current = state.get();
+            long lastMillis = current >>> SEQUENCE_BITS;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS;
+            } else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = current + 1;
+            } else {
+                // Sequence exhausted within this millisecond: borrow the next one.
+                next = (lastMillis + 1) << SEQUENCE_BITS;
+            }
+        } while (!state.compareAndSet(current, next));
+
+        long millis = next >>> SEQUENCE_BITS;
+        ByteBuffer id = ByteBuffer.allocate(12)
+                .putInt((int) (millis / 1000))
+                .putShort((short) (millis % 1000))
+                .putShort(node)
+                .putInt((int) (next & SEQUENCE_MASK));
+        return new ObjectId(id.array()).toHexString();
+    }
+}
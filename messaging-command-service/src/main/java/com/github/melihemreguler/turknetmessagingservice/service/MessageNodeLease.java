@@ -0,0 +1,154 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Claims this replica's {@code app.messages.node-id} in the
+ * {@code message_node_leases} collection, so that two live replicas never
+ * issue message ids under the same node.
+ *
+ * <p>The lease document is keyed by node id and records its owner and expiry.
+ * {@link #acquire} takes it over only if it is free, expired or already ours,
+ * retrying for up to {@code acquire-timeout-ms} so a replacement pod can wait
+ * out the lease of one that died without releasing it; startup fails if the
+ * node is still held after that. The lease is renewed every third of
+ * {@code lease-seconds} and released on shutdown. This replica counts it as
+ * held for only half the lease after each renewal, leaving the other half as
+ * margin for clock skew with whoever takes it over next. When disabled, the
+ * node id is trusted as configured.
+ */
+@Component
+@Slf4j
+public class MessageNodeLease {
+
+    static final String COLLECTION = "message_node_leases";
+    private static final long RETRY_INTERVAL_MILLIS = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final long leaseMillis;
+    private final long acquireTimeoutMillis;
+    private final LongSupplier clock;
+    private final String owner = UUID.randomUUID().toString();
+
+    // -1 until acquired, and again once released.
+    private volatile int nodeId = -1;
+    private volatile long heldUntil;
+
+    @Autowired
+    public MessageNodeLease(MongoTemplate mongoTemplate,
+                            @Value("${app.messages.node-lease.enabled:true}") boolean enabled,
+                            @Value("${app.messages.node-lease.lease-seconds:30}") long leaseSeconds,
+                            @Value("${app.messages.node-lease.acquire-timeout-ms:45000}") long acquireTimeoutMillis) {
+        this(mongoTemplate, enabled, leaseSeconds, acquireTimeoutMillis, System::currentTimeMillis);
+    }
+
+    MessageNodeLease(MongoTemplate mongoTemplate, boolean enabled, long leaseSeconds, long acquireTimeoutMillis,
+                     LongSupplier clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.leaseMillis = leaseSeconds * 1000L;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Claims {@code nodeId} for this replica.
+     *
+     * @throws IllegalStateException if another replica still holds it after {@code acquire-timeout-ms}
+     */
+    public void acquire(int nodeId) {
+        if (!enabled) {
+            return;
+        }
+        long deadline = clock.getAsLong() + acquireTimeoutMillis;
+        while (!claim(nodeId)) {
+            if (clock.getAsLong() >= deadline) {
+                throw new IllegalStateException("app.messages.node-id " + nodeId
+                        + " is held by another replica; each replica needs its own node id");
+            }
+            log.warn("Message node id {} is held by another replica; waiting for its lease to expire", nodeId);
+            try {
+                Thread.sleep(RETRY_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while acquiring message node id " + nodeId, e);
+            }
+        }
+        this.nodeId = nodeId;
+        log.info("Acquired message node id {}", nodeId);
+    }
+
+    /**
+     * Whether this replica may issue ids under its node id right now.
+     */
+    public boolean isHeld() {
+        return !enabled || (nodeId >= 0 && clock.getAsLong() < heldUntil);
+    }
+
+    @Scheduled(fixedDelayString = "#{${app.messages.node-lease.lease-seconds:30} * 1000 / 3}")
+    public void renew() {
+        int node = nodeId;
+        if (!enabled || node < 0) {
+            return;
+        }
+        try {
+            if (!claim(node)) {
+                log.error("Message node id {} was taken over by another replica; message sends will fail", node);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to renew lease on message node id {}: {}", node, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        int node = nodeId;
+        if (!enabled || node < 0) {
+            return;
+        }
+        nodeId = -1;
+        try {
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(node).and("owner").is(owner)), COLLECTION);
+        } catch (DataAccessException e) {
+            log.warn("Failed to release message node id {}; it frees up when the lease expires: {}",
+                    node, e.getMessage());
+        }
+    }
+
+    private boolean claim(int node) {
+        long now = clock.getAsLong();
+        Query claimable = new Query(Criteria.where("_id").is(node).orOperator(
+                Criteria.where("owner").is(owner),
+                Criteria.where("expiresAt").lt(new Date(now))));
+        Update update = new Update()
+                .set("owner", owner)
+                .set("expiresAt", new Date(now + leaseMillis));
+        try {
+            // A lease held by someone else does not match, so the upsert collides with it on _id.
+            mongoTemplate.findAndModify(claimable, update, FindAndModifyOptions.options().upsert(true),
+                    Document.class, COLLECTION);
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        heldUntil = now + leaseMillis / 2;
+        return true;
+    }
+}
@@ -1,163 +1,396 @@
 package com.github.melihemreguler.turknetmessagingservice.service;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
-import com.github.melihemreguler.turknetmessagingservice.dto.UserDto;
+import com.github.melihemreguler.turknetmessagingservice.dto.ThreadStatsDto;
+import com.github.melihemreguler.turknetmessagingservice.dto.ConversationDto;
+import com.github.melihemreguler.turknetmessagingservice.exception.ConflictException;
 import com.github.melihemreguler.turknetmessagingservice.exception.UserNotFoundException;
 import com.github.melihemreguler.turknetmessagingservice.exception.ThreadNotFoundException;
 import com.github.melihemreguler.turknetmessagingservice.model.request.HistoryRequest;
+import com.github.melihemreguler.turknetmessagingservice.model.request.MessageCursor;
 import com.github.melihemreguler.turknetmessagingservice.model.request.MessageRequest;
 import com.github.melihemreguler.turknetmessagingservice.model.response.ConversationResponse;
+import com.github.melihemreguler.turknetmessagingservice.model.response.CursorPageResponse;
 import com.github.melihemreguler.turknetmessagingservice.model.response.PaginatedResponse;
 import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import com.github.melihemreguler.turknetmessagingservice.repository.ConversationRepository;
 import com.github.melihemreguler.turknetmessagingservice.repository.MessageRepository;
-import com.github.melihemreguler.turknetmessagingservice.repository.UserRepository;
+import com.github.melihemreguler.turknetmessagingservice.repository.ThreadStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class MessageService {
 
+    static final String HISTORY_STAGE_METRIC = "messages.history.stage";
+    static final String STAGE_RESOLVE = "resolve";
+    static final String STAGE_PAGE = "page";
+    static final String STAGE_COUNT = "count";
+
     private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
+    private final ConversationRepository conversationRepository;
+    private final ThreadStatsRepository threadStatsRepository;
+    private final UserDirectory userDirectory;
     private final KafkaProducerService kafkaProducerService;
+    private final MessageIdGenerator messageIdGenerator;
+    private final IdempotencyKeys idempotencyKeys;
+    private final RecentMessages recentMessages;
+    private final InboxCache inboxCache;
+    private final Executor historyQueryExecutor;
+    private final MeterRegistry meterRegistry;
+
+    public MessageService(MessageRepository messageRepository,
+                          ConversationRepository conversationRepository,
+                          ThreadStatsRepository threadStatsRepository,
+                          UserDirectory userDirectory,
+                          KafkaProducerService kafkaProducerService,
+                          MessageIdGenerator messageIdGenerator,
+                          IdempotencyKeys idempotencyKeys,
+                          RecentMessages recentMessages,
+                          InboxCache inboxCache,
+                          @Qualifier("historyQueryExecutor") Executor historyQueryExecutor,
+                          MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.conversationRepository = conversationRepository;
+        this.threadStatsRepository = threadStatsRepository;
+        this.userDirectory = userDirectory;
+        this.kafkaProducerService = kafkaProducerService;
+        this.messageIdGenerator = messageIdGenerator;
+        this.idempotencyKeys = idempotencyKeys;
+        this.recentMessages = recentMessages;
+        this.inboxCache = inboxCache;
+        this.historyQueryExecutor = historyQueryExecutor;
+        this.meterRegistry = meterRegistry;
+    }
 
+    /**
+     * Hands the message to the producer and returns without waiting for the broker.
+     */
     public MessageDto sendMessage(String senderId, MessageRequest request) {
+        return sendMessage(senderId, request, null);
+    }
+
+    /**
+     * As {@link #sendMessage(String, MessageRequest)}; a retry carrying the same
+     * non-null {@code idempotencyKey} returns the original message without
+     * publishing it again.
+     */
+    public MessageDto sendMessage(String senderId, MessageRequest request, String idempotencyKey) {
+        return publishMessage(senderId, request, idempotencyKey).message();
+    }
+
+    /**
+     * Same as {@link #sendMessage}, but also returns a future that completes only
+     * once the broker has acknowledged the command. The message itself, id
+     * included, is known straight away. Validation failures are still thrown
+     * directly.
+     */
+    public PendingMessage sendMessageAcknowledged(String senderId, MessageRequest request) {
+        return sendMessageAcknowledged(senderId, request, null);
+    }
+
+    public PendingMessage sendMessageAcknowledged(String senderId, MessageRequest request, String idempotencyKey) {
+        PublishedMessage published = publishMessage(senderId, request, idempotencyKey);
+        return new PendingMessage(published.message(), published.ack().thenApply(result -> published.message()));
+    }
+
+    private PublishedMessage publishMessage(String senderId, MessageRequest request, String idempotencyKey) {
         String recipient = request.getTrimmedRecipient();
         String content = request.getTrimmedContent();
-
-        Optional<UserDto> senderUser = userRepository.findById(senderId);
-        if (senderUser.isEmpty()) {
-            throw UserNotFoundException.forSender(senderId);
+        String key = normalizeIdempotencyKey(idempotencyKey);
+        int fingerprint = Objects.hash(recipient, content);
+
+        if (key != null) {
+            Optional<IdempotencyKeys.Entry> replay = idempotencyKeys.find(senderId, key);
+            if (replay.isPresent()) {
+                return replayOf(replay.get(), fingerprint, senderId);
+            }
         }
 
-        Optional<UserDto> recipientUser = userRepository.findByUsername(recipient);
-        if (recipientUser.isEmpty()) {
-            throw UserNotFoundException.forRecipient(recipient);
-        }
+        UserDirectory.Entry senderUser = userDirectory.findById(senderId)
+                .orElseThrow(() -> UserNotFoundException.forSender(senderId));
+        UserDirectory.Entry recipientUser = userDirectory.findByUsername(recipient)
+                .orElseThrow(() -> UserNotFoundException.forRecipient(recipient));
 
-        String senderUsername = senderUser.get().getUsername();
-        String recipientUserId = recipientUser.get().getId();
+        String senderUsername = senderUser.username();
+        String recipientUserId = recipientUser.id();
 
         String threadId = createThreadId(senderId, recipientUserId);
 
         MessageCommand messageCommand = MessageCommand.create(
-                threadId, senderId, senderUsername, recipient, content);
+                messageIdGenerator.next(), threadId, senderId, senderUsername, recipientUserId, recipient, content);
+        MessageDto message = new MessageDto(messageCommand.messageId(), threadId, senderId, senderUsername,
+                content, messageCommand.timestamp());
+
+        if (key == null) {
+            CompletableFuture<SendResult<String, byte[]>> ack = kafkaProducerService.sendMessageCommand(messageCommand, senderId);
+            log.info("Message command sent to Kafka from {} to {} in thread {}", senderId, recipient, threadId);
+            return new PublishedMessage(message, ack);
+        }
 
-        kafkaProducerService.sendMessageCommand(messageCommand, senderId);
+        IdempotencyKeys.Entry entry = new IdempotencyKeys.Entry(message, fingerprint, new CompletableFuture<>());
+        Optional<IdempotencyKeys.Entry> earlier = idempotencyKeys.recordIfAbsent(senderId, key, entry);
+        if (earlier.isPresent()) {
+            return replayOf(earlier.get(), fingerprint, senderId);
+        }
 
+        CompletableFuture<SendResult<String, byte[]>> ack;
+        try {
+            ack = kafkaProducerService.sendMessageCommand(messageCommand, senderId);
+        } catch (RuntimeException e) {
+            idempotencyKeys.release(senderId, key, entry);
+            throw e;
+        }
         log.info("Message command sent to Kafka from {} to {} in thread {}", senderId, recipient, threadId);
 
-        return new MessageDto(threadId, senderId, senderUsername, content);
+        ack.whenComplete((result, error) -> {
+            if (error != null) {
+                idempotencyKeys.release(senderId, key, entry);
+                entry.acknowledged().completeExceptionally(error);
+            } else {
+                entry.acknowledged().complete(message);
+            }
+        });
+        return new PublishedMessage(message, entry.acknowledged());
     }
 
-    public PaginatedResponse<MessageDto> getConversationPaginated(HistoryRequest request) {
-        String user1Id = resolveUserId(request.getUser1PrimaryId(), request.isUser1ByUserId());
+    private PublishedMessage replayOf(IdempotencyKeys.Entry entry, int fingerprint, String senderId) {
+        if (entry.fingerprint() != fingerprint) {
+            throw new ConflictException(IdempotencyKeys.HEADER + " was already used for a different message");
+        }
+        log.info("Replaying message {} for a retried send from {}", entry.message().getId(), senderId);
+        return new PublishedMessage(entry.message(), entry.acknowledged());
+    }
+
+    private static String normalizeIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return null;
+        }
+        String key = idempotencyKey.trim();
+        if (key.length() > IdempotencyKeys.MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(IdempotencyKeys.HEADER + " cannot exceed "
+                    + IdempotencyKeys.MAX_KEY_LENGTH + " characters");
+        }
+        return key;
+    }
 
-        String user2Id = resolveUserId(request.getUser2PrimaryId(), request.isUser2ByUserId());
+    public PaginatedResponse<MessageDto> getConversationPaginated(HistoryRequest request) {
+        return getConversationPaginated(getConversationSecurityInfo(request), request);
+    }
 
-        String threadId = createThreadId(user1Id, user2Id);
+    /**
+     * Offset-paginated history of a conversation already resolved by
+     * {@link #getConversationSecurityInfo}. The thread's total is read on the
+     * history executor while the page is read here, from {@link RecentMessages}
+     * when it holds the page.
+     */
+    public PaginatedResponse<MessageDto> getConversationPaginated(ConversationSecurityInfo conversation,
+                                                                  HistoryRequest request) {
+        String threadId = conversation.threadId();
 
-        Pageable pageable = PageRequest.of(request.offset() / request.limit(), request.limit());
+        CompletableFuture<Long> totalQuery = CompletableFuture.supplyAsync(
+                () -> timed(STAGE_COUNT, () -> countMessages(threadId)), historyQueryExecutor);
 
-        Page<MessageDto> messagePage = messageRepository.findByThreadIdOrderByTimestampDesc(threadId, pageable);
+        List<MessageDto> messages = timed(STAGE_PAGE, () -> recentMessages.page(threadId, request.offset(), request.limit(),
+                () -> messageRepository.findThreadPageAt(threadId, request.offset(), request.limit())));
 
-        long total = messageRepository.countByThreadId(threadId);
+        long total = await(totalQuery);
 
         if (total == 0) {
-            log.warn("No conversation found between users {} and {}", user1Id, user2Id);
-            throw ThreadNotFoundException.forUsers(user1Id, user2Id);
+            log.warn("No conversation found between users {} and {}", conversation.user1Id(), conversation.user2Id());
+            throw ThreadNotFoundException.forUsers(conversation.user1Id(), conversation.user2Id());
         }
 
         return PaginatedResponse.of(
-                messagePage.getContent(),
+                messages,
                 total,
                 request.limit(),
                 request.offset()
         );
     }
 
-    public PaginatedResponse<ConversationResponse> getInbox(String userId, int limit, int offset) {
-        long total = messageRepository.countThreadsForUser(userId);
-        if (total == 0) {
-            return PaginatedResponse.of(Collections.emptyList(), 0, limit, offset);
+    /**
+     * Keyset-paginated history: {@code before} walks towards older messages, {@code after}
+     * towards newer ones, and with neither the newest page is returned. Either way the page
+     * is a single bounded range scan, so its cost does not grow with depth.
+     */
+    public CursorPageResponse<MessageDto> getConversationByCursor(HistoryRequest request, String before, String after) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of before or after may be provided");
         }
+        return getConversationByCursor(getConversationSecurityInfo(request), request, before, after);
+    }
 
-        List<MessageDto> latestMessages = messageRepository.findLatestPerThreadForUser(userId, limit, offset);
+    public CursorPageResponse<MessageDto> getConversationByCursor(ConversationSecurityInfo conversation,
+                                                                  HistoryRequest request, String before, String after) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of before or after may be provided");
+        }
 
-        // Resolve the "other" user for each thread; batch the username lookup.
-        Map<String, String> otherIdByThread = new LinkedHashMap<>();
-        for (MessageDto msg : latestMessages) {
-            otherIdByThread.put(msg.getThreadId(), resolveOtherUserId(msg.getThreadId(), userId));
+        String threadId = conversation.threadId();
+        int limit = request.limit();
+
+        // Fetch one extra row to learn whether another page exists without counting.
+        MessageCursor afterCursor = after != null ? MessageCursor.decode(after) : null;
+        MessageCursor beforeCursor = before != null ? MessageCursor.decode(before) : null;
+        List<MessageDto> rows = new ArrayList<>(timed(STAGE_PAGE, () -> {
+            if (afterCursor != null) {
+                return messageRepository.findThreadPageAfter(threadId, afterCursor, limit + 1);
+            }
+            if (beforeCursor != null) {
+                return messageRepository.findThreadPageBefore(threadId, beforeCursor, limit + 1);
+            }
+            return recentMessages.page(threadId, 0, limit + 1,
+                    () -> messageRepository.findThreadPageBefore(threadId, null, limit + 1));
+        }));
+
+        if (rows.isEmpty() && before == null && after == null) {
+            log.warn("No conversation found between users {} and {}", conversation.user1Id(), conversation.user2Id());
+            throw ThreadNotFoundException.forUsers(conversation.user1Id(), conversation.user2Id());
         }
-        Set<String> otherIds = new HashSet<>(otherIdByThread.values());
-        Map<String, String> usernameById = userRepository.findAllById(otherIds).stream()
-                .collect(Collectors.toMap(UserDto::getId, UserDto::getUsername));
 
-        List<ConversationResponse> conversations = latestMessages.stream()
-                .map(msg -> {
-                    String otherId = otherIdByThread.get(msg.getThreadId());
-                    return new ConversationResponse(
-                            msg.getThreadId(),
-                            otherId,
-                            usernameById.getOrDefault(otherId, "unknown"),
-                            msg
-                    );
-                })
-                .toList();
+        boolean hasMore = rows.size() > limit;
+        List<MessageDto> page = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = hasMore ? MessageCursor.of(page.get(page.size() - 1)).encode() : null;
+        if (after != null) {
+            // Scanned oldest-first; present newest-first like every other history page.
+            Collections.reverse(page);
+        }
 
-        return PaginatedResponse.of(conversations, total, limit, offset);
+        return CursorPageResponse.of(List.copyOf(page), limit, nextCursor);
     }
 
-    private String resolveOtherUserId(String threadId, String selfId) {
-        int dash = threadId.indexOf('-');
-        if (dash < 0) return selfId;
-        String left = threadId.substring(0, dash);
-        String right = threadId.substring(dash + 1);
-        return left.equals(selfId) ? right : left;
+    /**
+     * The user's conversations, most recently active first; served by
+     * {@link InboxCache} unless the inbox is too large to be cached.
+     */
+    public PaginatedResponse<ConversationResponse> getInbox(String userId, int limit, int offset) {
+        Optional<InboxCache.InboxPage> cached = inboxCache.page(userId, limit, offset);
+        long total = cached.isPresent() ? cached.get().total() : conversationRepository.countByUserId(userId);
+        if (total == 0) {
+            return PaginatedResponse.of(Collections.emptyList(), 0, limit, offset);
+        }
+
+        List<ConversationDto> page = cached.isPresent()
+                ? cached.get().conversations()
+                : conversationRepository.findInboxPage(userId, limit, offset);
+
+        // Rows projected before usernames were denormalized are resolved for the whole page at once.
+        Set<String> unnamed = page.stream()
+                .filter(conversation -> conversation.getOtherUsername() == null && conversation.getOtherUserId() != null)
+                .map(ConversationDto::getOtherUserId)
+                .collect(Collectors.toSet());
+        Map<String, String> usernames = unnamed.isEmpty() ? Map.of() : userDirectory.usernamesOf(unnamed);
+
+        List<ConversationResponse> conversations = page.stream()
+                .map(conversation -> new ConversationResponse(
+                        conversation.getThreadId(),
+                        conversation.getOtherUserId(),
+                        Optional.ofNullable(conversation.getOtherUsername())
+                                .or(() -> Optional.ofNullable(usernames.get(conversation.getOtherUserId())))
+                                .orElse("unknown"),
+                        conversation.getLastMessage()
+                ))
+                .toList();
+
+        return PaginatedResponse.of(conversations, total, limit, offset);
     }
 
+    /**
+     * Resolves both participants of a history request with at most one query
+     * and derives the conversation's thread id from them.
+     */
     public ConversationSecurityInfo getConversationSecurityInfo(HistoryRequest request) {
-        String user1Id = resolveUserId(request.getUser1PrimaryId(), request.isUser1ByUserId());
-        String user2Id = resolveUserId(request.getUser2PrimaryId(), request.isUser2ByUserId());
+        return timed(STAGE_RESOLVE, () -> resolveConversation(request));
+    }
 
-        return new ConversationSecurityInfo(user1Id, user2Id);
+    /**
+     * Reads the thread's total from its {@code thread_stats} document. Threads that
+     * predate the counters fall back to counting until the stats backfill has run.
+     */
+    private long countMessages(String threadId) {
+        return threadStatsRepository.findById(threadId)
+                .map(ThreadStatsDto::getMessageCount)
+                .orElseGet(() -> messageRepository.countByThreadId(threadId));
     }
 
-    private String resolveUserId(String identifier, boolean isUserId) {
-        return isUserId ? resolveUserIdById(identifier) : resolveUserIdByUsername(identifier);
+    private ConversationSecurityInfo resolveConversation(HistoryRequest request) {
+        String user1Id = request.getUser1PrimaryId();
+        String user2 = request.getUser2PrimaryId();
+        boolean user2ById = request.isUser2ByUserId();
+
+        List<UserDirectory.Entry> users = userDirectory.findAll(
+                user2ById ? Stream.of(user1Id, user2).distinct().toList() : List.of(user1Id),
+                user2ById ? List.of() : List.of(user2));
+
+        String resolvedUser1Id = users.stream()
+                .map(UserDirectory.Entry::id)
+                .filter(user1Id::equals)
+                .findFirst()
+                .orElseThrow(() -> UserNotFoundException.forUserId(user1Id));
+        String resolvedUser2Id = users.stream()
+                .filter(user -> user2.equals(user2ById ? user.id() : user.username()))
+                .map(UserDirectory.Entry::id)
+                .findFirst()
+                .orElseThrow(() -> user2ById ? UserNotFoundException.forUserId(user2) : UserNotFoundException.forUsername(user2));
+
+        return new ConversationSecurityInfo(resolvedUser1Id, resolvedUser2Id);
     }
-    
-    private String resolveUserIdById(String userId) {
-        return userRepository.findById(userId)
-            .map(UserDto::getId)
-            .orElseThrow(() -> UserNotFoundException.forUserId(userId));
+
+    private <T> T timed(String stage, Supplier<T> query) {
+        return meterRegistry.timer(HISTORY_STAGE_METRIC, "stage", stage).record(query);
     }
-    
-    private String resolveUserIdByUsername(String username) {
-        return userRepository.findByUsername(username)
-            .map(UserDto::getId)
-            .orElseThrow(() -> UserNotFoundException.forUsername(username));
+
+    private static <T> T await(CompletableFuture<T> query) {
+        try {
+            return query.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
-    public record ConversationSecurityInfo(String user1Id, String user2Id) {
+    public record ConversationSecurityInfo(String user1Id, String user2Id, String threadId) {
 
+        public ConversationSecurityInfo(String user1Id, String user2Id) {
+            this(user1Id, user2Id, createThreadId(user1Id, user2Id));
+        }
+
+        /**
+         * Whether {@code currentUserId} is one of the two ids the thread id is made of.
+         */
         public boolean isUserPartOfConversation(String currentUserId) {
-            return currentUserId.equals(user1Id) || currentUserId.equals(user2Id);
+            return threadId.equals(createThreadId(currentUserId, user1Id))
+                    || threadId.equals(createThreadId(currentUserId, user2Id));
         }
 
     }
 
-    private String createThreadId(String userId1, String userId2) {
+    private record PublishedMessage(MessageDto message, CompletableFuture<?> ack) {
+    }
+
+    /**
+     * A message handed to the producer, and the broker's acknowledgement of it.
+     */
+    public record PendingMessage(MessageDto message, CompletableFuture<MessageDto> acknowledged) {
+    }
+
+    private static String createThreadId(String userId1, String userId2) {
         if (userId1.compareTo(userId2) < 0) {
             return userId1 + "-" + userId2;
         } else {
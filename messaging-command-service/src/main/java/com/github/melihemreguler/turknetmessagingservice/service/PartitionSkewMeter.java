@@ -0,0 +1,54 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts acknowledged records per partition as {@value #RECORDS_METRIC}, and
+ * publishes {@value #SKEW_METRIC} per topic: the busiest partition's count
+ * divided by the mean over the partitions written so far, so 1.0 is perfectly
+ * even and a hot key shows up as a value well above it.
+ */
+@Component
+@RequiredArgsConstructor
+class PartitionSkewMeter {
+
+    static final String RECORDS_METRIC = "kafka.producer.partition.records";
+    static final String SKEW_METRIC = "kafka.producer.partition.skew";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Map<Integer, LongAdder>> countsByTopic = new ConcurrentHashMap<>();
+
+    void record(String topic, int partition) {
+        countsByTopic.computeIfAbsent(topic, this::register)
+                .computeIfAbsent(partition, p -> new LongAdder())
+                .increment();
+        meterRegistry.counter(RECORDS_METRIC, "topic", topic, "partition", String.valueOf(partition)).increment();
+    }
+
+    private Map<Integer, LongAdder> register(String topic) {
+        Map<Integer, LongAdder> counts = new ConcurrentHashMap<>();
+        Gauge.builder(SKEW_METRIC, counts, PartitionSkewMeter::skew)
+                .description("Records on the busiest partition relative to the mean")
+                .tag("topic", topic)
+                .register(meterRegistry);
+        return counts;
+    }
+
+    static double skew(Map<Integer, LongAdder> counts) {
+        long max = 0;
+        long total = 0;
+        for (LongAdder count : counts.values()) {
+            long value = count.sum();
+            max = Math.max(max, value);
+            total += value;
+        }
+        return total == 0 ? Double.NaN : max * (double) counts.size() / total;
+    }
+}
@@ -0,0 +1,376 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The newest messages of recently active threads, kept on each replica so the
+ * first history pages of a busy conversation are served without MongoDB.
+ *
+ * <p>Each thread has a ring of at most {@code messages-per-thread} messages,
+ * stored compactly: 12-byte ids, epoch-millisecond timestamps, UTF-8 content
+ * and an index into the thread's few distinct senders. All rings share one
+ * byte budget ({@code max-bytes}); the least valuable threads are evicted when
+ * it is exceeded.
+ *
+ * <p>Rings are fed by {@link MessageEventListener} with messages
+ * messaging-consumer has stored, and are only served once a MongoDB read of
+ * the thread's newest page has confirmed them, at most
+ * {@code verify-interval-seconds} ago. Until then, and whenever the page
+ * reaches past the ring, the caller's query runs as before. Every
+ * (re)assignment of the listener's partitions starts a new generation in which
+ * nothing is served until it has been confirmed again, since events published
+ * while the listener was away are not replayed.
+ *
+ * <p>Publishes {@code messages.history.recent.lookups} tagged {@code depth}
+ * ({@code 0}, {@code 1}, {@code 2}, {@code 3+} pages deep) and {@code result}
+ * ({@code hit}, {@code miss}), the rings' estimated size as
+ * {@code messages.history.recent.bytes}, and {@code cache.*} meters tagged
+ * {@code cache=recent_messages}.
+ */
+@Component
+public class RecentMessages implements MessageEventSubscriber {
+
+    static final String LOOKUPS_METRIC = "messages.history.recent.lookups";
+    static final String BYTES_METRIC = "messages.history.recent.bytes";
+    static final String CACHE_NAME = "recent_messages";
+    static final int DEEPEST_TAGGED_PAGE = 3;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int messagesPerThread;
+    private final long verifyIntervalMillis;
+    private final LongSupplier clock;
+    private final Cache<String, Ring> rings;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean ready;
+
+    @Autowired
+    public RecentMessages(MeterRegistry meterRegistry,
+                          @Value("${app.messages.recent.enabled:true}") boolean enabled,
+                          @Value("${app.messages.recent.messages-per-thread:50}") int messagesPerThread,
+                          @Value("${app.messages.recent.max-bytes:67108864}") long maxBytes,
+                          @Value("${app.messages.recent.verify-interval-seconds:300}") long verifyIntervalSeconds) {
+        this(meterRegistry, enabled, messagesPerThread, maxBytes, verifyIntervalSeconds, System::currentTimeMillis);
+    }
+
+    RecentMessages(MeterRegistry meterRegistry, boolean enabled, int messagesPerThread, long maxBytes,
+                   long verifyIntervalSeconds, LongSupplier clock) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.messagesPerThread = Math.max(1, messagesPerThread);
+        this.verifyIntervalMillis = verifyIntervalSeconds * 1000;
+        this.clock = clock;
+        this.rings = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String threadId, Ring ring) -> ring.weight())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rings, CACHE_NAME);
+        Gauge.builder(BYTES_METRIC, rings, cache -> cache.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0))
+                        .orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Messages {@code offset} to {@code offset + limit} of the thread, newest
+     * first, from its ring when it covers them and from {@code query} otherwise.
+     * A newest page read from {@code query} confirms the thread's ring.
+     */
+    public List<MessageDto> page(String threadId, int offset, int limit, Supplier<List<MessageDto>> query) {
+        if (!enabled || !ready) {
+            return query.get();
+        }
+
+        long current = generation.get();
+        Ring ring = rings.getIfPresent(threadId);
+        boolean hit = ring != null && ring.covers(offset, limit, current, clock.getAsLong() - verifyIntervalMillis);
+        int depth = Math.min(offset / limit, DEEPEST_TAGGED_PAGE);
+        meterRegistry.counter(LOOKUPS_METRIC,
+                "depth", depth == DEEPEST_TAGGED_PAGE ? depth + "+" : String.valueOf(depth),
+                "result", hit ? "hit" : "miss").increment();
+        if (hit) {
+            return ring.page(threadId, offset, limit);
+        }
+
+        List<MessageDto> rows = query.get();
+        if (offset == 0) {
+            confirm(threadId, rows, rows.size() < limit, current);
+        }
+        return rows;
+    }
+
+    /**
+     * Adds a message messaging-consumer has stored to its thread's ring.
+     */
+    @Override
+    public void onMessageStored(MessageCommand event) {
+        if (!enabled || !ready || event.messageId() == null || !ObjectId.isValid(event.messageId())) {
+            return;
+        }
+        long current = generation.get();
+        Message message = new Message(new ObjectId(event.messageId()), epochMillis(event.timestamp()),
+                event.senderId(), event.senderUsername(), event.content());
+        rings.asMap().compute(event.threadId(), (threadId, ring) -> ring == null || ring.generation != current
+                ? Ring.unconfirmed(current).with(message, messagesPerThread)
+                : ring.with(message, messagesPerThread));
+    }
+
+    /**
+     * Starts a new generation once the listener holds its partitions; rings
+     * from before are dropped.
+     */
+    @Override
+    public void restart() {
+        generation.incrementAndGet();
+        rings.invalidateAll();
+        ready = true;
+    }
+
+    /**
+     * Stops serving while the listener holds no partitions.
+     */
+    @Override
+    public void suspend() {
+        ready = false;
+        generation.incrementAndGet();
+        rings.invalidateAll();
+    }
+
+    private void confirm(String threadId, List<MessageDto> newestFirst, boolean wholeThread, long expectedGeneration) {
+        List<Message> rows = new ArrayList<>(newestFirst.size());
+        for (MessageDto row : newestFirst) {
+            if (row.getId() == null || !ObjectId.isValid(row.getId())) {
+                return;
+            }
+            rows.add(new Message(new ObjectId(row.getId()), epochMillis(row.getTimestamp()),
+                    row.getSenderId(), row.getSenderUsername(), row.getContent()));
+        }
+        long now = clock.getAsLong();
+        rings.asMap().compute(threadId, (key, ring) -> {
+            if (generation.get() != expectedGeneration) {
+                return ring;
+            }
+            Ring base = ring == null || ring.generation != expectedGeneration ? Ring.unconfirmed(expectedGeneration) : ring;
+            return base.confirmedBy(rows, wholeThread, messagesPerThread, now);
+        });
+    }
+
+    private static long epochMillis(LocalDateTime timestamp) {
+        return timestamp == null ? 0 : timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private record Message(ObjectId id, long timestamp, String senderId, String senderUsername, String content) {
+    }
+
+    /**
+     * Immutable window of one thread's newest messages, oldest first; every
+     * change builds a new ring so it is re-weighed and readers never lock.
+     */
+    private static final class Ring {
+
+        private static final int ID_BYTES = 12;
+        // Object headers, array headers and references, per ring and per message.
+        private static final int RING_OVERHEAD = 128;
+        private static final int MESSAGE_OVERHEAD = 24;
+
+        private final long generation;
+        // Confirmed against MongoDB at this time; 0 while only fed by events.
+        private final long confirmedAt;
+        // True when the ring holds the whole thread, so any page of it is covered.
+        private final boolean complete;
+        private final String[] senderIds;
+        private final String[] senderUsernames;
+        private final byte[] ids;
+        private final long[] timestamps;
+        private final byte[] senders;
+        private final byte[][] contents;
+
+        private Ring(long generation, long confirmedAt, boolean complete, String[] senderIds,
+                     String[] senderUsernames, byte[] ids, long[] timestamps, byte[] senders, byte[][] contents) {
+            this.generation = generation;
+            this.confirmedAt = confirmedAt;
+            this.complete = complete;
+            this.senderIds = senderIds;
+            this.senderUsernames = senderUsernames;
+            this.ids = ids;
+            this.timestamps = timestamps;
+            this.senders = senders;
+            this.contents = contents;
+        }
+
+        static Ring unconfirmed(long generation) {
+            return new Ring(generation, 0, false, new String[0], new String[0], new byte[0], new long[0],
+                    new byte[0], new byte[0][]);
+        }
+
+        int size() {
+            return timestamps.length;
+        }
+
+        boolean covers(int offset, int limit, long currentGeneration, long confirmedSince) {
+            return generation == currentGeneration
+                    && confirmedAt > 0 && confirmedAt >= confirmedSince
+                    && (complete || offset + limit <= size());
+        }
+
+        List<MessageDto> page(String threadId, int offset, int limit) {
+            List<MessageDto> page = new ArrayList<>(Math.max(0, Math.min(limit, size() - offset)));
+            for (int i = size() - 1 - offset; i >= 0 && page.size() < limit; i--) {
+                page.add(new MessageDto(idAt(i).toHexString(), threadId, senderIds[senders[i]],
+                        senderUsernames[senders[i]], new String(contents[i], StandardCharsets.UTF_8),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps[i]), ZoneOffset.UTC)));
+            }
+            return page;
+        }
+
+        /**
+         * This ring with {@code message} added. Once confirmed, a message older
+         * than the whole window belongs to pages the ring does not cover.
+         */
+        Ring with(Message message, int capacity) {
+            int position = positionOf(message.id());
+            if (position < 0) {
+                return this;
+            }
+            if (position == 0 && size() > 0 && confirmedAt > 0 && !complete) {
+                return this;
+            }
+            List<Message> messages = messages();
+            messages.add(position, message);
+            return build(messages, complete, confirmedAt, capacity);
+        }
+
+        /**
+         * The ring after a MongoDB read returned {@code newestFirst} as the
+         * thread's newest messages: those rows, plus any messages the ring
+         * already holds that are newer than the oldest of them.
+         */
+        Ring confirmedBy(List<Message> newestFirst, boolean wholeThread, int capacity, long now) {
+            List<Message> messages = new ArrayList<>(newestFirst.size() + size());
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                messages.add(newestFirst.get(i));
+            }
+            ObjectId floor = messages.isEmpty() ? null : messages.get(0).id();
+            for (Message held : messages()) {
+                if (floor == null || held.id().compareTo(floor) > 0) {
+                    messages.add(held);
+                }
+            }
+            messages.sort((a, b) -> a.id().compareTo(b.id()));
+            for (int i = messages.size() - 1; i > 0; i--) {
+                if (messages.get(i).id().equals(messages.get(i - 1).id())) {
+                    messages.remove(i);
+                }
+            }
+            return build(messages, wholeThread, now, capacity);
+        }
+
+        int weight() {
+            long weight = RING_OVERHEAD + (long) size() * (ID_BYTES + Long.BYTES + 1 + MESSAGE_OVERHEAD);
+            for (byte[] content : contents) {
+                weight += content.length;
+            }
+            for (int i = 0; i < senderIds.length; i++) {
+                weight += 2L * (length(senderIds[i]) + length(senderUsernames[i])) + MESSAGE_OVERHEAD;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, weight);
+        }
+
+        // Index to insert id at, keeping ids ascending; -1 if the ring already holds it.
+        private int positionOf(ObjectId id) {
+            int position = size();
+            while (position > 0) {
+                int order = idAt(position - 1).compareTo(id);
+                if (order == 0) {
+                    return -1;
+                }
+                if (order < 0) {
+                    break;
+                }
+                position--;
+            }
+            return position;
+        }
+
+        private ObjectId idAt(int index) {
+            return new ObjectId(Arrays.copyOfRange(ids, index * ID_BYTES, (index + 1) * ID_BYTES));
+        }
+
+        private List<Message> messages() {
+            List<Message> messages = new ArrayList<>(size() + 1);
+            for (int i = 0; i < size(); i++) {
+                messages.add(new Message(idAt(i), timestamps[i], senderIds[senders[i]], senderUsernames[senders[i]],
+                        new String(contents[i], StandardCharsets.UTF_8)));
+            }
+            return messages;
+        }
+
+        private Ring build(List<Message> messages, boolean complete, long confirmedAt, int capacity) {
+            int dropped = Math.max(0, messages.size() - capacity);
+            List<Message> kept = messages.subList(dropped, messages.size());
+            List<String> ids = new ArrayList<>(2);
+            List<String> usernames = new ArrayList<>(2);
+            byte[] idBytes = new byte[kept.size() * ID_BYTES];
+            long[] times = new long[kept.size()];
+            byte[] senderIndexes = new byte[kept.size()];
+            byte[][] texts = new byte[kept.size()][];
+            for (int i = 0; i < kept.size(); i++) {
+                Message message = kept.get(i);
+                int sender = senderIndex(ids, usernames, message);
+                if (sender < 0) {
+                    return unconfirmed(generation);
+                }
+                System.arraycopy(message.id().toByteArray(), 0, idBytes, i * ID_BYTES, ID_BYTES);
+                times[i] = message.timestamp();
+                senderIndexes[i] = (byte) sender;
+                texts[i] = message.content() == null ? new byte[0] : message.content().getBytes(StandardCharsets.UTF_8);
+            }
+            return new Ring(generation, confirmedAt, complete && dropped == 0, ids.toArray(String[]::new),
+                    usernames.toArray(String[]::new), idBytes, times, senderIndexes, texts);
+        }
+
+        // Senders are interned per ring; a thread has two, so more than a byte's worth means something is off.
+        private static int senderIndex(List<String> ids, List<String> usernames, Message message) {
+            for (int i = 0; i < ids.size(); i++) {
+                if (Objects.equals(ids.get(i), message.senderId())
+                        && Objects.equals(usernames.get(i), message.senderUsername())) {
+                    return i;
+                }
+            }
+            if (ids.size() == Byte.MAX_VALUE) {
+                return -1;
+            }
+            ids.add(message.senderId());
+            usernames.add(message.senderUsername());
+            return ids.size() - 1;
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+}
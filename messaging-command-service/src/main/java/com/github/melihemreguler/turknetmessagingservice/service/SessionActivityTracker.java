@@ -0,0 +1,139 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind buffer of session last-access times.
+ *
+ * <p>Authenticated requests only update an in-memory entry per session, keeping
+ * the latest access time. Every {@code flush-interval-ms} the buffer is drained
+ * and each session that saw traffic is published once as an UPDATE_SESSION
+ * command, so the write rate follows the number of active sessions rather than
+ * the request rate. Entries that fail to publish, whether the send throws or the
+ * broker does not acknowledge it, are merged back and retried on the next flush.
+ * On shutdown the final flush waits up to {@code shutdown-timeout-ms} for its
+ * acknowledgements.
+ */
+@Component
+@Slf4j
+public class SessionActivityTracker {
+
+    static final String FLUSHED_METRIC = "sessions.activity.flushed";
+    static final String PENDING_METRIC = "sessions.activity.pending";
+
+    private final KafkaProducerService kafkaProducerService;
+    private final boolean enabled;
+    private final long shutdownTimeoutMillis;
+    private final Counter flushed;
+
+    // hashedSessionId -> latest access not yet published
+    private final Map<String, LastAccess> pending = new ConcurrentHashMap<>();
+
+    public SessionActivityTracker(KafkaProducerService kafkaProducerService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.session.activity.enabled:true}") boolean enabled,
+                                  @Value("${app.session.activity.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        this.kafkaProducerService = kafkaProducerService;
+        this.enabled = enabled;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.flushed = meterRegistry.counter(FLUSHED_METRIC);
+        meterRegistry.gaugeMapSize(PENDING_METRIC, Tags.empty(), pending);
+    }
+
+    public void recordAccess(String hashedSessionId, String userId) {
+        if (!enabled || hashedSessionId == null || userId == null) {
+            return;
+        }
+        pending.merge(hashedSessionId, new LastAccess(userId, LocalDateTime.now()), LastAccess::latest);
+    }
+
+    @Scheduled(fixedDelayString = "${app.session.activity.flush-interval-ms:30000}")
+    public void flush() {
+        List<CompletableFuture<?>> sends = publishPending();
+        if (!sends.isEmpty()) {
+            log.debug("Publishing last access for {} sessions", sends.size());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        List<CompletableFuture<?>> sends = publishPending();
+        if (sends.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Failures have been merged back already; there is no next flush to retry them.
+        }
+        if (!pending.isEmpty()) {
+            log.warn("Last access of {} sessions was not published before shutdown", pending.size());
+        }
+    }
+
+    /**
+     * Sends every buffered entry and returns the sends, each completing once the
+     * broker has acknowledged it or the entry has been merged back.
+     */
+    private List<CompletableFuture<?>> publishPending() {
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+        for (String hashedSessionId : pending.keySet()) {
+            LastAccess access = pending.remove(hashedSessionId);
+            if (access == null) {
+                continue;
+            }
+            try {
+                sends.add(kafkaProducerService.sendSessionCommand(
+                                SessionEvent.touch(hashedSessionId, access.userId(), access.at()), access.userId())
+                        .whenComplete((result, error) -> {
+                            if (error != null) {
+                                requeue(hashedSessionId, access, error);
+                            } else {
+                                flushed.increment();
+                            }
+                        }));
+            } catch (Exception e) {
+                requeue(hashedSessionId, access, e);
+            }
+        }
+        return sends;
+    }
+
+    private void requeue(String hashedSessionId, LastAccess access, Throwable error) {
+        pending.merge(hashedSessionId, access, LastAccess::latest);
+        log.warn("Failed to publish last access for user {}; will retry on next flush: {}",
+                access.userId(), error.getMessage());
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private record LastAccess(String userId, LocalDateTime at) {
+
+        LastAccess latest(LastAccess other) {
+            return other.at().isAfter(at) ? other : this;
+        }
+    }
+}
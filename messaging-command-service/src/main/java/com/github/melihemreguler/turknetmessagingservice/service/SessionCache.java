@@ -0,0 +1,120 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.melihemreguler.turknetmessagingservice.dto.SessionDto;
+import com.github.melihemreguler.turknetmessagingservice.enums.SessionCommand;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Bounded near-cache of validated stored-mode sessions, consulted by
+ * {@link SessionService} before MongoDB.
+ *
+ * <p>Entries are keyed by userId: the consumer keeps a single session per user
+ * (UPSERT_SESSION replaces the previous one), so a lookup is a hit only when the
+ * presented token's digest matches the cached session for the claimed user.
+ * Every replica applies session commands from {@link SessionEventListener}, so a
+ * logout or re-login on one node evicts or refreshes the entry everywhere.
+ * An entry never outlives its session, nor the configured TTL.
+ *
+ * <p>Hit, miss and eviction counts are published as {@code cache.*} meters
+ * tagged {@code cache=sessions}.
+ */
+@Component
+public class SessionCache implements SessionEventSubscriber {
+
+    static final String CACHE_NAME = "sessions";
+
+    private final Cache<String, SessionDto> cache;
+
+    public SessionCache(MeterRegistry meterRegistry,
+                        @Value("${app.session.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${app.session.cache.ttl-seconds:300}") long ttlSeconds) {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(Expiry.writing((String userId, SessionDto session) -> timeToLive(session, ttl)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public Optional<SessionDto> get(String hashedSessionId, String userId) {
+        SessionDto session = cache.getIfPresent(userId);
+        if (session == null || !hashedSessionId.equals(session.getHashedSessionId())) {
+            return Optional.empty();
+        }
+        if (session.isExpired()) {
+            cache.asMap().remove(userId, session);
+            return Optional.empty();
+        }
+        return Optional.of(session);
+    }
+
+    public void put(SessionDto session) {
+        if (session.getUserId() == null || session.getHashedSessionId() == null
+                || session.getExpiresAt() == null || session.isExpired()) {
+            return;
+        }
+        cache.put(session.getUserId(), session);
+    }
+
+    public void evict(String hashedSessionId, String userId) {
+        cache.asMap().computeIfPresent(userId,
+                (key, cached) -> hashedSessionId.equals(cached.getHashedSessionId()) ? null : cached);
+    }
+
+    public void evictUser(String userId) {
+        cache.invalidate(userId);
+    }
+
+    @Override
+    public void onSessionEvent(SessionEvent event) {
+        if (event.userId() == null) {
+            return;
+        }
+
+        String command = event.command();
+        if (SessionCommand.SAVE_SESSION.getCommand().equals(command)
+                || SessionCommand.UPSERT_SESSION.getCommand().equals(command)) {
+            // The persisted row replaces whatever this user had; mirror that so a login on a
+            // peer is accepted here before the consumer has written it.
+            evictUser(event.userId());
+            put(new SessionDto(event.hashedSessionId(), event.userId(), event.expiresAt(),
+                    event.ipAddress(), event.userAgent()));
+        } else if (SessionCommand.DELETE_SESSION.getCommand().equals(command)
+                || SessionCommand.EXPIRE_SESSION.getCommand().equals(command)) {
+            if (event.hashedSessionId() != null) {
+                evict(event.hashedSessionId(), event.userId());
+            } else {
+                evictUser(event.userId());
+            }
+        }
+    }
+
+    @Override
+    public boolean handles(String command) {
+        return !SessionCommand.UPDATE_SESSION.getCommand().equals(command);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static Duration timeToLive(SessionDto session, Duration ttl) {
+        Duration untilExpiry = Duration.between(LocalDateTime.now(), session.getExpiresAt());
+        if (untilExpiry.isNegative()) {
+            return Duration.ZERO;
+        }
+        return untilExpiry.compareTo(ttl) < 0 ? untilExpiry : ttl;
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.config.SchedulingConfig;
+import com.github.melihemreguler.turknetmessagingservice.dto.SessionDto;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import com.github.melihemreguler.turknetmessagingservice.repository.SessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Removes expired sessions, and optionally sessions beyond a per-user cap, in
+ * bounded server-side chunks.
+ *
+ * <p>Each chunk reads at most {@code batch-size} ids off an index and removes
+ * them with one {@code deleteMany}, so heap use is independent of the size of
+ * the {@code sessions} collection. Chunks are paced to stay under
+ * {@code max-deletes-per-second}. The TTL index on {@code expiresAt} does the
+ * same job eventually; this pass bounds how stale it can get.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SessionCleanupService {
+
+    static final String DELETED_METRIC = "sessions.cleanup.deleted";
+    static final String DURATION_METRIC = "sessions.cleanup.duration";
+    static final String REASON_EXPIRED = "expired";
+    static final String REASON_USER_CAP = "user_cap";
+
+    private final SessionRepository sessionRepository;
+    private final KafkaProducerService kafkaProducerService;
+    private final SessionCache sessionCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.session.cleanup-interval-minutes:60}")
+    private int sessionCleanupIntervalMinutes;
+
+    @Value("${app.session.cleanup.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${app.session.cleanup.max-deletes-per-second:5000}")
+    private int maxDeletesPerSecond = 5000;
+
+    // 0 disables the cap.
+    @Value("${app.session.cleanup.max-sessions-per-user:0}")
+    private int maxSessionsPerUser;
+
+    public void cleanupSessions() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            long expired = deleteInChunks(REASON_EXPIRED, () -> {
+                List<String> ids = sessionRepository.findExpiredSessionIds(LocalDateTime.now(), batchSize);
+                return sessionRepository.deleteByIds(ids);
+            });
+
+            long capped = maxSessionsPerUser > 0 ? deleteSessionsOverUserCap() : 0;
+
+            if (expired > 0 || capped > 0) {
+                log.info("Session cleanup removed {} expired sessions and {} sessions over the per-user cap of {}",
+                        expired, capped, maxSessionsPerUser);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Session cleanup interrupted; remaining sessions will be handled by the next run");
+        } catch (Exception e) {
+            log.error("Failed to cleanup sessions: {}", e.getMessage(), e);
+        } finally {
+            sample.stop(meterRegistry.timer(DURATION_METRIC));
+        }
+    }
+
+    @Scheduled(fixedRateString = "#{${app.session.cleanup-interval-minutes:60} * 60 * 1000}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void scheduledCleanupSessions() {
+        log.debug("Running scheduled session cleanup (interval: {} minutes)", sessionCleanupIntervalMinutes);
+        cleanupSessions();
+    }
+
+    /**
+     * Finds the users over the cap once per run, then trims each one with an
+     * indexed per-user query. messaging-consumer already keeps a single session
+     * per user, so the list is normally empty.
+     */
+    private long deleteSessionsOverUserCap() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        long total = 0;
+        for (String userId : sessionRepository.findUserIdsOverSessionCap(now, maxSessionsPerUser)) {
+            long startedAt = System.nanoTime();
+            List<SessionDto> surplus = sessionRepository.findSessionsBeyondNewest(userId, now, maxSessionsPerUser);
+            long deleted = sessionRepository.deleteByIds(surplus.stream().map(SessionDto::getId).toList());
+
+            // These sessions were still live, so other replicas may be holding them in their near-cache.
+            for (SessionDto session : surplus) {
+                sessionCache.evict(session.getHashedSessionId(), session.getUserId());
+                kafkaProducerService.sendSessionCommand(
+                        SessionEvent.delete(session.getHashedSessionId(), session.getUserId(), session.getExpiresAt()),
+                        session.getUserId());
+            }
+            total += deleted;
+            meterRegistry.counter(DELETED_METRIC, "reason", REASON_USER_CAP).increment(deleted);
+            throttle(deleted, System.nanoTime() - startedAt);
+        }
+        return total;
+    }
+
+    /**
+     * Runs {@code chunk} until it deletes less than a full batch, sleeping between
+     * chunks so the overall rate stays under {@code maxDeletesPerSecond}.
+     */
+    private long deleteInChunks(String reason, Supplier<Long> chunk) throws InterruptedException {
+        long total = 0;
+        while (true) {
+            long startedAt = System.nanoTime();
+            long deleted = chunk.get();
+            total += deleted;
+            meterRegistry.counter(DELETED_METRIC, "reason", reason).increment(deleted);
+
+            if (deleted < batchSize) {
+                return total;
+            }
+            throttle(deleted, System.nanoTime() - startedAt);
+        }
+    }
+
+    private void throttle(long deleted, long elapsedNanos) throws InterruptedException {
+        if (maxDeletesPerSecond <= 0) {
+            return;
+        }
+        long budgetNanos = deleted * 1_000_000_000L / maxDeletesPerSecond;
+        long pauseMillis = (budgetNanos - elapsedNanos) / 1_000_000L;
+        if (pauseMillis > 0) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodecRegistry;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventHeaders;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broadcast consumer of the session-commands topic.
+ *
+ * <p>Every replica joins under its own consumer group, so each one sees every
+ * session command and fans it out to the local {@link SessionEventSubscriber}s.
+ * Persistence of these commands remains the job of messaging-consumer.
+ *
+ * <p>A replica starts {@code expiration-hours} back rather than at the start of
+ * the topic: older commands can no longer revoke an unexpired token, and the
+ * session cache falls back to MongoDB anyway. Offsets are never committed.
+ *
+ * <p>Records carrying a command header that no subscriber handles, such as the
+ * batched last-access updates, are dropped before their payload is decoded.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SessionEventListener implements ConsumerSeekAware {
+
+    private final EventCodecRegistry eventCodecs;
+    private final List<SessionEventSubscriber> subscribers;
+
+    @Value("${app.session.expiration-hours:24}")
+    private int sessionExpirationHours;
+
+    @KafkaListener(
+            topics = "${app.kafka.topics.session-commands}",
+            groupId = "${spring.application.name}-session-events-${random.uuid}",
+            containerFactory = "broadcastListenerContainerFactory",
+            autoStartup = "${app.session.events.listener-enabled:true}",
+            properties = "auto.offset.reset=latest")
+    public void onMessage(ConsumerRecord<String, byte[]> record) {
+        String command = EventHeaders.value(record.headers(), EventHeaders.COMMAND_HEADER);
+        if (command != null && subscribers.stream().noneMatch(subscriber -> subscriber.handles(command))) {
+            return;
+        }
+
+        SessionEvent event;
+        try {
+            event = eventCodecs.decode(record.value(), record.headers(), SessionEvent.class);
+        } catch (Exception e) {
+            log.warn("Skipping unreadable session event: {}", e.getMessage());
+            return;
+        }
+
+        for (SessionEventSubscriber subscriber : subscribers) {
+            try {
+                subscriber.onSessionEvent(event);
+            } catch (Exception e) {
+                log.error("Session event subscriber {} failed for command {}: {}",
+                        subscriber.getClass().getSimpleName(), event.command(), e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        long since = System.currentTimeMillis() - Duration.ofHours(sessionExpirationHours).toMillis();
+        callback.seekToTimestamp(assignments.keySet(), since);
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+
+/**
+ * Receives every session command seen on the session-commands topic by this replica.
+ * Implementations keep node-local session state in line with the rest of the cluster.
+ */
+public interface SessionEventSubscriber {
+
+    void onSessionEvent(SessionEvent event);
+
+    /**
+     * Whether {@link #onSessionEvent} does anything for {@code command}. Records no
+     * subscriber wants are skipped without being decoded.
+     */
+    default boolean handles(String command) {
+        return true;
+    }
+}
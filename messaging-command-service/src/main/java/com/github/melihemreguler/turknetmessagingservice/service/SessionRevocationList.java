@@ -0,0 +1,126 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.enums.SessionCommand;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import com.github.melihemreguler.turknetmessagingservice.service.SignedSessionTokenCodec.SignedSessionToken;
+import com.github.melihemreguler.turknetmessagingservice.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory revocation state for signed session tokens, folded from the
+ * session-commands topic by every command-service replica via
+ * {@link SessionEventListener}, which also replays the last
+ * {@code expiration-hours} of the topic on startup.
+ *
+ * <p>A bloom filter answers the common "not revoked" case; only possible hits
+ * consult the exact maps. Entries are dropped once the tokens they cover
+ * would have expired anyway, and the filter is rebuilt from what remains.
+ */
+@Component
+@Slf4j
+public class SessionRevocationList implements SessionEventSubscriber {
+
+    private static final int MIN_FILTER_CAPACITY = 1024;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final String TOKEN_KEY_PREFIX = "t:";
+    private static final String USER_KEY_PREFIX = "u:";
+
+    @Value("${app.session.expiration-hours:24}")
+    private int sessionExpirationHours;
+
+    // tokenId -> token expiry
+    private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+    // userId -> tokens issued at or before this instant are revoked
+    private final Map<String, Instant> userRevokedBefore = new ConcurrentHashMap<>();
+
+    // Writers and the rebuild hold this lock so no insertion can fall between a rebuild's snapshot and its swap.
+    private final Object filterLock = new Object();
+    private volatile BloomFilter filter = BloomFilter.create(MIN_FILTER_CAPACITY, FALSE_POSITIVE_RATE);
+
+    @Override
+    public void onSessionEvent(SessionEvent event) {
+        if (SessionCommand.DELETE_SESSION.getCommand().equals(event.command())
+                || SessionCommand.EXPIRE_SESSION.getCommand().equals(event.command())) {
+            if (event.hashedSessionId() != null) {
+                Instant expiresAt = event.expiresAt() != null
+                        ? toInstant(event.expiresAt())
+                        : Instant.now().plus(Duration.ofHours(sessionExpirationHours));
+                revokeToken(event.hashedSessionId(), expiresAt);
+            } else if (event.userId() != null) {
+                Instant revokedAt = event.timestamp() != null ? toInstant(event.timestamp()) : Instant.now();
+                revokeUserSessions(event.userId(), revokedAt);
+            }
+        }
+    }
+
+    @Override
+    public boolean handles(String command) {
+        return SessionCommand.DELETE_SESSION.getCommand().equals(command)
+                || SessionCommand.EXPIRE_SESSION.getCommand().equals(command);
+    }
+
+    public void revokeToken(String tokenId, Instant expiresAt) {
+        synchronized (filterLock) {
+            revokedTokens.merge(tokenId, expiresAt, (a, b) -> a.isAfter(b) ? a : b);
+            filter.put(TOKEN_KEY_PREFIX + tokenId);
+        }
+        log.debug("Signed session token revoked: {}", tokenId);
+    }
+
+    public void revokeUserSessions(String userId, Instant revokedAt) {
+        synchronized (filterLock) {
+            userRevokedBefore.merge(userId, revokedAt, (a, b) -> a.isAfter(b) ? a : b);
+            filter.put(USER_KEY_PREFIX + userId);
+        }
+        log.debug("Signed session tokens issued before {} revoked for user: {}", revokedAt, userId);
+    }
+
+    public boolean isRevoked(SignedSessionToken token) {
+        BloomFilter current = filter;
+        if (current.mightContain(TOKEN_KEY_PREFIX + token.tokenId()) && revokedTokens.containsKey(token.tokenId())) {
+            return true;
+        }
+        if (current.mightContain(USER_KEY_PREFIX + token.userId())) {
+            Instant cutoff = userRevokedBefore.get(token.userId());
+            return cutoff != null && !token.issuedAt().isAfter(cutoff);
+        }
+        return false;
+    }
+
+    public int size() {
+        return revokedTokens.size() + userRevokedBefore.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.session.revocation-sweep-interval-ms:60000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        // A user-wide cutoff only matters for tokens issued before it, and those live at most expiration-hours.
+        Instant userCutoffHorizon = now.minus(Duration.ofHours(sessionExpirationHours));
+
+        synchronized (filterLock) {
+            revokedTokens.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+            userRevokedBefore.values().removeIf(cutoff -> cutoff.isBefore(userCutoffHorizon));
+
+            BloomFilter rebuilt = BloomFilter.create(
+                    Math.max(MIN_FILTER_CAPACITY, 2L * size()), FALSE_POSITIVE_RATE);
+            revokedTokens.keySet().forEach(tokenId -> rebuilt.put(TOKEN_KEY_PREFIX + tokenId));
+            userRevokedBefore.keySet().forEach(userId -> rebuilt.put(USER_KEY_PREFIX + userId));
+            filter = rebuilt;
+        }
+        log.debug("Session revocation list swept; {} entries retained", size());
+    }
+
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -1,16 +1,19 @@
 package com.github.melihemreguler.turknetmessagingservice.service;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.SessionDto;
+import com.github.melihemreguler.turknetmessagingservice.enums.SessionMode;
 import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
 import com.github.melihemreguler.turknetmessagingservice.repository.SessionRepository;
+import com.github.melihemreguler.turknetmessagingservice.service.SignedSessionTokenCodec.SignedSessionToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -24,37 +27,74 @@ public class SessionService {
     private final SessionRepository sessionRepository;
     private final PasswordEncoder passwordEncoder;
     private final KafkaProducerService kafkaProducerService;
+    private final SessionTokenHasher sessionTokenHasher;
+    private final SignedSessionTokenCodec signedSessionTokenCodec;
+    private final SessionRevocationList sessionRevocationList;
+    private final SessionCache sessionCache;
+    private final SessionActivityTracker sessionActivityTracker;
     
     @Value("${app.session.expiration-hours:24}")
     private int sessionExpirationHours;
     
-    @Value("${app.session.cleanup-interval-minutes:60}")
-    private int sessionCleanupIntervalMinutes;
+    // Decides what createSession issues; validation accepts either form so the mode can be switched live.
+    @Value("${app.session.mode:stored}")
+    private SessionMode sessionMode = SessionMode.STORED;
+    
+    // Migration mode: also accept BCrypt-hashed sessions written before the HMAC switch.
+    // Disable once expiration-hours have passed since rollout.
+    @Value("${app.session.legacy-bcrypt-fallback:false}")
+    private boolean legacyBcryptFallback;
     
     public String createSession(String userId, String username, String ipAddress, String userAgent) {
+        if (sessionMode == SessionMode.SIGNED) {
+            return createSignedSession(userId, username, ipAddress, userAgent);
+        }
+        
         String sessionToken = UUID.randomUUID().toString();
-        String hashedSessionId = passwordEncoder.encode(sessionToken);
+        String hashedSessionId = sessionTokenHasher.hash(sessionToken);
         LocalDateTime expiresAt = LocalDateTime.now().plusHours(sessionExpirationHours);
         
         SessionEvent sessionEvent = SessionEvent.createOrUpdate(
             hashedSessionId, userId, expiresAt, ipAddress, userAgent);
         
         kafkaProducerService.sendSessionCommand(sessionEvent, userId);
+        // Write through so the next request is accepted before the consumer has persisted the row.
+        sessionCache.put(new SessionDto(hashedSessionId, userId, expiresAt, ipAddress, userAgent));
         
         log.info("Session created/updated for user: {} (ID: {}) with expiration: {}", username, userId, expiresAt);
         return sessionToken;
     }
     
+    private String createSignedSession(String userId, String username, String ipAddress, String userAgent) {
+        Instant issuedAt = Instant.now();
+        SignedSessionToken token = signedSessionTokenCodec.issue(
+            userId, issuedAt, issuedAt.plusSeconds(sessionExpirationHours * 3600L));
+        
+        // The sessions row is an audit record only; signed tokens are never looked up in MongoDB.
+        SessionEvent sessionEvent = SessionEvent.createOrUpdate(
+            token.tokenId(), userId, toLocalDateTime(token.expiresAt()), ipAddress, userAgent);
+        kafkaProducerService.sendSessionCommand(sessionEvent, userId);
+        
+        log.info("Signed session issued for user: {} (ID: {}) with key {} and expiration: {}",
+            username, userId, token.keyId(), token.expiresAt());
+        return token.token();
+    }
+    
     public Optional<SessionDto> validateSession(String sessionId) {
         if (isNullOrEmpty(sessionId)) {
             return Optional.empty();
         }
+        if (SignedSessionTokenCodec.isSignedToken(sessionId)) {
+            return validateSignedSession(sessionId).map(this::toSessionDto);
+        }
         
         try {
-            return sessionRepository.findAll().stream()
-                .filter(session -> !session.isExpired())
-                .filter(session -> passwordEncoder.matches(sessionId, session.getHashedSessionId()))
-                .findFirst();
+            Optional<SessionDto> session = findActiveByHash(sessionTokenHasher.hash(sessionId));
+            if (session.isPresent() || !legacyBcryptFallback) {
+                return session;
+            }
+            
+            return findLegacySession(sessionId, sessionRepository.findAll());
                 
         } catch (Exception e) {
             log.error("Error validating session: {}", e.getMessage(), e);
@@ -66,12 +106,30 @@ public class SessionService {
         if (isNullOrEmpty(sessionId) || isNullOrEmpty(userId)) {
             return Optional.empty();
         }
+        if (SignedSessionTokenCodec.isSignedToken(sessionId)) {
+            return validateSignedSession(sessionId)
+                .filter(token -> userId.equals(token.userId()))
+                .map(this::toSessionDto);
+        }
         
         try {
-            return sessionRepository.findByUserId(userId).stream()
-                .filter(session -> !session.isExpired())
-                .filter(session -> passwordEncoder.matches(sessionId, session.getHashedSessionId()))
-                .findFirst();
+            String hashedSessionId = sessionTokenHasher.hash(sessionId);
+            Optional<SessionDto> cached = sessionCache.get(hashedSessionId, userId);
+            if (cached.isPresent()) {
+                return cached;
+            }
+            
+            Optional<SessionDto> session = findActiveByHash(hashedSessionId);
+            if (session.isPresent()) {
+                Optional<SessionDto> owned = session.filter(found -> userId.equals(found.getUserId()));
+                owned.ifPresent(sessionCache::put);
+                return owned;
+            }
+            if (!legacyBcryptFallback) {
+                return Optional.empty();
+            }
+            
+            return findLegacySession(sessionId, sessionRepository.findByUserId(userId));
                 
         } catch (Exception e) {
             log.error("Error validating session for user {}: {}", userId, e.getMessage(), e);
@@ -79,34 +137,82 @@ public class SessionService {
         }
     }
     
+    /**
+     * Notes that a validated session served a request. The access is buffered and
+     * published in aggregate by {@link SessionActivityTracker}.
+     */
+    public void recordActivity(SessionDto session) {
+        sessionActivityTracker.recordAccess(session.getHashedSessionId(), session.getUserId());
+    }
+    
+    private Optional<SignedSessionToken> validateSignedSession(String sessionId) {
+        Instant now = Instant.now();
+        return signedSessionTokenCodec.verify(sessionId)
+            .filter(token -> !token.isExpired(now))
+            .filter(token -> !sessionRevocationList.isRevoked(token));
+    }
+    
+    private SessionDto toSessionDto(SignedSessionToken token) {
+        SessionDto session = new SessionDto(
+            token.tokenId(), token.userId(), toLocalDateTime(token.expiresAt()), null, null);
+        session.setCreatedAt(toLocalDateTime(token.issuedAt()));
+        return session;
+    }
+    
+    private Optional<SessionDto> findActiveByHash(String hashedSessionId) {
+        return sessionRepository.findByHashedSessionId(hashedSessionId)
+            .filter(session -> !session.isExpired());
+    }
+    
+    private Optional<SessionDto> findLegacySession(String sessionId, List<SessionDto> candidates) {
+        return candidates.stream()
+            .filter(session -> SessionTokenHasher.isLegacyHash(session.getHashedSessionId()) && !session.isExpired())
+            .filter(legacy -> passwordEncoder.matches(sessionId, legacy.getHashedSessionId()))
+            .findFirst();
+    }
+    
     public void invalidateSession(String sessionId) {
-        Optional<SessionDto> sessionOpt = validateSession(sessionId);
+        if (isNullOrEmpty(sessionId)) {
+            return;
+        }
+        if (SignedSessionTokenCodec.isSignedToken(sessionId)) {
+            invalidateSignedSession(sessionId);
+            return;
+        }
+        
+        // Point lookup on the digest index; expired rows are removed too rather than left for cleanup.
+        Optional<SessionDto> sessionOpt = sessionRepository.findByHashedSessionId(sessionTokenHasher.hash(sessionId));
+        if (sessionOpt.isEmpty() && legacyBcryptFallback) {
+            sessionOpt = findLegacySession(sessionId, sessionRepository.findAll());
+        }
         if (sessionOpt.isPresent()) {
             SessionDto session = sessionOpt.get();
             sessionRepository.delete(session);
+            sessionCache.evict(session.getHashedSessionId(), session.getUserId());
+            // Peers drop their cached copy when this reaches them on the session-commands topic.
+            kafkaProducerService.sendSessionCommand(
+                SessionEvent.delete(session.getHashedSessionId(), session.getUserId(), session.getExpiresAt()),
+                session.getUserId());
             log.info("Session invalidated for user: {}", session.getUserId());
         }
     }
     
-    public void cleanupExpiredSessions() {
-        try {
-            List<SessionDto> expiredSessions = sessionRepository.findAll().stream()
-                .filter(SessionDto::isExpired)
-                .toList();
-                
-            if (!expiredSessions.isEmpty()) {
-                sessionRepository.deleteAll(expiredSessions);
-                log.info("Cleaned up {} expired sessions", expiredSessions.size());
-            }
-        } catch (Exception e) {
-            log.error("Failed to cleanup expired sessions: {}", e.getMessage(), e);
+    private void invalidateSignedSession(String sessionId) {
+        Optional<SignedSessionToken> tokenOpt = signedSessionTokenCodec.verify(sessionId);
+        if (tokenOpt.isEmpty()) {
+            return;
         }
+        
+        SignedSessionToken token = tokenOpt.get();
+        // Apply locally first so this replica rejects the token immediately; peers catch up from Kafka.
+        sessionRevocationList.revokeToken(token.tokenId(), token.expiresAt());
+        kafkaProducerService.sendSessionCommand(
+            SessionEvent.delete(token.tokenId(), token.userId(), toLocalDateTime(token.expiresAt())), token.userId());
+        log.info("Signed session revoked for user: {}", token.userId());
     }
     
-    @Scheduled(fixedRateString = "#{${app.session.cleanup-interval-minutes:60} * 60 * 1000}")
-    public void scheduledCleanupExpiredSessions() {
-        log.debug("Running scheduled session cleanup (interval: {} minutes)", sessionCleanupIntervalMinutes);
-        cleanupExpiredSessions();
+    private static LocalDateTime toLocalDateTime(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
     }
     
     private boolean isNullOrEmpty(String value) {
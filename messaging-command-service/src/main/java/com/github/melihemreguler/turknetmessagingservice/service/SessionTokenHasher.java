@@ -0,0 +1,56 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Derives the stored form of a session token as HMAC-SHA256 under a server-side secret.
+ *
+ * <p>Unlike BCrypt the digest is deterministic, so a presented token can be
+ * resolved with a single point lookup on the unique {@code hashedSessionId}
+ * index instead of hashing against every candidate row. Session tokens are
+ * random 122-bit UUIDs, so a slow KDF adds no brute-force protection here.
+ */
+@Component
+public class SessionTokenHasher {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String BCRYPT_PREFIX = "$2";
+
+    private final ThreadLocal<Mac> mac;
+
+    public SessionTokenHasher(@Value("${app.session.token-secret}") String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("app.session.token-secret must be configured");
+        }
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        // Mac is stateful and not thread-safe; one initialised instance per request thread.
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Failed to initialise " + ALGORITHM, e);
+            }
+        });
+    }
+
+    public String hash(String sessionToken) {
+        byte[] digest = mac.get().doFinal(sessionToken.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    /**
+     * Whether a stored {@code hashedSessionId} was written by the pre-HMAC BCrypt scheme.
+     */
+    public static boolean isLegacyHash(String hashedSessionId) {
+        return hashedSessionId != null && hashedSessionId.startsWith(BCRYPT_PREFIX);
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.config.SessionSigningConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Issues and verifies self-contained session tokens of the form
+ * {@code <keyId>.<base64url(userId|issuedAt|expiresAt|tokenId)>.<base64url(hmac)>}.
+ *
+ * <p>Verification needs only the signing keys, so the interceptor can
+ * authenticate a request without a MongoDB round trip. Revocation is handled
+ * separately by {@link SessionRevocationList}.
+ */
+@Component
+@Slf4j
+public class SignedSessionTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String SEPARATOR = ".";
+    private static final String FIELD_SEPARATOR = "|";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SessionSigningConfig signingConfig;
+
+    public SignedSessionTokenCodec(SessionSigningConfig signingConfig) {
+        // Validation accepts signed tokens in either session mode, so a missing key is never harmless.
+        String activeKeyId = signingConfig.getActiveKeyId();
+        String activeKey = activeKeyId == null ? null : signingConfig.getKeys().get(activeKeyId);
+        if (activeKey == null || activeKey.isBlank()) {
+            throw new IllegalStateException("app.session.signing.keys." + activeKeyId + " must be configured");
+        }
+        signingConfig.getKeys().forEach((keyId, key) -> {
+            if (key == null || key.isBlank()) {
+                throw new IllegalStateException("app.session.signing.keys." + keyId + " must not be blank");
+            }
+        });
+        this.signingConfig = signingConfig;
+    }
+
+    public SignedSessionToken issue(String userId, Instant issuedAt, Instant expiresAt) {
+        String keyId = signingConfig.getActiveKeyId();
+        String secret = keyId == null ? null : signingConfig.getKeys().get(keyId);
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("No signing key configured for active key id: " + keyId);
+        }
+
+        String tokenId = UUID.randomUUID().toString();
+        String payload = String.join(FIELD_SEPARATOR,
+                userId,
+                String.valueOf(issuedAt.getEpochSecond()),
+                String.valueOf(expiresAt.getEpochSecond()),
+                tokenId);
+        String signingInput = keyId + SEPARATOR + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        String token = signingInput + SEPARATOR + ENCODER.encodeToString(sign(secret, signingInput));
+
+        return new SignedSessionToken(token, keyId, userId, tokenId,
+                Instant.ofEpochSecond(issuedAt.getEpochSecond()), Instant.ofEpochSecond(expiresAt.getEpochSecond()));
+    }
+
+    /**
+     * Returns the decoded token if its signature is valid under a known key.
+     * Expiry and revocation are left to the caller.
+     */
+    public Optional<SignedSessionToken> verify(String token) {
+        int firstDot = token.indexOf(SEPARATOR);
+        int lastDot = token.lastIndexOf(SEPARATOR);
+        if (firstDot <= 0 || lastDot == firstDot) {
+            return Optional.empty();
+        }
+
+        String keyId = token.substring(0, firstDot);
+        String secret = signingConfig.getKeys().get(keyId);
+        if (secret == null) {
+            log.debug("Signed session token references unknown key id: {}", keyId);
+            return Optional.empty();
+        }
+
+        try {
+            String signingInput = token.substring(0, lastDot);
+            byte[] presented = DECODER.decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(presented, sign(secret, signingInput))) {
+                return Optional.empty();
+            }
+
+            String payload = new String(DECODER.decode(token.substring(firstDot + 1, lastDot)), StandardCharsets.UTF_8);
+            String[] fields = payload.split("\\" + FIELD_SEPARATOR, -1);
+            if (fields.length != 4) {
+                return Optional.empty();
+            }
+            return Optional.of(new SignedSessionToken(token, keyId, fields[0], fields[3],
+                    Instant.ofEpochSecond(Long.parseLong(fields[1])),
+                    Instant.ofEpochSecond(Long.parseLong(fields[2]))));
+        } catch (IllegalArgumentException e) {
+            // Malformed base64 or numeric fields — treat as an invalid token, not a server error.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Cheap shape check used to route a presented session ID to the right validator.
+     * Stored-mode tokens are UUIDs and never contain a dot.
+     */
+    public static boolean isSignedToken(String token) {
+        return token != null && token.contains(SEPARATOR);
+    }
+
+    private byte[] sign(String secret, String signingInput) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac.doFinal(signingInput.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign session token", e);
+        }
+    }
+
+    public record SignedSessionToken(String token, String keyId, String userId, String tokenId,
+                                     Instant issuedAt, Instant expiresAt) {
+
+        public boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the Kafka key for message commands.
+ *
+ * <p>Records are keyed by threadId, so a conversation stays on one partition and
+ * is consumed in the order it was produced. A thread that sends more than
+ * {@code hot-thread-threshold} messages within {@code window-ms} (a broadcast or
+ * bot account) is logged and counted under {@value #HOT_THREADS_METRIC}, but keeps
+ * its key: spreading it over several partitions would need a thread sequence
+ * shared by every replica and a reorder buffer that outlives a poll to keep its
+ * order. A thread counts as hot again once a full window has passed below the
+ * threshold.
+ */
+@Component
+@Slf4j
+public class ThreadPartitioning {
+
+    static final String HOT_THREADS_METRIC = "kafka.producer.hot.threads";
+
+    private final Cache<String, ThreadTraffic> traffic;
+    private final long hotThreadThreshold;
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final Counter hotThreads;
+
+    @Autowired
+    public ThreadPartitioning(MeterRegistry meterRegistry,
+                              @Value("${app.kafka.partitioning.hot-thread-threshold:200}") long hotThreadThreshold,
+                              @Value("${app.kafka.partitioning.window-ms:1000}") long windowMillis,
+                              @Value("${app.kafka.partitioning.tracked-threads:100000}") long trackedThreads) {
+        this(meterRegistry, hotThreadThreshold, windowMillis, trackedThreads, System::currentTimeMillis);
+    }
+
+    ThreadPartitioning(MeterRegistry meterRegistry, long hotThreadThreshold, long windowMillis,
+                       long trackedThreads, LongSupplier clock) {
+        this.hotThreadThreshold = hotThreadThreshold;
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        this.hotThreads = meterRegistry.counter(HOT_THREADS_METRIC);
+        this.traffic = Caffeine.newBuilder()
+                .maximumSize(trackedThreads)
+                .expireAfterAccess(Duration.ofMillis(windowMillis * 2))
+                .build();
+    }
+
+    public String key(String threadId) {
+        if (threadId != null && hotThreadThreshold > 0) {
+            traffic.get(threadId, id -> new ThreadTraffic()).record(threadId, clock.getAsLong());
+        }
+        return threadId;
+    }
+
+    private final class ThreadTraffic {
+        private long windowStart;
+        private long sentInWindow;
+        private boolean hot;
+
+        synchronized void record(String threadId, long now) {
+            if (now - windowStart >= windowMillis) {
+                // Stay hot only if the window that just closed, and nothing older, was over the threshold.
+                hot = hot && sentInWindow > hotThreadThreshold && now - windowStart < 2 * windowMillis;
+                windowStart = now;
+                sentInWindow = 0;
+            }
+            sentInWindow++;
+            if (!hot && sentInWindow > hotThreadThreshold) {
+                hot = true;
+                hotThreads.increment();
+                log.info("Thread {} exceeded {} messages in {} ms", threadId, hotThreadThreshold, windowMillis);
+            }
+        }
+    }
+}
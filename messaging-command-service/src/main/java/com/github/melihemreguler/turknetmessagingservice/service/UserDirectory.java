@@ -0,0 +1,185 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.melihemreguler.turknetmessagingservice.dto.UserDto;
+import com.github.melihemreguler.turknetmessagingservice.enums.UserCommand;
+import com.github.melihemreguler.turknetmessagingservice.model.event.UserActivityEvent;
+import com.github.melihemreguler.turknetmessagingservice.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Bounded near-cache of the users directory (id and username), consulted by
+ * {@link MessageService} instead of the {@code users} collection when it
+ * resolves senders, recipients and conversation participants.
+ *
+ * <p>Users are loaded on demand, or in one query for a page of ids, and cached
+ * in both directions. Unknown users are not cached, so a user registered on a
+ * peer is found on the next lookup; usernames the {@link UsernameFilter} rules
+ * out are answered without a query. Every replica applies user commands from
+ * {@link UserEventListener}: a command naming a user other than a login
+ * attempt replaces that user's entries, dropping a username the id no longer
+ * carries. Entries also expire after the configured TTL as a backstop.
+ *
+ * <p>Hit, miss and eviction counts are published as {@code cache.*} meters
+ * tagged {@code cache=user_ids} and {@code cache=user_names}.
+ */
+@Component
+public class UserDirectory {
+
+    static final String IDS_CACHE_NAME = "user_ids";
+    static final String NAMES_CACHE_NAME = "user_names";
+
+    private final UserRepository userRepository;
+    private final UsernameFilter usernameFilter;
+    // userId -> username
+    private final Cache<String, String> usernamesById;
+    // username -> userId
+    private final Cache<String, String> idsByUsername;
+
+    public UserDirectory(UserRepository userRepository,
+                         UsernameFilter usernameFilter,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.users.directory.maximum-size:100000}") long maximumSize,
+                         @Value("${app.users.directory.ttl-seconds:3600}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.usernameFilter = usernameFilter;
+        this.usernamesById = newCache(maximumSize, ttlSeconds);
+        this.idsByUsername = newCache(maximumSize, ttlSeconds);
+        CaffeineCacheMetrics.monitor(meterRegistry, usernamesById, IDS_CACHE_NAME);
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByUsername, NAMES_CACHE_NAME);
+    }
+
+    public record Entry(String id, String username) {
+    }
+
+    public Optional<Entry> findById(String userId) {
+        String username = usernamesById.getIfPresent(userId);
+        if (username != null) {
+            return Optional.of(new Entry(userId, username));
+        }
+        return userRepository.findById(userId).map(this::remember);
+    }
+
+    public Optional<Entry> findByUsername(String username) {
+        String userId = idsByUsername.getIfPresent(username);
+        if (userId != null) {
+            return Optional.of(new Entry(userId, username));
+        }
+        if (!usernameFilter.mightExist(username)) {
+            return Optional.empty();
+        }
+        Optional<UserDto> user = userRepository.findByUsername(username);
+        if (user.isEmpty()) {
+            usernameFilter.recordFalsePositive();
+        }
+        return user.map(this::remember);
+    }
+
+    /**
+     * Users matching any of {@code userIds} or {@code usernames}, reading all
+     * the ones not cached with a single query. Users that do not exist are left
+     * out of the result.
+     */
+    public List<Entry> findAll(Collection<String> userIds, Collection<String> usernames) {
+        List<Entry> found = new ArrayList<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String userId : userIds) {
+            String username = usernamesById.getIfPresent(userId);
+            if (username != null) {
+                found.add(new Entry(userId, username));
+            } else {
+                missingIds.add(userId);
+            }
+        }
+        List<String> missingUsernames = new ArrayList<>();
+        for (String username : usernames) {
+            String userId = idsByUsername.getIfPresent(username);
+            if (userId != null) {
+                found.add(new Entry(userId, username));
+            } else if (usernameFilter.mightExist(username)) {
+                missingUsernames.add(username);
+            }
+        }
+        if (missingIds.isEmpty() && missingUsernames.isEmpty()) {
+            return found;
+        }
+
+        Set<String> unmatchedUsernames = new HashSet<>(missingUsernames);
+        for (UserDto user : userRepository.findByIdInOrUsernameIn(missingIds, missingUsernames)) {
+            found.add(remember(user));
+            unmatchedUsernames.remove(user.getUsername());
+        }
+        unmatchedUsernames.forEach(username -> usernameFilter.recordFalsePositive());
+        return found;
+    }
+
+    /**
+     * Usernames for {@code userIds}, reading the ones not cached in a single query.
+     * Ids that do not resolve to a user are left out of the result.
+     */
+    public Map<String, String> usernamesOf(Collection<String> userIds) {
+        return usernamesById.getAll(userIds, missing -> {
+            Map<String, String> loaded = new HashMap<>();
+            for (UserDto user : userRepository.findAllById(List.<String>copyOf(missing))) {
+                if (user.getUsername() != null) {
+                    idsByUsername.put(user.getUsername(), user.getId());
+                    loaded.put(user.getId(), user.getUsername());
+                }
+            }
+            return loaded;
+        });
+    }
+
+    public void put(String userId, String username) {
+        if (userId == null || username == null) {
+            return;
+        }
+        usernameFilter.add(username);
+        String previous = usernamesById.asMap().put(userId, username);
+        if (previous != null && !previous.equals(username)) {
+            idsByUsername.asMap().remove(previous, userId);
+        }
+        idsByUsername.put(username, userId);
+    }
+
+    public void onUserEvent(UserActivityEvent event) {
+        if (handles(event.command())) {
+            put(event.userId(), event.username());
+        }
+    }
+
+    /**
+     * Login attempts only repeat what the directory already knows, so they are
+     * skipped without being decoded.
+     */
+    public boolean handles(String command) {
+        return !UserCommand.LOGIN_ATTEMPT.getCommand().equals(command);
+    }
+
+    private Entry remember(UserDto user) {
+        put(user.getId(), user.getUsername());
+        return new Entry(user.getId(), user.getUsername());
+    }
+
+    private static Cache<String, String> newCache(long maximumSize, long ttlSeconds) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+}
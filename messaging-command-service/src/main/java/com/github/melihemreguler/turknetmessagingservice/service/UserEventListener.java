@@ -0,0 +1,72 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodecRegistry;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventHeaders;
+import com.github.melihemreguler.turknetmessagingservice.model.event.UserActivityEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Broadcast consumer of the user-commands topic that keeps this replica's
+ * {@link UserDirectory} in line with registrations on other replicas.
+ *
+ * <p>Like {@link SessionEventListener}, every replica joins under its own
+ * consumer group, and records whose command header the directory ignores are
+ * dropped before their payload is decoded. On assignment it seeks back to the
+ * time {@link UsernameFilter} was read from MongoDB, or starts from the latest
+ * offset if the filter has not been read yet, so the filter hears of every
+ * registration it could not have read. It also tells the filter when it holds
+ * partitions and how far behind it is, since the filter rules names out only
+ * while this feed keeps up.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserEventListener implements ConsumerSeekAware {
+
+    private final EventCodecRegistry eventCodecs;
+    private final UserDirectory userDirectory;
+    private final UsernameFilter usernameFilter;
+
+    @KafkaListener(
+            topics = "${app.kafka.topics.user-commands}",
+            groupId = "${spring.application.name}-user-events-${random.uuid}",
+            containerFactory = "broadcastListenerContainerFactory",
+            autoStartup = "${app.users.events.listener-enabled:true}",
+            properties = "auto.offset.reset=latest")
+    public void onMessage(ConsumerRecord<String, byte[]> record) {
+        usernameFilter.feedApplied(record.timestamp());
+        String command = EventHeaders.value(record.headers(), EventHeaders.COMMAND_HEADER);
+        if (command != null && !userDirectory.handles(command)) {
+            return;
+        }
+
+        try {
+            userDirectory.onUserEvent(eventCodecs.decode(record.value(), record.headers(), UserActivityEvent.class));
+        } catch (Exception e) {
+            log.warn("Skipping unreadable user event: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        long resumeFrom = usernameFilter.feedResumeFrom();
+        if (resumeFrom > 0) {
+            callback.seekToTimestamp(assignments.keySet(), resumeFrom);
+        }
+        usernameFilter.feedAssigned();
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        usernameFilter.feedRevoked();
+    }
+}
@@ -9,6 +9,7 @@ import com.github.melihemreguler.turknetmessagingservice.repository.UserReposito
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -24,10 +25,12 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final KafkaProducerService kafkaProducerService;
     private final SessionService sessionService;
+    private final UserDirectory userDirectory;
+    private final UsernameFilter usernameFilter;
 
     public UserDto registerUser(UserRegisterRequest request, String ipAddress, String userAgent) {
         // Check if user already exists
-        if (userRepository.existsByUsername(request.username())) {
+        if (usernameFilter.mightExist(request.username()) && userRepository.existsByUsername(request.username())) {
             throw new ConflictException("Username already exists");
         }
 
@@ -36,8 +39,14 @@ public class UserService {
         userDto.setPasswordHash(passwordEncoder.encode(request.password()));
         userDto.setCreatedAt(LocalDateTime.now());
 
-        UserDto savedUser = userRepository.save(userDto);
-
+        UserDto savedUser;
+        try {
+            savedUser = userRepository.save(userDto);
+        } catch (DuplicateKeyException e) {
+            // Registered on another replica before its creation event reached this one.
+            throw new ConflictException("Username already exists", e);
+        }
+        userDirectory.put(savedUser.getId(), savedUser.getUsername());
 
         UserActivityEvent activityEvent = UserActivityEvent.createUserCreation(
                 savedUser.getUsername(),
@@ -55,7 +64,13 @@ public class UserService {
     public AuthenticationResult authenticateUser(LoginRequest request, String ipAddress, String userAgent) {
         String username = request.getTrimmedUsername();
 
-        Optional<UserDto> userOpt = userRepository.findByUsername(username);
+        Optional<UserDto> userOpt = Optional.empty();
+        if (usernameFilter.mightExist(username)) {
+            userOpt = userRepository.findByUsername(username);
+            if (userOpt.isEmpty()) {
+                usernameFilter.recordFalsePositive();
+            }
+        }
 
         AuthenticationResult result = validateUserCredentials(userOpt, request.password(), username);
 
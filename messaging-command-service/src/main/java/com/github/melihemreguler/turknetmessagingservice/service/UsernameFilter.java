@@ -0,0 +1,208 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.config.SchedulingConfig;
+import com.github.melihemreguler.turknetmessagingservice.dto.UserDto;
+import com.github.melihemreguler.turknetmessagingservice.repository.UserRepository;
+import com.github.melihemreguler.turknetmessagingservice.util.ScalableBloomFilter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of every registered username, so that lookups of names that do
+ * not exist (typos, enumeration) are answered without a MongoDB query.
+ *
+ * <p>The filter is built from the {@code users} collection shortly after
+ * startup and rebuilt every {@code rebuild-interval-ms}. Between builds it is
+ * kept current by {@link UserDirectory}, which adds every username it learns
+ * of, including registrations on other replicas that arrive through
+ * {@link UserEventListener}. That feed resumes from the time the filter was
+ * read, so no registration falls between the two. A name is only ruled out
+ * while the filter can be trusted: it has been built, the feed has held its
+ * partitions for {@code max-feed-lag-ms}, and the last event it applied was at
+ * most that old. Otherwise, and whenever the filter is disabled, every name may
+ * exist.
+ *
+ * <p>Publishes {@code users.username.filter.lookups} tagged {@code result}
+ * ({@code absent} answered here, {@code possible} sent on to MongoDB),
+ * {@code users.username.filter.false.positives} for possible hits MongoDB did
+ * not find, and gauges for the estimated false-positive rate and the filter's
+ * size in bytes.
+ */
+@Component
+@Slf4j
+public class UsernameFilter {
+
+    static final String LOOKUPS_METRIC = "users.username.filter.lookups";
+    static final String FALSE_POSITIVES_METRIC = "users.username.filter.false.positives";
+    static final String FALSE_POSITIVE_RATE_METRIC = "users.username.filter.false.positive.rate";
+    static final String BYTES_METRIC = "users.username.filter.bytes";
+
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+    private final long maxFeedLagMillis;
+    private final LongSupplier clock;
+
+    // Writers and the rebuild's swap hold this lock so no username added mid-rebuild is lost.
+    private final Object lock = new Object();
+    private volatile ScalableBloomFilter filter;
+    private volatile boolean ready;
+    // Usernames added while a rebuild is reading the collection; null when none is running.
+    private List<String> addedDuringRebuild;
+    // When the installed filter, and the rebuild under way, started reading users; 0 if none.
+    private volatile long installedSnapshotAt;
+    private volatile long rebuildSnapshotAt;
+    // When the user-event feed got its partitions, 0 while it has none, and how old its last event was.
+    private volatile long feedAssignedAt;
+    private volatile long feedLagMillis;
+
+    @Autowired
+    public UsernameFilter(UserRepository userRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.users.username-filter.enabled:true}") boolean enabled,
+                          @Value("${app.users.username-filter.initial-capacity:100000}") long initialCapacity,
+                          @Value("${app.users.username-filter.false-positive-rate:0.001}") double falsePositiveRate,
+                          @Value("${app.users.username-filter.max-feed-lag-ms:5000}") long maxFeedLagMillis) {
+        this(userRepository, meterRegistry, enabled, initialCapacity, falsePositiveRate, maxFeedLagMillis,
+                System::currentTimeMillis);
+    }
+
+    UsernameFilter(UserRepository userRepository, MeterRegistry meterRegistry, boolean enabled, long initialCapacity,
+                   double falsePositiveRate, long maxFeedLagMillis, LongSupplier clock) {
+        this.userRepository = userRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxFeedLagMillis = maxFeedLagMillis;
+        this.clock = clock;
+        this.filter = ScalableBloomFilter.create(initialCapacity, falsePositiveRate);
+
+        Gauge.builder(FALSE_POSITIVE_RATE_METRIC, this, self -> self.filter.expectedFalsePositiveRate())
+                .register(meterRegistry);
+        Gauge.builder(BYTES_METRIC, this, self -> self.filter.bitSize() / 8.0)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@code false} only if no user has {@code username}; {@code true} means the
+     * caller has to ask MongoDB.
+     */
+    public boolean mightExist(String username) {
+        if (username == null || !trusted()) {
+            return true;
+        }
+        boolean possible = filter.mightContain(username);
+        meterRegistry.counter(LOOKUPS_METRIC, "result", possible ? "possible" : "absent").increment();
+        return possible;
+    }
+
+    /**
+     * Reports that MongoDB had no user for a name {@link #mightExist} let through.
+     */
+    public void recordFalsePositive() {
+        if (trusted()) {
+            meterRegistry.counter(FALSE_POSITIVES_METRIC).increment();
+        }
+    }
+
+    /**
+     * Record timestamp the user-event feed has to resume from so that it and the
+     * filter together miss no registration, allowing {@code max-feed-lag-ms} for
+     * clock skew between replicas; 0 when the next build will cover everything.
+     */
+    public long feedResumeFrom() {
+        long installed = installedSnapshotAt;
+        long snapshot = installed > 0 ? installed : rebuildSnapshotAt;
+        return snapshot > 0 ? Math.max(1, snapshot - maxFeedLagMillis) : 0;
+    }
+
+    public void feedAssigned() {
+        feedLagMillis = 0;
+        feedAssignedAt = clock.getAsLong();
+    }
+
+    public void feedRevoked() {
+        feedAssignedAt = 0;
+    }
+
+    public void feedApplied(long eventTimestamp) {
+        feedLagMillis = Math.max(0, clock.getAsLong() - eventTimestamp);
+    }
+
+    private boolean trusted() {
+        long assignedAt = feedAssignedAt;
+        return ready && assignedAt > 0 && clock.getAsLong() - assignedAt >= maxFeedLagMillis
+                && feedLagMillis <= maxFeedLagMillis;
+    }
+
+    public void add(String username) {
+        if (username == null) {
+            return;
+        }
+        synchronized (lock) {
+            filter.put(username);
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(username);
+            }
+        }
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.users.username-filter.rebuild-interval-ms:3600000}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            addedDuringRebuild = new ArrayList<>();
+            rebuildSnapshotAt = clock.getAsLong();
+        }
+
+        ScalableBloomFilter rebuilt = ScalableBloomFilter.create(initialCapacity, falsePositiveRate);
+        long count = 0;
+        try (Stream<UserDto> users = userRepository.streamAllUsernames()) {
+            Iterator<UserDto> cursor = users.iterator();
+            while (cursor.hasNext()) {
+                String username = cursor.next().getUsername();
+                if (username != null) {
+                    rebuilt.put(username);
+                    count++;
+                }
+            }
+        } catch (Exception e) {
+            synchronized (lock) {
+                addedDuringRebuild = null;
+                rebuildSnapshotAt = 0;
+            }
+            log.warn("Username filter rebuild failed; {}: {}",
+                    ready ? "keeping the previous filter" : "all usernames are looked up in MongoDB", e.getMessage());
+            return;
+        }
+
+        synchronized (lock) {
+            addedDuringRebuild.forEach(rebuilt::put);
+            addedDuringRebuild = null;
+            filter = rebuilt;
+            installedSnapshotAt = rebuildSnapshotAt;
+            rebuildSnapshotAt = 0;
+            ready = true;
+        }
+        log.info("Username filter rebuilt with {} usernames in {} layer(s), {} bytes",
+                count, rebuilt.layerCount(), rebuilt.bitSize() / 8);
+    }
+}
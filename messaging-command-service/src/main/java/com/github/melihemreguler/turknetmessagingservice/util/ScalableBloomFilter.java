@@ -0,0 +1,93 @@
+package com.github.melihemreguler.turknetmessagingservice.util;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over strings that grows instead of degrading once it holds more
+ * keys than it was sized for.
+ *
+ * <p>Keys go into the newest of a series of {@link BloomFilter} layers. When
+ * that layer reaches its capacity a new one is added with twice the capacity
+ * and half the false-positive rate, so the compound rate stays below about
+ * twice the configured one however many keys are added. Lookups are lock-free;
+ * {@link #put} is synchronized so capacity accounting stays exact.
+ */
+public final class ScalableBloomFilter {
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private volatile Layer[] layers;
+
+    private ScalableBloomFilter(Layer first) {
+        this.layers = new Layer[]{first};
+    }
+
+    public static ScalableBloomFilter create(long initialCapacity, double falsePositiveRate) {
+        return new ScalableBloomFilter(new Layer(Math.max(1, initialCapacity), falsePositiveRate));
+    }
+
+    public synchronized void put(String key) {
+        // Keys that already test positive add nothing, and must not use up capacity.
+        if (mightContain(key)) {
+            return;
+        }
+        Layer current = layers[layers.length - 1];
+        if (current.count >= current.capacity) {
+            current = new Layer(current.capacity * GROWTH_FACTOR, current.falsePositiveRate * TIGHTENING_RATIO);
+            Layer[] grown = Arrays.copyOf(layers, layers.length + 1);
+            grown[grown.length - 1] = current;
+            layers = grown;
+        }
+        current.filter.put(key);
+        current.count++;
+    }
+
+    public boolean mightContain(String key) {
+        for (Layer layer : layers) {
+            if (layer.filter.mightContain(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int layerCount() {
+        return layers.length;
+    }
+
+    public long bitSize() {
+        long bits = 0;
+        for (Layer layer : layers) {
+            bits += layer.filter.bitSize();
+        }
+        return bits;
+    }
+
+    /**
+     * Chance that an absent key tests positive in at least one layer, from each
+     * layer's current fill.
+     */
+    public double expectedFalsePositiveRate() {
+        double allNegative = 1.0;
+        for (Layer layer : layers) {
+            allNegative *= 1.0 - layer.filter.expectedFalsePositiveRate();
+        }
+        return 1.0 - allNegative;
+    }
+
+    private static final class Layer {
+
+        private final BloomFilter filter;
+        private final long capacity;
+        private final double falsePositiveRate;
+        // Guarded by the enclosing filter's monitor.
+        private long count;
+
+        Layer(long capacity, double falsePositiveRate) {
+            this.filter = BloomFilter.create(capacity, falsePositiveRate);
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.melihemreguler.turknetmessagingservice.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import com.github.melihemreguler.turknetmessagingservice.model.event.UserActivityEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCodecRegistryTest {
+
+    private ObjectMapper objectMapper;
+    private JsonEventCodec json;
+    private SmileEventCodec smile;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .registerModule(new ParameterNamesModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        json = new JsonEventCodec(objectMapper);
+        smile = new SmileEventCodec(objectMapper);
+    }
+
+    @Test
+    void givenConfiguredFormat_whenEncoder_thenThatCodecIsUsed() {
+        assertEquals(SmileEventCodec.CONTENT_TYPE, registry(SmileEventCodec.NAME).encoder().contentType());
+        assertEquals(JsonEventCodec.CONTENT_TYPE, registry(JsonEventCodec.NAME).encoder().contentType());
+        assertThrows(IllegalStateException.class, () -> registry("xml"));
+    }
+
+    @Test
+    void givenEveryEventType_whenSmileRoundTrip_thenEqualAndSmallerThanJson() throws Exception {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<Object> events = List.of(
+                new MessageCommand("SEND_MESSAGE", "alice-bob", "u1", "alice", "hello", now, "u2", "bob",
+                        "650000000000000000000001"),
+                new SessionEvent("UPSERT_SESSION", "digest", "u1", now, "127.0.0.1", "Mozilla/5.0", now),
+                new UserActivityEvent("LOGIN_ATTEMPT", "alice", "u1", "127.0.0.1", "Mozilla/5.0", true, now, null, null));
+
+        for (Object event : events) {
+            byte[] encoded = smile.encode(event);
+
+            assertEquals(event, registry(JsonEventCodec.NAME).decode(encoded, headers(SmileEventCodec.CONTENT_TYPE, "1"),
+                    event.getClass()));
+            assertTrue(encoded.length < json.encode(event).length,
+                    event.getClass().getSimpleName() + " should encode smaller than JSON");
+        }
+    }
+
+    @Test
+    void givenRecordWithoutHeaders_whenDecode_thenReadAsJson() throws Exception {
+        SessionEvent event = SessionEvent.deleteUserSessions("u1");
+
+        SessionEvent decoded = registry(SmileEventCodec.NAME)
+                .decode(objectMapper.writeValueAsBytes(event), new RecordHeaders(), SessionEvent.class);
+
+        assertEquals("u1", decoded.userId());
+    }
+
+    @Test
+    void givenUnknownContentTypeOrNewerSchema_whenDecode_thenRejected() throws Exception {
+        byte[] payload = smile.encode(SessionEvent.deleteUserSessions("u1"));
+        EventCodecRegistry registry = registry(JsonEventCodec.NAME);
+
+        assertThrows(IOException.class, () -> registry.decode(payload, headers("application/avro", "1"), SessionEvent.class));
+        assertThrows(IOException.class, () -> registry.decode(payload,
+                headers(SmileEventCodec.CONTENT_TYPE, String.valueOf(EventSchemas.CURRENT_VERSION + 1)), SessionEvent.class));
+    }
+
+    private EventCodecRegistry registry(String format) {
+        return new EventCodecRegistry(List.of(json, smile), format);
+    }
+
+    private static Headers headers(String contentType, String schemaVersion) {
+        Headers headers = new RecordHeaders();
+        headers.add(EventCodecRegistry.CONTENT_TYPE_HEADER, contentType.getBytes(StandardCharsets.UTF_8));
+        headers.add(EventCodecRegistry.SCHEMA_VERSION_HEADER, schemaVersion.getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+}
@@ -1,23 +1,32 @@
 package com.github.melihemreguler.turknetmessagingservice.controller;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.exception.KafkaPublishingException;
 import com.github.melihemreguler.turknetmessagingservice.model.request.MessageRequest;
 import com.github.melihemreguler.turknetmessagingservice.model.response.MessageResponse;
 import com.github.melihemreguler.turknetmessagingservice.model.response.PaginatedResponse;
 import com.github.melihemreguler.turknetmessagingservice.service.MessageService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(MessageController.class)
@@ -41,7 +50,7 @@ public class MessageControllerTest {
     @Test
     void givenNoMessagesFound_whenGetConversation_thenReturnsThreadNotFound() throws Exception {
         when(messageService.getConversationSecurityInfo(any())).thenReturn(new MessageService.ConversationSecurityInfo(USER_ID, "recipientId"));
-        when(messageService.getConversationPaginated(any())).thenThrow(new com.github.melihemreguler.turknetmessagingservice.exception.ThreadNotFoundException("No conversation found"));
+        when(messageService.getConversationPaginated(any(), any())).thenThrow(new com.github.melihemreguler.turknetmessagingservice.exception.ThreadNotFoundException("No conversation found"));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/messages/history")
                 .param("userId", "recipientId")
@@ -72,25 +81,123 @@ public class MessageControllerTest {
     private MessageService messageService;
 
     @Test
-    void givenValidSendMessageRequest_whenSendMessage_thenReturnsCreated() throws Exception {
+    void givenValidSendMessageRequest_whenSendMessage_thenReturnsAccepted() throws Exception {
         // given
         MessageRequest request = new MessageRequest("recipientUser", "Hello!");
         MessageDto messageDto = new MessageDto("thread-1", "senderId", "senderUser", "Hello!");
         MessageResponse response = new MessageResponse("thread-1", "senderId", "Hello!", LocalDateTime.now());
 
-        when(messageService.sendMessage(anyString(), any(MessageRequest.class))).thenReturn(messageDto);
+        when(messageService.sendMessage(anyString(), any(MessageRequest.class), isNull())).thenReturn(messageDto);
 
         // when & then
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(sendMessage(null)))
+                .andExpect(MockMvcResultMatchers.status().isAccepted())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.success").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Message accepted for delivery"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.data.threadId").value("thread-1"));
+    }
+
+    @Test
+    void givenDurableModeAndBrokerAck_whenSendMessage_thenReturnsCreated() throws Exception {
+        // given
+        MessageDto messageDto = new MessageDto("thread-1", "senderId", "senderUser", "Hello!");
+        when(messageService.sendMessageAcknowledged(anyString(), any(MessageRequest.class), isNull()))
+                .thenReturn(new MessageService.PendingMessage(messageDto, CompletableFuture.completedFuture(messageDto)));
+
+        // when & then
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(sendMessage("durable")))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Message sent successfully"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.data.threadId").value("thread-1"));
+        verify(messageService, never()).sendMessage(anyString(), any(MessageRequest.class), any());
+    }
+
+    @Test
+    void givenDurableModeAndBrokerFailure_whenSendMessage_thenReturnsServiceUnavailable() throws Exception {
+        // given
+        MessageDto messageDto = new MessageDto("thread-1", "senderId", "senderUser", "Hello!");
+        when(messageService.sendMessageAcknowledged(anyString(), any(MessageRequest.class), isNull()))
+                .thenReturn(new MessageService.PendingMessage(messageDto, CompletableFuture.supplyAsync(() -> {
+                    throw new KafkaPublishingException("Kafka did not acknowledge message command");
+                })));
+
+        // when & then
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(sendMessage("durable")))
+                .andExpect(MockMvcResultMatchers.status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void givenDurableModeAndBrokerSlow_whenSendTimesOut_thenReturnsAcceptedWithMessage() throws Exception {
+        // given
+        MessageDto messageDto = new MessageDto("650000000000000000000001", "thread-1", "senderId", "senderUser",
+                "Hello!", LocalDateTime.now());
+        when(messageService.sendMessageAcknowledged(anyString(), any(MessageRequest.class), isNull()))
+                .thenReturn(new MessageService.PendingMessage(messageDto, new CompletableFuture<>()));
+        MvcResult started = sendMessage("durable");
+
+        // when
+        MockAsyncContext asyncContext = (MockAsyncContext) started.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started))
+                .andExpect(MockMvcResultMatchers.status().isAccepted())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Message accepted; delivery not yet confirmed"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.data.id").value("650000000000000000000001"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.data.threadId").value("thread-1"));
+    }
+
+    @Test
+    void givenIdempotencyKeyHeader_whenSendMessage_thenKeyIsPassedToService() throws Exception {
+        // given
+        MessageDto messageDto = new MessageDto("thread-1", "senderId", "senderUser", "Hello!");
+        when(messageService.sendMessage(anyString(), any(MessageRequest.class), eq("retry-1"))).thenReturn(messageDto);
+
+        // when
+        MvcResult started = mockMvc.perform(MockMvcRequestBuilders.post("/api/messages/send")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"recipient\": \"recipientUser\", \"content\": \"Hello!\"}")
+                        .header("X-Session-Id", SESSION_ID)
+                        .header("X-User-Id", USER_ID)
+                        .header("Idempotency-Key", "retry-1")
+                        .requestAttr("currentUserId", USER_ID))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started))
+                .andExpect(MockMvcResultMatchers.status().isAccepted())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.data.threadId").value("thread-1"));
+    }
+
+    @Test
+    void givenUnknownSendMode_whenSendMessage_thenReturnsBadRequest() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders.post("/api/messages/send")
+                .param("mode", "eventually")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"recipient\": \"recipientUser\", \"content\": \"Hello!\"}")
+                .header("X-Session-Id", SESSION_ID)
+                .header("X-User-Id", USER_ID))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Unsupported send mode: eventually"));
+    }
+
+    private MvcResult sendMessage(String mode) throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post("/api/messages/send")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content("{\"recipient\": \"recipientUser\", \"content\": \"Hello!\"}")
                 .header("X-Session-Id", SESSION_ID)
                 .header("X-User-Id", USER_ID)
-                .requestAttr("currentUserId", USER_ID))
-                .andExpect(MockMvcResultMatchers.status().isCreated())
-                .andExpect(MockMvcResultMatchers.jsonPath("$.success").value(true))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Message sent successfully"))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.data.threadId").value("thread-1"));
+                .requestAttr("currentUserId", USER_ID);
+        if (mode != null) {
+            request.param("mode", mode);
+        }
+        return mockMvc.perform(request)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
     }
 
     @Test
@@ -100,7 +207,7 @@ public class MessageControllerTest {
         PaginatedResponse<MessageDto> paginated = PaginatedResponse.of(List.of(messageDto), 1, 50, 0);
 
         when(messageService.getConversationSecurityInfo(any())).thenReturn(new MessageService.ConversationSecurityInfo("senderId", "recipientId"));
-        when(messageService.getConversationPaginated(any())).thenReturn(paginated);
+        when(messageService.getConversationPaginated(any(), any())).thenReturn(paginated);
 
         // when & then
         mockMvc.perform(MockMvcRequestBuilders.get("/api/messages/history")
@@ -129,4 +236,42 @@ public class MessageControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.success").value(false))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Either userId or username parameter must be provided"));
     }
+
+    @Test
+    void givenCursorHistoryRequest_whenGetConversationByCursor_thenReturnsPageWithNextCursor() throws Exception {
+        // given
+        MessageDto messageDto = new MessageDto("thread-1", "senderId", "senderUser", "Hello!");
+        when(messageService.getConversationSecurityInfo(any())).thenReturn(new MessageService.ConversationSecurityInfo("senderId", "recipientId"));
+        when(messageService.getConversationByCursor(any(), any(), eq("cursor-1"), isNull()))
+                .thenReturn(com.github.melihemreguler.turknetmessagingservice.model.response.CursorPageResponse.of(List.of(messageDto), 20, "cursor-2"));
+
+        // when & then
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/messages/history/cursor")
+                .param("userId", "recipientId")
+                .param("limit", "20")
+                .param("before", "cursor-1")
+                .header("X-Session-Id", SESSION_ID)
+                .header("X-User-Id", USER_ID)
+                .requestAttr("currentUserId", USER_ID))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.data.data[0].threadId").value("thread-1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.data.nextCursor").value("cursor-2"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.data.hasMore").value(true));
+    }
+
+    @Test
+    void givenInvalidCursor_whenGetConversationByCursor_thenReturnsBadRequest() throws Exception {
+        // given
+        when(messageService.getConversationSecurityInfo(any())).thenReturn(new MessageService.ConversationSecurityInfo("senderId", "recipientId"));
+        when(messageService.getConversationByCursor(any(), any(), any(), any())).thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        // when & then
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/messages/history/cursor")
+                .param("userId", "recipientId")
+                .param("before", "garbage")
+                .header("X-Session-Id", SESSION_ID)
+                .header("X-User-Id", USER_ID)
+                .requestAttr("currentUserId", USER_ID))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
 }
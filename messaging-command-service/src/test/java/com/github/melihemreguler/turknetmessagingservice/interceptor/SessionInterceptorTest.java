@@ -41,6 +41,7 @@ class SessionInterceptorTest {
         boolean result = interceptor.preHandle(request, response, handler);
         // Then
         assertTrue(result);
+        Mockito.verify(mockSessionService).recordActivity(sessionDto);
     }
 
     @Test
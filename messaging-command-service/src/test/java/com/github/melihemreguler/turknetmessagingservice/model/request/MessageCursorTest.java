@@ -0,0 +1,35 @@
+package com.github.melihemreguler.turknetmessagingservice.model.request;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageCursorTest {
+
+    @Test
+    void givenCursor_whenEncodeAndDecode_thenRoundTrips() {
+        MessageCursor cursor = new MessageCursor("65a1b2c3d4e5f60718293a4b");
+
+        String encoded = cursor.encode();
+
+        assertEquals(cursor, MessageCursor.decode(encoded));
+    }
+
+    @Test
+    void givenLegacyTimestampAndIdCursor_whenDecode_thenKeepsTheId() {
+        String legacy = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "2024-05-01T10:00:00.123|65a1b2c3d4e5f60718293a4b".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(new MessageCursor("65a1b2c3d4e5f60718293a4b"), MessageCursor.decode(legacy));
+    }
+
+    @Test
+    void givenGarbage_whenDecode_thenThrowsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("bm8tc2VwYXJhdG9y"));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("bm90LWEtZGF0ZXxhYmM"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.melihemreguler.turknetmessagingservice.repository;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.ConversationDto;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationRepositoryImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private ConversationRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        repository = new ConversationRepositoryImpl(mongoTemplate);
+    }
+
+    @Test
+    void findInboxPage_queriesByUserSortedByLastMessageAtWithSkipAndLimit() {
+        // Given
+        ConversationDto returned = new ConversationDto();
+        when(mongoTemplate.find(any(Query.class), eq(ConversationDto.class))).thenReturn(List.of(returned));
+
+        // When
+        List<ConversationDto> result = repository.findInboxPage("abc123", 5, 10);
+
+        // Then
+        assertEquals(List.of(returned), result);
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(ConversationDto.class));
+        Query query = captor.getValue();
+        assertEquals(new Document("userId", "abc123"), query.getQueryObject());
+        assertEquals(new Document("lastMessageAt", -1), query.getSortObject());
+        assertEquals(10, query.getSkip());
+        assertEquals(5, query.getLimit());
+    }
+}
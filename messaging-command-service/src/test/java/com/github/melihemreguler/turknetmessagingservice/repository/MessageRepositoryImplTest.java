@@ -1,28 +1,22 @@
 package com.github.melihemreguler.turknetmessagingservice.repository;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
-import com.mongodb.client.DistinctIterable;
-import com.mongodb.client.MongoCollection;
+import com.github.melihemreguler.turknetmessagingservice.model.request.MessageCursor;
 import org.bson.Document;
-import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -37,131 +31,60 @@ class MessageRepositoryImplTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         repository = new MessageRepositoryImpl(mongoTemplate);
+        when(mongoTemplate.find(any(Query.class), eq(MessageDto.class))).thenReturn(List.of());
     }
 
     @Test
-    void findLatestPerThreadForUser_buildsExpectedPipelineAndDelegatesToTemplate() {
-        // Given
-        String userId = "abc123";
-        MessageDto returned = new MessageDto("abc123-zzz", "abc123", "alice", "hi");
-        @SuppressWarnings("unchecked")
-        AggregationResults<MessageDto> agg = (AggregationResults<MessageDto>) mock(AggregationResults.class);
-        when(agg.getMappedResults()).thenReturn(List.of(returned));
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("messages"), eq(MessageDto.class)))
-                .thenReturn(agg);
-
+    void findThreadPageBefore_withoutCursor_scansNewestFirst() {
         // When
-        List<MessageDto> result = repository.findLatestPerThreadForUser(userId, 5, 10);
-
-        // Then — result is passed through
-        assertEquals(1, result.size());
-        assertEquals(returned, result.get(0));
-
-        // And — the pipeline is shaped correctly
-        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
-        verify(mongoTemplate).aggregate(captor.capture(), eq("messages"), eq(MessageDto.class));
-        List<Document> stages = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
-
-        // $match with regex containing userId
-        Document matchStage = findStage(stages, "$match");
-        assertNotNull(matchStage, "Expected $match stage");
-        Document matchBody = (Document) matchStage.get("$match");
-        Object threadId = matchBody.get("threadId");
-        assertTrue(threadId.toString().contains(userId),
-                "Expected $match regex to mention userId, got: " + threadId);
-
-        // $group with $$ROOT
-        Document groupStage = findStage(stages, "$group");
-        assertNotNull(groupStage, "Expected $group stage");
-        Document groupBody = (Document) groupStage.get("$group");
-        assertEquals("$threadId", groupBody.get("_id"));
-        Document latest = (Document) groupBody.get("latest");
-        assertEquals("$$ROOT", latest.get("$first"));
-
-        // $replaceRoot
-        Document replaceRootStage = findStage(stages, "$replaceRoot");
-        assertNotNull(replaceRootStage);
-        assertEquals("$latest", ((Document) replaceRootStage.get("$replaceRoot")).get("newRoot"));
-
-        // $skip / $limit reflect the args
-        Document skipStage = findStage(stages, "$skip");
-        assertNotNull(skipStage);
-        assertEquals(10L, ((Number) skipStage.get("$skip")).longValue());
-        Document limitStage = findStage(stages, "$limit");
-        assertNotNull(limitStage);
-        assertEquals(5L, ((Number) limitStage.get("$limit")).longValue());
+        repository.findThreadPageBefore("a-b", null, 21);
+
+        // Then
+        Query query = capturedQuery();
+        assertEquals(new Document("threadId", "a-b"), query.getQueryObject());
+        assertEquals(new Document("_id", -1), query.getSortObject());
+        assertEquals(21, query.getLimit());
+        assertEquals(0, query.getSkip());
     }
 
     @Test
-    void findLatestPerThreadForUser_includesSortByTimestampDesc() {
+    void findThreadPageBefore_withCursor_boundsRangeById() {
         // Given
-        @SuppressWarnings("unchecked")
-        AggregationResults<MessageDto> agg = (AggregationResults<MessageDto>) mock(AggregationResults.class);
-        when(agg.getMappedResults()).thenReturn(List.of());
-        when(mongoTemplate.aggregate(any(Aggregation.class), eq("messages"), eq(MessageDto.class)))
-                .thenReturn(agg);
+        MessageCursor cursor = new MessageCursor("65a1b2c3d4e5f60718293a4b");
 
         // When
-        repository.findLatestPerThreadForUser("u1", 10, 0);
+        repository.findThreadPageBefore("a-b", cursor, 21);
 
         // Then
-        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
-        verify(mongoTemplate).aggregate(captor.capture(), eq("messages"), eq(MessageDto.class));
-        List<Document> stages = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
-
-        Document sortStage = findStage(stages, "$sort");
-        assertNotNull(sortStage, "Expected at least one $sort stage");
-        Document sortBody = (Document) sortStage.get("$sort");
-        assertEquals(-1, ((Number) sortBody.get("timestamp")).intValue());
+        Document filter = capturedQuery().getQueryObject();
+        assertEquals("a-b", filter.get("threadId"));
+        assertEquals(new Document("$lt", new ObjectId("65a1b2c3d4e5f60718293a4b")), filter.get("_id"));
     }
 
     @Test
-    void countThreadsForUser_returnsDistinctThreadIdCount() {
+    void findThreadPageAfter_scansOldestFirst() {
         // Given
-        @SuppressWarnings("unchecked")
-        MongoCollection<Document> collection = (MongoCollection<Document>) mock(MongoCollection.class);
-        @SuppressWarnings("unchecked")
-        DistinctIterable<String> distinct = (DistinctIterable<String>) mock(DistinctIterable.class);
-        when(mongoTemplate.getCollection("messages")).thenReturn(collection);
-        when(collection.distinct(eq("threadId"), any(Bson.class), eq(String.class))).thenReturn(distinct);
-        // .into(new ArrayList<>()) — capture the list arg and stub return as a populated list
-        when(distinct.into(any())).thenAnswer(inv -> {
-            ArrayList<String> target = inv.getArgument(0);
-            target.add("u1-u2");
-            target.add("u1-u3");
-            target.add("u1-u4");
-            return target;
-        });
+        MessageCursor cursor = new MessageCursor("65a1b2c3d4e5f60718293a4b");
 
         // When
-        long result = repository.countThreadsForUser("u1");
+        repository.findThreadPageAfter("a-b", cursor, 11);
 
         // Then
-        assertEquals(3L, result);
+        Query query = capturedQuery();
+        assertEquals(new Document("_id", 1), query.getSortObject());
+        assertEquals(new Document("$gt", new ObjectId("65a1b2c3d4e5f60718293a4b")), query.getQueryObject().get("_id"));
     }
 
     @Test
-    void countThreadsForUser_zeroWhenNoThreads() {
-        // Given
-        @SuppressWarnings("unchecked")
-        MongoCollection<Document> collection = (MongoCollection<Document>) mock(MongoCollection.class);
-        @SuppressWarnings("unchecked")
-        DistinctIterable<String> distinct = (DistinctIterable<String>) mock(DistinctIterable.class);
-        when(mongoTemplate.getCollection("messages")).thenReturn(collection);
-        when(collection.distinct(eq("threadId"), any(Bson.class), eq(String.class))).thenReturn(distinct);
-        when(distinct.into(any())).thenAnswer(inv -> inv.getArgument(0));
-
-        // When
-        long result = repository.countThreadsForUser("u1");
+    void givenNonObjectIdCursor_whenFindPage_thenThrowsIllegalArgument() {
+        MessageCursor cursor = new MessageCursor("not-an-object-id");
 
-        // Then
-        assertEquals(0L, result);
+        assertThrows(IllegalArgumentException.class, () -> repository.findThreadPageBefore("a-b", cursor, 10));
     }
 
-    private static Document findStage(List<Document> stages, String op) {
-        for (Document stage : stages) {
-            if (stage.containsKey(op)) return stage;
-        }
-        return null;
+    private Query capturedQuery() {
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(MessageDto.class));
+        return captor.getValue();
     }
 }
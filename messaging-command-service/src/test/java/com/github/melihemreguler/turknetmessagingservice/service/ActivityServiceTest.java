@@ -1,17 +1,19 @@
 package com.github.melihemreguler.turknetmessagingservice.service;
 
+import com.github.melihemreguler.turknetmessagingservice.dto.ActivityLogBucketDto;
 import com.github.melihemreguler.turknetmessagingservice.dto.ActivityLogDto;
 import com.github.melihemreguler.turknetmessagingservice.model.request.ActivityLogsRequest;
 import com.github.melihemreguler.turknetmessagingservice.model.response.PaginatedResponse;
-import com.github.melihemreguler.turknetmessagingservice.repository.ActivityLogRepository;
+import com.github.melihemreguler.turknetmessagingservice.repository.ActivityLogBucketRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -19,7 +21,7 @@ import static org.mockito.Mockito.*;
 
 class ActivityServiceTest {
     @Mock
-    private ActivityLogRepository activityLogRepository;
+    private ActivityLogBucketRepository activityLogBucketRepository;
 
     @InjectMocks
     private ActivityService activityService;
@@ -33,12 +35,10 @@ class ActivityServiceTest {
     void givenLogsExist_whenGetUserActivitiesPaginated_thenReturnsPaginatedResponse() {
         // Given
         String userId = "user-1";
-        ActivityLogsRequest request = new ActivityLogsRequest(0, 10);
-        ActivityLogDto.ActivityEntry entry = new ActivityLogDto.ActivityEntry();
-        ActivityLogDto activityLogDto = new ActivityLogDto();
-        activityLogDto.setLogs(List.of(entry));
-        when(activityLogRepository.findByUserIdWithPagination(eq(userId), anyInt(), anyInt())).thenReturn(Optional.of(activityLogDto));
-        when(activityLogRepository.countLogsByUserId(userId)).thenReturn(Optional.of(1));
+        ActivityLogsRequest request = new ActivityLogsRequest(10, 0);
+        ActivityLogBucketDto bucket = bucket("b1", "LOGIN_SUCCESS");
+        when(activityLogBucketRepository.findBucketHeaders(userId)).thenReturn(List.of(header("b1", 1)));
+        when(activityLogBucketRepository.findAllById(List.of("b1"))).thenReturn(List.of(bucket));
 
         // When
         PaginatedResponse<ActivityLogDto.ActivityEntry> result = activityService.getUserActivitiesPaginated(userId, request);
@@ -52,9 +52,8 @@ class ActivityServiceTest {
     void givenNoLogsExist_whenGetUserActivitiesPaginated_thenReturnsEmptyPaginatedResponse() {
         // Given
         String userId = "user-1";
-        ActivityLogsRequest request = new ActivityLogsRequest(0, 10);
-        when(activityLogRepository.findByUserIdWithPagination(eq(userId), anyInt(), anyInt())).thenReturn(Optional.empty());
-        when(activityLogRepository.countLogsByUserId(userId)).thenReturn(Optional.of(0));
+        ActivityLogsRequest request = new ActivityLogsRequest(10, 0);
+        when(activityLogBucketRepository.findBucketHeaders(userId)).thenReturn(List.of());
 
         // When
         PaginatedResponse<ActivityLogDto.ActivityEntry> result = activityService.getUserActivitiesPaginated(userId, request);
@@ -62,5 +61,58 @@ class ActivityServiceTest {
         // Then
         assertTrue(result.getData().isEmpty());
         assertEquals(0, result.getTotal());
+        verify(activityLogBucketRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void givenPageSpanningBuckets_whenGetUserActivitiesPaginated_thenLoadsOnlyOverlappingBucketsNewestFirst() {
+        // Given
+        String userId = "user-1";
+        // Newest bucket first: b3 = [e5, e6], b2 = [e3, e4], b1 = [e1, e2] (each stored oldest first).
+        when(activityLogBucketRepository.findBucketHeaders(userId))
+                .thenReturn(List.of(header("b3", 2), header("b2", 2), header("b1", 2)));
+        when(activityLogBucketRepository.findAllById(List.of("b3", "b2")))
+                .thenReturn(List.of(bucket("b2", "e3", "e4"), bucket("b3", "e5", "e6")));
+
+        // When
+        PaginatedResponse<ActivityLogDto.ActivityEntry> result =
+                activityService.getUserActivitiesPaginated(userId, new ActivityLogsRequest(2, 1));
+
+        // Then
+        assertEquals(6, result.getTotal());
+        assertEquals(List.of("e5", "e4"), result.getData().stream().map(ActivityLogDto.ActivityEntry::getAction).toList());
+        verify(activityLogBucketRepository).findAllById(List.of("b3", "b2"));
+    }
+
+    @Test
+    void givenOffsetPastEnd_whenGetUserActivitiesPaginated_thenReturnsEmptyPageWithTotal() {
+        // Given
+        String userId = "user-1";
+        when(activityLogBucketRepository.findBucketHeaders(userId)).thenReturn(List.of(header("b1", 3)));
+
+        // When
+        PaginatedResponse<ActivityLogDto.ActivityEntry> result =
+                activityService.getUserActivitiesPaginated(userId, new ActivityLogsRequest(10, 5));
+
+        // Then
+        assertTrue(result.getData().isEmpty());
+        assertEquals(3, result.getTotal());
+    }
+
+    private static ActivityLogBucketDto header(String id, int count) {
+        ActivityLogBucketDto header = new ActivityLogBucketDto();
+        header.setId(id);
+        header.setCount(count);
+        return header;
+    }
+
+    private static ActivityLogBucketDto bucket(String id, String... actions) {
+        List<ActivityLogDto.ActivityEntry> logs = new ArrayList<>();
+        for (String action : actions) {
+            logs.add(new ActivityLogDto.ActivityEntry("127.0.0.1", "JUnit", true, LocalDateTime.now(), null, action));
+        }
+        ActivityLogBucketDto bucket = header(id, logs.size());
+        bucket.setLogs(logs);
+        return bucket;
     }
 }
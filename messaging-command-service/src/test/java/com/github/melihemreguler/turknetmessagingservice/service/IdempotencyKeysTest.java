@@ -0,0 +1,127 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.IdempotencyKeyDto;
+import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotencyKeysTest {
+
+    private IdempotencyKeyRepository repository;
+    private MeterRegistry meterRegistry;
+    private AtomicLong now;
+    private IdempotencyKeys keys;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyKeyRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        now = new AtomicLong(System.currentTimeMillis());
+        keys = new IdempotencyKeys(repository, meterRegistry, 60, 8, 2, now::get);
+    }
+
+    @Test
+    void givenNewKey_whenRecordIfAbsent_thenStoredAndFoundLocally() {
+        IdempotencyKeys.Entry entry = entry("650000000000000000000001");
+
+        assertTrue(keys.recordIfAbsent("u1", "k1", entry).isEmpty());
+
+        verify(repository).insert(argThatId("u1:k1"));
+        assertSame(entry, keys.find("u1", "k1").orElseThrow());
+        assertTrue(keys.find("u2", "k1").isEmpty());
+        assertEquals(1, meterRegistry.get(IdempotencyKeys.REPLAYS_METRIC)
+                .tag("source", IdempotencyKeys.SOURCE_LOCAL).counter().count());
+    }
+
+    @Test
+    void givenKeyRecordedLocally_whenRecordIfAbsentAgain_thenEarlierEntryReturnedWithoutStoreRoundTrip() {
+        IdempotencyKeys.Entry first = entry("650000000000000000000001");
+        keys.recordIfAbsent("u1", "k1", first);
+
+        Optional<IdempotencyKeys.Entry> earlier = keys.recordIfAbsent("u1", "k1", entry("650000000000000000000002"));
+
+        assertSame(first, earlier.orElseThrow());
+        verify(repository, times(1)).insert(any(IdempotencyKeyDto.class));
+    }
+
+    @Test
+    void givenKeyTakenByAnotherReplica_whenRecordIfAbsent_thenStoredMessageReturned() {
+        when(repository.insert(any(IdempotencyKeyDto.class))).thenThrow(new DuplicateKeyException("E11000"));
+        when(repository.findById("u1:k1")).thenReturn(Optional.of(new IdempotencyKeyDto("u1:k1",
+                "650000000000000000000001", "u1-u2", "u1", "alice", "hi", LocalDateTime.now(), 7,
+                LocalDateTime.now().plusMinutes(1))));
+
+        IdempotencyKeys.Entry earlier = keys.recordIfAbsent("u1", "k1", entry("650000000000000000000002")).orElseThrow();
+
+        assertEquals("650000000000000000000001", earlier.message().getId());
+        assertEquals(7, earlier.fingerprint());
+        assertTrue(earlier.acknowledged().isDone());
+        assertSame(earlier, keys.find("u1", "k1").orElseThrow());
+        assertEquals(1, meterRegistry.get(IdempotencyKeys.REPLAYS_METRIC)
+                .tag("source", IdempotencyKeys.SOURCE_STORE).counter().count());
+    }
+
+    @Test
+    void givenStoreUnavailable_whenRecordIfAbsent_thenKeyIsStillRecordedLocally() {
+        when(repository.insert(any(IdempotencyKeyDto.class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        IdempotencyKeys.Entry entry = entry("650000000000000000000001");
+
+        assertTrue(keys.recordIfAbsent("u1", "k1", entry).isEmpty());
+        assertSame(entry, keys.find("u1", "k1").orElseThrow());
+    }
+
+    @Test
+    void givenWindowPassed_whenFind_thenKeyIsForgotten() {
+        keys.recordIfAbsent("u1", "k1", entry("650000000000000000000001"));
+
+        now.addAndGet(60_000);
+
+        assertTrue(keys.find("u1", "k1").isEmpty());
+        assertEquals(0, keys.size());
+    }
+
+    @Test
+    void givenStripeFull_whenRecordIfAbsent_thenOldestKeysAreDropped() {
+        for (int i = 0; i < 50; i++) {
+            keys.recordIfAbsent("u1", "k" + i, entry("6500000000000000000000" + String.format("%02d", i)));
+        }
+
+        assertTrue(keys.size() <= 8);
+        assertTrue(keys.find("u1", "k49").isPresent());
+    }
+
+    @Test
+    void givenReleasedKey_whenFind_thenMissAndStoredKeyDeleted() {
+        IdempotencyKeys.Entry entry = entry("650000000000000000000001");
+        keys.recordIfAbsent("u1", "k1", entry);
+
+        keys.release("u1", "k1", entry);
+
+        assertTrue(keys.find("u1", "k1").isEmpty());
+        verify(repository).deleteByIdAndMessageId("u1:k1", "650000000000000000000001");
+    }
+
+    private static IdempotencyKeys.Entry entry(String messageId) {
+        MessageDto message = new MessageDto(messageId, "u1-u2", "u1", "alice", "hi", LocalDateTime.now());
+        return new IdempotencyKeys.Entry(message, 7, new CompletableFuture<>());
+    }
+
+    private static IdempotencyKeyDto argThatId(String id) {
+        return argThat(document -> id.equals(document.getId()));
+    }
+}
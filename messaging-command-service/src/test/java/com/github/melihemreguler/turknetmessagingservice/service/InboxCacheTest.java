@@ -0,0 +1,214 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.ConversationDto;
+import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import com.github.melihemreguler.turknetmessagingservice.repository.ConversationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InboxCacheTest {
+
+    private ConversationRepository conversationRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong now;
+    private InboxCache inboxCache;
+
+    @BeforeEach
+    void setUp() {
+        conversationRepository = mock(ConversationRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        now = new AtomicLong(1_000_000);
+        inboxCache = new InboxCache(conversationRepository, meterRegistry, true, 1000, 3, 60, now::get);
+        inboxCache.restart();
+    }
+
+    @Test
+    void givenInboxLoadedOnce_whenPolledAgain_thenServedWithoutQuery() {
+        stored("u1", conversation("u1", "u1-u2", "u2", "bob", 2), conversation("u1", "u1-u3", "u3", "carol", 1));
+
+        InboxCache.InboxPage first = inboxCache.page("u1", 1, 0).orElseThrow();
+        InboxCache.InboxPage second = inboxCache.page("u1", 1, 1).orElseThrow();
+
+        assertEquals(List.of("u1-u2"), threads(first));
+        assertEquals(List.of("u1-u3"), threads(second));
+        assertEquals(2, second.total());
+        verify(conversationRepository, times(1)).findInboxPage("u1", 4, 0);
+        verify(conversationRepository, never()).countByUserId(any());
+        assertEquals(1, lookups("hit"));
+        assertEquals(1, lookups("miss"));
+    }
+
+    @Test
+    void givenStoredMessage_whenPolled_thenThreadMovesToFrontForBothParticipants() {
+        stored("u1", conversation("u1", "u1-u2", "u2", "bob", 2), conversation("u1", "u1-u3", "u3", "carol", 1));
+        stored("u3", conversation("u3", "u1-u3", "u1", "alice", 1));
+        inboxCache.page("u1", 10, 0);
+        inboxCache.page("u3", 10, 0);
+
+        inboxCache.onMessageStored(event("u3", "carol", "u1", "alice", "u1-u3", 3));
+
+        InboxCache.InboxPage sender = inboxCache.page("u3", 10, 0).orElseThrow();
+        InboxCache.InboxPage recipient = inboxCache.page("u1", 10, 0).orElseThrow();
+        assertEquals(List.of("u1-u3", "u1-u2"), threads(recipient));
+        assertEquals("message 3", recipient.conversations().get(0).getLastMessage().getContent());
+        assertEquals("carol", recipient.conversations().get(0).getOtherUsername());
+        assertEquals("alice", sender.conversations().get(0).getOtherUsername());
+        verify(conversationRepository, times(2)).findInboxPage(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void givenFirstMessageOfNewThread_whenPolled_thenTotalGrows() {
+        stored("u1", conversation("u1", "u1-u2", "u2", "bob", 2));
+        inboxCache.page("u1", 10, 0);
+
+        inboxCache.onMessageStored(event("u4", "dave", "u1", "alice", "u1-u4", 3));
+
+        InboxCache.InboxPage page = inboxCache.page("u1", 10, 0).orElseThrow();
+        assertEquals(2, page.total());
+        assertEquals(List.of("u1-u4", "u1-u2"), threads(page));
+    }
+
+    @Test
+    void givenOlderMessageArrivesLate_whenApplied_thenNewerMessageStaysLatest() {
+        stored("u1", conversation("u1", "u1-u2", "u2", "bob", 5));
+        inboxCache.page("u1", 10, 0);
+
+        inboxCache.onMessageStored(event("u2", "bob", "u1", "alice", "u1-u2", 4));
+
+        assertEquals("message 5", inboxCache.page("u1", 10, 0).orElseThrow()
+                .conversations().get(0).getLastMessage().getContent());
+    }
+
+    @Test
+    void givenMessageStoredWhileInboxLoads_whenLoaded_thenMessageIsKept() {
+        when(conversationRepository.findInboxPage(eq("u1"), anyInt(), eq(0))).thenAnswer(invocation -> {
+            inboxCache.onMessageStored(event("u2", "bob", "u1", "alice", "u1-u2", 3));
+            return new ArrayList<>(List.of(conversation("u1", "u1-u3", "u3", "carol", 1)));
+        });
+
+        InboxCache.InboxPage page = inboxCache.page("u1", 10, 0).orElseThrow();
+
+        assertEquals(List.of("u1-u2", "u1-u3"), threads(page));
+    }
+
+    @Test
+    void givenParticipantsNeverPolled_whenMessageStored_thenNoInboxIsCachedForThem() {
+        stored("u1", conversation("u1", "u1-u3", "u3", "carol", 1));
+        inboxCache.page("u1", 10, 0);
+
+        inboxCache.onMessageStored(event("u2", "bob", "u4", "dave", "u2-u4", 3));
+        inboxCache.onMessageStored(event("u3", "carol", "u1", "alice", "u1-u3", 4));
+
+        assertEquals(1, meterRegistry.get("cache.size").tag("cache", InboxCache.CACHE_NAME).gauge().value());
+        assertEquals("message 4", inboxCache.page("u1", 10, 0).orElseThrow()
+                .conversations().get(0).getLastMessage().getContent());
+    }
+
+    @Test
+    void givenLoadFails_whenPolledAgain_thenLoadsWithoutEarlierMessages() {
+        when(conversationRepository.findInboxPage(eq("u1"), anyInt(), eq(0)))
+                .thenAnswer(invocation -> {
+                    inboxCache.onMessageStored(event("u2", "bob", "u1", "alice", "u1-u2", 3));
+                    throw new org.springframework.dao.DataAccessResourceFailureException("down");
+                })
+                .thenReturn(new ArrayList<>(List.of(conversation("u1", "u1-u3", "u3", "carol", 1))));
+        assertThrows(org.springframework.dao.DataAccessResourceFailureException.class, () -> inboxCache.page("u1", 10, 0));
+
+        InboxCache.InboxPage page = inboxCache.page("u1", 10, 0).orElseThrow();
+
+        assertEquals(List.of("u1-u3"), threads(page));
+    }
+
+    @Test
+    void givenEventWithoutUsername_whenApplied_thenKnownUsernameIsKept() {
+        stored("u1", conversation("u1", "u1-u2", "u2", "bob", 1));
+        inboxCache.page("u1", 10, 0);
+
+        inboxCache.onMessageStored(event("u1", "alice", "u2", null, "u1-u2", 2));
+
+        assertEquals("bob", inboxCache.page("u1", 10, 0).orElseThrow().conversations().get(0).getOtherUsername());
+    }
+
+    @Test
+    void givenMoreConversationsThanCachedPerUser_whenPolled_thenLeftToMongo() {
+        stored("u1", conversation("u1", "u1-u2", "u2", "bob", 4), conversation("u1", "u1-u3", "u3", "carol", 3),
+                conversation("u1", "u1-u4", "u4", "dave", 2), conversation("u1", "u1-u5", "u5", "erin", 1));
+
+        assertTrue(inboxCache.page("u1", 10, 0).isEmpty());
+        assertTrue(inboxCache.page("u1", 10, 0).isEmpty());
+
+        verify(conversationRepository, times(2)).findInboxPage("u1", 4, 0);
+    }
+
+    @Test
+    void givenVerifyIntervalPassed_whenPolled_thenReloaded() {
+        stored("u1", conversation("u1", "u1-u2", "u2", "bob", 1));
+        inboxCache.page("u1", 10, 0);
+
+        now.addAndGet(61_000);
+        inboxCache.page("u1", 10, 0);
+
+        verify(conversationRepository, times(2)).findInboxPage("u1", 4, 0);
+    }
+
+    @Test
+    void givenPartitionsReassigned_whenPolled_thenReloaded() {
+        stored("u1", conversation("u1", "u1-u2", "u2", "bob", 1));
+        inboxCache.page("u1", 10, 0);
+
+        inboxCache.restart();
+        inboxCache.page("u1", 10, 0);
+
+        verify(conversationRepository, times(2)).findInboxPage("u1", 4, 0);
+    }
+
+    @Test
+    void givenListenerNotAssigned_whenPolled_thenLeftToMongo() {
+        inboxCache.suspend();
+
+        assertTrue(inboxCache.page("u1", 10, 0).isEmpty());
+
+        verifyNoInteractions(conversationRepository);
+    }
+
+    private void stored(String userId, ConversationDto... conversations) {
+        when(conversationRepository.findInboxPage(eq(userId), anyInt(), eq(0))).thenReturn(new ArrayList<>(List.of(conversations)));
+    }
+
+    private double lookups(String result) {
+        var counter = meterRegistry.find(InboxCache.LOOKUPS_METRIC).tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static LocalDateTime time(int sequence) {
+        return LocalDateTime.of(2025, 1, 1, 12, 0, sequence);
+    }
+
+    private static ConversationDto conversation(String userId, String threadId, String otherUserId,
+                                                String otherUsername, int sequence) {
+        MessageDto message = new MessageDto(null, threadId, otherUserId, otherUsername, "message " + sequence, time(sequence));
+        return new ConversationDto(userId + ":" + threadId, userId, threadId, otherUserId, otherUsername, message,
+                time(sequence));
+    }
+
+    private static MessageCommand event(String senderId, String senderUsername, String recipientId,
+                                        String recipientUsername, String threadId, int sequence) {
+        return new MessageCommand("SEND_MESSAGE", threadId, senderId, senderUsername, "message " + sequence,
+                time(sequence), recipientId, recipientUsername, null);
+    }
+
+    private static List<String> threads(InboxCache.InboxPage page) {
+        return page.conversations().stream().map(ConversationDto::getThreadId).toList();
+    }
+}
@@ -1,19 +1,33 @@
 package com.github.melihemreguler.turknetmessagingservice.service;
 
+import com.github.melihemreguler.turknetmessagingservice.config.KafkaProducerTemplates;
 import com.github.melihemreguler.turknetmessagingservice.config.MessagingConfig;
 import com.github.melihemreguler.turknetmessagingservice.exception.KafkaPublishingException;
 import com.github.melihemreguler.turknetmessagingservice.exception.MessageSerializationException;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodec;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodecRegistry;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventHeaders;
 import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
 import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
 import com.github.melihemreguler.turknetmessagingservice.model.event.UserActivityEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -24,21 +38,21 @@ class KafkaProducerServiceTest {
     void givenValidUserActivityEvent_whenSendUserCommand_thenKafkaSendCalled() throws Exception {
         // Given
         UserActivityEvent event = mock(UserActivityEvent.class);
-        when(objectMapper.writeValueAsString(event)).thenReturn("json");
+        when(eventCodec.encode(event)).thenReturn(PAYLOAD);
         when(messagingConfig.getUserCommands()).thenReturn("user-topic");
 
         // When
         kafkaProducerService.sendUserCommand(event, "user-id");
 
         // Then
-        verify(kafkaTemplate).send("user-topic", "user-id", "json");
+        assertSent("user-topic");
     }
 
     @Test
     void givenJsonProcessingException_whenSendUserCommand_thenThrowsMessageSerializationException() throws Exception {
         // Given
         UserActivityEvent event = mock(UserActivityEvent.class);
-        when(objectMapper.writeValueAsString(event)).thenThrow(new JsonProcessingException("fail"){});
+        when(eventCodec.encode(event)).thenThrow(new JsonProcessingException("fail"){});
         when(messagingConfig.getUserCommands()).thenReturn("user-topic");
 
         // When & Then
@@ -50,9 +64,9 @@ class KafkaProducerServiceTest {
     void givenKafkaException_whenSendUserCommand_thenThrowsKafkaPublishingException() throws Exception {
         // Given
         UserActivityEvent event = mock(UserActivityEvent.class);
-        when(objectMapper.writeValueAsString(event)).thenReturn("json");
+        when(eventCodec.encode(event)).thenReturn(PAYLOAD);
         when(messagingConfig.getUserCommands()).thenReturn("user-topic");
-        doThrow(new RuntimeException("fail")).when(kafkaTemplate).send(anyString(), anyString(), anyString());
+        doThrow(new RuntimeException("fail")).when(kafkaTemplate).send(any(ProducerRecord.class));
 
         // When & Then
         assertThrows(KafkaPublishingException.class, () ->
@@ -63,21 +77,53 @@ class KafkaProducerServiceTest {
     void givenValidSessionEvent_whenSendSessionCommand_thenKafkaSendCalled() throws Exception {
         // Given
         SessionEvent event = mock(SessionEvent.class);
-        when(objectMapper.writeValueAsString(event)).thenReturn("json");
+        when(eventCodec.encode(event)).thenReturn(PAYLOAD);
+        when(messagingConfig.getSessionCommands()).thenReturn("session-topic");
+
+        // When
+        kafkaProducerService.sendSessionCommand(event, "user-id");
+
+        // Then
+        assertSent("session-topic");
+    }
+
+    @Test
+    void givenSessionEvent_whenSendSessionCommand_thenCommandAndIdsAreSentAsHeaders() throws Exception {
+        // Given
+        SessionEvent event = SessionEvent.delete("digest", "user-id", null);
+        when(eventCodec.encode(event)).thenReturn(PAYLOAD);
+        when(messagingConfig.getSessionCommands()).thenReturn("session-topic");
+
+        // When
+        kafkaProducerService.sendSessionCommand(event, "user-id");
+
+        // Then
+        ProducerRecord<String, byte[]> record = assertSent("session-topic");
+        assertEquals("DELETE_SESSION", EventHeaders.value(record.headers(), EventHeaders.COMMAND_HEADER));
+        assertEquals("user-id", EventHeaders.value(record.headers(), EventHeaders.USER_ID_HEADER));
+        assertEquals("digest", EventHeaders.value(record.headers(), EventHeaders.SESSION_ID_HEADER));
+    }
+
+    @Test
+    void givenUserWideSessionEvent_whenSendSessionCommand_thenNoSessionIdHeader() throws Exception {
+        // Given
+        SessionEvent event = SessionEvent.deleteUserSessions("user-id");
+        when(eventCodec.encode(event)).thenReturn(PAYLOAD);
         when(messagingConfig.getSessionCommands()).thenReturn("session-topic");
 
         // When
         kafkaProducerService.sendSessionCommand(event, "user-id");
 
         // Then
-        verify(kafkaTemplate).send("session-topic", "user-id", "json");
+        ProducerRecord<String, byte[]> record = assertSent("session-topic");
+        assertNull(record.headers().lastHeader(EventHeaders.SESSION_ID_HEADER));
     }
 
     @Test
     void givenJsonProcessingException_whenSendSessionCommand_thenThrowsMessageSerializationException() throws Exception {
         // Given
         SessionEvent event = mock(SessionEvent.class);
-        when(objectMapper.writeValueAsString(event)).thenThrow(new JsonProcessingException("fail"){});
+        when(eventCodec.encode(event)).thenThrow(new JsonProcessingException("fail"){});
         when(messagingConfig.getSessionCommands()).thenReturn("session-topic");
 
         // When & Then
@@ -89,48 +135,138 @@ class KafkaProducerServiceTest {
     void givenKafkaException_whenSendSessionCommand_thenThrowsKafkaPublishingException() throws Exception {
         // Given
         SessionEvent event = mock(SessionEvent.class);
-        when(objectMapper.writeValueAsString(event)).thenReturn("json");
+        when(eventCodec.encode(event)).thenReturn(PAYLOAD);
         when(messagingConfig.getSessionCommands()).thenReturn("session-topic");
-        doThrow(new RuntimeException("fail")).when(kafkaTemplate).send(anyString(), anyString(), anyString());
+        doThrow(new RuntimeException("fail")).when(kafkaTemplate).send(any(ProducerRecord.class));
 
         // When & Then
         assertThrows(KafkaPublishingException.class, () ->
                 kafkaProducerService.sendSessionCommand(event, "user-id"));
     }
+    private static final byte[] PAYLOAD = {1, 2, 3};
+
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaProducerTemplates kafkaTemplates;
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
     @Mock
     private MessagingConfig messagingConfig;
     @Mock
-    private ObjectMapper objectMapper;
+    private EventCodecRegistry eventCodecs;
+    @Mock
+    private EventCodec eventCodec;
 
-    @InjectMocks
+    private MeterRegistry meterRegistry;
+    private ThreadPartitioning threadPartitioning;
+    private CompletableFuture<SendResult<String, byte[]>> brokerAck;
     private KafkaProducerService kafkaProducerService;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        brokerAck = new CompletableFuture<>();
+        when(eventCodecs.encoder()).thenReturn(eventCodec);
+        when(eventCodec.contentType()).thenReturn("application/x-test");
+        when(kafkaTemplates.forTopic(anyString())).thenReturn(kafkaTemplate);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(brokerAck);
+        threadPartitioning = new ThreadPartitioning(meterRegistry, 2, 60_000, 100, () -> 0L);
+        kafkaProducerService = new KafkaProducerService(kafkaTemplates, messagingConfig, eventCodecs,
+                threadPartitioning, new PartitionSkewMeter(meterRegistry), meterRegistry);
+    }
+
+    private ProducerRecord<String, byte[]> assertSent(String topic) {
+        return assertSent(topic, "user-id");
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, byte[]> assertSent(String topic, String key) {
+        ArgumentCaptor<ProducerRecord<String, byte[]>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        ProducerRecord<String, byte[]> record = sent.getValue();
+        assertEquals(topic, record.topic());
+        assertEquals(key, record.key());
+        assertArrayEquals(PAYLOAD, record.value());
+        assertEquals("application/x-test", new String(
+                record.headers().lastHeader(EventCodecRegistry.CONTENT_TYPE_HEADER).value(), StandardCharsets.UTF_8));
+        assertNotNull(record.headers().lastHeader(EventCodecRegistry.SCHEMA_VERSION_HEADER));
+        return record;
     }
 
     @Test
-    void givenValidMessageCommand_whenSendMessageCommand_thenKafkaSendCalled() throws Exception {
+    void givenValidMessageCommand_whenSendMessageCommand_thenKafkaSendCalledKeyedByThread() throws Exception {
         // Given
         MessageCommand command = mock(MessageCommand.class);
-        when(objectMapper.writeValueAsString(command)).thenReturn("json");
+        when(command.threadId()).thenReturn("alice-bob");
+        when(eventCodec.encode(command)).thenReturn(PAYLOAD);
         when(messagingConfig.getMessageCommands()).thenReturn("topic");
 
         // When
         kafkaProducerService.sendMessageCommand(command, "user-id");
 
         // Then
-        verify(kafkaTemplate).send("topic", "user-id", "json");
+        ProducerRecord<String, byte[]> record = assertSent("topic", "alice-bob");
+        assertEquals("user-id", EventHeaders.value(record.headers(), EventHeaders.USER_ID_HEADER));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void givenHotThread_whenSendMessageCommand_thenRecordsKeepThreadKeyAndThreadIsCounted() throws Exception {
+        // Given
+        MessageCommand command = mock(MessageCommand.class);
+        when(command.threadId()).thenReturn("alice-bob");
+        when(eventCodec.encode(command)).thenReturn(PAYLOAD);
+        when(messagingConfig.getMessageCommands()).thenReturn("topic");
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            kafkaProducerService.sendMessageCommand(command, "user-id");
+        }
+
+        // Then
+        ArgumentCaptor<ProducerRecord<String, byte[]>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(4)).send(sent.capture());
+        assertEquals(List.of("alice-bob", "alice-bob", "alice-bob", "alice-bob"),
+                sent.getAllValues().stream().map(ProducerRecord::key).toList());
+        assertEquals(1, meterRegistry.get(ThreadPartitioning.HOT_THREADS_METRIC).counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void givenAcksFromUnevenPartitions_whenSend_thenPartitionSkewIsReported() throws Exception {
+        // Given
+        SessionEvent event = SessionEvent.deleteUserSessions("user-id");
+        when(eventCodec.encode(event)).thenReturn(PAYLOAD);
+        when(messagingConfig.getSessionCommands()).thenReturn("session-topic");
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(
+                CompletableFuture.completedFuture(ackedOn(0)),
+                CompletableFuture.completedFuture(ackedOn(0)),
+                CompletableFuture.completedFuture(ackedOn(0)),
+                CompletableFuture.completedFuture(ackedOn(1)));
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            kafkaProducerService.sendSessionCommand(event, "user-id");
+        }
+
+        // Then
+        assertEquals(3, meterRegistry.get(PartitionSkewMeter.RECORDS_METRIC)
+                .tags("topic", "session-topic", "partition", "0").counter().count());
+        assertEquals(1.5, meterRegistry.get(PartitionSkewMeter.SKEW_METRIC)
+                .tag("topic", "session-topic").gauge().value());
+    }
+
+    private static SendResult<String, byte[]> ackedOn(int partition) {
+        RecordMetadata metadata = new RecordMetadata(new TopicPartition("session-topic", partition), 0, 0, 0, 0, 0);
+        return new SendResult<>(null, metadata);
     }
 
     @Test
     void givenJsonProcessingException_whenSendMessageCommand_thenThrowsMessageSerializationException() throws Exception {
         // Given
         MessageCommand command = mock(MessageCommand.class);
-        when(objectMapper.writeValueAsString(command)).thenThrow(new JsonProcessingException("fail"){});
+        when(eventCodec.encode(command)).thenThrow(new JsonProcessingException("fail"){});
         when(messagingConfig.getMessageCommands()).thenReturn("topic");
 
         // When & Then
@@ -142,12 +278,51 @@ class KafkaProducerServiceTest {
     void givenKafkaException_whenSendMessageCommand_thenThrowsKafkaPublishingException() throws Exception {
         // Given
         MessageCommand command = mock(MessageCommand.class);
-        when(objectMapper.writeValueAsString(command)).thenReturn("json");
+        when(eventCodec.encode(command)).thenReturn(PAYLOAD);
         when(messagingConfig.getMessageCommands()).thenReturn("topic");
-        doThrow(new RuntimeException("fail")).when(kafkaTemplate).send(anyString(), anyString(), anyString());
+        doThrow(new RuntimeException("fail")).when(kafkaTemplate).send(any(ProducerRecord.class));
 
         // When & Then
         assertThrows(KafkaPublishingException.class, () ->
                 kafkaProducerService.sendMessageCommand(command, "user-id"));
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void givenBrokerAck_whenSendMessageCommand_thenFutureCompletesAndAckLatencyRecorded() throws Exception {
+        // Given
+        MessageCommand command = mock(MessageCommand.class);
+        when(eventCodec.encode(command)).thenReturn(PAYLOAD);
+        when(messagingConfig.getMessageCommands()).thenReturn("topic");
+        SendResult<String, byte[]> result = mock(SendResult.class);
+
+        // When
+        CompletableFuture<SendResult<String, byte[]>> ack = kafkaProducerService.sendMessageCommand(command, "user-id");
+        assertFalse(ack.isDone());
+        brokerAck.complete(result);
+
+        // Then
+        assertSame(result, ack.get());
+        verify(kafkaTemplates).forTopic("topic");
+        assertEquals(1, meterRegistry.get(KafkaProducerService.ACK_LATENCY_METRIC)
+                .tags("topic", "topic", "outcome", "success").timer().count());
+    }
+
+    @Test
+    void givenBrokerRejectsRecord_whenSendSessionCommand_thenFutureFailsWithKafkaPublishingException() throws Exception {
+        // Given
+        SessionEvent event = SessionEvent.deleteUserSessions("user-id");
+        when(eventCodec.encode(event)).thenReturn(PAYLOAD);
+        when(messagingConfig.getSessionCommands()).thenReturn("session-topic");
+
+        // When
+        CompletableFuture<SendResult<String, byte[]>> ack = kafkaProducerService.sendSessionCommand(event, "user-id");
+        brokerAck.completeExceptionally(new RuntimeException("not enough replicas"));
+
+        // Then
+        ExecutionException thrown = assertThrows(ExecutionException.class, ack::get);
+        assertInstanceOf(KafkaPublishingException.class, thrown.getCause());
+        assertEquals(1, meterRegistry.get(KafkaProducerService.ACK_LATENCY_METRIC)
+                .tags("topic", "session-topic", "outcome", "failure").timer().count());
+    }
 }
@@ -0,0 +1,100 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdGeneratorTest {
+
+    @Test
+    void givenIdsAcrossMilliseconds_whenNext_thenStrictlyIncreasingAndCarryCreationTime() {
+        AtomicLong now = new AtomicLong(1_700_000_000_123L);
+        MessageIdGenerator generator = new MessageIdGenerator(7, now::get);
+
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(new ObjectId(generator.next()));
+            ids.add(new ObjectId(generator.next()));
+            now.addAndGet(1);
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0, "ids must increase");
+        }
+        assertEquals(1_700_000_000L, ids.get(0).getTimestamp());
+    }
+
+    @Test
+    void givenClockSteppingBack_whenNext_thenIdsKeepIncreasing() {
+        AtomicLong now = new AtomicLong(1_700_000_000_500L);
+        MessageIdGenerator generator = new MessageIdGenerator(7, now::get);
+
+        ObjectId before = new ObjectId(generator.next());
+        now.addAndGet(-200);
+        ObjectId after = new ObjectId(generator.next());
+
+        assertTrue(before.compareTo(after) < 0);
+    }
+
+    @Test
+    void givenLegacyObjectIdFromAnEarlierSecond_whenNext_thenNewIdSortsAfterIt() {
+        MessageIdGenerator generator = new MessageIdGenerator(7, () -> 1_700_000_001_000L);
+        ObjectId legacy = new ObjectId(new java.util.Date(1_700_000_000_999L));
+
+        assertTrue(legacy.compareTo(new ObjectId(generator.next())) < 0);
+    }
+
+    @Test
+    void givenConcurrentCallers_whenNext_thenIdsAreUnique() throws Exception {
+        MessageIdGenerator generator = new MessageIdGenerator(7, () -> 1_700_000_000_000L);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    ids.add(generator.next());
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(80_000, ids.size());
+    }
+
+    @Test
+    void givenNoNodeId_whenConstruct_thenThrows() {
+        assertThrows(IllegalStateException.class, () -> new MessageIdGenerator(-1, () -> 1_700_000_000_000L));
+    }
+
+    @Test
+    void givenNodeIdWiderThanItsField_whenConstruct_thenThrows() {
+        assertThrows(IllegalStateException.class, () -> new MessageIdGenerator(1 << 16, () -> 1_700_000_000_000L));
+    }
+
+    @Test
+    void givenNodeLeaseNotHeld_whenNext_thenThrows() {
+        MessageIdGenerator generator = new MessageIdGenerator(7, () -> 1_700_000_000_000L, () -> false);
+
+        assertThrows(IllegalStateException.class, generator::next);
+    }
+
+    @Test
+    void givenDifferentNodesInSameMillisecond_whenNext_thenIdsDiffer() {
+        MessageIdGenerator first = new MessageIdGenerator(1, () -> 1_700_000_000_000L);
+        MessageIdGenerator second = new MessageIdGenerator(2, () -> 1_700_000_000_000L);
+
+        assertNotEquals(first.next(), second.next());
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessageNodeLeaseTest {
+
+    private MongoTemplate mongoTemplate;
+    private AtomicLong now;
+    private MessageNodeLease lease;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        now = new AtomicLong(1_700_000_000_000L);
+        lease = new MessageNodeLease(mongoTemplate, true, 30, 0, now::get);
+    }
+
+    @Test
+    void givenFreeNode_whenAcquire_thenHeldForHalfTheLease() {
+        // When
+        lease.acquire(3);
+
+        // Then
+        assertTrue(lease.isHeld());
+        now.addAndGet(15_000);
+        assertFalse(lease.isHeld());
+    }
+
+    @Test
+    void givenNodeHeldByAnotherReplica_whenAcquire_thenThrows() {
+        // Given
+        givenClaimCollides();
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> lease.acquire(3));
+        assertFalse(lease.isHeld());
+    }
+
+    @Test
+    void givenLeaseTakenOverBeforeRenewal_whenRenew_thenNoLongerHeldOnceItLapses() {
+        // Given
+        lease.acquire(3);
+        givenClaimCollides();
+        now.addAndGet(10_000);
+
+        // When
+        lease.renew();
+
+        // Then
+        assertTrue(lease.isHeld());
+        now.addAndGet(5_000);
+        assertFalse(lease.isHeld());
+    }
+
+    @Test
+    void givenHeldLease_whenRelease_thenOwnLeaseIsRemovedAndNoLongerHeld() {
+        // Given
+        lease.acquire(3);
+
+        // When
+        lease.release();
+
+        // Then
+        verify(mongoTemplate).remove(any(Query.class), eq(MessageNodeLease.COLLECTION));
+        assertFalse(lease.isHeld());
+    }
+
+    @Test
+    void givenLeaseDisabled_whenIsHeld_thenTrueWithoutTouchingMongo() {
+        // Given
+        MessageNodeLease disabled = new MessageNodeLease(mongoTemplate, false, 30, 0, now::get);
+
+        // When
+        disabled.acquire(3);
+
+        // Then
+        assertTrue(disabled.isHeld());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private void givenClaimCollides() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq(MessageNodeLease.COLLECTION)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key"));
+    }
+}
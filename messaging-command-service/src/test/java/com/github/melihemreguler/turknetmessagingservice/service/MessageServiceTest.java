@@ -1,24 +1,41 @@
 package com.github.melihemreguler.turknetmessagingservice.service;
 
+import com.github.melihemreguler.turknetmessagingservice.dto.ConversationDto;
 import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.dto.ThreadStatsDto;
 import com.github.melihemreguler.turknetmessagingservice.dto.UserDto;
+import com.github.melihemreguler.turknetmessagingservice.exception.ConflictException;
+import com.github.melihemreguler.turknetmessagingservice.exception.KafkaPublishingException;
 import com.github.melihemreguler.turknetmessagingservice.exception.UserNotFoundException;
 import com.github.melihemreguler.turknetmessagingservice.exception.ThreadNotFoundException;
 import com.github.melihemreguler.turknetmessagingservice.model.request.HistoryRequest;
+import com.github.melihemreguler.turknetmessagingservice.model.request.MessageCursor;
 import com.github.melihemreguler.turknetmessagingservice.model.request.MessageRequest;
 import com.github.melihemreguler.turknetmessagingservice.model.response.ConversationResponse;
+import com.github.melihemreguler.turknetmessagingservice.model.response.CursorPageResponse;
 import com.github.melihemreguler.turknetmessagingservice.model.response.PaginatedResponse;
 import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import com.github.melihemreguler.turknetmessagingservice.repository.ConversationRepository;
 import com.github.melihemreguler.turknetmessagingservice.repository.MessageRepository;
+import com.github.melihemreguler.turknetmessagingservice.repository.ThreadStatsRepository;
 import com.github.melihemreguler.turknetmessagingservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.kafka.support.SendResult;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -28,16 +45,34 @@ class MessageServiceTest {
     @Mock
     private MessageRepository messageRepository;
     @Mock
+    private ConversationRepository conversationRepository;
+    @Mock
+    private ThreadStatsRepository threadStatsRepository;
+    @Mock
     private UserRepository userRepository;
     @Mock
     private KafkaProducerService kafkaProducerService;
+    @Mock
+    private MessageIdGenerator messageIdGenerator;
+    @Mock
+    private IdempotencyKeys idempotencyKeys;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
+    private RecentMessages recentMessages;
+    private InboxCache inboxCache;
     private MessageService messageService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        UserDirectory userDirectory = new UserDirectory(userRepository,
+                new UsernameFilter(userRepository, new SimpleMeterRegistry(), false, 1000, 0.01, 5000),
+                new SimpleMeterRegistry(), 1000, 3600);
+        meterRegistry = new SimpleMeterRegistry();
+        recentMessages = new RecentMessages(meterRegistry, false, 50, 1 << 20, 300);
+        inboxCache = new InboxCache(conversationRepository, meterRegistry, false, 1000, 100, 300);
+        messageService = new MessageService(messageRepository, conversationRepository, threadStatsRepository,
+                userDirectory, kafkaProducerService, messageIdGenerator, idempotencyKeys, recentMessages, inboxCache, Runnable::run, meterRegistry);
     }
 
     @Test
@@ -50,14 +85,128 @@ class MessageServiceTest {
         when(userRepository.findById(senderId)).thenReturn(Optional.of(senderUser));
         when(userRepository.findByUsername("recipient")).thenReturn(Optional.of(recipientUser));
 
+        when(messageIdGenerator.next()).thenReturn("650000000000000000000001");
+
         // When
         MessageDto result = messageService.sendMessage(senderId, request);
 
         // Then
+        assertEquals("650000000000000000000001", result.getId());
         assertEquals(senderId, result.getSenderId());
         assertEquals("sender", result.getSenderUsername());
         assertEquals("content", result.getContent());
-        verify(kafkaProducerService).sendMessageCommand(any(MessageCommand.class), eq(senderId));
+        verify(kafkaProducerService).sendMessageCommand(argThat((MessageCommand command) ->
+                "recipient-id".equals(command.recipientId()) && "recipient".equals(command.recipientUsername())
+                        && "650000000000000000000001".equals(command.messageId())
+                        && command.timestamp().equals(result.getTimestamp())),
+                eq(senderId));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void givenValidSenderAndRecipient_whenSendMessageAcknowledged_thenCompletesOnlyAfterBrokerAck() throws Exception {
+        // Given
+        String senderId = "sender-id";
+        MessageRequest request = new MessageRequest("recipient", "content");
+        UserDto senderUser = new UserDto(); senderUser.setId(senderId); senderUser.setUsername("sender");
+        UserDto recipientUser = new UserDto(); recipientUser.setId("recipient-id"); recipientUser.setUsername("recipient");
+        when(userRepository.findById(senderId)).thenReturn(Optional.of(senderUser));
+        when(userRepository.findByUsername("recipient")).thenReturn(Optional.of(recipientUser));
+        CompletableFuture<SendResult<String, byte[]>> brokerAck = new CompletableFuture<>();
+        when(kafkaProducerService.sendMessageCommand(any(MessageCommand.class), eq(senderId))).thenReturn(brokerAck);
+
+        // When
+        CompletableFuture<MessageDto> result = messageService.sendMessageAcknowledged(senderId, request).acknowledged();
+
+        // Then
+        assertFalse(result.isDone());
+        brokerAck.complete(mock(SendResult.class));
+        assertEquals("content", result.get().getContent());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void givenNewIdempotencyKey_whenSendMessageAcknowledged_thenKeyRecordedAndCompletedOnAck() throws Exception {
+        // Given
+        String senderId = "sender-id";
+        givenUsers(senderId);
+        when(messageIdGenerator.next()).thenReturn("650000000000000000000001");
+        when(idempotencyKeys.find(senderId, "retry-1")).thenReturn(Optional.empty());
+        when(idempotencyKeys.recordIfAbsent(eq(senderId), eq("retry-1"), any())).thenReturn(Optional.empty());
+        CompletableFuture<SendResult<String, byte[]>> brokerAck = new CompletableFuture<>();
+        when(kafkaProducerService.sendMessageCommand(any(MessageCommand.class), eq(senderId))).thenReturn(brokerAck);
+
+        // When
+        CompletableFuture<MessageDto> result = messageService.sendMessageAcknowledged(
+                senderId, new MessageRequest("recipient", "content"), " retry-1 ").acknowledged();
+
+        // Then
+        ArgumentCaptor<IdempotencyKeys.Entry> recorded = ArgumentCaptor.forClass(IdempotencyKeys.Entry.class);
+        verify(idempotencyKeys).recordIfAbsent(eq(senderId), eq("retry-1"), recorded.capture());
+        assertEquals("650000000000000000000001", recorded.getValue().message().getId());
+        assertFalse(result.isDone());
+        brokerAck.complete(mock(SendResult.class));
+        assertEquals("650000000000000000000001", result.get().getId());
+        assertTrue(recorded.getValue().acknowledged().isDone());
+        verify(idempotencyKeys, never()).release(any(), any(), any());
+    }
+
+    @Test
+    void givenRetriedIdempotencyKey_whenSendMessage_thenOriginalMessageReturnedWithoutPublishing() {
+        // Given
+        String senderId = "sender-id";
+        MessageRequest request = new MessageRequest("recipient", "content");
+        MessageDto original = new MessageDto("650000000000000000000001", "recipient-id-sender-id", senderId,
+                "sender", "content", LocalDateTime.now());
+        when(idempotencyKeys.find(senderId, "retry-1")).thenReturn(Optional.of(new IdempotencyKeys.Entry(
+                original, Objects.hash("recipient", "content"), CompletableFuture.completedFuture(original))));
+
+        // When
+        MessageDto result = messageService.sendMessage(senderId, request, "retry-1");
+
+        // Then
+        assertSame(original, result);
+        verifyNoInteractions(userRepository, kafkaProducerService);
+    }
+
+    @Test
+    void givenIdempotencyKeyReusedForDifferentMessage_whenSendMessage_thenThrowsConflictException() {
+        // Given
+        String senderId = "sender-id";
+        MessageDto original = new MessageDto("650000000000000000000001", "recipient-id-sender-id", senderId,
+                "sender", "content", LocalDateTime.now());
+        when(idempotencyKeys.find(senderId, "retry-1")).thenReturn(Optional.of(new IdempotencyKeys.Entry(
+                original, Objects.hash("recipient", "content"), CompletableFuture.completedFuture(original))));
+
+        // When & Then
+        assertThrows(ConflictException.class, () ->
+                messageService.sendMessage(senderId, new MessageRequest("recipient", "other content"), "retry-1"));
+        verifyNoInteractions(kafkaProducerService);
+    }
+
+    @Test
+    void givenBrokerRejectsKeyedSend_whenSendMessageAcknowledged_thenKeyIsReleasedForRetry() {
+        // Given
+        String senderId = "sender-id";
+        givenUsers(senderId);
+        when(idempotencyKeys.find(senderId, "retry-1")).thenReturn(Optional.empty());
+        when(idempotencyKeys.recordIfAbsent(eq(senderId), eq("retry-1"), any())).thenReturn(Optional.empty());
+        when(kafkaProducerService.sendMessageCommand(any(MessageCommand.class), eq(senderId)))
+                .thenReturn(CompletableFuture.failedFuture(new KafkaPublishingException("not acknowledged")));
+
+        // When
+        CompletableFuture<MessageDto> result = messageService.sendMessageAcknowledged(
+                senderId, new MessageRequest("recipient", "content"), "retry-1").acknowledged();
+
+        // Then
+        assertTrue(result.isCompletedExceptionally());
+        verify(idempotencyKeys).release(eq(senderId), eq("retry-1"), any());
+    }
+
+    @Test
+    void givenOverlongIdempotencyKey_whenSendMessage_thenThrowsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> messageService.sendMessage("sender-id",
+                new MessageRequest("recipient", "content"), "k".repeat(IdempotencyKeys.MAX_KEY_LENGTH + 1)));
     }
 
     @Test
@@ -92,12 +241,10 @@ class MessageServiceTest {
         HistoryRequest request = new HistoryRequest("user1", "user2", null, 10, 0);
         UserDto user1 = new UserDto(); user1.setId("user1"); user1.setUsername("user1");
         UserDto user2 = new UserDto(); user2.setId("user2"); user2.setUsername("user2");
-        when(userRepository.findById("user1")).thenReturn(Optional.of(user1));
-        when(userRepository.findById("user2")).thenReturn(Optional.of(user2));
+        when(userRepository.findByIdInOrUsernameIn(any(), any())).thenReturn(List.of(user1, user2));
         MessageDto message = new MessageDto(threadId, "sender-id", "sender", "content");
         List<MessageDto> messages = List.of(message);
-        org.springframework.data.domain.Page<MessageDto> page = new org.springframework.data.domain.PageImpl<>(messages);
-        when(messageRepository.findByThreadIdOrderByTimestampDesc(eq(threadId), any())).thenReturn(page);
+        when(messageRepository.findThreadPageAt(eq(threadId), anyInt(), anyInt())).thenReturn(messages);
         when(messageRepository.countByThreadId(threadId)).thenReturn((long) messages.size());
 
         // When
@@ -108,6 +255,52 @@ class MessageServiceTest {
         assertEquals("content", result.getData().get(0).getContent());
     }
 
+    @Test
+    void givenOffsetNotMultipleOfLimit_whenGetConversation_thenPageStartsAtOffset() {
+        // Given
+        String threadId = "user1-user2";
+        HistoryRequest request = new HistoryRequest("user1", "user2", null, 10, 15);
+        UserDto user1 = new UserDto(); user1.setId("user1");
+        UserDto user2 = new UserDto(); user2.setId("user2");
+        when(userRepository.findByIdInOrUsernameIn(any(), any())).thenReturn(List.of(user1, user2));
+        when(messageRepository.findThreadPageAt(threadId, 15, 10))
+                .thenReturn(List.of(new MessageDto(threadId, "user1", "user1", "content")));
+        when(messageRepository.countByThreadId(threadId)).thenReturn(30L);
+
+        // When
+        PaginatedResponse<MessageDto> result = messageService.getConversationPaginated(request);
+
+        // Then
+        assertEquals(1, result.getData().size());
+        verify(messageRepository).findThreadPageAt(threadId, 15, 10);
+    }
+
+    @Test
+    void givenRecentMessagesHoldThread_whenUnalignedOffsetRead_thenSameWindowAsMongo() {
+        // Given
+        String threadId = "user1-user2";
+        RecentMessages rings = new RecentMessages(meterRegistry, true, 50, 1 << 20, 300);
+        rings.restart();
+        MessageService cached = new MessageService(messageRepository, conversationRepository, threadStatsRepository,
+                mock(UserDirectory.class), kafkaProducerService, messageIdGenerator, idempotencyKeys, rings, inboxCache,
+                Runnable::run, meterRegistry);
+        MessageService.ConversationSecurityInfo conversation = new MessageService.ConversationSecurityInfo("user1", "user2", threadId);
+        List<MessageDto> newestFirst = List.of(stored(threadId, 5), stored(threadId, 4), stored(threadId, 3),
+                stored(threadId, 2), stored(threadId, 1));
+        when(messageRepository.findThreadPageAt(threadId, 0, 5)).thenReturn(newestFirst);
+        when(messageRepository.countByThreadId(threadId)).thenReturn(5L);
+        cached.getConversationPaginated(conversation, new HistoryRequest("user1", "user2", null, 5, 0));
+
+        // When
+        List<MessageDto> fromRing = cached.getConversationPaginated(
+                conversation, new HistoryRequest("user1", "user2", null, 2, 1)).getData();
+
+        // Then
+        assertEquals(newestFirst.subList(1, 3).stream().map(MessageDto::getId).toList(),
+                fromRing.stream().map(MessageDto::getId).toList());
+        verify(messageRepository, never()).findThreadPageAt(threadId, 1, 2);
+    }
+
     @Test
     void givenInvalidThreadId_whenGetConversation_thenThrowsThreadNotFoundException() {
         // Given
@@ -115,21 +308,42 @@ class MessageServiceTest {
         HistoryRequest request = new HistoryRequest("user1", "user2", null, 10, 0);
         UserDto user1 = new UserDto(); user1.setId("user1"); user1.setUsername("user1");
         UserDto user2 = new UserDto(); user2.setId("user2"); user2.setUsername("user2");
-        when(userRepository.findById("user1")).thenReturn(Optional.of(user1));
-        when(userRepository.findById("user2")).thenReturn(Optional.of(user2));
-        org.springframework.data.domain.Page<MessageDto> emptyPage = new org.springframework.data.domain.PageImpl<>(List.of());
-        when(messageRepository.findByThreadIdOrderByTimestampDesc(eq(threadId), any())).thenReturn(emptyPage);
+        when(userRepository.findByIdInOrUsernameIn(any(), any())).thenReturn(List.of(user1, user2));
+        when(messageRepository.findThreadPageAt(eq(threadId), anyInt(), anyInt())).thenReturn(List.of());
         when(messageRepository.countByThreadId(threadId)).thenReturn(0L);
 
         // When & Then
         assertThrows(ThreadNotFoundException.class, () -> messageService.getConversationPaginated(request));
     }
 
+    @Test
+    void givenThreadStats_whenGetConversation_thenTotalComesFromCountersWithoutCounting() {
+        // Given
+        String threadId = "user1-user2";
+        HistoryRequest request = new HistoryRequest("user1", "user2", null, 10, 0);
+        UserDto user1 = new UserDto(); user1.setId("user1");
+        UserDto user2 = new UserDto(); user2.setId("user2");
+        when(userRepository.findByIdInOrUsernameIn(any(), any())).thenReturn(List.of(user1, user2));
+        when(messageRepository.findThreadPageAt(eq(threadId), anyInt(), anyInt()))
+                .thenReturn(List.of(new MessageDto(threadId, "user1", "user1", "content")));
+        ThreadStatsDto stats = new ThreadStatsDto();
+        stats.setThreadId(threadId);
+        stats.setMessageCount(1234);
+        when(threadStatsRepository.findById(threadId)).thenReturn(Optional.of(stats));
+
+        // When
+        PaginatedResponse<MessageDto> result = messageService.getConversationPaginated(request);
+
+        // Then
+        assertEquals(1234, result.getTotal());
+        verify(messageRepository, never()).countByThreadId(any());
+    }
+
     @Test
     void givenUserWithNoThreads_whenGetInbox_thenReturnsEmptyPage() {
         // Given
         String userId = "userA";
-        when(messageRepository.countThreadsForUser(userId)).thenReturn(0L);
+        when(conversationRepository.countByUserId(userId)).thenReturn(0L);
 
         // When
         PaginatedResponse<ConversationResponse> result = messageService.getInbox(userId, 20, 0);
@@ -137,27 +351,19 @@ class MessageServiceTest {
         // Then
         assertTrue(result.getData().isEmpty());
         assertEquals(0, result.getTotal());
-        verify(messageRepository, never()).findLatestPerThreadForUser(any(), anyInt(), anyInt());
+        verify(conversationRepository, never()).findInboxPage(any(), anyInt(), anyInt());
     }
 
     @Test
-    void givenUserWithThreads_whenGetInbox_thenResolvesOtherUsernameAndReturnsConversations() {
+    void givenUserWithThreads_whenGetInbox_thenReadsConversationsReadModel() {
         // Given
         String userId = "userA";
-        // Two threads: userA-userB (other = userB) and userA-userC (other = userC)
-        MessageDto m1 = new MessageDto("userA-userB", "userB", "userB", "hi A");
-        MessageDto m2 = new MessageDto("userA-userC", "userA", "userA", "later");
-        when(messageRepository.countThreadsForUser(userId)).thenReturn(2L);
-        when(messageRepository.findLatestPerThreadForUser(userId, 20, 0))
-                .thenReturn(List.of(m1, m2));
-
-        UserDto b = new UserDto(); b.setId("userB"); b.setUsername("bob");
-        UserDto c = new UserDto(); c.setId("userC"); c.setUsername("carol");
-        when(userRepository.findAllById(argThat((Iterable<String> ids) -> {
-            java.util.Set<String> s = new java.util.HashSet<>();
-            ids.forEach(s::add);
-            return s.equals(java.util.Set.of("userB", "userC"));
-        }))).thenReturn(List.of(b, c));
+        MessageDto m1 = new MessageDto("userA-userB", "userB", "bob", "hi A");
+        MessageDto m2 = new MessageDto("userA-userC", "userA", "alice", "later");
+        ConversationDto c1 = new ConversationDto("userA:userA-userB", userId, "userA-userB", "userB", "bob", m1, m1.getTimestamp());
+        ConversationDto c2 = new ConversationDto("userA:userA-userC", userId, "userA-userC", "userC", "carol", m2, m2.getTimestamp());
+        when(conversationRepository.countByUserId(userId)).thenReturn(2L);
+        when(conversationRepository.findInboxPage(userId, 20, 0)).thenReturn(List.of(c1, c2));
 
         // When
         PaginatedResponse<ConversationResponse> result = messageService.getInbox(userId, 20, 0);
@@ -174,16 +380,41 @@ class MessageServiceTest {
         ConversationResponse second = result.getData().get(1);
         assertEquals("userC", second.getOtherUserId());
         assertEquals("carol", second.getOtherUsername());
+        verifyNoInteractions(messageRepository, userRepository);
+    }
+
+    @Test
+    void givenCachedInbox_whenGetInbox_thenServedWithoutCountingOrPaging() {
+        // Given
+        String userId = "userA";
+        InboxCache cache = new InboxCache(conversationRepository, meterRegistry, true, 1000, 100, 300);
+        cache.restart();
+        MessageService cached = new MessageService(messageRepository, conversationRepository, threadStatsRepository,
+                mock(UserDirectory.class), kafkaProducerService, messageIdGenerator, idempotencyKeys, recentMessages, cache,
+                Runnable::run, meterRegistry);
+        MessageDto m1 = new MessageDto("userA-userB", "userB", "bob", "hi A");
+        ConversationDto c1 = new ConversationDto("userA:userA-userB", userId, "userA-userB", "userB", "bob", m1, m1.getTimestamp());
+        when(conversationRepository.findInboxPage(userId, 101, 0)).thenReturn(List.of(c1));
+        cached.getInbox(userId, 20, 0);
+
+        // When
+        PaginatedResponse<ConversationResponse> result = cached.getInbox(userId, 20, 0);
+
+        // Then
+        assertEquals(1, result.getTotal());
+        assertEquals("bob", result.getData().get(0).getOtherUsername());
+        verify(conversationRepository, times(1)).findInboxPage(any(), anyInt(), anyInt());
+        verify(conversationRepository, never()).countByUserId(any());
     }
 
     @Test
-    void givenMissingUserLookup_whenGetInbox_thenFallsBackToUnknownUsername() {
+    void givenConversationWithoutUsername_whenGetInbox_thenFallsBackToUnknownUsername() {
         // Given
         String userId = "userA";
-        MessageDto m = new MessageDto("userA-ghostX", "userA", "userA", "hello?");
-        when(messageRepository.countThreadsForUser(userId)).thenReturn(1L);
-        when(messageRepository.findLatestPerThreadForUser(userId, 20, 0)).thenReturn(List.of(m));
-        when(userRepository.findAllById(any(Iterable.class))).thenReturn(List.of());
+        MessageDto m = new MessageDto("userA-ghostX", "userA", "alice", "hello?");
+        ConversationDto c = new ConversationDto("userA:userA-ghostX", userId, "userA-ghostX", "ghostX", null, m, m.getTimestamp());
+        when(conversationRepository.countByUserId(userId)).thenReturn(1L);
+        when(conversationRepository.findInboxPage(userId, 20, 0)).thenReturn(List.of(c));
 
         // When
         PaginatedResponse<ConversationResponse> result = messageService.getInbox(userId, 20, 0);
@@ -194,4 +425,196 @@ class MessageServiceTest {
         assertEquals("ghostX", conv.getOtherUserId());
         assertEquals("unknown", conv.getOtherUsername());
     }
+
+    @Test
+    void givenConversationsWithoutUsernames_whenGetInbox_thenUsernamesResolvedInOneQuery() {
+        // Given
+        String userId = "userA";
+        MessageDto m = new MessageDto("userA-userB", "userA", "alice", "hello");
+        ConversationDto b = new ConversationDto("userA:userA-userB", userId, "userA-userB", "userB", null, m, m.getTimestamp());
+        ConversationDto c = new ConversationDto("userA:userA-userC", userId, "userA-userC", "userC", null, m, m.getTimestamp());
+        when(conversationRepository.countByUserId(userId)).thenReturn(2L);
+        when(conversationRepository.findInboxPage(userId, 20, 0)).thenReturn(List.of(b, c));
+        UserDto bob = new UserDto(); bob.setId("userB"); bob.setUsername("bob");
+        UserDto carol = new UserDto(); carol.setId("userC"); carol.setUsername("carol");
+        when(userRepository.findAllById(anyIterable())).thenReturn(List.of(bob, carol));
+
+        // When
+        PaginatedResponse<ConversationResponse> result = messageService.getInbox(userId, 20, 0);
+        messageService.getInbox(userId, 20, 0);
+
+        // Then
+        assertEquals(List.of("bob", "carol"), result.getData().stream().map(ConversationResponse::getOtherUsername).toList());
+        verify(userRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    void givenHistoryRequest_whenResolvedThenPaged_thenParticipantsReadInOneQueryAndStagesTimed() {
+        // Given
+        stubParticipants();
+        HistoryRequest request = new HistoryRequest("userA", "userB", null, 10, 0);
+        when(messageRepository.findThreadPageAt(eq("userA-userB"), anyInt(), anyInt()))
+                .thenReturn(List.of(new MessageDto("userA-userB", "userA", "alice", "content")));
+        when(messageRepository.countByThreadId("userA-userB")).thenReturn(1L);
+
+        // When
+        MessageService.ConversationSecurityInfo conversation = messageService.getConversationSecurityInfo(request);
+        messageService.getConversationPaginated(conversation, request);
+
+        // Then
+        assertEquals("userA-userB", conversation.threadId());
+        verify(userRepository, times(1)).findByIdInOrUsernameIn(argThat(ids -> ids.containsAll(List.of("userA", "userB"))), eq(List.of()));
+        verify(userRepository, never()).findById(any());
+        for (String stage : List.of(MessageService.STAGE_RESOLVE, MessageService.STAGE_PAGE, MessageService.STAGE_COUNT)) {
+            assertEquals(1, meterRegistry.get(MessageService.HISTORY_STAGE_METRIC).tag("stage", stage).timer().count());
+        }
+    }
+
+    @Test
+    void givenTargetByUsername_whenGetConversationSecurityInfo_thenResolvedWithCurrentUserInOneQuery() {
+        // Given
+        stubParticipants();
+
+        // When
+        MessageService.ConversationSecurityInfo conversation = messageService.getConversationSecurityInfo(
+                new HistoryRequest("userA", null, "bob", 10, 0));
+
+        // Then
+        assertEquals("userB", conversation.user2Id());
+        assertTrue(conversation.isUserPartOfConversation("userA"));
+        assertTrue(conversation.isUserPartOfConversation("userB"));
+        assertFalse(conversation.isUserPartOfConversation("userC"));
+        verify(userRepository).findByIdInOrUsernameIn(List.of("userA"), List.of("bob"));
+    }
+
+    @Test
+    void givenUnknownTarget_whenGetConversationSecurityInfo_thenThrowsUserNotFoundException() {
+        // Given
+        UserDto a = new UserDto(); a.setId("userA"); a.setUsername("alice");
+        when(userRepository.findByIdInOrUsernameIn(any(), any())).thenReturn(List.of(a));
+
+        // When & Then
+        assertThrows(UserNotFoundException.class, () -> messageService.getConversationSecurityInfo(
+                new HistoryRequest("userA", "ghost", null, 10, 0)));
+    }
+
+    @Test
+    void givenSlowCount_whenGetConversationPaginated_thenPageQueriedWhileCounting() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MessageService concurrent = new MessageService(messageRepository, conversationRepository,
+                    threadStatsRepository, mock(UserDirectory.class), kafkaProducerService, messageIdGenerator,
+                    idempotencyKeys, recentMessages, inboxCache, executor, meterRegistry);
+            CountDownLatch pageQueried = new CountDownLatch(1);
+            when(threadStatsRepository.findById("userA-userB")).thenAnswer(invocation -> {
+                // Only completes if the page query ran while the count was in flight.
+                assertTrue(pageQueried.await(5, TimeUnit.SECONDS));
+                ThreadStatsDto stats = new ThreadStatsDto();
+                stats.setMessageCount(3);
+                return Optional.of(stats);
+            });
+            when(messageRepository.findThreadPageAt(eq("userA-userB"), anyInt(), anyInt())).thenAnswer(invocation -> {
+                pageQueried.countDown();
+                return List.of(new MessageDto("userA-userB", "userA", "alice", "content"));
+            });
+
+            // When
+            PaginatedResponse<MessageDto> result = concurrent.getConversationPaginated(
+                    new MessageService.ConversationSecurityInfo("userA", "userB"),
+                    new HistoryRequest("userA", "userB", null, 10, 0));
+
+            // Then
+            assertEquals(3, result.getTotal());
+            assertEquals(1, result.getData().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void stubParticipants() {
+        UserDto a = new UserDto(); a.setId("userA"); a.setUsername("alice");
+        UserDto b = new UserDto(); b.setId("userB"); b.setUsername("bob");
+        when(userRepository.findByIdInOrUsernameIn(any(), any())).thenReturn(List.of(a, b));
+    }
+
+    private static MessageDto storedMessage(String id, LocalDateTime timestamp) {
+        MessageDto message = new MessageDto("userA-userB", "userA", "alice", id);
+        message.setId(id);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    @Test
+    void givenMoreRowsThanLimit_whenGetConversationByCursor_thenReturnsPageAndCursorOfOldestRow() {
+        // Given
+        stubParticipants();
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<MessageDto> rows = List.of(
+                storedMessage("650000000000000000000003", now),
+                storedMessage("650000000000000000000002", now.minusMinutes(1)),
+                storedMessage("650000000000000000000001", now.minusMinutes(2)));
+        when(messageRepository.findThreadPageBefore("userA-userB", null, 3)).thenReturn(rows);
+
+        // When
+        CursorPageResponse<MessageDto> page = messageService.getConversationByCursor(
+                new HistoryRequest("userA", "userB", null, 2, 0), null, null);
+
+        // Then
+        assertEquals(2, page.getData().size());
+        assertTrue(page.isHasMore());
+        assertEquals(MessageCursor.of(rows.get(1)), MessageCursor.decode(page.getNextCursor()));
+        verify(messageRepository, never()).countByThreadId(any());
+    }
+
+    @Test
+    void givenAfterCursor_whenGetConversationByCursor_thenReturnsNewerRowsNewestFirst() {
+        // Given
+        stubParticipants();
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        MessageCursor cursor = new MessageCursor("650000000000000000000001");
+        List<MessageDto> ascending = List.of(
+                storedMessage("650000000000000000000002", now.plusMinutes(1)),
+                storedMessage("650000000000000000000003", now.plusMinutes(2)));
+        when(messageRepository.findThreadPageAfter("userA-userB", cursor, 3)).thenReturn(ascending);
+
+        // When
+        CursorPageResponse<MessageDto> page = messageService.getConversationByCursor(
+                new HistoryRequest("userA", "userB", null, 2, 0), null, cursor.encode());
+
+        // Then
+        assertEquals("650000000000000000000003", page.getData().get(0).getId());
+        assertEquals("650000000000000000000002", page.getData().get(1).getId());
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void givenEmptyThread_whenGetConversationByCursorFirstPage_thenThrowsThreadNotFound() {
+        // Given
+        stubParticipants();
+        when(messageRepository.findThreadPageBefore("userA-userB", null, 51)).thenReturn(List.of());
+
+        // When & Then
+        assertThrows(ThreadNotFoundException.class, () -> messageService.getConversationByCursor(
+                new HistoryRequest("userA", "userB", null, 50, 0), null, null));
+    }
+
+    @Test
+    void givenBothCursors_whenGetConversationByCursor_thenThrowsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> messageService.getConversationByCursor(
+                new HistoryRequest("userA", "userB", null, 50, 0), "a", "b"));
+    }
+
+    private void givenUsers(String senderId) {
+        UserDto senderUser = new UserDto(); senderUser.setId(senderId); senderUser.setUsername("sender");
+        UserDto recipientUser = new UserDto(); recipientUser.setId("recipient-id"); recipientUser.setUsername("recipient");
+        when(userRepository.findById(senderId)).thenReturn(Optional.of(senderUser));
+        when(userRepository.findByUsername("recipient")).thenReturn(Optional.of(recipientUser));
+    }
+
+    private static MessageDto stored(String threadId, int sequence) {
+        return new MessageDto(String.format("6500000000000000000000%02d", sequence), threadId, "user1", "user1",
+                "message " + sequence, LocalDateTime.of(2025, 1, 1, 12, 0, sequence));
+    }
 }
@@ -0,0 +1,181 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.MessageDto;
+import com.github.melihemreguler.turknetmessagingservice.model.event.MessageCommand;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentMessagesTest {
+
+    private static final String THREAD = "u1-u2";
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong now;
+    private RecentMessages recentMessages;
+    private AtomicInteger queries;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        now = new AtomicLong(1_000_000);
+        recentMessages = new RecentMessages(meterRegistry, true, 5, 1 << 20, 60, now::get);
+        recentMessages.restart();
+        queries = new AtomicInteger();
+    }
+
+    @Test
+    void givenNewestPageReadOnce_whenReadAgain_thenServedFromRingWithoutQuery() {
+        List<MessageDto> stored = List.of(message(3), message(2), message(1));
+
+        assertEquals(ids(stored.subList(0, 2)), ids(recentMessages.page(THREAD, 0, 2, query(stored.subList(0, 2)))));
+        List<MessageDto> cached = recentMessages.page(THREAD, 0, 2, query(stored.subList(0, 2)));
+
+        assertEquals(ids(stored.subList(0, 2)), ids(cached));
+        assertEquals(stored.get(0), cached.get(0));
+        assertEquals(1, queries.get());
+        assertEquals(1, lookups("0", "hit"));
+        assertEquals(1, lookups("0", "miss"));
+    }
+
+    @Test
+    void givenStoredMessageEvent_whenNewestPageRead_thenItIsIncludedWithoutQuery() {
+        recentMessages.page(THREAD, 0, 2, query(List.of(message(2), message(1))));
+
+        recentMessages.onMessageStored(event(3));
+
+        assertEquals(List.of(id(3), id(2)), ids(recentMessages.page(THREAD, 0, 2, query(List.of()))));
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    void givenRingOnlyFedByEvents_whenNewestPageRead_thenQueriedUntilConfirmed() {
+        recentMessages.onMessageStored(event(1));
+        recentMessages.onMessageStored(event(2));
+
+        recentMessages.page(THREAD, 0, 2, query(List.of(message(2), message(1))));
+
+        assertEquals(1, queries.get());
+        assertEquals(1, lookups("0", "miss"));
+    }
+
+    @Test
+    void givenVerifyIntervalPassed_whenNewestPageRead_thenQueriedAgain() {
+        recentMessages.page(THREAD, 0, 1, query(List.of(message(1))));
+
+        now.addAndGet(61_000);
+        recentMessages.page(THREAD, 0, 1, query(List.of(message(1))));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void givenPageBeyondRing_whenRead_thenQueriedAndCountedAtItsDepth() {
+        recentMessages.page(THREAD, 0, 2, query(List.of(message(4), message(3))));
+        recentMessages.onMessageStored(event(5));
+        recentMessages.onMessageStored(event(6));
+
+        assertEquals(List.of(id(4), id(3)), ids(recentMessages.page(THREAD, 2, 2, query(List.of()))));
+        recentMessages.page(THREAD, 4, 2, query(List.of(message(2), message(1))));
+        recentMessages.page(THREAD, 8, 2, query(List.of()));
+
+        assertEquals(1, lookups("1", "hit"));
+        assertEquals(1, lookups("2", "miss"));
+        assertEquals(1, lookups("3+", "miss"));
+        assertEquals(3, queries.get());
+    }
+
+    @Test
+    void givenRingAtCapacity_whenMoreMessagesStored_thenOldestDroppedAndDeeperPagesQueried() {
+        recentMessages.page(THREAD, 0, 5, query(List.of(message(2), message(1))));
+        for (int i = 3; i <= 7; i++) {
+            recentMessages.onMessageStored(event(i));
+        }
+
+        assertEquals(List.of(id(7), id(6), id(5), id(4), id(3)),
+                ids(recentMessages.page(THREAD, 0, 5, query(List.of()))));
+        recentMessages.page(THREAD, 5, 5, query(List.of(message(2), message(1))));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void givenWholeThreadRead_whenLaterPagesRead_thenServedFromRing() {
+        recentMessages.page(THREAD, 0, 10, query(List.of(message(2), message(1))));
+
+        assertEquals(List.of(), recentMessages.page(THREAD, 10, 10, query(List.of())));
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    void givenEventOlderThanConfirmedWindow_whenStored_thenNotAddedToRing() {
+        recentMessages.page(THREAD, 0, 2, query(List.of(message(5), message(4))));
+
+        recentMessages.onMessageStored(event(1));
+
+        assertEquals(List.of(id(5), id(4)), ids(recentMessages.page(THREAD, 0, 2, query(List.of()))));
+    }
+
+    @Test
+    void givenPartitionsReassigned_whenNewestPageRead_thenQueriedAgain() {
+        recentMessages.page(THREAD, 0, 1, query(List.of(message(1))));
+
+        recentMessages.restart();
+        recentMessages.page(THREAD, 0, 1, query(List.of(message(1))));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void givenListenerNotAssigned_whenPageRead_thenAlwaysQueriedAndNotCounted() {
+        recentMessages.suspend();
+
+        recentMessages.page(THREAD, 0, 1, query(List.of(message(1))));
+        recentMessages.page(THREAD, 0, 1, query(List.of(message(1))));
+
+        assertEquals(2, queries.get());
+        assertNull(meterRegistry.find(RecentMessages.LOOKUPS_METRIC).counter());
+    }
+
+    private Supplier<List<MessageDto>> query(List<MessageDto> rows) {
+        return () -> {
+            queries.incrementAndGet();
+            return new ArrayList<>(rows);
+        };
+    }
+
+    private double lookups(String depth, String result) {
+        var counter = meterRegistry.find(RecentMessages.LOOKUPS_METRIC).tag("depth", depth).tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static String id(int sequence) {
+        return String.format("6500000000000000000000%02d", sequence);
+    }
+
+    private static LocalDateTime time(int sequence) {
+        return LocalDateTime.of(2025, 1, 1, 12, 0, sequence);
+    }
+
+    private static MessageDto message(int sequence) {
+        return new MessageDto(id(sequence), THREAD, "u1", "alice", "message " + sequence, time(sequence));
+    }
+
+    private static MessageCommand event(int sequence) {
+        return new MessageCommand("SEND_MESSAGE", THREAD, "u1", "alice", "message " + sequence, time(sequence),
+                "u2", "bob", id(sequence));
+    }
+
+    private static List<String> ids(List<MessageDto> messages) {
+        return messages.stream().map(MessageDto::getId).toList();
+    }
+}
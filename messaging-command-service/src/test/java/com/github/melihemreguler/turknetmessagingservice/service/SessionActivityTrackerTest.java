@@ -0,0 +1,116 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.enums.SessionCommand;
+import com.github.melihemreguler.turknetmessagingservice.exception.KafkaPublishingException;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SessionActivityTrackerTest {
+
+    private KafkaProducerService kafkaProducerService;
+    private SimpleMeterRegistry meterRegistry;
+    private SessionActivityTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        kafkaProducerService = mock(KafkaProducerService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        tracker = new SessionActivityTracker(kafkaProducerService, meterRegistry, true, 1000);
+        when(kafkaProducerService.sendSessionCommand(any(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void givenManyAccessesPerSession_whenFlush_thenOneTouchPerSession() {
+        for (int i = 0; i < 50; i++) {
+            tracker.recordAccess("digest-1", "user-1");
+            tracker.recordAccess("digest-2", "user-2");
+        }
+        assertEquals(2, tracker.pendingCount());
+
+        tracker.flush();
+
+        ArgumentCaptor<SessionEvent> events = ArgumentCaptor.forClass(SessionEvent.class);
+        verify(kafkaProducerService, times(2)).sendSessionCommand(events.capture(), anyString());
+        assertTrue(events.getAllValues().stream()
+                .allMatch(event -> SessionCommand.UPDATE_SESSION.getCommand().equals(event.command())
+                        && event.timestamp() != null));
+        assertEquals(List.of("digest-1", "digest-2"), events.getAllValues().stream()
+                .map(SessionEvent::hashedSessionId).sorted().toList());
+        assertEquals(0, tracker.pendingCount());
+        assertEquals(2.0, meterRegistry.get(SessionActivityTracker.FLUSHED_METRIC).counter().count());
+    }
+
+    @Test
+    void givenNoActivitySinceLastFlush_whenFlush_thenNothingPublished() {
+        tracker.recordAccess("digest-1", "user-1");
+        tracker.flush();
+
+        tracker.flush();
+
+        verify(kafkaProducerService, times(1)).sendSessionCommand(any(), anyString());
+    }
+
+    @Test
+    void givenPublishFails_whenFlush_thenAccessIsRetriedOnNextFlush() {
+        tracker.recordAccess("digest-1", "user-1");
+        doThrow(new KafkaPublishingException("down", new RuntimeException()))
+                .doReturn(new CompletableFuture<>())
+                .when(kafkaProducerService).sendSessionCommand(any(), eq("user-1"));
+
+        tracker.flush();
+        assertEquals(1, tracker.pendingCount());
+
+        tracker.flush();
+        verify(kafkaProducerService, times(2)).sendSessionCommand(any(), eq("user-1"));
+        assertEquals(0, tracker.pendingCount());
+    }
+
+    @Test
+    void givenBrokerRejectsPublish_whenFlush_thenAccessIsMergedBackWithoutLosingANewerOne() {
+        tracker.recordAccess("digest-1", "user-1");
+        CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+        when(kafkaProducerService.sendSessionCommand(any(), eq("user-1"))).thenReturn(ack);
+
+        tracker.flush();
+        tracker.recordAccess("digest-1", "user-1");
+        ack.completeExceptionally(new KafkaPublishingException("not acknowledged", new RuntimeException()));
+
+        assertEquals(1, tracker.pendingCount());
+        assertEquals(0.0, meterRegistry.get(SessionActivityTracker.FLUSHED_METRIC).counter().count());
+    }
+
+    @Test
+    void givenPendingAccess_whenFlushOnShutdown_thenWaitsForTheAcknowledgement() {
+        tracker.recordAccess("digest-1", "user-1");
+        CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+        when(kafkaProducerService.sendSessionCommand(any(), eq("user-1"))).thenReturn(ack);
+        new Thread(() -> ack.complete(null)).start();
+
+        tracker.flushOnShutdown();
+
+        assertTrue(ack.isDone());
+        assertEquals(1.0, meterRegistry.get(SessionActivityTracker.FLUSHED_METRIC).counter().count());
+    }
+
+    @Test
+    void givenTrackingDisabled_whenRecordAccess_thenNothingBuffered() {
+        tracker = new SessionActivityTracker(kafkaProducerService, meterRegistry, false, 1000);
+
+        tracker.recordAccess("digest-1", "user-1");
+        tracker.flush();
+
+        assertEquals(0, tracker.pendingCount());
+        verifyNoInteractions(kafkaProducerService);
+    }
+}
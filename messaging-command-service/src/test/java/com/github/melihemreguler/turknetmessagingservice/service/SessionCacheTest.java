@@ -0,0 +1,90 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.SessionDto;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SessionCache sessionCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sessionCache = new SessionCache(meterRegistry, 100, 300);
+    }
+
+    @Test
+    void givenCachedSession_whenGetWithMatchingDigest_thenHit() {
+        sessionCache.put(session("digest-1", "user-1", LocalDateTime.now().plusHours(1)));
+
+        assertTrue(sessionCache.get("digest-1", "user-1").isPresent());
+        assertTrue(sessionCache.get("digest-2", "user-1").isEmpty());
+        assertTrue(sessionCache.get("digest-1", "user-2").isEmpty());
+    }
+
+    @Test
+    void givenExpiredSession_whenPut_thenNotCached() {
+        sessionCache.put(session("digest-1", "user-1", LocalDateTime.now().minusSeconds(1)));
+
+        assertTrue(sessionCache.get("digest-1", "user-1").isEmpty());
+    }
+
+    @Test
+    void givenUpsertEvent_whenOnSessionEvent_thenReplacesUsersSession() {
+        sessionCache.put(session("old-digest", "user-1", LocalDateTime.now().plusHours(1)));
+
+        sessionCache.onSessionEvent(SessionEvent.createOrUpdate(
+                "new-digest", "user-1", LocalDateTime.now().plusHours(1), "127.0.0.1", "agent"));
+
+        assertTrue(sessionCache.get("old-digest", "user-1").isEmpty());
+        assertTrue(sessionCache.get("new-digest", "user-1").isPresent());
+    }
+
+    @Test
+    void givenCommands_whenHandles_thenLastAccessUpdatesAreNotWanted() {
+        assertTrue(sessionCache.handles("UPSERT_SESSION"));
+        assertTrue(sessionCache.handles("DELETE_SESSION"));
+        assertFalse(sessionCache.handles("UPDATE_SESSION"));
+    }
+
+    @Test
+    void givenDeleteEvents_whenOnSessionEvent_thenMatchingEntriesEvicted() {
+        sessionCache.put(session("digest-1", "user-1", LocalDateTime.now().plusHours(1)));
+        sessionCache.put(session("digest-2", "user-2", LocalDateTime.now().plusHours(1)));
+
+        sessionCache.onSessionEvent(SessionEvent.delete("stale-digest", "user-1", null));
+        assertTrue(sessionCache.get("digest-1", "user-1").isPresent());
+
+        sessionCache.onSessionEvent(SessionEvent.delete("digest-1", "user-1", null));
+        sessionCache.onSessionEvent(SessionEvent.deleteUserSessions("user-2"));
+
+        assertTrue(sessionCache.get("digest-1", "user-1").isEmpty());
+        assertTrue(sessionCache.get("digest-2", "user-2").isEmpty());
+    }
+
+    @Test
+    void givenLookups_whenReadingMeters_thenHitsAndMissesRecorded() {
+        sessionCache.put(session("digest-1", "user-1", LocalDateTime.now().plusHours(1)));
+
+        sessionCache.get("digest-1", "user-1");
+        sessionCache.get("digest-1", "missing-user");
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", SessionCache.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", SessionCache.CACHE_NAME)
+                .tag("result", "miss").functionCounter().count());
+        assertNotNull(meterRegistry.find("cache.evictions").tag("cache", SessionCache.CACHE_NAME).meter());
+    }
+
+    private static SessionDto session(String hashedSessionId, String userId, LocalDateTime expiresAt) {
+        return new SessionDto(hashedSessionId, userId, expiresAt, "127.0.0.1", "agent");
+    }
+}
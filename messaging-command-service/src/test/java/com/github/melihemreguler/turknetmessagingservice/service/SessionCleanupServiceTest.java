@@ -0,0 +1,88 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.SessionDto;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import com.github.melihemreguler.turknetmessagingservice.repository.SessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SessionCleanupServiceTest {
+
+    @Mock
+    private SessionRepository sessionRepository;
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+    @Mock
+    private SessionCache sessionCache;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SessionCleanupService sessionCleanupService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        sessionCleanupService = new SessionCleanupService(
+                sessionRepository, kafkaProducerService, sessionCache, meterRegistry);
+        ReflectionTestUtils.setField(sessionCleanupService, "batchSize", 2);
+        ReflectionTestUtils.setField(sessionCleanupService, "maxDeletesPerSecond", 0);
+    }
+
+    @Test
+    void givenMoreExpiredSessionsThanBatch_whenCleanupSessions_thenDeletesInChunksUntilShortBatch() {
+        when(sessionRepository.findExpiredSessionIds(any(LocalDateTime.class), eq(2)))
+                .thenReturn(List.of("a", "b"), List.of("c"));
+        when(sessionRepository.deleteByIds(List.of("a", "b"))).thenReturn(2L);
+        when(sessionRepository.deleteByIds(List.of("c"))).thenReturn(1L);
+
+        sessionCleanupService.cleanupSessions();
+
+        verify(sessionRepository, times(2)).findExpiredSessionIds(any(LocalDateTime.class), eq(2));
+        verify(sessionRepository, never()).findAll();
+        verify(sessionRepository, never()).findUserIdsOverSessionCap(any(), anyInt());
+        assertEquals(3.0, meterRegistry.get(SessionCleanupService.DELETED_METRIC)
+                .tag("reason", SessionCleanupService.REASON_EXPIRED).counter().count());
+        assertEquals(1, meterRegistry.get(SessionCleanupService.DURATION_METRIC).timer().count());
+    }
+
+    @Test
+    void givenUserCapEnabled_whenCleanupSessions_thenSurplusSessionsDeletedAndBroadcast() {
+        ReflectionTestUtils.setField(sessionCleanupService, "maxSessionsPerUser", 1);
+        SessionDto surplus = new SessionDto("digest", "user-1", LocalDateTime.now().plusHours(1), null, null);
+        surplus.setId("old-session");
+        when(sessionRepository.findExpiredSessionIds(any(LocalDateTime.class), anyInt())).thenReturn(List.of());
+        when(sessionRepository.findUserIdsOverSessionCap(any(LocalDateTime.class), eq(1))).thenReturn(List.of("user-1"));
+        when(sessionRepository.findSessionsBeyondNewest(eq("user-1"), any(LocalDateTime.class), eq(1)))
+                .thenReturn(List.of(surplus));
+        when(sessionRepository.deleteByIds(List.of("old-session"))).thenReturn(1L);
+
+        sessionCleanupService.cleanupSessions();
+
+        verify(sessionRepository, times(1)).findUserIdsOverSessionCap(any(LocalDateTime.class), eq(1));
+        verify(sessionCache).evict("digest", "user-1");
+        verify(kafkaProducerService).sendSessionCommand(any(SessionEvent.class), eq("user-1"));
+        assertEquals(1.0, meterRegistry.get(SessionCleanupService.DELETED_METRIC)
+                .tag("reason", SessionCleanupService.REASON_USER_CAP).counter().count());
+    }
+
+    @Test
+    void givenRepositoryFailure_whenCleanupSessions_thenErrorSwallowedAndDurationRecorded() {
+        when(sessionRepository.findExpiredSessionIds(any(LocalDateTime.class), anyInt()))
+                .thenThrow(new RuntimeException("fail"));
+
+        assertDoesNotThrow(() -> sessionCleanupService.cleanupSessions());
+        verify(sessionRepository, never()).deleteByIds(any());
+        assertEquals(1, meterRegistry.get(SessionCleanupService.DURATION_METRIC).timer().count());
+    }
+}
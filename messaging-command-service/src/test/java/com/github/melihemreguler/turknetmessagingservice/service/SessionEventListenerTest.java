@@ -0,0 +1,125 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodecRegistry;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventHeaders;
+import com.github.melihemreguler.turknetmessagingservice.codec.JsonEventCodec;
+import com.github.melihemreguler.turknetmessagingservice.codec.SmileEventCodec;
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.*;
+
+class SessionEventListenerTest {
+
+    private ObjectMapper objectMapper;
+    private SessionEventSubscriber first;
+    private SessionEventSubscriber second;
+    private SessionEventListener listener;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        first = mock(SessionEventSubscriber.class);
+        second = mock(SessionEventSubscriber.class);
+        listener = new SessionEventListener(new EventCodecRegistry(
+                List.of(new JsonEventCodec(objectMapper), new SmileEventCodec(objectMapper)), JsonEventCodec.NAME),
+                List.of(first, second));
+    }
+
+    @Test
+    void givenSessionEvent_whenOnMessage_thenEverySubscriberNotified() throws Exception {
+        SessionEvent event = SessionEvent.delete("digest", "user-1", LocalDateTime.now().withNano(0));
+
+        listener.onMessage(record(objectMapper.writeValueAsBytes(event)));
+
+        verify(first).onSessionEvent(argThat(received ->
+                "digest".equals(received.hashedSessionId()) && "user-1".equals(received.userId())));
+        verify(second).onSessionEvent(argThat(received -> event.command().equals(received.command())));
+    }
+
+    @Test
+    void givenFailingSubscriber_whenOnMessage_thenOthersStillNotified() throws Exception {
+        doThrow(new RuntimeException("boom")).when(first).onSessionEvent(any());
+
+        listener.onMessage(record(objectMapper.writeValueAsBytes(SessionEvent.deleteUserSessions("user-1"))));
+
+        verify(second).onSessionEvent(any(SessionEvent.class));
+    }
+
+    @Test
+    void givenUnreadableMessage_whenOnMessage_thenIgnored() {
+        listener.onMessage(record("not-json".getBytes(StandardCharsets.UTF_8)));
+
+        verifyNoInteractions(first, second);
+    }
+
+    @Test
+    void givenSmileEncodedEvent_whenOnMessage_thenDecodedByContentType() throws Exception {
+        SmileEventCodec smile = new SmileEventCodec(objectMapper);
+        ConsumerRecord<String, byte[]> record = record(smile.encode(SessionEvent.deleteUserSessions("user-1")));
+        record.headers().add(EventCodecRegistry.CONTENT_TYPE_HEADER, smile.contentType().getBytes(StandardCharsets.UTF_8));
+
+        listener.onMessage(record);
+
+        verify(first).onSessionEvent(argThat(received -> "user-1".equals(received.userId())));
+    }
+
+    @Test
+    void givenCommandHeaderNoSubscriberHandles_whenOnMessage_thenSkippedWithoutDecoding() {
+        when(first.handles("DELETE_SESSION")).thenReturn(true);
+        ConsumerRecord<String, byte[]> touch = record("not-json".getBytes(StandardCharsets.UTF_8));
+        EventHeaders.add(touch.headers(), EventHeaders.COMMAND_HEADER, "UPDATE_SESSION");
+
+        listener.onMessage(touch);
+
+        verify(first, never()).onSessionEvent(any());
+        verify(second, never()).onSessionEvent(any());
+    }
+
+    @Test
+    void givenCommandHeaderSomeSubscriberHandles_whenOnMessage_thenDecodedAndDelivered() throws Exception {
+        when(first.handles("DELETE_SESSION")).thenReturn(true);
+        ConsumerRecord<String, byte[]> delete = record(objectMapper.writeValueAsBytes(SessionEvent.deleteUserSessions("user-1")));
+        EventHeaders.add(delete.headers(), EventHeaders.COMMAND_HEADER, "DELETE_SESSION");
+
+        listener.onMessage(delete);
+
+        verify(first).onSessionEvent(argThat(received -> "user-1".equals(received.userId())));
+    }
+
+    @Test
+    void givenPartitionsAssigned_whenOnPartitionsAssigned_thenSeeksBackOneSessionLifetime() {
+        ReflectionTestUtils.setField(listener, "sessionExpirationHours", 24);
+        ConsumerSeekAware.ConsumerSeekCallback callback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+        TopicPartition partition = new TopicPartition("session-commands", 0);
+        long before = System.currentTimeMillis();
+
+        listener.onPartitionsAssigned(Map.of(partition, 0L), callback);
+
+        long dayMillis = Duration.ofHours(24).toMillis();
+        verify(callback).seekToTimestamp(eq(Set.of(partition)),
+                longThat(since -> since >= before - dayMillis && since <= System.currentTimeMillis() - dayMillis));
+    }
+
+    private static ConsumerRecord<String, byte[]> record(byte[] value) {
+        return new ConsumerRecord<>("session-commands", 0, 0L, "user-1", value);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
+import com.github.melihemreguler.turknetmessagingservice.service.SignedSessionTokenCodec.SignedSessionToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionRevocationListTest {
+
+    private SessionRevocationList revocationList;
+
+    @BeforeEach
+    void setUp() {
+        revocationList = new SessionRevocationList();
+        ReflectionTestUtils.setField(revocationList, "sessionExpirationHours", 24);
+    }
+
+    @Test
+    void givenRevokedToken_whenIsRevoked_thenTrueOnlyForThatToken() {
+        Instant now = Instant.now();
+        revocationList.revokeToken("token-1", now.plusSeconds(3600));
+
+        assertTrue(revocationList.isRevoked(token("user-1", "token-1", now)));
+        assertFalse(revocationList.isRevoked(token("user-1", "token-2", now)));
+    }
+
+    @Test
+    void givenUserWideRevocation_whenIsRevoked_thenOnlyEarlierTokensRejected() {
+        Instant cutoff = Instant.now();
+        revocationList.revokeUserSessions("user-1", cutoff);
+
+        assertTrue(revocationList.isRevoked(token("user-1", "old", cutoff.minusSeconds(10))));
+        assertFalse(revocationList.isRevoked(token("user-1", "new", cutoff.plusSeconds(10))));
+        assertFalse(revocationList.isRevoked(token("user-2", "other", cutoff.minusSeconds(10))));
+    }
+
+    @Test
+    void givenCommands_whenHandles_thenOnlyDeletesAndExpiriesAreWanted() {
+        assertTrue(revocationList.handles("DELETE_SESSION"));
+        assertTrue(revocationList.handles("EXPIRE_SESSION"));
+        assertFalse(revocationList.handles("UPSERT_SESSION"));
+        assertFalse(revocationList.handles("UPDATE_SESSION"));
+    }
+
+    @Test
+    void givenDeleteEvents_whenOnSessionEvent_thenTokenAndUserRevocationsRecorded() {
+        revocationList.onSessionEvent(SessionEvent.delete("token-1", "user-1", LocalDateTime.now().plusHours(1)));
+        revocationList.onSessionEvent(SessionEvent.deleteUserSessions("user-2"));
+
+        assertTrue(revocationList.isRevoked(token("user-1", "token-1", Instant.now())));
+        assertTrue(revocationList.isRevoked(token("user-2", "any", Instant.now().minusSeconds(60))));
+        assertEquals(2, revocationList.size());
+    }
+
+    @Test
+    void givenExpiredEntries_whenPurgeExpired_thenDroppedAndLiveEntriesKept() {
+        Instant now = Instant.now();
+        revocationList.revokeToken("expired", now.minusSeconds(1));
+        revocationList.revokeToken("live", now.plusSeconds(3600));
+        revocationList.revokeUserSessions("stale-user", now.minusSeconds(25 * 3600));
+
+        revocationList.purgeExpired();
+
+        assertEquals(1, revocationList.size());
+        assertTrue(revocationList.isRevoked(token("user-1", "live", now)));
+        assertFalse(revocationList.isRevoked(token("user-1", "expired", now)));
+    }
+
+    private static SignedSessionToken token(String userId, String tokenId, Instant issuedAt) {
+        return new SignedSessionToken("t", "k1", userId, tokenId, issuedAt, issuedAt.plusSeconds(3600));
+    }
+}
@@ -1,39 +1,107 @@
 package com.github.melihemreguler.turknetmessagingservice.service;
 
 import com.github.melihemreguler.turknetmessagingservice.dto.SessionDto;
+import com.github.melihemreguler.turknetmessagingservice.enums.SessionMode;
 import com.github.melihemreguler.turknetmessagingservice.model.event.SessionEvent;
 import com.github.melihemreguler.turknetmessagingservice.repository.SessionRepository;
+import com.github.melihemreguler.turknetmessagingservice.service.SignedSessionTokenCodec.SignedSessionToken;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 class SessionServiceTest {
+    private static final String SIGNED_TOKEN = "k1.payload.signature";
+    private static final String LEGACY_HASH = "$2a$10$legacyhashedsession";
+
+    @Test
+    void givenHmacSession_whenValidateSessionWithUserId_thenResolvesByDigestWithoutBcrypt() {
+        String sessionId = UUID.randomUUID().toString();
+        SessionDto sessionDto = new SessionDto("digest", "user-id", LocalDateTime.now().plusHours(1), null, null);
+        when(sessionTokenHasher.hash(sessionId)).thenReturn("digest");
+        when(sessionRepository.findByHashedSessionId("digest")).thenReturn(Optional.of(sessionDto));
+
+        Optional<SessionDto> result = sessionService.validateSession(sessionId, "user-id");
+
+        assertTrue(result.isPresent());
+        verify(sessionRepository, never()).findByUserId(anyString());
+        verifyNoInteractions(passwordEncoder);
+    }
+
+    @Test
+    void givenHmacSessionOfAnotherUser_whenValidateSessionWithUserId_thenReturnsEmpty() {
+        String sessionId = UUID.randomUUID().toString();
+        SessionDto sessionDto = new SessionDto("digest", "other-user", LocalDateTime.now().plusHours(1), null, null);
+        when(sessionTokenHasher.hash(sessionId)).thenReturn("digest");
+        when(sessionRepository.findByHashedSessionId("digest")).thenReturn(Optional.of(sessionDto));
+        enableLegacyFallback();
+
+        Optional<SessionDto> result = sessionService.validateSession(sessionId, "user-id");
+
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(passwordEncoder);
+    }
+
+    @Test
+    void givenExpiredHmacSession_whenValidateSessionWithUserId_thenReturnsEmpty() {
+        String sessionId = UUID.randomUUID().toString();
+        SessionDto sessionDto = new SessionDto("digest", "user-id", LocalDateTime.now().minusMinutes(1), null, null);
+        when(sessionTokenHasher.hash(sessionId)).thenReturn("digest");
+        when(sessionRepository.findByHashedSessionId("digest")).thenReturn(Optional.of(sessionDto));
+
+        assertTrue(sessionService.validateSession(sessionId, "user-id").isEmpty());
+    }
+
+    @Test
+    void givenUnknownDigestAndFallbackDisabled_whenValidateSessionWithUserId_thenSkipsLegacyScan() {
+        String sessionId = UUID.randomUUID().toString();
+        when(sessionTokenHasher.hash(sessionId)).thenReturn("digest");
+        when(sessionRepository.findByHashedSessionId("digest")).thenReturn(Optional.empty());
+
+        assertTrue(sessionService.validateSession(sessionId, "user-id").isEmpty());
+        verify(sessionRepository, never()).findByUserId(anyString());
+    }
+
+    @Test
+    void givenHmacRowForUser_whenLegacyFallback_thenBcryptIsNotAttemptedAgainstIt() {
+        String sessionId = UUID.randomUUID().toString();
+        SessionDto hmacRow = new SessionDto("another-digest", "user-id", LocalDateTime.now().plusHours(1), null, null);
+        when(sessionRepository.findByUserId("user-id")).thenReturn(List.of(hmacRow));
+        enableLegacyFallback();
+
+        assertTrue(sessionService.validateSession(sessionId, "user-id").isEmpty());
+        verifyNoInteractions(passwordEncoder);
+    }
+
     @Test
     void givenValidSessionIdAndUserId_whenValidateSession_thenReturnsSessionDto() {
+        enableLegacyFallback();
         String sessionId = UUID.randomUUID().toString();
         String userId = "user-id";
         SessionDto sessionDto = new SessionDto();
-        sessionDto.setHashedSessionId("hashed-session");
+        sessionDto.setHashedSessionId(LEGACY_HASH);
         sessionDto.setExpiresAt(LocalDateTime.now().plusHours(1));
         when(sessionRepository.findByUserId(userId)).thenReturn(List.of(sessionDto));
-        when(passwordEncoder.matches(sessionId, "hashed-session")).thenReturn(true);
+        when(passwordEncoder.matches(sessionId, LEGACY_HASH)).thenReturn(true);
 
         Optional<SessionDto> result = sessionService.validateSession(sessionId, userId);
 
         assertTrue(result.isPresent());
-        assertEquals("hashed-session", result.get().getHashedSessionId());
+        assertEquals(LEGACY_HASH, result.get().getHashedSessionId());
     }
 
     @Test
@@ -48,19 +116,20 @@ class SessionServiceTest {
     void givenException_whenValidateSessionWithUserId_thenReturnsEmpty() {
         String sessionId = UUID.randomUUID().toString();
         String userId = "user-id";
-        when(sessionRepository.findByUserId(userId)).thenThrow(new RuntimeException("fail"));
+        when(sessionRepository.findByHashedSessionId(any())).thenThrow(new RuntimeException("fail"));
         Optional<SessionDto> result = sessionService.validateSession(sessionId, userId);
         assertTrue(result.isEmpty());
     }
 
     @Test
     void givenValidSessionId_whenInvalidateSession_thenDeletesSession() {
+        enableLegacyFallback();
         String sessionId = UUID.randomUUID().toString();
         SessionDto sessionDto = new SessionDto();
-        sessionDto.setHashedSessionId("hashed-session");
+        sessionDto.setHashedSessionId(LEGACY_HASH);
         sessionDto.setExpiresAt(LocalDateTime.now().plusHours(1));
         when(sessionRepository.findAll()).thenReturn(List.of(sessionDto));
-        when(passwordEncoder.matches(sessionId, "hashed-session")).thenReturn(true);
+        when(passwordEncoder.matches(sessionId, LEGACY_HASH)).thenReturn(true);
         doNothing().when(sessionRepository).delete(sessionDto);
 
         sessionService.invalidateSession(sessionId);
@@ -69,40 +138,34 @@ class SessionServiceTest {
 
     @Test
     void givenNoValidSession_whenInvalidateSession_thenNoDeleteCalled() {
+        enableLegacyFallback();
         String sessionId = UUID.randomUUID().toString();
         SessionDto sessionDto = new SessionDto();
-        sessionDto.setHashedSessionId("hashed-session");
+        sessionDto.setHashedSessionId(LEGACY_HASH);
         sessionDto.setExpiresAt(LocalDateTime.now().plusHours(1));
         when(sessionRepository.findAll()).thenReturn(List.of(sessionDto));
-        when(passwordEncoder.matches(sessionId, "hashed-session")).thenReturn(false);
+        when(passwordEncoder.matches(sessionId, LEGACY_HASH)).thenReturn(false);
 
         sessionService.invalidateSession(sessionId);
         verify(sessionRepository, never()).delete(any());
     }
 
-    @Test
-    void givenExpiredSessions_whenCleanupExpiredSessions_thenDeletesExpiredSessions() {
-        SessionDto expired = new SessionDto();
-        expired.setExpiresAt(LocalDateTime.now().minusHours(1));
-        when(sessionRepository.findAll()).thenReturn(List.of(expired));
-        doNothing().when(sessionRepository).deleteAll(List.of(expired));
-
-        sessionService.cleanupExpiredSessions();
-        verify(sessionRepository).deleteAll(List.of(expired));
-    }
-
-    @Test
-    void givenException_whenCleanupExpiredSessions_thenNoDeleteCalled() {
-        when(sessionRepository.findAll()).thenThrow(new RuntimeException("fail"));
-        sessionService.cleanupExpiredSessions();
-        verify(sessionRepository, never()).deleteAll(any());
-    }
     @Mock
     private SessionRepository sessionRepository;
     @Mock
     private PasswordEncoder passwordEncoder;
     @Mock
     private KafkaProducerService kafkaProducerService;
+    @Mock
+    private SessionTokenHasher sessionTokenHasher;
+    @Mock
+    private SignedSessionTokenCodec signedSessionTokenCodec;
+    @Mock
+    private SessionRevocationList sessionRevocationList;
+    @Mock
+    private SessionCache sessionCache;
+    @Mock
+    private SessionActivityTracker sessionActivityTracker;
 
     @InjectMocks
     private SessionService sessionService;
@@ -112,6 +175,10 @@ class SessionServiceTest {
         MockitoAnnotations.openMocks(this);
     }
 
+    private void enableLegacyFallback() {
+        ReflectionTestUtils.setField(sessionService, "legacyBcryptFallback", true);
+    }
+
     @Test
     void givenValidUser_whenCreateSession_thenReturnsSessionToken() {
         // Given
@@ -119,44 +186,48 @@ class SessionServiceTest {
         String username = "user";
         String ipAddress = "127.0.0.1";
         String userAgent = "agent";
-        when(passwordEncoder.encode(anyString())).thenReturn("hashed-session");
-        doNothing().when(kafkaProducerService).sendSessionCommand(any(SessionEvent.class), eq(userId));
+        when(sessionTokenHasher.hash(anyString())).thenReturn("digest");
+        doReturn(new CompletableFuture<>()).when(kafkaProducerService).sendSessionCommand(any(SessionEvent.class), eq(userId));
 
         // When
         String token = sessionService.createSession(userId, username, ipAddress, userAgent);
 
         // Then
         assertNotNull(token);
+        verify(sessionTokenHasher).hash(token);
+        verify(passwordEncoder, never()).encode(anyString());
         verify(kafkaProducerService).sendSessionCommand(any(SessionEvent.class), eq(userId));
     }
 
     @Test
     void givenValidSessionId_whenValidateSession_thenReturnsSessionDto() {
+        enableLegacyFallback();
         // Given
         String sessionId = UUID.randomUUID().toString();
         SessionDto sessionDto = new SessionDto();
-        sessionDto.setHashedSessionId("hashed-session");
+        sessionDto.setHashedSessionId(LEGACY_HASH);
         sessionDto.setExpiresAt(LocalDateTime.now().plusHours(1));
         when(sessionRepository.findAll()).thenReturn(List.of(sessionDto));
-        when(passwordEncoder.matches(sessionId, "hashed-session")).thenReturn(true);
+        when(passwordEncoder.matches(sessionId, LEGACY_HASH)).thenReturn(true);
 
         // When
         Optional<SessionDto> result = sessionService.validateSession(sessionId);
 
         // Then
         assertTrue(result.isPresent());
-        assertEquals("hashed-session", result.get().getHashedSessionId());
+        assertEquals(LEGACY_HASH, result.get().getHashedSessionId());
     }
 
     @Test
     void givenInvalidSessionId_whenValidateSession_thenReturnsEmpty() {
+        enableLegacyFallback();
         // Given
         String sessionId = UUID.randomUUID().toString();
         SessionDto sessionDto = new SessionDto();
-        sessionDto.setHashedSessionId("hashed-session");
+        sessionDto.setHashedSessionId(LEGACY_HASH);
         sessionDto.setExpiresAt(LocalDateTime.now().plusHours(1));
         when(sessionRepository.findAll()).thenReturn(List.of(sessionDto));
-        when(passwordEncoder.matches(sessionId, "hashed-session")).thenReturn(false);
+        when(passwordEncoder.matches(sessionId, LEGACY_HASH)).thenReturn(false);
 
         // When
         Optional<SessionDto> result = sessionService.validateSession(sessionId);
@@ -164,4 +235,148 @@ class SessionServiceTest {
         // Then
         assertTrue(result.isEmpty());
     }
+
+    private static SignedSessionToken signedToken(String userId, Instant expiresAt) {
+        return new SignedSessionToken(SIGNED_TOKEN, "k1", userId, "token-id", Instant.now().minusSeconds(60), expiresAt);
+    }
+
+    @Test
+    void givenSignedMode_whenCreateSession_thenIssuesSignedTokenAndPublishesAuditEvent() {
+        // Given
+        ReflectionTestUtils.setField(sessionService, "sessionMode", SessionMode.SIGNED);
+        SignedSessionToken issued = signedToken("user-id", Instant.now().plusSeconds(3600));
+        when(signedSessionTokenCodec.issue(eq("user-id"), any(Instant.class), any(Instant.class))).thenReturn(issued);
+
+        // When
+        String token = sessionService.createSession("user-id", "user", "127.0.0.1", "agent");
+
+        // Then
+        assertEquals(SIGNED_TOKEN, token);
+        verify(kafkaProducerService).sendSessionCommand(
+                argThat(event -> "token-id".equals(event.hashedSessionId())), eq("user-id"));
+        verify(sessionTokenHasher, never()).hash(anyString());
+    }
+
+    @Test
+    void givenValidSignedToken_whenValidateSession_thenResolvedWithoutRepository() {
+        // Given
+        SignedSessionToken token = signedToken("user-id", Instant.now().plusSeconds(3600));
+        when(signedSessionTokenCodec.verify(SIGNED_TOKEN)).thenReturn(Optional.of(token));
+
+        // When
+        Optional<SessionDto> result = sessionService.validateSession(SIGNED_TOKEN, "user-id");
+
+        // Then
+        assertTrue(result.isPresent());
+        assertEquals("user-id", result.get().getUserId());
+        assertEquals("token-id", result.get().getHashedSessionId());
+        verifyNoInteractions(sessionRepository);
+    }
+
+    @Test
+    void givenRevokedExpiredOrForeignSignedToken_whenValidateSession_thenReturnsEmpty() {
+        // Given
+        SignedSessionToken live = signedToken("user-id", Instant.now().plusSeconds(3600));
+        SignedSessionToken expired = signedToken("user-id", Instant.now().minusSeconds(1));
+
+        // When / Then
+        when(signedSessionTokenCodec.verify(SIGNED_TOKEN)).thenReturn(Optional.of(expired));
+        assertTrue(sessionService.validateSession(SIGNED_TOKEN).isEmpty());
+
+        when(signedSessionTokenCodec.verify(SIGNED_TOKEN)).thenReturn(Optional.of(live));
+        assertTrue(sessionService.validateSession(SIGNED_TOKEN, "other-user").isEmpty());
+
+        when(sessionRevocationList.isRevoked(live)).thenReturn(true);
+        assertTrue(sessionService.validateSession(SIGNED_TOKEN).isEmpty());
+        verifyNoInteractions(sessionRepository);
+    }
+
+    @Test
+    void givenSignedToken_whenInvalidateSession_thenRevokesLocallyAndPublishesDelete() {
+        // Given
+        SignedSessionToken token = signedToken("user-id", Instant.now().plusSeconds(3600));
+        when(signedSessionTokenCodec.verify(SIGNED_TOKEN)).thenReturn(Optional.of(token));
+
+        // When
+        sessionService.invalidateSession(SIGNED_TOKEN);
+
+        // Then
+        verify(sessionRevocationList).revokeToken("token-id", token.expiresAt());
+        verify(kafkaProducerService).sendSessionCommand(
+                argThat(event -> "DELETE_SESSION".equals(event.command()) && "token-id".equals(event.hashedSessionId())),
+                eq("user-id"));
+        verify(sessionRepository, never()).delete(any());
+    }
+
+    @Test
+    void givenCachedSession_whenValidateSessionWithUserId_thenRepositoryNotQueried() {
+        // Given
+        SessionDto cached = new SessionDto("digest", "user-id", LocalDateTime.now().plusHours(1), null, null);
+        when(sessionTokenHasher.hash("token")).thenReturn("digest");
+        when(sessionCache.get("digest", "user-id")).thenReturn(Optional.of(cached));
+
+        // When
+        Optional<SessionDto> result = sessionService.validateSession("token", "user-id");
+
+        // Then
+        assertSame(cached, result.orElseThrow());
+        verifyNoInteractions(sessionRepository);
+    }
+
+    @Test
+    void givenCacheMiss_whenValidateSessionWithUserId_thenLoadsAndCachesSession() {
+        // Given
+        SessionDto stored = new SessionDto("digest", "user-id", LocalDateTime.now().plusHours(1), null, null);
+        when(sessionTokenHasher.hash("token")).thenReturn("digest");
+        when(sessionRepository.findByHashedSessionId("digest")).thenReturn(Optional.of(stored));
+
+        // When
+        Optional<SessionDto> result = sessionService.validateSession("token", "user-id");
+
+        // Then
+        assertTrue(result.isPresent());
+        verify(sessionCache).put(stored);
+    }
+
+    @Test
+    void givenStoredMode_whenCreateSession_thenSessionWrittenThroughToCache() {
+        // Given
+        when(sessionTokenHasher.hash(anyString())).thenReturn("digest");
+
+        // When
+        sessionService.createSession("user-id", "user", "127.0.0.1", "agent");
+
+        // Then
+        verify(sessionCache).put(argThat(session ->
+                "digest".equals(session.getHashedSessionId()) && "user-id".equals(session.getUserId())));
+    }
+
+    @Test
+    void givenStoredSession_whenInvalidateSession_thenEvictsAndBroadcastsDelete() {
+        // Given
+        SessionDto stored = new SessionDto("digest", "user-id", LocalDateTime.now().plusHours(1), null, null);
+        when(sessionTokenHasher.hash("token")).thenReturn("digest");
+        when(sessionRepository.findByHashedSessionId("digest")).thenReturn(Optional.of(stored));
+
+        // When
+        sessionService.invalidateSession("token");
+
+        // Then
+        verify(sessionRepository).delete(stored);
+        verify(sessionRepository, never()).findAll();
+        verify(sessionCache).evict("digest", "user-id");
+        verify(kafkaProducerService).sendSessionCommand(
+                argThat(event -> "DELETE_SESSION".equals(event.command()) && "digest".equals(event.hashedSessionId())),
+                eq("user-id"));
+    }
+
+    @Test
+    void givenValidatedSession_whenRecordActivity_thenBufferedInTracker() {
+        SessionDto session = new SessionDto("digest", "user-id", LocalDateTime.now().plusHours(1), null, null);
+
+        sessionService.recordActivity(session);
+
+        verify(sessionActivityTracker).recordAccess("digest", "user-id");
+        verifyNoInteractions(kafkaProducerService);
+    }
 }
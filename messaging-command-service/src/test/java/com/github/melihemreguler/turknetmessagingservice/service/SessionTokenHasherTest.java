@@ -0,0 +1,37 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionTokenHasherTest {
+
+    @Test
+    void givenSameTokenAndSecret_whenHash_thenDigestIsDeterministic() {
+        SessionTokenHasher hasher = new SessionTokenHasher("secret");
+
+        String first = hasher.hash("token");
+        String second = hasher.hash("token");
+
+        assertEquals(first, second);
+        assertEquals(64, first.length());
+        assertFalse(SessionTokenHasher.isLegacyHash(first));
+    }
+
+    @Test
+    void givenDifferentSecrets_whenHash_thenDigestsDiffer() {
+        assertNotEquals(new SessionTokenHasher("secret-a").hash("token"),
+                new SessionTokenHasher("secret-b").hash("token"));
+    }
+
+    @Test
+    void givenBlankSecret_whenConstruct_thenThrows() {
+        assertThrows(IllegalStateException.class, () -> new SessionTokenHasher(" "));
+    }
+
+    @Test
+    void givenBcryptHash_whenIsLegacyHash_thenTrue() {
+        assertTrue(SessionTokenHasher.isLegacyHash("$2a$10$abcdefghijklmnopqrstuv"));
+        assertFalse(SessionTokenHasher.isLegacyHash(null));
+    }
+}
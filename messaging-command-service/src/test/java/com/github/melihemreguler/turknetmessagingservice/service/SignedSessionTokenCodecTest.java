@@ -0,0 +1,97 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.config.SessionSigningConfig;
+import com.github.melihemreguler.turknetmessagingservice.service.SignedSessionTokenCodec.SignedSessionToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignedSessionTokenCodecTest {
+
+    private SessionSigningConfig signingConfig;
+    private SignedSessionTokenCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        signingConfig = new SessionSigningConfig();
+        signingConfig.setActiveKeyId("k1");
+        signingConfig.setKeys(new HashMap<>(Map.of("k1", "secret-one")));
+        codec = new SignedSessionTokenCodec(signingConfig);
+    }
+
+    @Test
+    void givenIssuedToken_whenVerify_thenReturnsClaims() {
+        Instant issuedAt = Instant.ofEpochSecond(1_700_000_000L);
+        SignedSessionToken issued = codec.issue("user-1", issuedAt, issuedAt.plusSeconds(3600));
+
+        Optional<SignedSessionToken> verified = codec.verify(issued.token());
+
+        assertTrue(verified.isPresent());
+        assertEquals("user-1", verified.get().userId());
+        assertEquals("k1", verified.get().keyId());
+        assertEquals(issued.tokenId(), verified.get().tokenId());
+        assertEquals(issuedAt, verified.get().issuedAt());
+        assertEquals(issuedAt.plusSeconds(3600), verified.get().expiresAt());
+        assertTrue(SignedSessionTokenCodec.isSignedToken(issued.token()));
+    }
+
+    @Test
+    void givenTamperedPayload_whenVerify_thenReturnsEmpty() {
+        SignedSessionToken issued = codec.issue("user-1", Instant.now(), Instant.now().plusSeconds(60));
+        String[] parts = issued.token().split("\\.");
+        String forgedPayload = java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("user-2|0|9999999999|" + issued.tokenId()).getBytes());
+
+        assertTrue(codec.verify(parts[0] + "." + forgedPayload + "." + parts[2]).isEmpty());
+    }
+
+    @Test
+    void givenRotatedKey_whenVerifyingTokenSignedWithRetiredKey_thenStillAccepted() {
+        SignedSessionToken issued = codec.issue("user-1", Instant.now(), Instant.now().plusSeconds(60));
+        signingConfig.getKeys().put("k2", "secret-two");
+        signingConfig.setActiveKeyId("k2");
+
+        assertTrue(codec.verify(issued.token()).isPresent());
+        assertEquals("k2", codec.issue("user-1", Instant.now(), Instant.now().plusSeconds(60)).keyId());
+    }
+
+    @Test
+    void givenUnknownKeyOrGarbage_whenVerify_thenReturnsEmpty() {
+        SignedSessionToken issued = codec.issue("user-1", Instant.now(), Instant.now().plusSeconds(60));
+
+        assertTrue(codec.verify("k9" + issued.token().substring(2)).isEmpty());
+        assertTrue(codec.verify("k1.not-base64!.sig").isEmpty());
+        assertTrue(codec.verify("no-dots-here").isEmpty());
+        assertFalse(SignedSessionTokenCodec.isSignedToken("3f2a7c1e-0000-4000-8000-000000000000"));
+    }
+
+    @Test
+    void givenMissingActiveKey_whenIssue_thenThrows() {
+        signingConfig.setActiveKeyId("missing");
+
+        assertThrows(IllegalStateException.class,
+                () -> codec.issue("user-1", Instant.now(), Instant.now().plusSeconds(60)));
+    }
+
+    @Test
+    void givenNoActiveSigningKey_whenConstruct_thenThrows() {
+        SessionSigningConfig unconfigured = new SessionSigningConfig();
+        unconfigured.setActiveKeyId("k1");
+        unconfigured.setKeys(new HashMap<>(Map.of("k1", " ")));
+
+        assertThrows(IllegalStateException.class, () -> new SignedSessionTokenCodec(unconfigured));
+    }
+
+    @Test
+    void givenBlankRetiredKey_whenConstruct_thenThrows() {
+        signingConfig.getKeys().put("k0", "");
+
+        assertThrows(IllegalStateException.class, () -> new SignedSessionTokenCodec(signingConfig));
+    }
+}
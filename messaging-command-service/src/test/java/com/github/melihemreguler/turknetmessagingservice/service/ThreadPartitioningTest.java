@@ -0,0 +1,71 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreadPartitioningTest {
+
+    private MeterRegistry meterRegistry;
+    private AtomicLong now;
+    private ThreadPartitioning partitioning;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        now = new AtomicLong(10_000);
+        partitioning = new ThreadPartitioning(meterRegistry, 3, 1000, 100, now::get);
+    }
+
+    @Test
+    void givenQuietThread_whenKey_thenKeyedByThreadAndNotCounted() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("alice-bob", partitioning.key("alice-bob"));
+        }
+
+        assertEquals(0, hotThreads());
+    }
+
+    @Test
+    void givenThreadOverThreshold_whenKey_thenCountedOnceAndKeyUnchanged() {
+        for (int i = 0; i < 8; i++) {
+            assertEquals("alice-bob", partitioning.key("alice-bob"));
+        }
+
+        assertEquals(1, hotThreads());
+        assertEquals("carol-dave", partitioning.key("carol-dave"));
+    }
+
+    @Test
+    void givenHotThreadCoolsDown_whenBusyAgain_thenCountedAgain() {
+        for (int i = 0; i < 5; i++) {
+            partitioning.key("alice-bob");
+        }
+
+        // Still busy in the next window: the same episode.
+        now.addAndGet(1000);
+        for (int i = 0; i < 5; i++) {
+            partitioning.key("alice-bob");
+        }
+        assertEquals(1, hotThreads());
+
+        // A quiet window in between ends it.
+        now.addAndGet(1000);
+        partitioning.key("alice-bob");
+        now.addAndGet(1000);
+        for (int i = 0; i < 5; i++) {
+            partitioning.key("alice-bob");
+        }
+
+        assertEquals(2, hotThreads());
+    }
+
+    private double hotThreads() {
+        return meterRegistry.get(ThreadPartitioning.HOT_THREADS_METRIC).counter().count();
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.UserDto;
+import com.github.melihemreguler.turknetmessagingservice.enums.UserCommand;
+import com.github.melihemreguler.turknetmessagingservice.model.event.UserActivityEvent;
+import com.github.melihemreguler.turknetmessagingservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+class UserDirectoryTest {
+
+    private UserRepository userRepository;
+    private UsernameFilter usernameFilter;
+    private UserDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        usernameFilter = new UsernameFilter(userRepository, new SimpleMeterRegistry(), true, 100, 0.01, 0, () -> 1_000L);
+        usernameFilter.feedAssigned();
+        directory = new UserDirectory(userRepository, usernameFilter, new SimpleMeterRegistry(), 100, 3600);
+    }
+
+    @Test
+    void givenUserLoadedById_whenLookedUpEitherWay_thenServedFromCache() {
+        when(userRepository.findById("u1")).thenReturn(Optional.of(user("u1", "alice")));
+
+        assertEquals("alice", directory.findById("u1").orElseThrow().username());
+        assertEquals("alice", directory.findById("u1").orElseThrow().username());
+        assertEquals("u1", directory.findByUsername("alice").orElseThrow().id());
+
+        verify(userRepository, times(1)).findById("u1");
+        verify(userRepository, never()).findByUsername(any());
+    }
+
+    @Test
+    void givenUnknownUser_whenLookedUp_thenNotCached() {
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.empty(), Optional.of(user("u2", "bob")));
+
+        assertTrue(directory.findByUsername("bob").isEmpty());
+        assertEquals("u2", directory.findByUsername("bob").orElseThrow().id());
+    }
+
+    @Test
+    void givenUsernameRuledOutByFilter_whenFindByUsername_thenNoQuery() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(user("u1", "alice")));
+        usernameFilter.rebuild();
+
+        assertTrue(directory.findByUsername("mallory").isEmpty());
+
+        verify(userRepository, never()).findByUsername(any());
+    }
+
+    @Test
+    void givenUserLearnedFromEvent_whenMightExist_thenPossible() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.empty());
+        usernameFilter.rebuild();
+
+        directory.onUserEvent(event(UserCommand.USER_CREATION.getCommand(), "u2", "bob"));
+
+        assertTrue(usernameFilter.mightExist("bob"));
+    }
+
+    @Test
+    void givenPartlyCachedIds_whenUsernamesOf_thenOnlyMissingIdsQueriedAtOnce() {
+        directory.put("u1", "alice");
+        when(userRepository.findAllById(anyIterable())).thenReturn(List.of(user("u2", "bob"), user("u3", "carol")));
+
+        Map<String, String> usernames = directory.usernamesOf(List.of("u1", "u2", "u3", "ghost"));
+
+        assertEquals(Map.of("u1", "alice", "u2", "bob", "u3", "carol"), usernames);
+        verify(userRepository).findAllById(argThat(ids -> !ids.iterator().next().equals("u1")));
+        assertEquals("u3", directory.findByUsername("carol").orElseThrow().id());
+    }
+
+    @Test
+    void givenMixedIdsAndUsernames_whenFindAll_thenUncachedOnesReadInOneQuery() {
+        directory.put("u1", "alice");
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(user("u1", "alice"), user("u2", "bob")));
+        usernameFilter.rebuild();
+        when(userRepository.findByIdInOrUsernameIn(List.of("u3"), List.of("bob")))
+                .thenReturn(List.of(user("u2", "bob"), user("u3", "carol")));
+
+        List<UserDirectory.Entry> users = directory.findAll(List.of("u1", "u3"), List.of("bob", "mallory"));
+
+        assertEquals(3, users.size());
+        assertTrue(users.contains(new UserDirectory.Entry("u2", "bob")));
+        verify(userRepository, times(1)).findByIdInOrUsernameIn(any(), any());
+        assertEquals("carol", directory.findById("u3").orElseThrow().username());
+    }
+
+    @Test
+    void givenUserCommandWithNewUsername_whenOnUserEvent_thenOldUsernameNoLongerResolves() {
+        directory.put("u1", "alice");
+
+        directory.onUserEvent(event(UserCommand.USER_CREATION.getCommand(), "u1", "alicia"));
+
+        assertEquals("alicia", directory.findById("u1").orElseThrow().username());
+        assertEquals("u1", directory.findByUsername("alicia").orElseThrow().id());
+        assertTrue(directory.findByUsername("alice").isEmpty());
+    }
+
+    @Test
+    void givenLoginAttempt_whenHandles_thenSkipped() {
+        assertFalse(directory.handles(UserCommand.LOGIN_ATTEMPT.getCommand()));
+        assertTrue(directory.handles(UserCommand.USER_CREATION.getCommand()));
+
+        directory.onUserEvent(event(UserCommand.LOGIN_ATTEMPT.getCommand(), "u9", "mallory"));
+
+        assertTrue(directory.findById("u9").isEmpty());
+    }
+
+    private static UserDto user(String id, String username) {
+        UserDto user = new UserDto(username, "hash");
+        user.setId(id);
+        return user;
+    }
+
+    private static UserActivityEvent event(String command, String userId, String username) {
+        return new UserActivityEvent(command, username, userId, "127.0.0.1", "agent", true,
+                LocalDateTime.now(), null, null);
+    }
+}
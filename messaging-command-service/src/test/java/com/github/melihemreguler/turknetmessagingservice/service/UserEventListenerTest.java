@@ -0,0 +1,79 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventCodecRegistry;
+import com.github.melihemreguler.turknetmessagingservice.codec.EventHeaders;
+import com.github.melihemreguler.turknetmessagingservice.codec.JsonEventCodec;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserEventListenerTest {
+
+    private UserDirectory userDirectory;
+    private UsernameFilter usernameFilter;
+    private UserEventListener listener;
+
+    @BeforeEach
+    void setUp() {
+        userDirectory = mock(UserDirectory.class);
+        usernameFilter = mock(UsernameFilter.class);
+        listener = new UserEventListener(new EventCodecRegistry(
+                List.of(new JsonEventCodec(new ObjectMapper().registerModule(new JavaTimeModule()))), JsonEventCodec.NAME),
+                userDirectory, usernameFilter);
+    }
+
+    @Test
+    void givenFilterAlreadyRead_whenOnPartitionsAssigned_thenSeeksBackToItAndReportsFeedLive() {
+        when(usernameFilter.feedResumeFrom()).thenReturn(1_700_000_000_000L);
+        ConsumerSeekAware.ConsumerSeekCallback callback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+        TopicPartition partition = new TopicPartition("user-commands", 0);
+
+        listener.onPartitionsAssigned(Map.of(partition, 0L), callback);
+
+        verify(callback).seekToTimestamp(Set.of(partition), 1_700_000_000_000L);
+        verify(usernameFilter).feedAssigned();
+    }
+
+    @Test
+    void givenFilterNotReadYet_whenOnPartitionsAssigned_thenStaysAtLatest() {
+        when(usernameFilter.feedResumeFrom()).thenReturn(0L);
+        ConsumerSeekAware.ConsumerSeekCallback callback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+
+        listener.onPartitionsAssigned(Map.of(new TopicPartition("user-commands", 0), 0L), callback);
+
+        verifyNoInteractions(callback);
+        verify(usernameFilter).feedAssigned();
+    }
+
+    @Test
+    void givenIgnoredCommand_whenOnMessage_thenFeedLagStillReported() {
+        when(userDirectory.handles("LOGIN_ATTEMPT")).thenReturn(false);
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("user-commands", 0, 0L, "u1",
+                "{}".getBytes(StandardCharsets.UTF_8));
+        EventHeaders.add(record.headers(), EventHeaders.COMMAND_HEADER, "LOGIN_ATTEMPT");
+
+        listener.onMessage(record);
+
+        verify(usernameFilter).feedApplied(record.timestamp());
+        verify(userDirectory, never()).onUserEvent(any());
+    }
+
+    @Test
+    void givenPartitionsRevoked_whenOnPartitionsRevoked_thenFilterStopsRulingNamesOut() {
+        listener.onPartitionsRevoked(List.of(new TopicPartition("user-commands", 0)));
+
+        verify(usernameFilter).feedRevoked();
+    }
+}
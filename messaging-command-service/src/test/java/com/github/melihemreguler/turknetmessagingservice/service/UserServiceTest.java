@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.time.LocalDateTime;
@@ -29,6 +30,10 @@ class UserServiceTest {
     private KafkaProducerService kafkaProducerService;
     @Mock
     private SessionService sessionService;
+    @Mock
+    private UserDirectory userDirectory;
+    @Mock
+    private UsernameFilter usernameFilter;
 
     @InjectMocks
     private UserService userService;
@@ -36,6 +41,7 @@ class UserServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(usernameFilter.mightExist(anyString())).thenReturn(true);
     }
 
     @Test
@@ -58,6 +64,7 @@ class UserServiceTest {
         assertEquals(request.username(), result.getUsername());
         verify(userRepository).save(any(UserDto.class));
         verify(kafkaProducerService).sendUserCommand(any(UserActivityEvent.class), eq("user-id"));
+        verify(userDirectory).put("user-id", "newuser");
     }
 
     @Test
@@ -71,6 +78,52 @@ class UserServiceTest {
                 userService.registerUser(request, "127.0.0.1", "agent"));
     }
 
+    @Test
+    void givenUsernameRuledOutByFilter_whenRegisterUser_thenExistenceCheckSkipped() {
+        // Given
+        UserRegisterRequest request = new UserRegisterRequest("newuser", "pass", "mail@example.com");
+        when(usernameFilter.mightExist("newuser")).thenReturn(false);
+        when(passwordEncoder.encode(anyString())).thenReturn("hashedpass");
+        UserDto saved = new UserDto("newuser", "hashedpass");
+        saved.setId("user-id");
+        when(userRepository.save(any(UserDto.class))).thenReturn(saved);
+
+        // When
+        userService.registerUser(request, "127.0.0.1", "agent");
+
+        // Then
+        verify(userRepository, never()).existsByUsername(any());
+        verify(userRepository).save(any(UserDto.class));
+    }
+
+    @Test
+    void givenUsernameTakenOnAnotherReplica_whenRegisterUser_thenThrowsConflictException() {
+        // Given
+        UserRegisterRequest request = new UserRegisterRequest("newuser", "pass", "mail@example.com");
+        when(usernameFilter.mightExist("newuser")).thenReturn(false);
+        when(passwordEncoder.encode(anyString())).thenReturn("hashedpass");
+        when(userRepository.save(any(UserDto.class))).thenThrow(new DuplicateKeyException("E11000"));
+
+        // When & Then
+        assertThrows(ConflictException.class, () -> userService.registerUser(request, "127.0.0.1", "agent"));
+        verify(kafkaProducerService, never()).sendUserCommand(any(), any());
+    }
+
+    @Test
+    void givenUsernameRuledOutByFilter_whenAuthenticateUser_thenFailsWithoutQuery() {
+        // Given
+        when(usernameFilter.mightExist("ghost")).thenReturn(false);
+
+        // When
+        UserService.AuthenticationResult result = userService.authenticateUser(
+                new LoginRequest("ghost", "pass"), "127.0.0.1", "agent");
+
+        // Then
+        assertFalse(result.successful());
+        assertEquals("User not found", result.failureReason());
+        verify(userRepository, never()).findByUsername(any());
+    }
+
     @Test
     void givenValidCredentials_whenAuthenticateUser_thenReturnsSuccess() {
         // Given
@@ -0,0 +1,142 @@
+package com.github.melihemreguler.turknetmessagingservice.service;
+
+import com.github.melihemreguler.turknetmessagingservice.dto.UserDto;
+import com.github.melihemreguler.turknetmessagingservice.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UsernameFilterTest {
+
+    private UserRepository userRepository;
+    private MeterRegistry meterRegistry;
+    private AtomicLong now;
+    private UsernameFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        now = new AtomicLong(1_000_000);
+        filter = new UsernameFilter(userRepository, meterRegistry, true, 1000, 0.001, 5000, now::get);
+    }
+
+    @Test
+    void givenFilterNotBuiltYet_whenMightExist_thenEveryNamePossible() {
+        assertTrue(filter.mightExist("anyone"));
+    }
+
+    @Test
+    void givenBuiltFilter_whenMightExist_thenUnknownNamesRuledOutAndCounted() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(user("alice"), user("bob")));
+        filter.rebuild();
+        feedCaughtUp();
+
+        assertTrue(filter.mightExist("alice"));
+        assertTrue(filter.mightExist("bob"));
+        assertFalse(filter.mightExist("mallory"));
+
+        assertEquals(1, meterRegistry.get(UsernameFilter.LOOKUPS_METRIC).tag("result", "absent").counter().count());
+        assertEquals(2, meterRegistry.get(UsernameFilter.LOOKUPS_METRIC).tag("result", "possible").counter().count());
+        assertTrue(meterRegistry.get(UsernameFilter.BYTES_METRIC).gauge().value() > 0);
+        assertTrue(meterRegistry.get(UsernameFilter.FALSE_POSITIVE_RATE_METRIC).gauge().value() < 0.001);
+    }
+
+    @Test
+    void givenUsernameAddedWhileRebuilding_whenRebuildSwaps_thenNameIsKept() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(user("alice")).peek(u -> filter.add("carol")));
+
+        filter.rebuild();
+        feedCaughtUp();
+
+        assertTrue(filter.mightExist("carol"));
+    }
+
+    @Test
+    void givenBuiltFilterWithoutUserEventFeed_whenMightExist_thenEveryNamePossible() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(user("alice")));
+        filter.rebuild();
+
+        assertTrue(filter.mightExist("mallory"));
+
+        filter.feedAssigned();
+        now.addAndGet(4_999);
+        assertTrue(filter.mightExist("mallory"));
+    }
+
+    @Test
+    void givenUserEventFeedLagging_whenMightExist_thenEveryNamePossibleUntilItCatchesUp() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(user("alice")));
+        filter.rebuild();
+        feedCaughtUp();
+
+        filter.feedApplied(now.get() - 30_000);
+        assertTrue(filter.mightExist("mallory"));
+
+        filter.feedApplied(now.get() - 100);
+        assertFalse(filter.mightExist("mallory"));
+    }
+
+    @Test
+    void givenUserEventFeedRevoked_whenMightExist_thenEveryNamePossible() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(user("alice")));
+        filter.rebuild();
+        feedCaughtUp();
+
+        filter.feedRevoked();
+
+        assertTrue(filter.mightExist("mallory"));
+    }
+
+    @Test
+    void givenFilterReadAtSomeTime_whenFeedResumeFrom_thenThatTimeLessSkewMargin() {
+        assertEquals(0, filter.feedResumeFrom());
+
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of(user("alice")));
+        filter.rebuild();
+        now.addAndGet(60_000);
+
+        assertEquals(1_000_000 - 5_000, filter.feedResumeFrom());
+    }
+
+    @Test
+    void givenRebuildFails_whenMightExist_thenPreviousAnswersKept() {
+        when(userRepository.streamAllUsernames())
+                .thenReturn(Stream.of(user("alice")))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        filter.rebuild();
+        feedCaughtUp();
+
+        filter.rebuild();
+
+        assertTrue(filter.mightExist("alice"));
+        assertFalse(filter.mightExist("mallory"));
+    }
+
+    @Test
+    void givenFilterDisabled_whenRebuild_thenNoQueryAndEveryNamePossible() {
+        UsernameFilter disabled = new UsernameFilter(userRepository, meterRegistry, false, 1000, 0.001, 5000, now::get);
+
+        disabled.rebuild();
+
+        assertTrue(disabled.mightExist("mallory"));
+        verifyNoInteractions(userRepository);
+    }
+
+    private void feedCaughtUp() {
+        filter.feedAssigned();
+        now.addAndGet(5_000);
+    }
+
+    private static UserDto user(String username) {
+        return new UserDto(username, "hash");
+    }
+}
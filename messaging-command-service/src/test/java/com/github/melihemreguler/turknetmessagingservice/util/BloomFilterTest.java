@@ -0,0 +1,46 @@
+package com.github.melihemreguler.turknetmessagingservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void givenInsertedKeys_whenMightContain_thenNeverFalseNegative() {
+        BloomFilter filter = BloomFilter.create(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.put("key-" + i);
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+    }
+
+    @Test
+    void givenFilterAtCapacity_whenProbingAbsentKeys_thenFalsePositiveRateNearTarget() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("present-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertTrue(filter.expectedFalsePositiveRate() < 0.03);
+    }
+
+    @Test
+    void givenEmptyFilter_whenMightContain_thenFalse() {
+        BloomFilter filter = BloomFilter.create(10, 0.01);
+
+        assertFalse(filter.mightContain("anything"));
+        assertEquals(0.0, filter.expectedFalsePositiveRate());
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.melihemreguler.turknetmessagingservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void givenFarMoreKeysThanInitialCapacity_whenMightContain_thenNeverFalseNegative() {
+        ScalableBloomFilter filter = ScalableBloomFilter.create(100, 0.01);
+        for (int i = 0; i < 5_000; i++) {
+            filter.put("key-" + i);
+        }
+
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+        assertTrue(filter.layerCount() > 1);
+    }
+
+    @Test
+    void givenGrownFilter_whenProbingAbsentKeys_thenFalsePositiveRateStaysBounded() {
+        ScalableBloomFilter filter = ScalableBloomFilter.create(1_000, 0.01);
+        for (int i = 0; i < 20_000; i++) {
+            filter.put("present-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 20_000; i++) {
+            if (filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+        // A single layer sized for 1k keys would answer almost everything positive by now.
+        assertTrue(falsePositives / 20_000.0 < 0.03, "observed rate " + falsePositives / 20_000.0);
+        assertTrue(filter.expectedFalsePositiveRate() < 0.03);
+    }
+
+    @Test
+    void givenRepeatedKey_whenPut_thenCapacityNotConsumed() {
+        ScalableBloomFilter filter = ScalableBloomFilter.create(10, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.put("same");
+        }
+
+        assertEquals(1, filter.layerCount());
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.melihemreguler.messagingconsumer.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes Kafka event payloads in one wire format, identified by the
+ * {@link com.github.melihemreguler.messagingconsumer.constants.KafkaConstants#CONTENT_TYPE_HEADER}
+ * the producer sets.
+ */
+public interface EventCodec {
+
+    String contentType();
+
+    byte[] encode(Object event) throws JsonProcessingException;
+
+    <T> T decode(byte[] payload, Class<T> type) throws IOException;
+}
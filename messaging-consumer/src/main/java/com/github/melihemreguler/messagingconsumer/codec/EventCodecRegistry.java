@@ -0,0 +1,39 @@
+package com.github.melihemreguler.messagingconsumer.codec;
+
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Decodes a record's payload with the codec named by its content-type header,
+ * falling back to JSON for records written before the header existed.
+ */
+@Component
+public class EventCodecRegistry {
+
+    private final Map<String, EventCodec> byContentType;
+
+    public EventCodecRegistry(List<EventCodec> codecs) {
+        this.byContentType = codecs.stream().collect(Collectors.toMap(EventCodec::contentType, Function.identity()));
+    }
+
+    public <T> T decode(ConsumerRecord<String, byte[]> record, Class<T> type) throws IOException {
+        String contentType = EventHeaders.value(record, KafkaConstants.CONTENT_TYPE_HEADER);
+        EventCodec codec = byContentType.get(contentType != null ? contentType : JsonEventCodec.CONTENT_TYPE);
+        if (codec == null) {
+            throw new IOException("Unsupported event content type: " + contentType);
+        }
+
+        String version = EventHeaders.value(record, KafkaConstants.SCHEMA_VERSION_HEADER);
+        if (version != null && Integer.parseInt(version) > EventSchemas.CURRENT_VERSION) {
+            throw new IOException("Unsupported event schema version: " + version);
+        }
+        return codec.decode(record.value(), type);
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.melihemreguler.messagingconsumer.codec;
+
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the routing headers the producer writes next to each payload. Every
+ * accessor returns {@code null} for records written before those headers existed.
+ */
+public final class EventHeaders {
+
+    private EventHeaders() {
+    }
+
+    public static String command(ConsumerRecord<String, byte[]> record) {
+        return value(record, KafkaConstants.COMMAND_HEADER);
+    }
+
+    public static String userId(ConsumerRecord<String, byte[]> record) {
+        return value(record, KafkaConstants.USER_ID_HEADER);
+    }
+
+    public static String sessionId(ConsumerRecord<String, byte[]> record) {
+        return value(record, KafkaConstants.SESSION_ID_HEADER);
+    }
+
+    static String value(ConsumerRecord<String, byte[]> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
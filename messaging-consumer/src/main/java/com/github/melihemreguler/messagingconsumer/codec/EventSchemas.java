@@ -0,0 +1,48 @@
+package com.github.melihemreguler.messagingconsumer.codec;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.melihemreguler.messagingconsumer.model.MessageCommandEvent;
+import com.github.melihemreguler.messagingconsumer.model.SessionEvent;
+import com.github.melihemreguler.messagingconsumer.model.UserActivityEvent;
+
+/**
+ * Positional layouts of the Kafka events for compact formats. They must match
+ * the orders messaging-command-service writes.
+ *
+ * <p>Fields missing from an older, shorter record are left at their defaults.
+ * Records of a newer {@link #CURRENT_VERSION} are rejected, and so end up in the
+ * dead-letter topic, until this service is upgraded and they are replayed.
+ */
+public final class EventSchemas {
+
+    public static final int CURRENT_VERSION = 1;
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"command", "threadId", "senderId", "senderUsername", "content", "timestamp",
+            "recipientId", "recipientUsername", "messageId"})
+    private interface MessageCommandV1 {}
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"command", "hashedSessionId", "userId", "expiresAt", "ipAddress", "userAgent", "timestamp"})
+    private interface SessionEventV1 {}
+
+    // The derived is* helpers would otherwise be written as extra trailing elements.
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonIgnoreProperties({"userCreation", "loginAttempt"})
+    @JsonPropertyOrder({"command", "username", "userId", "ipAddress", "userAgent", "successful", "timestamp",
+            "failureReason", "email"})
+    private interface UserActivityEventV1 {}
+
+    private EventSchemas() {
+    }
+
+    static ObjectMapper register(ObjectMapper mapper) {
+        return mapper
+                .addMixIn(MessageCommandEvent.class, MessageCommandV1.class)
+                .addMixIn(SessionEvent.class, SessionEventV1.class)
+                .addMixIn(UserActivityEvent.class, UserActivityEventV1.class);
+    }
+}
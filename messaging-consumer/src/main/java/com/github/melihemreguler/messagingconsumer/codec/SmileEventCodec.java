@@ -0,0 +1,40 @@
+package com.github.melihemreguler.messagingconsumer.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Binary Smile encoding with each event written as a positional array in the
+ * layout of {@link EventSchemas}, so records carry no field names at all.
+ */
+@Component
+public class SmileEventCodec implements EventCodec {
+
+    public static final String CONTENT_TYPE = "application/x-jackson-smile";
+
+    private final ObjectMapper smileMapper;
+
+    public SmileEventCodec(ObjectMapper objectMapper) {
+        // Same modules and date handling as the JSON mapper, different wire format.
+        this.smileMapper = EventSchemas.register(objectMapper.copyWith(new SmileFactory()));
+    }
+
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public byte[] encode(Object event) throws JsonProcessingException {
+        return smileMapper.writeValueAsBytes(event);
+    }
+
+    @Override
+    public <T> T decode(byte[] payload, Class<T> type) throws IOException {
+        return smileMapper.readValue(payload, type);
+    }
+}
@@ -5,14 +5,56 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retry policy for failed command records.
+ *
+ * <p>Attempt {@code n} is published to retry tier {@code min(n, tiers) - 1}. Each
+ * tier is its own topic with a fixed delay of {@code initial-interval-ms *
+ * multiplier^tier}, capped at {@code max-interval-ms}, so records in a tier
+ * become due in the order they were written. Tier 0 is the configured
+ * {@code *-retry} topic; higher tiers append {@code .tier<n>} to it.
+ */
 @Configuration
 @ConfigurationProperties(prefix = "app.kafka.retry")
 @Getter
 @Setter
 public class KafkaRetryConfig {
 
+    private static final String TIER_SUFFIX = ".tier";
+
     private int maxRetry;
-    
 
-    private String cron;
+    private int tiers = 3;
+
+    private long initialIntervalMs = 1000;
+
+    private double multiplier = 10;
+
+    private long maxIntervalMs = 300_000;
+
+    // Longest a batch listener waits for its retry and dead-letter sends before failing the poll.
+    private long sendTimeoutMs = 30_000;
+
+    public int tierFor(int attempt) {
+        return Math.min(Math.max(attempt, 1), Math.max(tiers, 1)) - 1;
+    }
+
+    public long delayMsForTier(int tier) {
+        return (long) Math.min(initialIntervalMs * Math.pow(multiplier, tier), maxIntervalMs);
+    }
+
+    public String tierTopic(String retryTopic, int tier) {
+        return tier == 0 ? retryTopic : retryTopic + TIER_SUFFIX + tier;
+    }
+
+    public List<String> tierTopics(String retryTopic) {
+        List<String> topics = new ArrayList<>();
+        for (int tier = 0; tier < Math.max(tiers, 1); tier++) {
+            topics.add(tierTopic(retryTopic, tier));
+        }
+        return topics;
+    }
 }
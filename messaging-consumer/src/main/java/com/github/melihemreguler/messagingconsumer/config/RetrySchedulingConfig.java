@@ -0,0 +1,28 @@
+package com.github.melihemreguler.messagingconsumer.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Pauses retry-tier partitions until their head record is due and resumes them
+ * from a scheduler thread, so no listener thread waits on a backoff.
+ */
+@Configuration
+public class RetrySchedulingConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler retryResumeScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("retry-resume-");
+        return scheduler;
+    }
+
+    @Bean
+    public ListenerContainerPauseService listenerContainerPauseService(KafkaListenerEndpointRegistry registry,
+                                                                       ThreadPoolTaskScheduler retryResumeScheduler) {
+        return new ListenerContainerPauseService(registry, retryResumeScheduler);
+    }
+}
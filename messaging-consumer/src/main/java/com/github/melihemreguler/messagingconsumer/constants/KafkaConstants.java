@@ -10,6 +10,42 @@ public final class KafkaConstants {
      */
     public static final String RETRY_COUNT_HEADER = "x-retryCount";
     
+    /**
+     * Epoch millis before which a retry record must not be processed
+     */
+    public static final String NOT_BEFORE_HEADER = "x-notBefore";
+    
+    /**
+     * Topic a dead-lettered record was originally consumed from, and is replayed to
+     */
+    public static final String ORIGINAL_TOPIC_HEADER = "x-originalTopic";
+    
+    /**
+     * Class and message of the last failure of a dead-lettered record
+     */
+    public static final String ERROR_CLASS_HEADER = "x-errorClass";
+    public static final String ERROR_MESSAGE_HEADER = "x-errorMessage";
+    
+    /**
+     * ISO-8601 instant at which a record was dead-lettered
+     */
+    public static final String FAILED_AT_HEADER = "x-failedAt";
+    
+    /**
+     * Wire format of the payload and the version of its positional layout; set by
+     * the producer and carried over unchanged to retry and dead-letter records
+     */
+    public static final String CONTENT_TYPE_HEADER = "x-contentType";
+    public static final String SCHEMA_VERSION_HEADER = "x-schemaVersion";
+    
+    /**
+     * Command and ids of the event, copied out of the payload by the producer so
+     * records can be dispatched before, or instead of, decoding it
+     */
+    public static final String COMMAND_HEADER = "x-command";
+    public static final String USER_ID_HEADER = "x-userId";
+    public static final String SESSION_ID_HEADER = "x-sessionId";
+    
     private KafkaConstants() {
         throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
     }
@@ -0,0 +1,40 @@
+package com.github.melihemreguler.messagingconsumer.controller;
+
+import com.github.melihemreguler.messagingconsumer.service.DeadLetterReplayService;
+import com.github.melihemreguler.messagingconsumer.service.DeadLetterReplayService.ReplayResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/dead-letters")
+@RequiredArgsConstructor
+@Slf4j
+public class DeadLetterController {
+
+    static final int MAX_REPLAY_LIMIT = 1000;
+
+    private final DeadLetterReplayService deadLetterReplayService;
+
+    /**
+     * Republishes up to {@code limit} dead letters of one command type
+     * ({@code message-commands}, {@code user-commands} or {@code session-commands}).
+     */
+    @PostMapping("/{commandType}/replay")
+    public ResponseEntity<ReplayResult> replay(@PathVariable String commandType,
+                                               @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_REPLAY_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.info("Dead letter replay requested for {} (limit {})", commandType, limit);
+        return deadLetterReplayService.replay(commandType, limit)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.melihemreguler.messagingconsumer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounded slice of one user's activity log: entries from a single day, at most
+ * {@code app.activity-logs.bucket-size} of them. A busy day simply opens another
+ * bucket, so no document grows without bound.
+ */
+@Document(collection = "activity_log_buckets")
+@CompoundIndex(
+        name = "userId_1_bucketStart_-1_firstAt_-1",
+        def = "{'userId': 1, 'bucketStart': -1, 'firstAt': -1}"
+)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ActivityLogBucketDto {
+
+    @Id
+    private String id;
+
+    private String userId;
+    // Midnight of the day the entries fall on.
+    private LocalDateTime bucketStart;
+    private int count;
+    private LocalDateTime firstAt;
+    private LocalDateTime lastAt;
+
+    @Builder.Default
+    private List<ActivityLogDto.ActivityEntry> logs = new ArrayList<>();
+
+    public static LocalDateTime bucketStartOf(LocalDateTime timestamp) {
+        return timestamp.toLocalDate().atStartOfDay();
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.melihemreguler.messagingconsumer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inbox read model: one document per (user, thread), holding the latest message
+ * of the thread as seen by that user.
+ */
+@Document(collection = "conversations")
+@CompoundIndex(
+        name = "userId_1_lastMessageAt_-1",
+        def = "{'userId': 1, 'lastMessageAt': -1}"
+)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConversationDto {
+
+    // Deterministic "<userId>:<threadId>" so projections are idempotent upserts.
+    @Id
+    private String id;
+
+    private String userId;
+    private String threadId;
+    private String otherUserId;
+    private String otherUsername;
+    private MessageDto lastMessage;
+    private LocalDateTime lastMessageAt;
+
+    public static String idFor(String userId, String threadId) {
+        return userId + ":" + threadId;
+    }
+}
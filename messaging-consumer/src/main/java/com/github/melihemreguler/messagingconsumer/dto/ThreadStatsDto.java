@@ -0,0 +1,32 @@
+package com.github.melihemreguler.messagingconsumer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Running per-thread counters, keyed by threadId, so history requests can report
+ * a total without counting the thread's messages.
+ */
+@Document(collection = "thread_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ThreadStatsDto {
+
+    @Id
+    private String threadId;
+
+    private long messageCount;
+    private LocalDateTime firstMessageAt;
+    private LocalDateTime lastMessageAt;
+    // senderId -> messages sent by that participant
+    private Map<String, Long> senderCounts;
+}
@@ -17,14 +17,6 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Not Found");
     }
     
-    @ExceptionHandler(MaxRetryExceededException.class)
-    public void handleMaxRetryExceeded(MaxRetryExceededException ex) {
-        log.error("Max retry attempts ({}) exceeded for message. Original error: {}", 
-                 ex.getMaxRetryAttempts(), ex.getOriginalException().getMessage());
-        log.error("Failed message: {}", ex.getOriginalMessage());
-        
-    }
-    
     @ExceptionHandler(UnknownMessageCommandException.class)
     public void handleUnknownMessageCommand(UnknownMessageCommandException ex) {
         log.warn("Unknown message command received: {}", ex.getUnknownCommand());
@@ -22,6 +22,23 @@ public class MessageCommandEvent {
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSSSS")
     private LocalDateTime timestamp;
     
+    // Absent on events produced before the conversations read model existed.
+    private String recipientId;
+    private String recipientUsername;
+    
+    // Assigned by the command service and stored as _id; absent on older events.
+    private String messageId;
+    
+    public MessageCommandEvent(String command, String threadId, String senderId, String senderUsername,
+                               String content, LocalDateTime timestamp) {
+        this(command, threadId, senderId, senderUsername, content, timestamp, null, null);
+    }
+    
+    public MessageCommandEvent(String command, String threadId, String senderId, String senderUsername,
+                               String content, LocalDateTime timestamp, String recipientId, String recipientUsername) {
+        this(command, threadId, senderId, senderUsername, content, timestamp, recipientId, recipientUsername, null);
+    }
+    
     @JsonProperty("command")
     public String getCommand() {
         return command;
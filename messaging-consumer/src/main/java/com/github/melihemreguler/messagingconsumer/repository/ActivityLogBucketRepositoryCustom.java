@@ -0,0 +1,20 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogDto;
+
+import java.util.List;
+
+public interface ActivityLogBucketRepositoryCustom {
+
+    /**
+     * Appends the entry to the user's open bucket for the entry's day with a single
+     * atomic upsert, opening a new bucket once the current one holds {@code bucketSize}.
+     */
+    void append(String userId, ActivityLogDto.ActivityEntry entry, int bucketSize);
+
+    /**
+     * Appends several entries for one user, issuing one {@code $push: {$each: [...]}}
+     * upsert per day and per {@code bucketSize} chunk rather than one per entry.
+     */
+    void appendAll(String userId, List<ActivityLogDto.ActivityEntry> entries, int bucketSize);
+}
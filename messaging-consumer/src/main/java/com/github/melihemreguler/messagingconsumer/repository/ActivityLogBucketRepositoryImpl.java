@@ -0,0 +1,69 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogBucketDto;
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class ActivityLogBucketRepositoryImpl implements ActivityLogBucketRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void append(String userId, ActivityLogDto.ActivityEntry entry, int bucketSize) {
+        appendAll(userId, List.of(entry), bucketSize);
+    }
+
+    @Override
+    public void appendAll(String userId, List<ActivityLogDto.ActivityEntry> entries, int bucketSize) {
+        Map<LocalDateTime, List<ActivityLogDto.ActivityEntry>> byDay = new LinkedHashMap<>();
+        for (ActivityLogDto.ActivityEntry entry : entries) {
+            byDay.computeIfAbsent(ActivityLogBucketDto.bucketStartOf(timestampOf(entry)), day -> new ArrayList<>()).add(entry);
+        }
+
+        byDay.forEach((day, dayEntries) -> {
+            for (int from = 0; from < dayEntries.size(); from += bucketSize) {
+                pushChunk(userId, day, dayEntries.subList(from, Math.min(from + bucketSize, dayEntries.size())), bucketSize);
+            }
+        });
+    }
+
+    private void pushChunk(String userId, LocalDateTime bucketStart, List<ActivityLogDto.ActivityEntry> chunk, int bucketSize) {
+        // Only a bucket with room for the whole chunk matches; otherwise the upsert opens the
+        // next one. Two concurrent first writes may open two partial buckets; reads don't
+        // depend on buckets being full.
+        Query query = new Query(Criteria.where("userId").is(userId)
+                .and("bucketStart").is(bucketStart)
+                .and("count").lte(bucketSize - chunk.size()));
+
+        LocalDateTime first = chunk.stream().map(ActivityLogBucketRepositoryImpl::timestampOf)
+                .min(LocalDateTime::compareTo).orElseThrow();
+        LocalDateTime last = chunk.stream().map(ActivityLogBucketRepositoryImpl::timestampOf)
+                .max(LocalDateTime::compareTo).orElseThrow();
+
+        Update update = new Update()
+                .inc("count", chunk.size())
+                .min("firstAt", first)
+                .max("lastAt", last);
+        update.push("logs").each(chunk.toArray());
+
+        mongoTemplate.upsert(query, update, ActivityLogBucketDto.class);
+    }
+
+    private static LocalDateTime timestampOf(ActivityLogDto.ActivityEntry entry) {
+        if (entry.getTimestamp() == null) {
+            entry.setTimestamp(LocalDateTime.now());
+        }
+        return entry.getTimestamp();
+    }
+}
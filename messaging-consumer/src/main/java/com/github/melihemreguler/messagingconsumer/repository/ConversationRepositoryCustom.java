@@ -0,0 +1,14 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.ConversationDto;
+
+public interface ConversationRepositoryCustom {
+
+    /**
+     * Upserts the conversation unless it already holds a message at least as recent.
+     * Out-of-order or replayed deliveries therefore never move an inbox entry backwards.
+     *
+     * @return true if the document was written
+     */
+    boolean upsertIfNewer(ConversationDto conversation);
+}
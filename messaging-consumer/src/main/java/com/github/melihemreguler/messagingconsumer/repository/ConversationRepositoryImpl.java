@@ -0,0 +1,44 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.ConversationDto;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+@RequiredArgsConstructor
+public class ConversationRepositoryImpl implements ConversationRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean upsertIfNewer(ConversationDto conversation) {
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("_id").is(conversation.getId()),
+                new Criteria().orOperator(
+                        Criteria.where("lastMessageAt").lt(conversation.getLastMessageAt()),
+                        Criteria.where("lastMessageAt").exists(false))));
+
+        Update update = new Update()
+                .set("userId", conversation.getUserId())
+                .set("threadId", conversation.getThreadId())
+                .set("otherUserId", conversation.getOtherUserId())
+                .set("lastMessage", conversation.getLastMessage())
+                .set("lastMessageAt", conversation.getLastMessageAt());
+        if (conversation.getOtherUsername() != null) {
+            update.set("otherUsername", conversation.getOtherUsername());
+        }
+
+        try {
+            UpdateResult result = mongoTemplate.upsert(query, update, ConversationDto.class);
+            return result.getMatchedCount() > 0 || result.getUpsertedId() != null;
+        } catch (DuplicateKeyException e) {
+            // The document exists with a newer lastMessageAt, so the filter missed and the upsert
+            // tried to insert a second document with the same _id.
+            return false;
+        }
+    }
+}
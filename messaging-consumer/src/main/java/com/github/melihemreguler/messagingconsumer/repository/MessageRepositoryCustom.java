@@ -0,0 +1,33 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+
+import java.util.List;
+import java.util.Set;
+
+public interface MessageRepositoryCustom {
+
+    /**
+     * Inserts all messages with one unordered bulk write. Every message without an id
+     * is given one up front, so callers can use the inserted documents without reading
+     * them back. A message whose id is already stored is left as it is.
+     *
+     * @return positions in {@code messages} the server rejected, and those that were already stored
+     * @throws org.springframework.dao.DataAccessException if the write failed as a whole
+     */
+    BulkInsertResult insertAllUnordered(List<MessageDto> messages);
+
+    /**
+     * Inserts the message unless a message with its id is already stored.
+     *
+     * @return {@code false} if the message was already stored
+     */
+    boolean insertIfAbsent(MessageDto message);
+
+    record BulkInsertResult(Set<Integer> rejected, Set<Integer> duplicates) {
+
+        public static BulkInsertResult allInserted() {
+            return new BulkInsertResult(Set.of(), Set.of());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class MessageRepositoryImpl implements MessageRepositoryCustom {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public BulkInsertResult insertAllUnordered(List<MessageDto> messages) {
+        if (messages.isEmpty()) {
+            return BulkInsertResult.allInserted();
+        }
+        messages.forEach(MessageRepositoryImpl::assignIdIfMissing);
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MessageDto.class)
+                    .insert(messages)
+                    .execute();
+            return BulkInsertResult.allInserted();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().isEmpty()) {
+                // e.g. a write concern error: we can't tell which documents are durable.
+                throw e;
+            }
+            // Unordered: everything not listed here was written. A duplicate key on _id
+            // means a redelivered command whose message is already stored.
+            Map<Boolean, Set<Integer>> byDuplicate = e.getErrors().stream().collect(Collectors.partitioningBy(
+                    error -> error.getCode() == DUPLICATE_KEY,
+                    Collectors.mapping(BulkWriteError::getIndex, Collectors.toSet())));
+            return new BulkInsertResult(byDuplicate.get(false), byDuplicate.get(true));
+        }
+    }
+
+    @Override
+    public boolean insertIfAbsent(MessageDto message) {
+        assignIdIfMissing(message);
+        try {
+            mongoTemplate.insert(message);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    // Only events produced before ids were assigned upstream arrive without one.
+    private static void assignIdIfMissing(MessageDto message) {
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+    }
+}
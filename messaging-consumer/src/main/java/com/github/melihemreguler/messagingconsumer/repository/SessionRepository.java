@@ -2,17 +2,12 @@ package com.github.melihemreguler.messagingconsumer.repository;
 
 import com.github.melihemreguler.messagingconsumer.dto.SessionDto;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
-
 @Repository
-public interface SessionRepository extends MongoRepository<SessionDto, String> {
+public interface SessionRepository extends MongoRepository<SessionDto, String>, SessionRepositoryCustom {
     
-    Optional<SessionDto> findByHashedSessionId(String hashedSessionId);
+    long deleteByHashedSessionId(String hashedSessionId);
     
-    List<SessionDto> findByUserId(String userId);
+    long deleteByUserId(String userId);
 }
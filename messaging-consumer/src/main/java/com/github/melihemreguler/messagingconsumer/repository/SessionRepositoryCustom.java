@@ -0,0 +1,28 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.model.SessionEvent;
+
+import java.util.List;
+
+public interface SessionRepositoryCustom {
+
+    /**
+     * Makes the event's session the user's only one: removes the user's other
+     * sessions and upserts this one by its hash, in one ordered bulk write.
+     */
+    void replaceUserSessions(SessionEvent event);
+
+    /**
+     * Advances {@code lastAccessedAt} to the event time and sets the client details
+     * the event carries, without reading the session first. Targets the event's
+     * session, or one of the user's sessions when it names none. Returns whether
+     * one matched.
+     */
+    boolean touchUserSession(SessionEvent event);
+
+    /**
+     * Applies session commands in the given order with one ordered bulk write.
+     * Every command is idempotent, so a partially applied list can be replayed.
+     */
+    void applyAll(List<SessionEvent> events);
+}
@@ -0,0 +1,96 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.SessionDto;
+import com.github.melihemreguler.messagingconsumer.enums.SessionCommand;
+import com.github.melihemreguler.messagingconsumer.model.SessionEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class SessionRepositoryImpl implements SessionRepositoryCustom {
+
+    private static final String HASHED_SESSION_ID = "hashedSessionId";
+    private static final String USER_ID = "userId";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void replaceUserSessions(SessionEvent event) {
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, SessionDto.class);
+        addReplace(operations, event);
+        operations.execute();
+    }
+
+    @Override
+    public boolean touchUserSession(SessionEvent event) {
+        return mongoTemplate.updateFirst(touchTarget(event), touch(event), SessionDto.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public void applyAll(List<SessionEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, SessionDto.class);
+        for (SessionEvent event : events) {
+            switch (SessionCommand.fromString(event.getCommand())) {
+                case SAVE_SESSION -> operations.upsert(byHash(event), sessionFields(event));
+                case UPSERT_SESSION -> addReplace(operations, event);
+                case UPDATE_SESSION -> operations.updateOne(touchTarget(event), touch(event));
+                case DELETE_SESSION, EXPIRE_SESSION ->
+                        operations.remove(event.getHashedSessionId() != null ? byHash(event) : byUser(event));
+            }
+        }
+        operations.execute();
+    }
+
+    private static void addReplace(BulkOperations operations, SessionEvent event) {
+        operations.remove(Query.query(Criteria.where(USER_ID).is(event.getUserId())
+                .and(HASHED_SESSION_ID).ne(event.getHashedSessionId())));
+        operations.upsert(byHash(event), sessionFields(event));
+    }
+
+    private static Update sessionFields(SessionEvent event) {
+        LocalDateTime at = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+        return new Update()
+                .set(USER_ID, event.getUserId())
+                .set("expiresAt", event.getExpiresAt())
+                .set("ipAddress", event.getIpAddress())
+                .set("userAgent", event.getUserAgent())
+                .set("lastAccessedAt", at)
+                .setOnInsert("createdAt", at);
+    }
+
+    // Buffered last-access updates can arrive late or out of order, so the stored time only moves forward.
+    private static Update touch(SessionEvent event) {
+        LocalDateTime at = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+        Update update = new Update().max("lastAccessedAt", at);
+        if (event.getIpAddress() != null) {
+            update.set("ipAddress", event.getIpAddress());
+        }
+        if (event.getUserAgent() != null) {
+            update.set("userAgent", event.getUserAgent());
+        }
+        return update;
+    }
+
+    private static Query touchTarget(SessionEvent event) {
+        return event.getHashedSessionId() != null ? byHash(event) : byUser(event);
+    }
+
+    private static Query byHash(SessionEvent event) {
+        return Query.query(Criteria.where(HASHED_SESSION_ID).is(event.getHashedSessionId()));
+    }
+
+    private static Query byUser(SessionEvent event) {
+        return Query.query(Criteria.where(USER_ID).is(event.getUserId()));
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.ThreadStatsDto;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ThreadStatsRepository
+        extends MongoRepository<ThreadStatsDto, String>, ThreadStatsRepositoryCustom {}
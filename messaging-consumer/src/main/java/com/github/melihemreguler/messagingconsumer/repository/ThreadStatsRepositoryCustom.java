@@ -0,0 +1,11 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+
+public interface ThreadStatsRepositoryCustom {
+
+    /**
+     * Folds one stored message into its thread's counters with a single atomic upsert.
+     */
+    void recordMessage(MessageDto message);
+}
@@ -0,0 +1,30 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+import com.github.melihemreguler.messagingconsumer.dto.ThreadStatsDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+@RequiredArgsConstructor
+public class ThreadStatsRepositoryImpl implements ThreadStatsRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void recordMessage(MessageDto message) {
+        Query query = new Query(Criteria.where("_id").is(message.getThreadId()));
+
+        Update update = new Update()
+                .inc("messageCount", 1)
+                .inc("senderCounts." + message.getSenderId(), 1);
+        if (message.getTimestamp() != null) {
+            update.min("firstMessageAt", message.getTimestamp())
+                    .max("lastMessageAt", message.getTimestamp());
+        }
+
+        mongoTemplate.upsert(query, update, ThreadStatsDto.class);
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogBucketDto;
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Splits legacy {@code activity_logs} documents (one ever-growing array per user)
+ * into {@code activity_log_buckets}.
+ *
+ * <p>Enabled with {@code app.activity-logs.migration.enabled=true}; runs on its own
+ * thread so the consumer starts serving immediately. Each user is migrated by
+ * inserting day buckets with deterministic ids and then deleting the legacy
+ * document, so an interrupted run can simply be restarted: buckets that already
+ * exist are skipped rather than overwritten, which also preserves any live
+ * entries appended to them in the meantime.
+ */
+@Component
+@ConditionalOnProperty(name = "app.activity-logs.migration.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityLogMigrationJob implements ApplicationRunner {
+
+    private static final LocalDateTime UNDATED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.activity-logs.bucket-size:200}")
+    private int bucketSize = 200;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread worker = new Thread(() -> {
+            try {
+                log.info("Starting activity log migration to buckets");
+                long users = migrate();
+                log.info("Activity log migration finished: {} users migrated", users);
+            } catch (Exception e) {
+                log.error("Activity log migration failed; restart to resume: {}", e.getMessage(), e);
+            }
+        }, "activity-log-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public long migrate() {
+        long migrated = 0;
+        try (Stream<ActivityLogDto> legacy = mongoTemplate.stream(new Query(), ActivityLogDto.class)) {
+            for (ActivityLogDto activityLog : (Iterable<ActivityLogDto>) legacy::iterator) {
+                migrateUser(activityLog);
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    void migrateUser(ActivityLogDto activityLog) {
+        for (ActivityLogBucketDto bucket : split(activityLog, bucketSize)) {
+            try {
+                mongoTemplate.insert(bucket);
+            } catch (DuplicateKeyException e) {
+                log.debug("Activity log bucket {} already migrated", bucket.getId());
+            }
+        }
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(activityLog.getId())), ActivityLogDto.class);
+        log.debug("Migrated {} activity log entries for user {}",
+                activityLog.getLogs() == null ? 0 : activityLog.getLogs().size(), activityLog.getUserId());
+    }
+
+    /**
+     * Groups the legacy entries by day, in their stored order, and cuts each day into
+     * buckets of at most {@code bucketSize}. Ids are {@code <userId>:<day>:<n>}.
+     */
+    static List<ActivityLogBucketDto> split(ActivityLogDto activityLog, int bucketSize) {
+        Map<LocalDateTime, List<ActivityLogDto.ActivityEntry>> byDay = new LinkedHashMap<>();
+        if (activityLog.getLogs() != null) {
+            for (ActivityLogDto.ActivityEntry entry : activityLog.getLogs()) {
+                // Entries without a timestamp can't be placed; file them on the epoch day.
+                LocalDateTime timestamp = entry.getTimestamp() != null ? entry.getTimestamp() : UNDATED;
+                byDay.computeIfAbsent(ActivityLogBucketDto.bucketStartOf(timestamp), day -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        List<ActivityLogBucketDto> buckets = new ArrayList<>();
+        byDay.forEach((day, entries) -> {
+            for (int from = 0, n = 0; from < entries.size(); from += bucketSize, n++) {
+                List<ActivityLogDto.ActivityEntry> slice = new ArrayList<>(
+                        entries.subList(from, Math.min(from + bucketSize, entries.size())));
+                buckets.add(ActivityLogBucketDto.builder()
+                        .id(activityLog.getUserId() + ":" + day.toLocalDate() + ":" + n)
+                        .userId(activityLog.getUserId())
+                        .bucketStart(day)
+                        .count(slice.size())
+                        .firstAt(slice.stream().map(ActivityLogDto.ActivityEntry::getTimestamp)
+                                .filter(Objects::nonNull).min(LocalDateTime::compareTo).orElse(day))
+                        .lastAt(slice.stream().map(ActivityLogDto.ActivityEntry::getTimestamp)
+                                .filter(Objects::nonNull).max(LocalDateTime::compareTo).orElse(day))
+                        .logs(slice)
+                        .build());
+            }
+        });
+        return buckets;
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+import com.github.melihemreguler.messagingconsumer.dto.UserDto;
+import com.github.melihemreguler.messagingconsumer.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * One-off rebuild of the {@code conversations} read model from {@code messages}.
+ *
+ * <p>Enabled with {@code app.conversations.backfill.enabled=true}. Streams the
+ * latest message of every thread (walking the {@code threadId_1_timestamp_-1}
+ * index) and projects it in batches. Projection only ever moves an entry
+ * forward, so the job is safe to run while live traffic is being consumed and
+ * safe to re-run.
+ */
+@Component
+@ConditionalOnProperty(name = "app.conversations.backfill.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationBackfillJob implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+    private final UserRepository userRepository;
+    private final ConversationProjectionService conversationProjectionService;
+
+    @Value("${app.conversations.backfill.batch-size:500}")
+    private int batchSize = 500;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Starting conversations backfill from messages");
+        long threads = backfill();
+        log.info("Conversations backfill finished: {} threads projected", threads);
+    }
+
+    public long backfill() {
+        AggregationOperation groupLatest = ctx -> new Document(
+                "$group",
+                new Document("_id", "$threadId")
+                        .append("latest", new Document("$first", "$$ROOT"))
+        );
+        AggregationOperation replaceRoot = ctx -> new Document(
+                "$replaceRoot", new Document("newRoot", "$latest")
+        );
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.sort(Sort.by(Sort.Direction.ASC, "threadId").and(Sort.by(Sort.Direction.DESC, "timestamp"))),
+                groupLatest,
+                replaceRoot
+        ).withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+
+        long projected = 0;
+        List<MessageDto> batch = new ArrayList<>(batchSize);
+        try (Stream<MessageDto> latest = mongoTemplate.aggregateStream(aggregation, "messages", MessageDto.class)) {
+            for (MessageDto message : (Iterable<MessageDto>) latest::iterator) {
+                batch.add(message);
+                if (batch.size() == batchSize) {
+                    projected += projectBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        projected += projectBatch(batch);
+        return projected;
+    }
+
+    private long projectBatch(List<MessageDto> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> userIds = new HashSet<>();
+        for (MessageDto message : batch) {
+            userIds.add(message.getSenderId());
+            userIds.add(ConversationProjectionService.otherParticipant(message.getThreadId(), message.getSenderId()));
+        }
+        Map<String, String> usernameById = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(UserDto::getId, UserDto::getUsername, (a, b) -> a));
+
+        for (MessageDto message : batch) {
+            String recipientId = ConversationProjectionService.otherParticipant(message.getThreadId(), message.getSenderId());
+            conversationProjectionService.project(message, recipientId, usernameById.get(recipientId),
+                    usernameById.getOrDefault(message.getSenderId(), message.getSenderUsername()));
+        }
+        log.debug("Backfilled {} conversations", batch.size());
+        return batch.size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.dto.ConversationDto;
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+import com.github.melihemreguler.messagingconsumer.dto.UserDto;
+import com.github.melihemreguler.messagingconsumer.repository.ConversationRepository;
+import com.github.melihemreguler.messagingconsumer.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maintains the {@code conversations} inbox read model: each persisted message
+ * refreshes the thread's entry for both participants.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationProjectionService {
+
+    private final ConversationRepository conversationRepository;
+    private final UserRepository userRepository;
+
+    public void project(MessageDto message, String recipientId, String recipientUsername) {
+        String otherId = recipientId != null ? recipientId : otherParticipant(message.getThreadId(), message.getSenderId());
+        String otherUsername = recipientUsername != null
+                ? recipientUsername
+                : userRepository.findById(otherId).map(UserDto::getUsername).orElse(null);
+
+        project(message, otherId, otherUsername, message.getSenderUsername());
+    }
+
+    /**
+     * Writes both participants' entries for a message whose usernames are already known.
+     */
+    public void project(MessageDto message, String recipientId, String recipientUsername, String senderUsername) {
+        String threadId = message.getThreadId();
+        String senderId = message.getSenderId();
+
+        conversationRepository.upsertIfNewer(conversation(senderId, threadId, recipientId, recipientUsername, message));
+        if (!recipientId.equals(senderId)) {
+            conversationRepository.upsertIfNewer(conversation(recipientId, threadId, senderId, senderUsername, message));
+        }
+        log.debug("Conversation {} projected for users {} and {}", threadId, senderId, recipientId);
+    }
+
+    /**
+     * threadId is {@code <minId>-<maxId>}; returns the participant that is not {@code selfId}.
+     */
+    static String otherParticipant(String threadId, String selfId) {
+        int dash = threadId.indexOf('-');
+        if (dash < 0) {
+            return selfId;
+        }
+        String left = threadId.substring(0, dash);
+        String right = threadId.substring(dash + 1);
+        return left.equals(selfId) ? right : left;
+    }
+
+    private static ConversationDto conversation(String userId, String threadId, String otherUserId,
+                                                String otherUsername, MessageDto message) {
+        return ConversationDto.builder()
+                .id(ConversationDto.idFor(userId, threadId))
+                .userId(userId)
+                .threadId(threadId)
+                .otherUserId(otherUserId)
+                .otherUsername(otherUsername)
+                .lastMessage(message)
+                .lastMessageAt(message.getTimestamp())
+                .build();
+    }
+}
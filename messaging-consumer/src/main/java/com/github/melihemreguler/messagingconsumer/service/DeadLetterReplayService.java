@@ -0,0 +1,124 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Republishes dead-lettered records to the topic they originally failed on.
+ *
+ * <p>The dead-letter topics are read under a dedicated consumer group, so a
+ * record is replayed once. It goes back with its original key, payload and codec
+ * headers but without retry headers, and so gets a fresh set of attempts. Offsets are
+ * committed only after the broker has acknowledged every republished record.
+ */
+@Service
+@Slf4j
+public class DeadLetterReplayService {
+
+    static final String REPLAY_GROUP_SUFFIX = "-dlq-replay";
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final String replayGroupId;
+    private final Map<String, String> deadLetterTopics;
+
+    public DeadLetterReplayService(ConsumerFactory<String, byte[]> consumerFactory,
+                                   KafkaTemplate<String, byte[]> kafkaTemplate,
+                                   @Value("${spring.kafka.consumer.group-id}") String groupId,
+                                   @Value("${app.kafka.topics.message-commands-dlq}") String messageCommandsDeadLetterTopic,
+                                   @Value("${app.kafka.topics.user-commands-dlq}") String userCommandsDeadLetterTopic,
+                                   @Value("${app.kafka.topics.session-commands-dlq}") String sessionCommandsDeadLetterTopic) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaTemplate = kafkaTemplate;
+        this.replayGroupId = groupId + REPLAY_GROUP_SUFFIX;
+        this.deadLetterTopics = Map.of(
+                "message-commands", messageCommandsDeadLetterTopic,
+                "user-commands", userCommandsDeadLetterTopic,
+                "session-commands", sessionCommandsDeadLetterTopic);
+    }
+
+    /**
+     * Replays up to {@code limit} records from the dead-letter topic of
+     * {@code commandType}, or returns empty if there is no such command type.
+     */
+    public synchronized Optional<ReplayResult> replay(String commandType, int limit) {
+        String topic = deadLetterTopics.get(commandType);
+        if (topic == null) {
+            return Optional.empty();
+        }
+
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, limit);
+
+        int replayed = 0;
+        int skipped = 0;
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(replayGroupId, null, null, overrides)) {
+            consumer.assign(consumer.partitionsFor(topic).stream()
+                    .map(partition -> new TopicPartition(topic, partition.partition()))
+                    .toList());
+
+            Map<TopicPartition, OffsetAndMetadata> processed = new HashMap<>();
+            List<CompletableFuture<?>> sends = new ArrayList<>();
+            while (replayed + skipped < limit) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (replayed + skipped >= limit) {
+                        break;
+                    }
+                    String originalTopic = headerValue(record, KafkaConstants.ORIGINAL_TOPIC_HEADER);
+                    if (originalTopic == null) {
+                        log.warn("Skipping dead letter {}-{}@{} without an original topic",
+                                record.topic(), record.partition(), record.offset());
+                        skipped++;
+                    } else {
+                        sends.add(kafkaTemplate.send(RetryPublisher.copyOf(originalTopic, record)));
+                        replayed++;
+                    }
+                    processed.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                }
+            }
+
+            // A failed send throws here, leaving the offsets uncommitted so the batch can be replayed again.
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+            if (!processed.isEmpty()) {
+                consumer.commitSync(processed);
+            }
+        }
+
+        log.info("Replayed {} dead letters from {} ({} skipped)", replayed, topic, skipped);
+        return Optional.of(new ReplayResult(topic, replayed, skipped));
+    }
+
+    private static String headerValue(ConsumerRecord<String, byte[]> record, String name) {
+        var header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    public record ReplayResult(String topic, int replayed, int skipped) {}
+}
@@ -0,0 +1,84 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the records of one poll on a fixed set of single-threaded lanes, routing
+ * each record by key so that records sharing a key run one after another in poll
+ * order while different keys proceed in parallel.
+ *
+ * <p>{@link #runAll} returns only when every record has finished, so a batch
+ * listener that calls it lets the container commit the poll's offsets only
+ * after all of its records are done; nothing past an unfinished record is ever
+ * committed. With {@code app.kafka.parallel.workers} at 1 records run inline on
+ * the listener thread.
+ */
+@Component
+@Slf4j
+public class KeyOrderedExecutor {
+
+    private final List<ExecutorService> lanes;
+
+    public KeyOrderedExecutor(@Value("${app.kafka.parallel.workers:16}") int workers) {
+        this.lanes = new ArrayList<>();
+        if (workers > 1) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            for (int i = 0; i < workers; i++) {
+                lanes.add(Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "key-ordered-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+            }
+        }
+        log.info("Key-ordered processing configured with {} lanes", Math.max(1, lanes.size()));
+    }
+
+    /**
+     * Processes every item, preserving order among items with the same key.
+     * If any task throws, the first failure is rethrown once all tasks have finished.
+     */
+    public <T> void runAll(List<T> items, Function<T, String> keyOf, Consumer<T> task) {
+        if (lanes.isEmpty() || items.size() <= 1) {
+            items.forEach(task);
+            return;
+        }
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>(items.size());
+        for (T item : items) {
+            pending.add(CompletableFuture.runAsync(() -> task.accept(item), laneFor(keyOf.apply(item))));
+        }
+
+        try {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private ExecutorService laneFor(String key) {
+        int hash = key == null ? 0 : key.hashCode();
+        return lanes.get(Math.floorMod(hash, lanes.size()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.forEach(ExecutorService::shutdown);
+    }
+}
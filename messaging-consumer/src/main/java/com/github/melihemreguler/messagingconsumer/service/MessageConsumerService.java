@@ -1,82 +1,204 @@
 package com.github.melihemreguler.messagingconsumer.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.melihemreguler.messagingconsumer.codec.EventCodecRegistry;
+import com.github.melihemreguler.messagingconsumer.codec.EventHeaders;
 import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
 import com.github.melihemreguler.messagingconsumer.model.MessageCommandEvent;
 import com.github.melihemreguler.messagingconsumer.repository.MessageRepository;
-import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
-import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import com.github.melihemreguler.messagingconsumer.repository.MessageRepositoryCustom.BulkInsertResult;
+import com.github.melihemreguler.messagingconsumer.repository.ThreadStatsRepository;
 import com.github.melihemreguler.messagingconsumer.enums.MessageStatus;
-import com.github.melihemreguler.messagingconsumer.exception.MaxRetryExceededException;
 import com.github.melihemreguler.messagingconsumer.exception.UnknownMessageCommandException;
+import com.github.melihemreguler.messagingconsumer.service.RetryPublisher.RetryRoute;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MessageConsumerService {
     
+    static final String RETRY_LISTENER_ID = "message-commands-retry";
+    
     private final MessageRepository messageRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final KafkaRetryConfig retryConfig;
-    private final ObjectMapper objectMapper;
+    private final RetryPublisher retryPublisher;
+    private final RetryDelayGate retryDelayGate;
+    private final EventCodecRegistry eventCodecs;
+    private final ConversationProjectionService conversationProjectionService;
+    private final ThreadStatsRepository threadStatsRepository;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    private final MessageEventPublisher messageEventPublisher;
+    
+    @Value("${app.kafka.topics.message-commands}")
+    private String messageCommandsTopic;
     
     @Value("${app.kafka.topics.message-commands-retry}")
     private String messageCommandsRetryTopic;
+    
+    @Value("${app.kafka.topics.message-commands-dlq}")
+    private String messageCommandsDeadLetterTopic;
 
-    @KafkaListener(topics = "${app.kafka.topics.message-commands}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeMessageCommand(String message, 
-                                    @Header(value = KafkaConstants.RETRY_COUNT_HEADER, defaultValue = "0") String retryCountHeader) {
-        log.info("Received message command: {}", message);
-        
-        int retryCount = Integer.parseInt(retryCountHeader);
-        
+    @KafkaListener(topics = "${app.kafka.topics.message-commands}", groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "#{!${app.kafka.batch.message-commands-enabled:true}}")
+    public void consumeMessageCommand(ConsumerRecord<String, byte[]> record) {
         try {
-            MessageCommandEvent event = objectMapper.readValue(message, MessageCommandEvent.class);
+            MessageCommandEvent event = decode(record);
+            log.info("Received message command: {}", event);
             
             if (isSendMessageCommand(event.getCommand())) {
-                processMessageCommand(event);
+                processMessageCommand(record, event);
             } else {
-                throw new UnknownMessageCommandException(event.getCommand(), message);
+                throw new UnknownMessageCommandException(event.getCommand(), event.toString());
             }
+        } catch (UnknownMessageCommandException e) {
+            log.warn("Unknown message command: {}", e.getMessage());
+            deadLetter(record, e);
         } catch (Exception e) {
             log.error("Error processing message command: {}", e.getMessage(), e);
-            handleRetry(message, retryCount, e);
+            handleRetry(record, e);
         }
     }
     
-    @KafkaListener(topics = "${app.kafka.topics.message-commands-retry}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeMessageCommandRetry(String message, 
-                                         @Header(value = KafkaConstants.RETRY_COUNT_HEADER, defaultValue = "0") String retryCountHeader) {
-        log.info("Received retry message command: {} (retry: {})", message, retryCountHeader);
-        
-        int retryCount = Integer.parseInt(retryCountHeader);
+    /**
+     * Batch variant of {@link #consumeMessageCommand}: the whole poll is stored with one
+     * unordered bulk insert. Records that fail to decode, or whose document the server
+     * rejects, go to the retry topic individually once the write is done, and the
+     * listener waits for those sends before returning; records whose message is already
+     * stored are redeliveries and are skipped. Every record whose message is stored,
+     * now or before, is announced on the message-events topic once the read models
+     * are updated, so a replica that loads an inbox on seeing the event finds the
+     * message there. If the bulk write fails as a whole
+     * the exception propagates, so the poll's offsets are not committed and it is
+     * redelivered.
+     */
+    @KafkaListener(topics = "${app.kafka.topics.message-commands}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${app.kafka.batch.message-commands-enabled:true}")
+    public void consumeMessageCommandBatch(List<ConsumerRecord<String, byte[]>> records) {
+        log.info("Received batch of {} message commands", records.size());
+
+        List<ConsumerRecord<String, byte[]>> accepted = new ArrayList<>(records.size());
+        List<MessageCommandEvent> events = new ArrayList<>(records.size());
+        List<MessageDto> messages = new ArrayList<>(records.size());
+        // Handed on only once the poll's write has gone through; a failed write redelivers them anyway.
+        List<Runnable> failures = new ArrayList<>();
+        List<CompletableFuture<SendResult<String, byte[]>>> failureSends = new ArrayList<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                MessageCommandEvent event = decode(record);
+                if (!isSendMessageCommand(event.getCommand())) {
+                    throw new UnknownMessageCommandException(event.getCommand(), event.toString());
+                }
+                accepted.add(record);
+                events.add(event);
+                messages.add(toMessage(event));
+            } catch (UnknownMessageCommandException e) {
+                log.warn("Unknown message command: {}", e.getMessage());
+                failures.add(() -> failureSends.add(deadLetter(record, e)));
+            } catch (Exception e) {
+                log.error("Error processing message command: {}", e.getMessage(), e);
+                failures.add(() -> failureSends.add(handleRetry(record, e)));
+            }
+        }
+
+        BulkInsertResult result = messageRepository.insertAllUnordered(messages);
+        log.info("Bulk inserted {} of {} messages ({} already stored)",
+                messages.size() - result.rejected().size() - result.duplicates().size(), messages.size(),
+                result.duplicates().size());
+
+        List<Integer> announced = new ArrayList<>(messages.size());
+        List<Integer> stored = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            ConsumerRecord<String, byte[]> record = accepted.get(i);
+            if (result.rejected().contains(i)) {
+                failures.add(() -> failureSends.add(
+                        handleRetry(record, new IllegalStateException("Message rejected by bulk insert"))));
+                continue;
+            }
+            announced.add(i);
+            if (!result.duplicates().contains(i)) {
+                stored.add(i);
+            }
+        }
+
+        // Read models are updated in parallel across threads but in order within each thread.
+        keyOrderedExecutor.runAll(stored,
+                i -> messages.get(i).getThreadId(),
+                i -> updateReadModels(messages.get(i), events.get(i)));
+        announced.forEach(i -> messageEventPublisher.publishStored(accepted.get(i)));
+
+        // Offsets are committed when this returns, so wait until every failed record is on its
+        // retry or dead-letter topic. If one is not, the poll is redelivered; its stored messages
+        // come back as duplicates and are not projected twice.
+        failures.forEach(Runnable::run);
+        retryPublisher.awaitAll(failureSends);
+    }
+
+    /**
+     * Consumes every retry tier. A record is held back, with its partition paused,
+     * until its not-before time, and is acknowledged once it has run or been passed on.
+     */
+    @KafkaListener(id = RETRY_LISTENER_ID,
+            topics = "#{@kafkaRetryConfig.tierTopics('${app.kafka.topics.message-commands-retry}')}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "retryKafkaListenerContainerFactory")
+    public void consumeMessageCommandRetry(ConsumerRecord<String, byte[]> record, Acknowledgment acknowledgment,
+                                           Consumer<?, ?> consumer) {
+        if (!retryDelayGate.isDue(RETRY_LISTENER_ID, record, consumer)) {
+            return;
+        }
         
         try {
-            MessageCommandEvent event = objectMapper.readValue(message, MessageCommandEvent.class);
+            MessageCommandEvent event = decode(record);
+            log.info("Received retry message command: {} (retry: {})", event, RetryPublisher.retryCountOf(record));
             
             if (isSendMessageCommand(event.getCommand())) {
-                processMessageCommand(event);
+                processMessageCommand(record, event);
             } else {
-                throw new UnknownMessageCommandException(event.getCommand(), message);
+                throw new UnknownMessageCommandException(event.getCommand(), event.toString());
             }
+        } catch (UnknownMessageCommandException e) {
+            log.warn("Unknown message command in retry record: {}", e.getMessage());
+            deadLetter(record, e);
         } catch (Exception e) {
             log.error("Error processing retry message command: {}", e.getMessage(), e);
-            handleRetry(message, retryCount, e);
+            handleRetry(record, e);
         }
+        acknowledgment.acknowledge();
     }
 
-    private void processMessageCommand(MessageCommandEvent event) {
-        MessageDto message = MessageDto.builder()
+    private void processMessageCommand(ConsumerRecord<String, byte[]> record, MessageCommandEvent event) {
+        MessageDto message = toMessage(event);
+        boolean inserted = messageRepository.insertIfAbsent(message);
+        if (!inserted) {
+            // A redelivery: the message and, normally, its read model updates are already done.
+            log.info("Message {} already stored; skipping redelivered command", message.getId());
+            messageEventPublisher.publishStored(record);
+            return;
+        }
+        log.info("Message saved to database: {} from {} to recipient", 
+                message.getId(), message.getSenderId());
+
+        updateReadModels(message, event);
+        // Announced only now, so an inbox loaded on the strength of it already has the message.
+        messageEventPublisher.publishStored(record);
+    }
+
+    private MessageDto toMessage(MessageCommandEvent event) {
+        return MessageDto.builder()
+                .id(event.getMessageId())
                 .threadId(event.getThreadId())
                 .senderId(event.getSenderId())
                 .senderUsername(event.getSenderUsername())
@@ -84,32 +206,49 @@ public class MessageConsumerService {
                 .timestamp(event.getTimestamp())
                 .status(MessageStatus.SENT.getStatus())
                 .build();
+    }
 
-        MessageDto savedMessage = messageRepository.save(message);
-        log.info("Message saved to database: {} from {} to recipient", 
-                savedMessage.getId(), savedMessage.getSenderId());
+    private void updateReadModels(MessageDto savedMessage, MessageCommandEvent event) {
+        // The message is already stored; a retry would duplicate it, so failed projections
+        // are only logged. The next message in the thread or a backfill run repairs the entry.
+        try {
+            threadStatsRepository.recordMessage(savedMessage);
+        } catch (Exception e) {
+            log.error("Failed to update stats for thread {}: {}", savedMessage.getThreadId(), e.getMessage(), e);
+        }
+
+        try {
+            conversationProjectionService.project(savedMessage, event.getRecipientId(), event.getRecipientUsername());
+        } catch (Exception e) {
+            log.error("Failed to update conversations for thread {}: {}", savedMessage.getThreadId(), e.getMessage(), e);
+        }
     }
-    
-    private void handleRetry(String message, int retryCount, Exception error) {
-        if (retryCount < retryConfig.getMaxRetry()) {
-            int newRetryCount = retryCount + 1;
-            log.warn("Retrying message processing (attempt {}/{})", newRetryCount, retryConfig.getMaxRetry());
-            
-            // Send to retry topic with incremented retry count
-            ProducerRecord<String, String> retryRecord = new ProducerRecord<>(
-                messageCommandsRetryTopic, message);
-            retryRecord.headers().add(KafkaConstants.RETRY_COUNT_HEADER, 
-                String.valueOf(newRetryCount).getBytes());
-                
-            kafkaTemplate.send(retryRecord)
-                .thenAccept(result -> log.debug("Message sent to retry topic successfully"))
-                .exceptionally(throwable -> {
-                    log.error("Failed to send message to retry topic: {}", throwable.getMessage());
-                    return null;
-                });
-        } else {
-            throw new MaxRetryExceededException(message, retryConfig.getMaxRetry(), error);
+
+    /**
+     * Rejects a record whose command header names an unknown command before its
+     * payload is decoded; records without the header are checked after decoding.
+     */
+    private MessageCommandEvent decode(ConsumerRecord<String, byte[]> record)
+            throws IOException, UnknownMessageCommandException {
+        String command = EventHeaders.command(record);
+        if (command != null && !isSendMessageCommand(command)) {
+            throw new UnknownMessageCommandException(command, record.topic() + "-" + record.partition() + "@" + record.offset());
         }
+        return eventCodecs.decode(record, MessageCommandEvent.class);
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> handleRetry(ConsumerRecord<String, byte[]> record,
+                                                                      Exception error) {
+        return retryPublisher.publish(route(), record, error);
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> deadLetter(ConsumerRecord<String, byte[]> record,
+                                                                     Exception error) {
+        return retryPublisher.deadLetter(route(), record, error);
+    }
+
+    private RetryRoute route() {
+        return new RetryRoute(messageCommandsTopic, messageCommandsRetryTopic, messageCommandsDeadLetterTopic);
     }
     
     private boolean isSendMessageCommand(String command) {
@@ -0,0 +1,38 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Republishes a message command on the message-events topic once its message
+ * is stored, so messaging-command-service replicas can keep their recent
+ * messages current without reading them back from MongoDB.
+ *
+ * <p>The record keeps its key, payload and codec headers, as in
+ * {@link RetryPublisher}. Publishing is best effort: a lost event only means a
+ * replica serves that thread from MongoDB again once its copy is re-verified.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageEventPublisher {
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Value("${app.kafka.topics.message-events}")
+    private String messageEventsTopic;
+
+    public void publishStored(ConsumerRecord<String, byte[]> command) {
+        ProducerRecord<String, byte[]> event = RetryPublisher.copyOf(messageEventsTopic, command);
+        kafkaTemplate.send(event)
+                .exceptionally(throwable -> {
+                    log.warn("Failed to publish stored message event to {}: {}", messageEventsTopic, throwable.getMessage());
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Holds retry records back until their {@link KafkaConstants#NOT_BEFORE_HEADER}.
+ *
+ * <p>When a record is not yet due its partition is rewound to it and paused
+ * until it is, so the listener thread never sleeps and other partitions keep
+ * flowing. Every record in a retry tier shares the same delay, so the head of
+ * a partition is always the next one due. Records of the same poll behind a
+ * held record are skipped; they are fetched again when the partition resumes.
+ * Callers must not acknowledge a record this gate rejects.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RetryDelayGate {
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ListenerContainerPauseService pauseService;
+
+    public boolean isDue(String listenerId, ConsumerRecord<String, byte[]> record, Consumer<?, ?> consumer) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        if (consumer.position(partition) <= record.offset()) {
+            // The partition was rewound for an earlier record of this poll.
+            return false;
+        }
+
+        long waitMs = notBeforeOf(record) - System.currentTimeMillis();
+        if (waitMs <= 0) {
+            return true;
+        }
+
+        consumer.seek(partition, record.offset());
+        pauseService.pausePartition(listenerRegistry.getListenerContainer(listenerId), partition, Duration.ofMillis(waitMs));
+        log.debug("Retry record {}@{} not due for {} ms; partition paused", partition, record.offset(), waitMs);
+        return false;
+    }
+
+    private static long notBeforeOf(ConsumerRecord<String, byte[]> record) {
+        var header = record.headers().lastHeader(KafkaConstants.NOT_BEFORE_HEADER);
+        // Records written before tiered retry have no header and are due at once.
+        return header == null ? 0 : Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+    }
+}
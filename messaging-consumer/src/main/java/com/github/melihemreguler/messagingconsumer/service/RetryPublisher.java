@@ -0,0 +1,145 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends a record that failed processing to its next retry tier, or to the
+ * dead-letter topic once {@code max-retry} attempts have been used.
+ *
+ * <p>Retry records carry a {@link KafkaConstants#NOT_BEFORE_HEADER} of send time
+ * plus the tier's delay, which {@link RetryDelayGate} enforces when they come
+ * back. Retried and dead-lettered records keep their key, payload, codec and
+ * routing headers; dead letters also gain headers describing the last failure,
+ * so they can be replayed unchanged.
+ *
+ * <p>Both return the broker send. Record listeners leave it to complete on its
+ * own; batch listeners pass their sends to {@link #awaitAll} before returning,
+ * so a poll is not committed until its failed records have been handed on.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RetryPublisher {
+
+    private static final List<String> CARRIED_HEADERS = List.of(
+            KafkaConstants.CONTENT_TYPE_HEADER, KafkaConstants.SCHEMA_VERSION_HEADER,
+            KafkaConstants.COMMAND_HEADER, KafkaConstants.USER_ID_HEADER, KafkaConstants.SESSION_ID_HEADER);
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final KafkaRetryConfig retryConfig;
+
+    public CompletableFuture<SendResult<String, byte[]>> publish(RetryRoute route, ConsumerRecord<String, byte[]> failed,
+                                                                 Exception error) {
+        int retryCount = retryCountOf(failed);
+        if (retryCount < retryConfig.getMaxRetry()) {
+            int attempt = retryCount + 1;
+            int tier = retryConfig.tierFor(attempt);
+            long delayMs = retryConfig.delayMsForTier(tier);
+            String topic = retryConfig.tierTopic(route.retryTopic(), tier);
+            log.warn("Retrying record from {} in {} ms via {} (attempt {}/{})",
+                    route.sourceTopic(), delayMs, topic, attempt, retryConfig.getMaxRetry());
+
+            ProducerRecord<String, byte[]> retryRecord = copyOf(topic, failed);
+            addHeader(retryRecord, KafkaConstants.RETRY_COUNT_HEADER, String.valueOf(attempt));
+            addHeader(retryRecord, KafkaConstants.NOT_BEFORE_HEADER, String.valueOf(System.currentTimeMillis() + delayMs));
+            return send(retryRecord);
+        } else {
+            log.error("Max retry attempts ({}) exceeded, dead-lettering record {}-{}@{} from {}",
+                    retryConfig.getMaxRetry(), failed.topic(), failed.partition(), failed.offset(),
+                    route.sourceTopic(), error);
+            return deadLetter(route, failed, error);
+        }
+    }
+
+    /**
+     * Sends {@code failed} straight to the dead-letter topic, for failures no retry
+     * can fix, such as a command this consumer does not know.
+     */
+    public CompletableFuture<SendResult<String, byte[]>> deadLetter(RetryRoute route, ConsumerRecord<String, byte[]> failed,
+                                                                    Exception error) {
+        ProducerRecord<String, byte[]> deadLetter = copyOf(route.deadLetterTopic(), failed);
+        addHeader(deadLetter, KafkaConstants.RETRY_COUNT_HEADER, String.valueOf(retryCountOf(failed)));
+        addHeader(deadLetter, KafkaConstants.ORIGINAL_TOPIC_HEADER, route.sourceTopic());
+        addHeader(deadLetter, KafkaConstants.ERROR_CLASS_HEADER, error.getClass().getName());
+        addHeader(deadLetter, KafkaConstants.ERROR_MESSAGE_HEADER, String.valueOf(error.getMessage()));
+        addHeader(deadLetter, KafkaConstants.FAILED_AT_HEADER, Instant.now().toString());
+        return send(deadLetter);
+    }
+
+    /**
+     * Waits up to {@code send-timeout-ms} for {@code sends} to be acknowledged.
+     *
+     * @throws IllegalStateException if any of them failed or did not finish in time
+     */
+    public void awaitAll(List<CompletableFuture<SendResult<String, byte[]>>> sends) {
+        if (sends.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(retryConfig.getSendTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for retry sends", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to hand " + sends.size() + " records to retry or dead-letter topics", e);
+        }
+    }
+
+    public static int retryCountOf(ConsumerRecord<String, byte[]> record) {
+        var header = record.headers().lastHeader(KafkaConstants.RETRY_COUNT_HEADER);
+        return header == null ? 0 : Integer.parseInt(new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Same key and payload on {@code topic}, keeping only the headers needed to
+     * decode the payload again.
+     */
+    static ProducerRecord<String, byte[]> copyOf(String topic, ConsumerRecord<String, byte[]> source) {
+        ProducerRecord<String, byte[]> copy = new ProducerRecord<>(topic, source.key(), source.value());
+        for (String name : CARRIED_HEADERS) {
+            Header header = source.headers().lastHeader(name);
+            if (header != null) {
+                copy.headers().add(header);
+            }
+        }
+        return copy;
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> send(ProducerRecord<String, byte[]> record) {
+        CompletableFuture<SendResult<String, byte[]>> sent = kafkaTemplate.send(record);
+        sent.thenAccept(result -> log.debug("Record sent to {} successfully", record.topic()))
+                .exceptionally(throwable -> {
+                    log.error("Failed to send record to {}: {}", record.topic(), throwable.getMessage());
+                    return null;
+                });
+        return sent;
+    }
+
+    private static void addHeader(ProducerRecord<String, byte[]> record, String name, String value) {
+        record.headers().add(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Where a command type's failures go: its retry tiers and dead-letter topic, and
+     * the topic a dead-lettered record is replayed to.
+     */
+    public record RetryRoute(String sourceTopic, String retryTopic, String deadLetterTopic) {}
+}
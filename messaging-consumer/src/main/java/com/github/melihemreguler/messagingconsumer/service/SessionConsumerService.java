@@ -1,104 +1,306 @@
 package com.github.melihemreguler.messagingconsumer.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
-import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import com.github.melihemreguler.messagingconsumer.codec.EventCodecRegistry;
+import com.github.melihemreguler.messagingconsumer.codec.EventHeaders;
 import com.github.melihemreguler.messagingconsumer.model.SessionEvent;
 import com.github.melihemreguler.messagingconsumer.enums.SessionCommand;
 import com.github.melihemreguler.messagingconsumer.strategy.session.SessionCommandStrategy;
 import com.github.melihemreguler.messagingconsumer.strategy.session.SessionCommandStrategyFactory;
-import com.github.melihemreguler.messagingconsumer.exception.MaxRetryExceededException;
 import com.github.melihemreguler.messagingconsumer.exception.UnknownSessionCommandException;
+import com.github.melihemreguler.messagingconsumer.repository.SessionRepository;
+import com.github.melihemreguler.messagingconsumer.service.RetryPublisher.RetryRoute;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.stereotype.Service;
 
+/**
+ * Applies session commands to MongoDB.
+ *
+ * <p>Records are dispatched on their command header where the producer set one:
+ * unknown commands are dead-lettered without being decoded, and deletes and
+ * expiries, which need only the user and session ids, are applied from the
+ * headers alone. Records without the header are decoded first, as before.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SessionConsumerService {
     
-    private final ObjectMapper objectMapper;
+    static final String RETRY_LISTENER_ID = "session-commands-retry";
+    
+    private final EventCodecRegistry eventCodecs;
     private final SessionCommandStrategyFactory strategyFactory;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final KafkaRetryConfig retryConfig;
+    private final RetryPublisher retryPublisher;
+    private final RetryDelayGate retryDelayGate;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    private final SessionRepository sessionRepository;
+    
+    @Value("${app.kafka.topics.session-commands}")
+    private String sessionCommandsTopic;
     
     @Value("${app.kafka.topics.session-commands-retry}")
     private String sessionCommandsRetryTopic;
     
-    @KafkaListener(topics = "${app.kafka.topics.session-commands}", groupId = "${spring.kafka.consumer.group-id}")
-    public void handleSessionEvent(String message,
-                                  @Header(value = KafkaConstants.RETRY_COUNT_HEADER, defaultValue = "0") String retryCountHeader) {
-        
-        int retryCount = Integer.parseInt(retryCountHeader);
-        
+    @Value("${app.kafka.topics.session-commands-dlq}")
+    private String sessionCommandsDeadLetterTopic;
+    
+    @KafkaListener(topics = "${app.kafka.topics.session-commands}", groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "#{!${app.kafka.batch.session-commands-enabled:true}}")
+    public void handleSessionEvent(ConsumerRecord<String, byte[]> record) {
         try {
-            log.info("Received session event message: {}", message);
-            
-            SessionEvent sessionEvent = objectMapper.readValue(message, SessionEvent.class);
+            SessionEvent sessionEvent = decode(record);
             
             log.info("Parsed session event: {} for user: {}", 
                      sessionEvent.getCommand(), sessionEvent.getUserId());
             
-            processSessionCommand(sessionEvent, message);
+            processSessionCommand(sessionEvent);
             
             log.debug("Successfully processed session event: {}", sessionEvent.getCommand());
             
-        } catch (JsonProcessingException e) {
-            log.error("Failed to parse session event JSON: {}", message, e);
-            handleRetry(message, retryCount, e);
+        } catch (IOException e) {
+            log.error("Failed to decode session event record {}", describe(record), e);
+            handleRetry(record, e);
         } catch (UnknownSessionCommandException e) {
-            log.warn("Unknown session command in message: {}", message);
-            handleRetry(message, retryCount, e);
+            log.warn("Unknown session command {} in record {}", e.getUnknownCommand(), describe(record));
+            deadLetter(record, e);
         } catch (Exception e) {
-            log.error("Unexpected error processing session event: {}", message, e);
-            handleRetry(message, retryCount, e);
+            log.error("Unexpected error processing session event record {}", describe(record), e);
+            handleRetry(record, e);
         }
     }
     
-    @KafkaListener(topics = "${app.kafka.topics.session-commands-retry}", groupId = "${spring.kafka.consumer.group-id}")
-    public void handleSessionEventRetry(String message,
-                                       @Header(value = KafkaConstants.RETRY_COUNT_HEADER, defaultValue = "0") String retryCountHeader) {
-        log.info("Received retry session event message: {} (retry: {})", message, retryCountHeader);
-        
-        int retryCount = Integer.parseInt(retryCountHeader);
+    /**
+     * Batch variant of {@link #handleSessionEvent}. A poll's commands are first
+     * collapsed per user where a later command makes an earlier one moot, then
+     * written with one ordered bulk write. Collapsing works on the headers, so a
+     * superseded command is never decoded. If the write fails the collapsed
+     * commands are re-run one by one, in parallel across users and in order for
+     * each user; every command is idempotent, so a partially applied bulk is safe
+     * to replay. Commands that cannot be applied go to the retry or dead-letter
+     * topics, and the listener waits for those sends before returning, so the
+     * poll is committed only once every failed command has been handed on.
+     */
+    @KafkaListener(topics = "${app.kafka.topics.session-commands}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${app.kafka.batch.session-commands-enabled:true}")
+    public void handleSessionEventBatch(List<ConsumerRecord<String, byte[]>> records) {
+        log.info("Received batch of {} session events", records.size());
+
+        // Appended to from the key-ordered lanes when the bulk write falls back to single commands.
+        List<CompletableFuture<SendResult<String, byte[]>>> failureSends = Collections.synchronizedList(new ArrayList<>());
+        Map<String, List<PendingSessionEvent>> pendingByUser = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            PendingSessionEvent next;
+            try {
+                next = pending(record);
+            } catch (UnknownSessionCommandException e) {
+                log.warn("Unknown session command {} in record {}", e.getUnknownCommand(), describe(record));
+                failureSends.add(deadLetter(record, e));
+                continue;
+            } catch (Exception e) {
+                log.error("Failed to decode session event record {}", describe(record), e);
+                failureSends.add(handleRetry(record, e));
+                continue;
+            }
+            coalesce(pendingByUser.computeIfAbsent(next.userId, userId -> new ArrayList<>()), next);
+        }
+
+        List<PendingSessionEvent> pending = pendingByUser.values().stream()
+                .flatMap(List::stream)
+                .filter(event -> materialize(event, failureSends))
+                .toList();
+        if (pending.size() < records.size()) {
+            log.debug("Collapsed {} session events into {} writes", records.size(), pending.size());
+        }
+
+        try {
+            sessionRepository.applyAll(pending.stream().map(event -> event.event).toList());
+        } catch (Exception bulkFailure) {
+            log.warn("Bulk session write failed, applying {} commands individually: {}",
+                    pending.size(), bulkFailure.getMessage());
+            keyOrderedExecutor.runAll(pending, event -> event.userId, event -> {
+                try {
+                    processSessionCommand(event.event);
+                } catch (Exception e) {
+                    log.error("Unexpected error processing session event: {}", event.event, e);
+                    failureSends.add(handleRetry(event.record, e));
+                }
+            });
+        }
+
+        retryPublisher.awaitAll(failureSends);
+    }
+
+    /**
+     * Appends {@code next} to one user's queued commands, dropping those it supersedes.
+     * An upsert or a user-wide delete replaces everything the user had, and a
+     * last-access update absorbs a directly preceding one for the same session.
+     */
+    private static void coalesce(List<PendingSessionEvent> queued, PendingSessionEvent next) {
+        boolean replacesUser = next.command == SessionCommand.UPSERT_SESSION
+                || (next.hashedSessionId == null && (next.command == SessionCommand.DELETE_SESSION
+                        || next.command == SessionCommand.EXPIRE_SESSION));
+        if (replacesUser) {
+            queued.clear();
+        } else if (next.command == SessionCommand.UPDATE_SESSION && !queued.isEmpty()) {
+            PendingSessionEvent last = queued.get(queued.size() - 1);
+            if (last.command == SessionCommand.UPDATE_SESSION
+                    && Objects.equals(last.hashedSessionId, next.hashedSessionId)) {
+                queued.remove(queued.size() - 1);
+                next.absorbed.addAll(last.absorbed);
+                next.absorbed.add(last);
+            }
+        }
+        queued.add(next);
+    }
+
+    /**
+     * Decodes a command that survived coalescing, folding in the updates it absorbed:
+     * the latest access time wins, and missing client details are taken from the
+     * most recent update that had them. Returns false if the command itself could
+     * not be decoded, in which case it and its absorbed updates are retried; their
+     * sends are added to {@code failureSends}.
+     */
+    private boolean materialize(PendingSessionEvent pending,
+                                List<CompletableFuture<SendResult<String, byte[]>>> failureSends) {
+        try {
+            if (pending.event == null) {
+                pending.event = decode(pending.record);
+            }
+        } catch (Exception e) {
+            log.error("Failed to decode session event record {}", describe(pending.record), e);
+            failureSends.add(handleRetry(pending.record, e));
+            pending.absorbed.forEach(absorbed -> failureSends.add(handleRetry(absorbed.record, e)));
+            return false;
+        }
+
+        SessionEvent event = pending.event;
+        for (int i = pending.absorbed.size() - 1; i >= 0; i--) {
+            PendingSessionEvent absorbed = pending.absorbed.get(i);
+            SessionEvent earlier;
+            try {
+                earlier = absorbed.event != null ? absorbed.event : decode(absorbed.record);
+            } catch (Exception e) {
+                log.error("Failed to decode session event record {}", describe(absorbed.record), e);
+                failureSends.add(handleRetry(absorbed.record, e));
+                continue;
+            }
+            if (earlier.getTimestamp() != null
+                    && (event.getTimestamp() == null || earlier.getTimestamp().isAfter(event.getTimestamp()))) {
+                event.setTimestamp(earlier.getTimestamp());
+            }
+            if (event.getIpAddress() == null) {
+                event.setIpAddress(earlier.getIpAddress());
+            }
+            if (event.getUserAgent() == null) {
+                event.setUserAgent(earlier.getUserAgent());
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Consumes every retry tier. A record is held back, with its partition paused,
+     * until its not-before time, and is acknowledged once it has run or been passed on.
+     */
+    @KafkaListener(id = RETRY_LISTENER_ID,
+            topics = "#{@kafkaRetryConfig.tierTopics('${app.kafka.topics.session-commands-retry}')}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "retryKafkaListenerContainerFactory")
+    public void handleSessionEventRetry(ConsumerRecord<String, byte[]> record, Acknowledgment acknowledgment,
+                                        Consumer<?, ?> consumer) {
+        if (!retryDelayGate.isDue(RETRY_LISTENER_ID, record, consumer)) {
+            return;
+        }
         
         try {
-            SessionEvent sessionEvent = objectMapper.readValue(message, SessionEvent.class);
+            SessionEvent sessionEvent = decode(record);
             
-            log.info("Parsed retry session event: {} for user: {}", 
-                     sessionEvent.getCommand(), sessionEvent.getUserId());
+            log.info("Parsed retry session event: {} for user: {} (retry: {})", 
+                     sessionEvent.getCommand(), sessionEvent.getUserId(), RetryPublisher.retryCountOf(record));
             
-            processSessionCommand(sessionEvent, message);
+            processSessionCommand(sessionEvent);
             
             log.debug("Successfully processed retry session event: {}", sessionEvent.getCommand());
             
-        } catch (JsonProcessingException e) {
-            log.error("Failed to parse retry session event JSON: {}", message, e);
-            handleRetry(message, retryCount, e);
+        } catch (IOException e) {
+            log.error("Failed to decode retry session event record {}", describe(record), e);
+            handleRetry(record, e);
         } catch (UnknownSessionCommandException e) {
-            log.warn("Unknown session command in retry message: {}", message);
-            handleRetry(message, retryCount, e);
+            log.warn("Unknown session command {} in retry record {}", e.getUnknownCommand(), describe(record));
+            deadLetter(record, e);
         } catch (Exception e) {
-            log.error("Unexpected error processing retry session event: {}", message, e);
-            handleRetry(message, retryCount, e);
+            log.error("Unexpected error processing retry session event record {}", describe(record), e);
+            handleRetry(record, e);
         }
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * Reads the command and ids from the headers when present, decoding the payload
+     * only for records without them. Unknown commands are rejected either way.
+     */
+    private PendingSessionEvent pending(ConsumerRecord<String, byte[]> record)
+            throws IOException, UnknownSessionCommandException {
+        String header = EventHeaders.command(record);
+        String userId = EventHeaders.userId(record);
+        if (header != null && userId != null) {
+            return new PendingSessionEvent(record, knownCommand(header, record), userId, EventHeaders.sessionId(record), null);
+        }
+
+        SessionEvent event = decode(record);
+        SessionCommand command = knownCommand(event.getCommand(), record);
+        return new PendingSessionEvent(record, command, event.getUserId(), event.getHashedSessionId(), event);
+    }
+
+    /**
+     * Decodes a record for its strategy. Deletes and expiries act on ids alone, so
+     * when the headers carry those the payload is left untouched.
+     */
+    private SessionEvent decode(ConsumerRecord<String, byte[]> record) throws IOException, UnknownSessionCommandException {
+        String header = EventHeaders.command(record);
+        String userId = EventHeaders.userId(record);
+        if (header != null) {
+            SessionCommand command = knownCommand(header, record);
+            if (userId != null && (command == SessionCommand.DELETE_SESSION || command == SessionCommand.EXPIRE_SESSION)) {
+                SessionEvent event = new SessionEvent();
+                event.setCommand(header);
+                event.setUserId(userId);
+                event.setHashedSessionId(EventHeaders.sessionId(record));
+                return event;
+            }
+        }
+        return eventCodecs.decode(record, SessionEvent.class);
+    }
+
+    private static SessionCommand knownCommand(String command, ConsumerRecord<String, byte[]> record)
+            throws UnknownSessionCommandException {
+        return SessionCommand.fromStringOptional(command)
+                .orElseThrow(() -> new UnknownSessionCommandException(command, describe(record)));
     }
     
-    private void processSessionCommand(SessionEvent sessionEvent, String originalMessage) 
+    private void processSessionCommand(SessionEvent sessionEvent) 
             throws UnknownSessionCommandException {
         
         Optional<SessionCommand> commandOpt = SessionCommand.fromStringOptional(sessionEvent.getCommand());
         
         if (commandOpt.isEmpty()) {
-            throw new UnknownSessionCommandException(sessionEvent.getCommand(), originalMessage);
+            throw new UnknownSessionCommandException(sessionEvent.getCommand(), sessionEvent.toString());
         }
         
         SessionCommand command = commandOpt.get();
@@ -111,24 +313,45 @@ public class SessionConsumerService {
         }
     }
     
-    private void handleRetry(String message, int retryCount, Exception error) {
-        if (retryCount < retryConfig.getMaxRetry()) {
-            int newRetryCount = retryCount + 1;
-            log.warn("Retrying session processing (attempt {}/{})", newRetryCount, retryConfig.getMaxRetry());
-            
-            ProducerRecord<String, String> retryRecord = new ProducerRecord<>(
-                sessionCommandsRetryTopic, message);
-            retryRecord.headers().add(KafkaConstants.RETRY_COUNT_HEADER, 
-                String.valueOf(newRetryCount).getBytes());
-                
-            kafkaTemplate.send(retryRecord)
-                .thenAccept(result -> log.debug("Session message sent to retry topic successfully"))
-                .exceptionally(throwable -> {
-                    log.error("Failed to send session message to retry topic: {}", throwable.getMessage());
-                    return null;
-                });
-        } else {
-            throw new MaxRetryExceededException(message, retryConfig.getMaxRetry(), error);
+    private CompletableFuture<SendResult<String, byte[]>> handleRetry(ConsumerRecord<String, byte[]> record,
+                                                                      Exception error) {
+        return retryPublisher.publish(route(), record, error);
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> deadLetter(ConsumerRecord<String, byte[]> record,
+                                                                     Exception error) {
+        return retryPublisher.deadLetter(route(), record, error);
+    }
+
+    private RetryRoute route() {
+        return new RetryRoute(sessionCommandsTopic, sessionCommandsRetryTopic, sessionCommandsDeadLetterTopic);
+    }
+
+    private static String describe(ConsumerRecord<String, byte[]> record) {
+        return record.topic() + "-" + record.partition() + "@" + record.offset();
+    }
+
+    /**
+     * A command queued for the bulk write. {@code event} stays null until the
+     * command survives coalescing, unless the payload had to be decoded up front
+     * because the record had no routing headers.
+     */
+    private static final class PendingSessionEvent {
+        private final ConsumerRecord<String, byte[]> record;
+        private final SessionCommand command;
+        private final String userId;
+        private final String hashedSessionId;
+        // Earlier last-access updates for the same session, oldest first.
+        private final List<PendingSessionEvent> absorbed = new ArrayList<>();
+        private SessionEvent event;
+
+        private PendingSessionEvent(ConsumerRecord<String, byte[]> record, SessionCommand command, String userId,
+                                    String hashedSessionId, SessionEvent event) {
+            this.record = record;
+            this.command = command;
+            this.userId = userId;
+            this.hashedSessionId = hashedSessionId;
+            this.event = event;
         }
     }
 }
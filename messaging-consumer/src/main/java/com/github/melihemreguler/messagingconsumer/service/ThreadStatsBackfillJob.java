@@ -0,0 +1,99 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.dto.ThreadStatsDto;
+import com.github.melihemreguler.messagingconsumer.repository.ThreadStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * One-off rebuild of {@code thread_stats} from {@code messages}.
+ *
+ * <p>Enabled with {@code app.thread-stats.backfill.enabled=true}. Recomputes every
+ * thread's counters server-side and overwrites the stored document, so it is safe
+ * to re-run. Increments applied by the live consumer between a thread being
+ * aggregated and written are lost, so run it with message consumption paused
+ * (or simply run it again afterwards).
+ */
+@Component
+@ConditionalOnProperty(name = "app.thread-stats.backfill.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ThreadStatsBackfillJob implements ApplicationRunner {
+
+    private final MongoTemplate mongoTemplate;
+    private final ThreadStatsRepository threadStatsRepository;
+
+    @Value("${app.thread-stats.backfill.batch-size:500}")
+    private int batchSize = 500;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Starting thread stats backfill from messages");
+        long threads = backfill();
+        log.info("Thread stats backfill finished: {} threads written", threads);
+    }
+
+    public long backfill() {
+        AggregationOperation groupBySender = ctx -> new Document(
+                "$group",
+                new Document("_id", new Document("threadId", "$threadId").append("senderId", "$senderId"))
+                        .append("count", new Document("$sum", 1))
+                        .append("first", new Document("$min", "$timestamp"))
+                        .append("last", new Document("$max", "$timestamp"))
+        );
+        AggregationOperation groupByThread = ctx -> new Document(
+                "$group",
+                new Document("_id", "$_id.threadId")
+                        .append("messageCount", new Document("$sum", "$count"))
+                        .append("firstMessageAt", new Document("$min", "$first"))
+                        .append("lastMessageAt", new Document("$max", "$last"))
+                        .append("senders", new Document("$push",
+                                new Document("k", "$_id.senderId").append("v", "$count")))
+        );
+        AggregationOperation toStats = ctx -> new Document(
+                "$addFields", new Document("senderCounts", new Document("$arrayToObject", "$senders"))
+        );
+        Aggregation aggregation = Aggregation.newAggregation(
+                groupBySender,
+                groupByThread,
+                toStats,
+                Aggregation.project().andExclude("senders")
+        ).withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+
+        long written = 0;
+        List<ThreadStatsDto> batch = new ArrayList<>(batchSize);
+        try (Stream<ThreadStatsDto> stats = mongoTemplate.aggregateStream(aggregation, "messages", ThreadStatsDto.class)) {
+            for (ThreadStatsDto threadStats : (Iterable<ThreadStatsDto>) stats::iterator) {
+                batch.add(threadStats);
+                if (batch.size() == batchSize) {
+                    written += writeBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        written += writeBatch(batch);
+        return written;
+    }
+
+    private long writeBatch(List<ThreadStatsDto> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        threadStatsRepository.saveAll(batch);
+        log.debug("Backfilled stats for {} threads", batch.size());
+        return batch.size();
+    }
+}
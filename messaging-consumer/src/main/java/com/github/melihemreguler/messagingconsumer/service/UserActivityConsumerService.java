@@ -1,52 +1,63 @@
 package com.github.melihemreguler.messagingconsumer.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
-import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import com.github.melihemreguler.messagingconsumer.codec.EventCodecRegistry;
+import com.github.melihemreguler.messagingconsumer.codec.EventHeaders;
 import com.github.melihemreguler.messagingconsumer.enums.UserActivityCommand;
 import com.github.melihemreguler.messagingconsumer.exception.InvalidJsonFormatException;
-import com.github.melihemreguler.messagingconsumer.exception.MaxRetryExceededException;
 import com.github.melihemreguler.messagingconsumer.exception.UnknownUserActivityCommandException;
 import com.github.melihemreguler.messagingconsumer.exception.UserActivityProcessingException;
 import com.github.melihemreguler.messagingconsumer.model.UserActivityEvent;
+import com.github.melihemreguler.messagingconsumer.service.RetryPublisher.RetryRoute;
 import com.github.melihemreguler.messagingconsumer.strategy.user.UserActivityStrategy;
 import com.github.melihemreguler.messagingconsumer.strategy.user.UserActivityStrategyFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UserActivityConsumerService {
 
-    private final ObjectMapper objectMapper;
+    static final String RETRY_LISTENER_ID = "user-commands-retry";
+
+    private final EventCodecRegistry eventCodecs;
     private final UserActivityStrategyFactory strategyFactory;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final KafkaRetryConfig retryConfig;
+    private final RetryPublisher retryPublisher;
+    private final RetryDelayGate retryDelayGate;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    
+    @Value("${app.kafka.topics.user-commands}")
+    private String userCommandsTopic;
     
     @Value("${app.kafka.topics.user-commands-retry}")
     private String userCommandsRetryTopic;
+    
+    @Value("${app.kafka.topics.user-commands-dlq}")
+    private String userCommandsDeadLetterTopic;
 
-    @KafkaListener(topics = "${app.kafka.topics.user-commands}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeUserActivity(String message,
-                                   @Header(value = KafkaConstants.RETRY_COUNT_HEADER, defaultValue = "0") String retryCountHeader) {
-        log.info("Received user activity: {}", message);
-        
-        int retryCount = Integer.parseInt(retryCountHeader);
-        
+    @KafkaListener(topics = "${app.kafka.topics.user-commands}", groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "#{!${app.kafka.batch.user-commands-enabled:true}}")
+    public void consumeUserActivity(ConsumerRecord<String, byte[]> record) {
         try {
-            UserActivityEvent event = objectMapper.readValue(message, UserActivityEvent.class);
+            UserActivityEvent event = decode(record);
+            log.info("Received user activity: {}", event);
             
-            UserActivityCommand command = UserActivityCommand.fromString(event.getCommand());
+            UserActivityCommand command = knownCommand(event.getCommand(), record);
             
             UserActivityStrategy strategy = strategyFactory.getStrategy(command);
             if (strategy != null) {
@@ -55,29 +66,93 @@ public class UserActivityConsumerService {
                 log.error("No strategy found for command: {}", command);
             }
             
-        } catch (JsonProcessingException e) {
-            log.error("Failed to parse user activity JSON: {}", message, e);
-            handleRetry(message, retryCount, e);
-        } catch (IllegalArgumentException e) {
-            log.warn("Unknown user activity command in message: {}", message);
-            handleRetry(message, retryCount, e);
+        } catch (IOException e) {
+            log.error("Failed to decode user activity record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+            handleRetry(record, e);
+        } catch (UnknownUserActivityCommandException e) {
+            log.warn("Unknown user activity command {} in record {}-{}@{}", e.getUnknownCommand(),
+                    record.topic(), record.partition(), record.offset());
+            deadLetter(record, e);
         } catch (Exception e) {
-            log.error("Error processing user activity: {}", message, e);
-            handleRetry(message, retryCount, e);
+            log.error("Error processing user activity record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+            handleRetry(record, e);
         }
     }
     
-    @KafkaListener(topics = "${app.kafka.topics.user-commands-retry}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeUserActivityRetry(String message,
-                                        @Header(value = KafkaConstants.RETRY_COUNT_HEADER, defaultValue = "0") String retryCountHeader) {
-        log.info("Received retry user activity: {} (retry: {})", message, retryCountHeader);
-        
-        int retryCount = Integer.parseInt(retryCountHeader);
+    /**
+     * Batch variant of {@link #consumeUserActivity}: events in one poll are grouped per
+     * user and strategy, so each user's entries are written together, and different
+     * users are written in parallel. A failed write sends only that user's records to
+     * the retry topic. The listener waits for every retry and dead-letter send before
+     * returning, so the poll is committed only once its failed records are handed on.
+     */
+    @KafkaListener(topics = "${app.kafka.topics.user-commands}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${app.kafka.batch.user-commands-enabled:true}")
+    public void consumeUserActivityBatch(List<ConsumerRecord<String, byte[]>> records) {
+        log.info("Received batch of {} user activities", records.size());
+
+        // Appended to from the key-ordered lanes when a user's write fails.
+        List<CompletableFuture<SendResult<String, byte[]>>> failureSends = Collections.synchronizedList(new ArrayList<>());
+        Map<ActivityGroup, List<PendingActivity>> groups = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                UserActivityEvent event = decode(record);
+                UserActivityCommand command = knownCommand(event.getCommand(), record);
+
+                UserActivityStrategy strategy = strategyFactory.getStrategy(command);
+                if (strategy == null) {
+                    log.error("No strategy found for command: {}", command);
+                    continue;
+                }
+                groups.computeIfAbsent(new ActivityGroup(strategy, event.getUserId()), group -> new ArrayList<>())
+                        .add(new PendingActivity(record, event));
+            } catch (IOException e) {
+                log.error("Failed to decode user activity record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+                failureSends.add(handleRetry(record, e));
+            } catch (UnknownUserActivityCommandException e) {
+                log.warn("Unknown user activity command {} in record {}-{}@{}", e.getUnknownCommand(),
+                        record.topic(), record.partition(), record.offset());
+                failureSends.add(deadLetter(record, e));
+            } catch (Exception e) {
+                log.error("Error processing user activity record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+                failureSends.add(handleRetry(record, e));
+            }
+        }
+
+        keyOrderedExecutor.runAll(new ArrayList<>(groups.entrySet()), entry -> entry.getKey().userId(), entry -> {
+            ActivityGroup group = entry.getKey();
+            List<PendingActivity> pending = entry.getValue();
+            try {
+                group.strategy().executeAll(pending.stream().map(PendingActivity::event).toList());
+            } catch (Exception e) {
+                log.error("Error processing {} user activities for user {}", pending.size(), group.userId(), e);
+                pending.forEach(activity -> failureSends.add(handleRetry(activity.record(), e)));
+            }
+        });
+
+        retryPublisher.awaitAll(failureSends);
+    }
+
+    /**
+     * Consumes every retry tier. A record is held back, with its partition paused,
+     * until its not-before time, and is acknowledged once it has run or been passed on.
+     */
+    @KafkaListener(id = RETRY_LISTENER_ID,
+            topics = "#{@kafkaRetryConfig.tierTopics('${app.kafka.topics.user-commands-retry}')}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "retryKafkaListenerContainerFactory")
+    public void consumeUserActivityRetry(ConsumerRecord<String, byte[]> record, Acknowledgment acknowledgment,
+                                         Consumer<?, ?> consumer) {
+        if (!retryDelayGate.isDue(RETRY_LISTENER_ID, record, consumer)) {
+            return;
+        }
         
         try {
-            UserActivityEvent event = objectMapper.readValue(message, UserActivityEvent.class);
+            UserActivityEvent event = decode(record);
+            log.info("Received retry user activity: {} (retry: {})", event, RetryPublisher.retryCountOf(record));
             
-            UserActivityCommand command = UserActivityCommand.fromString(event.getCommand());
+            UserActivityCommand command = knownCommand(event.getCommand(), record);
             
             UserActivityStrategy strategy = strategyFactory.getStrategy(command);
             if (strategy != null) {
@@ -86,36 +161,54 @@ public class UserActivityConsumerService {
                 log.error("No strategy found for command: {}", command);
             }
             
-        } catch (JsonProcessingException e) {
-            log.error("Failed to parse retry user activity JSON: {}", message, e);
-            handleRetry(message, retryCount, e);
-        } catch (IllegalArgumentException e) {
-            log.warn("Unknown user activity command in retry message: {}", message);
-            handleRetry(message, retryCount, e);
+        } catch (IOException e) {
+            log.error("Failed to decode retry user activity record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+            handleRetry(record, e);
+        } catch (UnknownUserActivityCommandException e) {
+            log.warn("Unknown user activity command {} in retry record {}-{}@{}", e.getUnknownCommand(),
+                    record.topic(), record.partition(), record.offset());
+            deadLetter(record, e);
         } catch (Exception e) {
-            log.error("Error processing retry user activity: {}", message, e);
-            handleRetry(message, retryCount, e);
+            log.error("Error processing retry user activity record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+            handleRetry(record, e);
         }
+        acknowledgment.acknowledge();
     }
     
-    private void handleRetry(String message, int retryCount, Exception error) {
-        if (retryCount < retryConfig.getMaxRetry()) {
-            int newRetryCount = retryCount + 1;
-            log.warn("Retrying user activity processing (attempt {}/{})", newRetryCount, retryConfig.getMaxRetry());
-            
-            ProducerRecord<String, String> retryRecord = new ProducerRecord<>(
-                userCommandsRetryTopic, message);
-            retryRecord.headers().add(KafkaConstants.RETRY_COUNT_HEADER, 
-                String.valueOf(newRetryCount).getBytes());
-                
-            kafkaTemplate.send(retryRecord)
-                .thenAccept(result -> log.debug("User activity message sent to retry topic successfully"))
-                .exceptionally(throwable -> {
-                    log.error("Failed to send user activity message to retry topic: {}", throwable.getMessage());
-                    return null;
-                });
-        } else {
-            throw new MaxRetryExceededException(message, retryConfig.getMaxRetry(), error);
+    /**
+     * Rejects a record whose command header names an unknown command before its
+     * payload is decoded; records without the header are checked after decoding.
+     */
+    private UserActivityEvent decode(ConsumerRecord<String, byte[]> record)
+            throws IOException, UnknownUserActivityCommandException {
+        String command = EventHeaders.command(record);
+        if (command != null) {
+            knownCommand(command, record);
         }
+        return eventCodecs.decode(record, UserActivityEvent.class);
+    }
+
+    private static UserActivityCommand knownCommand(String command, ConsumerRecord<String, byte[]> record)
+            throws UnknownUserActivityCommandException {
+        return UserActivityCommand.fromStringOptional(command).orElseThrow(() -> new UnknownUserActivityCommandException(
+                command, record.topic() + "-" + record.partition() + "@" + record.offset()));
+    }
+    
+    private CompletableFuture<SendResult<String, byte[]>> handleRetry(ConsumerRecord<String, byte[]> record,
+                                                                      Exception error) {
+        return retryPublisher.publish(route(), record, error);
     }
+
+    private CompletableFuture<SendResult<String, byte[]>> deadLetter(ConsumerRecord<String, byte[]> record,
+                                                                     Exception error) {
+        return retryPublisher.deadLetter(route(), record, error);
+    }
+
+    private RetryRoute route() {
+        return new RetryRoute(userCommandsTopic, userCommandsRetryTopic, userCommandsDeadLetterTopic);
+    }
+
+    private record ActivityGroup(UserActivityStrategy strategy, String userId) {}
+
+    private record PendingActivity(ConsumerRecord<String, byte[]> record, UserActivityEvent event) {}
 }
@@ -18,13 +18,15 @@ public class DeleteSessionStrategy implements SessionCommandStrategy {
     public void execute(SessionEvent event) {
         log.info("Deleting session for user: {}", event.getUserId());
         
-        sessionRepository.findByHashedSessionId(event.getHashedSessionId())
-            .ifPresentOrElse(
-                session -> {
-                    sessionRepository.delete(session);
-                    log.info("Session deleted successfully for user: {}", event.getUserId());
-                },
-                () -> log.warn("Session not found for deletion: {}", event.getHashedSessionId())
-            );
+        // A missing hash means every session of the user.
+        long deleted = event.getHashedSessionId() != null
+                ? sessionRepository.deleteByHashedSessionId(event.getHashedSessionId())
+                : sessionRepository.deleteByUserId(event.getUserId());
+        
+        if (deleted > 0) {
+            log.info("Session deleted successfully for user: {}", event.getUserId());
+        } else {
+            log.warn("Session not found for deletion: {}", event.getHashedSessionId());
+        }
     }
 }
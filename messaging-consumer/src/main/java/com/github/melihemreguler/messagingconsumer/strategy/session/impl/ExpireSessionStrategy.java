@@ -18,13 +18,15 @@ public class ExpireSessionStrategy implements SessionCommandStrategy {
     public void execute(SessionEvent event) {
         log.info("Handling expired session for user: {}", event.getUserId());
         
-        sessionRepository.findByHashedSessionId(event.getHashedSessionId())
-            .ifPresentOrElse(
-                session -> {
-                    sessionRepository.delete(session);
-                    log.info("Expired session deleted for user: {}", event.getUserId());
-                },
-                () -> log.warn("Session not found for expiration: {}", event.getHashedSessionId())
-            );
+        // A missing hash means every session of the user.
+        long deleted = event.getHashedSessionId() != null
+                ? sessionRepository.deleteByHashedSessionId(event.getHashedSessionId())
+                : sessionRepository.deleteByUserId(event.getUserId());
+        
+        if (deleted > 0) {
+            log.info("Expired session deleted for user: {}", event.getUserId());
+        } else {
+            log.warn("Session not found for expiration: {}", event.getHashedSessionId());
+        }
     }
 }
@@ -1,5 +1,15 @@
 package com.github.melihemreguler.messagingconsumer.strategy.user;
 
+import java.util.List;
+
 public interface UserActivityStrategy {
     void execute(Object event);
+
+    /**
+     * Applies several events at once. Strategies that can write them together
+     * override this; the default applies them one by one.
+     */
+    default void executeAll(List<?> events) {
+        events.forEach(this::execute);
+    }
 }
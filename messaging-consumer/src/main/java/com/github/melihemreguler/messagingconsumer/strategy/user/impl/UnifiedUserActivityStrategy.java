@@ -3,20 +3,27 @@ package com.github.melihemreguler.messagingconsumer.strategy.user.impl;
 import com.github.melihemreguler.messagingconsumer.dto.ActivityLogDto;
 import com.github.melihemreguler.messagingconsumer.enums.UserActivityAction;
 import com.github.melihemreguler.messagingconsumer.model.UserActivityEvent;
-import com.github.melihemreguler.messagingconsumer.repository.ActivityLogRepository;
+import com.github.melihemreguler.messagingconsumer.repository.ActivityLogBucketRepository;
 import com.github.melihemreguler.messagingconsumer.strategy.user.UserActivityStrategy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class UnifiedUserActivityStrategy implements UserActivityStrategy {
     
-    private final ActivityLogRepository activityLogRepository;
+    private final ActivityLogBucketRepository activityLogBucketRepository;
+
+    @Value("${app.activity-logs.bucket-size:200}")
+    private int bucketSize = 200;
     
     @Override
     public void execute(Object event) {
@@ -26,30 +33,10 @@ public class UnifiedUserActivityStrategy implements UserActivityStrategy {
                 activityEvent.getCommand(), activityEvent.getUserId(), activityEvent.getUsername());
         
         try {
-            Optional<ActivityLogDto> existingLogOpt = activityLogRepository.findByUserId(activityEvent.getUserId());
-            
-            ActivityLogDto activityLog;
-            if (existingLogOpt.isPresent()) {
-                activityLog = existingLogOpt.get();
-            } else {
-                activityLog = new ActivityLogDto(activityEvent.getUserId());
-            }
-            
-            // Determine the action based on activity type and success
-            UserActivityAction action = determineAction(activityEvent);
-            
-            activityLog.addActivity(
-                activityEvent.getIpAddress(),
-                activityEvent.getUserAgent(),
-                activityEvent.isSuccessful(),
-                activityEvent.getTimestamp(),
-                activityEvent.getFailureReason(),
-                action.getValue()
-            );
+            ActivityLogDto.ActivityEntry entry = toEntry(activityEvent);
 
-            ActivityLogDto savedLog = activityLogRepository.save(activityLog);
-            log.info("User activity log updated: {} for user ID: {} - Action: {}", 
-                    savedLog.getId(), savedLog.getUserId(), action);
+            activityLogBucketRepository.append(activityEvent.getUserId(), entry, bucketSize);
+            log.info("User activity log updated for user ID: {} - Action: {}", activityEvent.getUserId(), entry.getAction());
             
         } catch (Exception e) {
             log.error("Error processing user activity for user {}: {}", 
@@ -58,6 +45,39 @@ public class UnifiedUserActivityStrategy implements UserActivityStrategy {
         }
     }
     
+    /**
+     * Coalesces the events per user so each user's entries from one poll are written
+     * with a single {@code $push: {$each: [...]}} instead of one upsert per event.
+     */
+    @Override
+    public void executeAll(List<?> events) {
+        Map<String, List<ActivityLogDto.ActivityEntry>> entriesByUser = new LinkedHashMap<>();
+        for (Object event : events) {
+            UserActivityEvent activityEvent = (UserActivityEvent) event;
+            entriesByUser.computeIfAbsent(activityEvent.getUserId(), userId -> new ArrayList<>())
+                    .add(toEntry(activityEvent));
+        }
+
+        entriesByUser.forEach((userId, entries) -> {
+            activityLogBucketRepository.appendAll(userId, entries, bucketSize);
+            log.info("User activity log updated for user ID: {} - {} entries", userId, entries.size());
+        });
+    }
+
+    private ActivityLogDto.ActivityEntry toEntry(UserActivityEvent event) {
+        // Determine the action based on activity type and success
+        UserActivityAction action = determineAction(event);
+
+        return new ActivityLogDto.ActivityEntry(
+            event.getIpAddress(),
+            event.getUserAgent(),
+            event.isSuccessful(),
+            event.getTimestamp(),
+            event.getFailureReason(),
+            action.getValue()
+        );
+    }
+
     private UserActivityAction determineAction(UserActivityEvent event) {
         if (event.isUserCreation()) {
             return UserActivityAction.USER_CREATION;
@@ -0,0 +1,91 @@
+package com.github.melihemreguler.messagingconsumer.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import com.github.melihemreguler.messagingconsumer.model.MessageCommandEvent;
+import com.github.melihemreguler.messagingconsumer.model.SessionEvent;
+import com.github.melihemreguler.messagingconsumer.model.UserActivityEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCodecRegistryTest {
+    private ObjectMapper objectMapper;
+    private SmileEventCodec smile;
+    private EventCodecRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        smile = new SmileEventCodec(objectMapper);
+        registry = new EventCodecRegistry(List.of(new JsonEventCodec(objectMapper), smile));
+    }
+
+    @Test
+    void givenSmileRecords_whenDecode_thenEveryEventTypeRoundTrips() throws Exception {
+        //GIVEN
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<Object> events = List.of(
+                new MessageCommandEvent("SEND_MESSAGE", "alice-bob", "u1", "alice", "hello", now, "u2", "bob",
+                        "650000000000000000000001"),
+                new SessionEvent("UPSERT_SESSION", "digest", "u1", now, "127.0.0.1", "Mozilla/5.0", now),
+                new UserActivityEvent("LOGIN_ATTEMPT", "alice", "u1", "127.0.0.1", "Mozilla/5.0", true, now, null, null));
+
+        for (Object event : events) {
+            //WHEN
+            Object decoded = registry.decode(record(smile.encode(event), SmileEventCodec.CONTENT_TYPE, "1"), event.getClass());
+            //THEN
+            assertEquals(event, decoded);
+        }
+    }
+
+    @Test
+    void givenSmileMessageWrittenBeforeMessageIds_whenDecode_thenMessageIdIsNull() throws Exception {
+        //GIVEN
+        byte[] shorter = new SmileMapper().writeValueAsBytes(
+                List.of("SEND_MESSAGE", "alice-bob", "u1", "alice", "hello", "2024-01-01T00:00:00.000000", "u2", "bob"));
+        //WHEN
+        MessageCommandEvent decoded = registry.decode(record(shorter, SmileEventCodec.CONTENT_TYPE, "1"),
+                MessageCommandEvent.class);
+        //THEN
+        assertEquals("bob", decoded.getRecipientUsername());
+        assertNull(decoded.getMessageId());
+    }
+
+    @Test
+    void givenRecordWithoutCodecHeaders_whenDecode_thenReadAsJson() throws Exception {
+        //GIVEN
+        byte[] payload = "{\"command\":\"DELETE_SESSION\",\"userId\":\"u1\"}".getBytes(StandardCharsets.UTF_8);
+        //WHEN
+        SessionEvent decoded = registry.decode(new ConsumerRecord<>("session-commands", 0, 0L, "u1", payload), SessionEvent.class);
+        //THEN
+        assertEquals("DELETE_SESSION", decoded.getCommand());
+        assertEquals("u1", decoded.getUserId());
+    }
+
+    @Test
+    void givenUnknownContentTypeOrNewerSchema_whenDecode_thenRejected() throws Exception {
+        //GIVEN
+        byte[] payload = smile.encode(new SessionEvent("DELETE_SESSION", null, "u1", null, null, null, null));
+        //WHEN //THEN
+        assertThrows(IOException.class, () -> registry.decode(record(payload, "application/avro", "1"), SessionEvent.class));
+        assertThrows(IOException.class, () -> registry.decode(record(payload, SmileEventCodec.CONTENT_TYPE,
+                String.valueOf(EventSchemas.CURRENT_VERSION + 1)), SessionEvent.class));
+    }
+
+    private static ConsumerRecord<String, byte[]> record(byte[] payload, String contentType, String schemaVersion) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("session-commands", 0, 0L, "u1", payload);
+        record.headers().add(KafkaConstants.CONTENT_TYPE_HEADER, contentType.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaConstants.SCHEMA_VERSION_HEADER, schemaVersion.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
@@ -6,13 +6,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.kafka.listener.ContainerProperties;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(classes = KafkaConsumerConfig.class)
 @TestPropertySource(properties = {
         "spring.kafka.bootstrap-servers=localhost:9092",
-        "spring.kafka.consumer.group-id=test-group"
+        "spring.kafka.consumer.group-id=test-group",
+        "app.kafka.batch.max-poll-records=250"
 })
 class KafkaConsumerConfigTest {
     @Autowired
@@ -21,7 +24,7 @@ class KafkaConsumerConfigTest {
     @Test
     void givenConfig_whenConsumerFactory_thenNotNull() {
         //GIVEN //WHEN
-        ConsumerFactory<String, String> factory = config.consumerFactory();
+        ConsumerFactory<String, byte[]> factory = config.consumerFactory();
         //THEN
         assertNotNull(factory);
     }
@@ -29,8 +32,26 @@ class KafkaConsumerConfigTest {
     @Test
     void givenConfig_whenKafkaListenerContainerFactory_thenNotNull() {
         //GIVEN //WHEN
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = config.kafkaListenerContainerFactory();
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = config.kafkaListenerContainerFactory();
         //THEN
         assertNotNull(factory);
     }
+
+    @Test
+    void givenConfig_whenBatchKafkaListenerContainerFactory_thenBatchModeWithMaxPollRecords() {
+        //GIVEN //WHEN
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = config.batchKafkaListenerContainerFactory();
+        //THEN
+        assertTrue(factory.isBatchListener());
+        assertEquals(250, factory.getConsumerFactory().getConfigurationProperties().get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG));
+    }
+
+    @Test
+    void givenConfig_whenRetryKafkaListenerContainerFactory_thenOffsetsAreAcknowledgedManually() {
+        //GIVEN //WHEN
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = config.retryKafkaListenerContainerFactory();
+        //THEN
+        assertNotEquals(Boolean.TRUE, factory.isBatchListener());
+        assertEquals(ContainerProperties.AckMode.MANUAL, factory.getContainerProperties().getAckMode());
+    }
 }
@@ -16,13 +16,36 @@ class KafkaRetryConfigTest {
     }
 
     @Test
-    void givenConfig_whenSetAndGetCron_thenReturnsValue() {
+    void givenDefaultBackoff_whenDelayMsForTier_thenGrowsByMultiplierUpToCap() {
         //GIVEN
         KafkaRetryConfig config = new KafkaRetryConfig();
-        config.setCron("0 0 * * * *");
+        config.setMaxIntervalMs(50_000);
+        //WHEN //THEN
+        assertEquals(1_000, config.delayMsForTier(0));
+        assertEquals(10_000, config.delayMsForTier(1));
+        assertEquals(50_000, config.delayMsForTier(2));
+    }
+
+    @Test
+    void givenThreeTiers_whenTierFor_thenLaterAttemptsShareTheLastTier() {
+        //GIVEN
+        KafkaRetryConfig config = new KafkaRetryConfig();
+        config.setTiers(3);
+        //WHEN //THEN
+        assertEquals(0, config.tierFor(1));
+        assertEquals(1, config.tierFor(2));
+        assertEquals(2, config.tierFor(3));
+        assertEquals(2, config.tierFor(5));
+    }
+
+    @Test
+    void givenRetryTopic_whenTierTopics_thenFirstTierKeepsTheConfiguredName() {
+        //GIVEN
+        KafkaRetryConfig config = new KafkaRetryConfig();
+        config.setTiers(3);
         //WHEN
-        String cron = config.getCron();
+        var topics = config.tierTopics("commands.retry.0");
         //THEN
-        assertEquals("0 0 * * * *", cron);
+        assertEquals(java.util.List.of("commands.retry.0", "commands.retry.0.tier1", "commands.retry.0.tier2"), topics);
     }
 }
@@ -0,0 +1,63 @@
+package com.github.melihemreguler.messagingconsumer.controller;
+
+import com.github.melihemreguler.messagingconsumer.service.DeadLetterReplayService;
+import com.github.melihemreguler.messagingconsumer.service.DeadLetterReplayService.ReplayResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebMvcTest(DeadLetterController.class)
+class DeadLetterControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private DeadLetterReplayService deadLetterReplayService;
+
+    @Test
+    void givenKnownCommandType_whenReplay_thenReturnsCounts() throws Exception {
+        // Given
+        when(deadLetterReplayService.replay("message-commands", 50))
+                .thenReturn(Optional.of(new ReplayResult("message.dlq", 3, 1)));
+        // When
+        var result = mockMvc.perform(MockMvcRequestBuilders.post("/api/dead-letters/message-commands/replay")
+                .param("limit", "50"));
+        // Then
+        result.andExpect(MockMvcResultMatchers.status().isOk())
+              .andExpect(MockMvcResultMatchers.jsonPath("$.topic").value("message.dlq"))
+              .andExpect(MockMvcResultMatchers.jsonPath("$.replayed").value(3))
+              .andExpect(MockMvcResultMatchers.jsonPath("$.skipped").value(1));
+    }
+
+    @Test
+    void givenUnknownCommandType_whenReplay_thenNotFound() throws Exception {
+        // Given
+        when(deadLetterReplayService.replay("unknown", 100)).thenReturn(Optional.empty());
+        // When
+        var result = mockMvc.perform(MockMvcRequestBuilders.post("/api/dead-letters/unknown/replay"));
+        // Then
+        result.andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    void givenLimitAboveMaximum_whenReplay_thenBadRequest() throws Exception {
+        // Given & When
+        var result = mockMvc.perform(MockMvcRequestBuilders.post("/api/dead-letters/message-commands/replay")
+                .param("limit", "100000"));
+        // Then
+        result.andExpect(MockMvcResultMatchers.status().isBadRequest());
+        verify(deadLetterReplayService, never()).replay(anyString(), anyInt());
+    }
+}
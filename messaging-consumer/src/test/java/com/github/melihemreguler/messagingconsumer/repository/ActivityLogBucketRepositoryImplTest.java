@@ -0,0 +1,84 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogBucketDto;
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogDto;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ActivityLogBucketRepositoryImplTest {
+
+    private MongoTemplate mongoTemplate;
+    private ActivityLogBucketRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        repository = new ActivityLogBucketRepositoryImpl(mongoTemplate);
+    }
+
+    @Test
+    void append_shouldTargetOpenBucketOfEntryDay() {
+        //GIVEN
+        LocalDateTime at = LocalDateTime.of(2024, 3, 10, 17, 45);
+        ActivityLogDto.ActivityEntry entry = new ActivityLogDto.ActivityEntry("1.2.3.4", "JUnit", true, at, null, "LOGIN_SUCCESS");
+
+        //WHEN
+        repository.append("alice", entry, 200);
+
+        //THEN
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(query.capture(), update.capture(), eq(ActivityLogBucketDto.class));
+
+        Document filter = query.getValue().getQueryObject();
+        assertEquals("alice", filter.get("userId"));
+        assertEquals(LocalDateTime.of(2024, 3, 10, 0, 0), filter.get("bucketStart"));
+        assertEquals(new Document("$lte", 199), filter.get("count"));
+
+        Document updateObject = update.getValue().getUpdateObject();
+        assertEquals(new Document("count", 1), updateObject.get("$inc"));
+        assertEquals(new Document("firstAt", at), updateObject.get("$min"));
+        assertEquals(new Document("lastAt", at), updateObject.get("$max"));
+        assertNotNull(((Document) updateObject.get("$push")).get("logs"));
+    }
+
+    @Test
+    void appendAll_shouldPushEachChunkOnlyIntoBucketWithRoomForIt() {
+        //GIVEN
+        LocalDateTime day1 = LocalDateTime.of(2024, 3, 10, 23, 58);
+        LocalDateTime day2 = LocalDateTime.of(2024, 3, 11, 0, 1);
+        List<ActivityLogDto.ActivityEntry> entries = List.of(
+                new ActivityLogDto.ActivityEntry("ip", "ua", true, day1, null, "LOGIN_SUCCESS"),
+                new ActivityLogDto.ActivityEntry("ip", "ua", true, day1.plusMinutes(1), null, "LOGIN_SUCCESS"),
+                new ActivityLogDto.ActivityEntry("ip", "ua", true, day2, null, "LOGIN_SUCCESS"));
+
+        //WHEN
+        repository.appendAll("alice", entries, 200);
+
+        //THEN
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).upsert(query.capture(), update.capture(), eq(ActivityLogBucketDto.class));
+
+        Document firstFilter = query.getAllValues().get(0).getQueryObject();
+        assertEquals(LocalDateTime.of(2024, 3, 10, 0, 0), firstFilter.get("bucketStart"));
+        assertEquals(new Document("$lte", 198), firstFilter.get("count"));
+        Document firstUpdate = update.getAllValues().get(0).getUpdateObject();
+        assertEquals(new Document("count", 2), firstUpdate.get("$inc"));
+        assertEquals(new Document("lastAt", day1.plusMinutes(1)), firstUpdate.get("$max"));
+
+        assertEquals(LocalDateTime.of(2024, 3, 11, 0, 0), query.getAllValues().get(1).getQueryObject().get("bucketStart"));
+    }
+}
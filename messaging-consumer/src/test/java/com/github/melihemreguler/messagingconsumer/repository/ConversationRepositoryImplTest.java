@@ -0,0 +1,70 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.ConversationDto;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ConversationRepositoryImplTest {
+
+    private MongoTemplate mongoTemplate;
+    private ConversationRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        repository = new ConversationRepositoryImpl(mongoTemplate);
+    }
+
+    @Test
+    void upsertIfNewer_shouldOnlyMatchOlderOrMissingLastMessageAt() {
+        //GIVEN
+        ConversationDto conversation = conversation();
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(ConversationDto.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, new BsonString("alice:alice-bob")));
+
+        //WHEN
+        boolean written = repository.upsertIfNewer(conversation);
+
+        //THEN
+        assertTrue(written);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).upsert(query.capture(), any(Update.class), eq(ConversationDto.class));
+        String filter = query.getValue().getQueryObject().toString();
+        assertTrue(filter.contains("$lt="));
+        assertTrue(filter.contains("$exists=false"));
+    }
+
+    @Test
+    void upsertIfNewer_shouldReturnFalseWhenNewerEntryAlreadyStored() {
+        //GIVEN
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(ConversationDto.class)))
+                .thenThrow(new DuplicateKeyException("E11000"));
+
+        //WHEN / THEN
+        assertFalse(repository.upsertIfNewer(conversation()));
+    }
+
+    private static ConversationDto conversation() {
+        return ConversationDto.builder()
+                .id("alice:alice-bob")
+                .userId("alice")
+                .threadId("alice-bob")
+                .otherUserId("bob")
+                .lastMessageAt(LocalDateTime.now())
+                .build();
+    }
+}
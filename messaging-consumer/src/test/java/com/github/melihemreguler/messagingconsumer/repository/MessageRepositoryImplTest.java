@@ -0,0 +1,110 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessageRepositoryImplTest {
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulkOperations;
+    private MessageRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulkOperations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MessageDto.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        repository = new MessageRepositoryImpl(mongoTemplate);
+    }
+
+    @Test
+    void insertAllUnordered_shouldAssignIdsAndWriteOnce() {
+        //GIVEN
+        List<MessageDto> messages = List.of(message("a"), message("b"));
+
+        //WHEN
+        MessageRepositoryCustom.BulkInsertResult result = repository.insertAllUnordered(messages);
+
+        //THEN
+        assertTrue(result.rejected().isEmpty());
+        assertTrue(messages.stream().allMatch(m -> m.getId() != null));
+        verify(bulkOperations).insert(eq(messages));
+        verify(bulkOperations, times(1)).execute();
+    }
+
+    @Test
+    void insertAllUnordered_shouldReportRejectedAndAlreadyStoredPositions() {
+        //GIVEN
+        BulkWriteError invalid = new BulkWriteError(121, "Document failed validation", new BsonDocument(), 1);
+        BulkWriteError duplicate = new BulkWriteError(11000, "E11000", new BsonDocument(), 2);
+        MongoBulkWriteException cause = new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(invalid, duplicate), null, new ServerAddress(), Set.of());
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("bulk failed", cause));
+
+        //WHEN
+        MessageRepositoryCustom.BulkInsertResult result =
+                repository.insertAllUnordered(List.of(message("a"), message("b"), message("c")));
+
+        //THEN
+        assertEquals(Set.of(1), result.rejected());
+        assertEquals(Set.of(2), result.duplicates());
+    }
+
+    @Test
+    void insertAllUnordered_shouldKeepIdsAssignedUpstream() {
+        //GIVEN
+        MessageDto message = message("a");
+        message.setId("650000000000000000000001");
+
+        //WHEN
+        repository.insertAllUnordered(List.of(message));
+
+        //THEN
+        assertEquals("650000000000000000000001", message.getId());
+    }
+
+    @Test
+    void insertIfAbsent_shouldReportAlreadyStoredMessage() {
+        //GIVEN
+        MessageDto message = message("a");
+        message.setId("650000000000000000000001");
+        when(mongoTemplate.insert(message)).thenReturn(message).thenThrow(new DuplicateKeyException("E11000"));
+
+        //WHEN //THEN
+        assertTrue(repository.insertIfAbsent(message));
+        assertFalse(repository.insertIfAbsent(message));
+    }
+
+    @Test
+    void insertAllUnordered_shouldSkipEmptyBatch() {
+        //WHEN
+        MessageRepositoryCustom.BulkInsertResult result = repository.insertAllUnordered(List.of());
+
+        //THEN
+        assertEquals(MessageRepositoryCustom.BulkInsertResult.allInserted(), result);
+        verifyNoInteractions(bulkOperations);
+    }
+
+    private static MessageDto message(String content) {
+        return MessageDto.builder().threadId("alice-bob").senderId("alice").content(content).build();
+    }
+}
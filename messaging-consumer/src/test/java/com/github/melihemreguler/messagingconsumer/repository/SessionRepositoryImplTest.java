@@ -0,0 +1,136 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.SessionDto;
+import com.github.melihemreguler.messagingconsumer.model.SessionEvent;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SessionRepositoryImplTest {
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulkOperations;
+    private SessionRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulkOperations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, SessionDto.class)).thenReturn(bulkOperations);
+        repository = new SessionRepositoryImpl(mongoTemplate);
+    }
+
+    @Test
+    void replaceUserSessions_shouldRemoveOtherSessionsThenUpsertInOneWrite() {
+        //GIVEN
+        SessionEvent event = event("UPSERT_SESSION", "hash1", "user1");
+
+        //WHEN
+        repository.replaceUserSessions(event);
+
+        //THEN
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Query> upserted = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        InOrder inOrder = inOrder(bulkOperations);
+        inOrder.verify(bulkOperations).remove(removed.capture());
+        inOrder.verify(bulkOperations).upsert(upserted.capture(), update.capture());
+        inOrder.verify(bulkOperations, times(1)).execute();
+        assertEquals("user1", removed.getValue().getQueryObject().getString("userId"));
+        assertNotNull(removed.getValue().getQueryObject().get("hashedSessionId"));
+        assertEquals("hash1", upserted.getValue().getQueryObject().getString("hashedSessionId"));
+        assertTrue(update.getValue().getUpdateObject().containsKey("$setOnInsert"));
+        verify(mongoTemplate, never()).find(any(), any());
+    }
+
+    @Test
+    void touchUserSession_shouldAdvanceLastAccessByUserWithoutReading() {
+        //GIVEN
+        SessionEvent event = event("UPDATE_SESSION", null, "user1");
+        event.setUserAgent(null);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(SessionDto.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        //WHEN
+        boolean touched = repository.touchUserSession(event);
+
+        //THEN
+        assertTrue(touched);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(SessionDto.class));
+        assertEquals(event.getTimestamp(),
+                update.getValue().getUpdateObject().get("$max", Document.class).get("lastAccessedAt"));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals("127.0.0.1", set.getString("ipAddress"));
+        assertFalse(set.containsKey("userAgent"));
+    }
+
+    @Test
+    void touchUserSession_shouldTargetNamedSession() {
+        //GIVEN
+        SessionEvent event = event("UPDATE_SESSION", "hash1", "user1");
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(SessionDto.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        //WHEN
+        boolean touched = repository.touchUserSession(event);
+
+        //THEN
+        assertFalse(touched);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(SessionDto.class));
+        assertEquals("hash1", query.getValue().getQueryObject().getString("hashedSessionId"));
+        assertFalse(query.getValue().getQueryObject().containsKey("userId"));
+    }
+
+    @Test
+    void applyAll_shouldQueueEveryCommandIntoOneOrderedWrite() {
+        //GIVEN
+        List<SessionEvent> events = List.of(
+                event("SAVE_SESSION", "hash1", "user1"),
+                event("UPDATE_SESSION", null, "user1"),
+                event("DELETE_SESSION", "hash2", "user2"),
+                event("EXPIRE_SESSION", null, "user3"));
+
+        //WHEN
+        repository.applyAll(events);
+
+        //THEN
+        verify(bulkOperations).upsert(any(Query.class), any(Update.class));
+        verify(bulkOperations).updateOne(any(Query.class), any(Update.class));
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations, times(2)).remove(removed.capture());
+        assertEquals("hash2", removed.getAllValues().get(0).getQueryObject().getString("hashedSessionId"));
+        assertEquals("user3", removed.getAllValues().get(1).getQueryObject().getString("userId"));
+        verify(bulkOperations, times(1)).execute();
+    }
+
+    @Test
+    void applyAll_shouldSkipEmptyBatch() {
+        //WHEN
+        repository.applyAll(List.of());
+
+        //THEN
+        verifyNoInteractions(bulkOperations);
+    }
+
+    private static SessionEvent event(String command, String hashedSessionId, String userId) {
+        return new SessionEvent(command, hashedSessionId, userId, LocalDateTime.now().plusHours(1),
+                "127.0.0.1", "JUnit", LocalDateTime.now());
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.melihemreguler.messagingconsumer.repository;
+
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+import com.github.melihemreguler.messagingconsumer.dto.ThreadStatsDto;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ThreadStatsRepositoryImplTest {
+
+    private MongoTemplate mongoTemplate;
+    private ThreadStatsRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        repository = new ThreadStatsRepositoryImpl(mongoTemplate);
+    }
+
+    @Test
+    void recordMessage_shouldIncrementCountersInSingleUpsert() {
+        //GIVEN
+        LocalDateTime sentAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        MessageDto message = MessageDto.builder()
+                .threadId("alice-bob")
+                .senderId("alice")
+                .timestamp(sentAt)
+                .build();
+
+        //WHEN
+        repository.recordMessage(message);
+
+        //THEN
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(query.capture(), update.capture(), eq(ThreadStatsDto.class));
+
+        assertEquals(new Document("_id", "alice-bob"), query.getValue().getQueryObject());
+        Document updateObject = update.getValue().getUpdateObject();
+        assertEquals(new Document("messageCount", 1).append("senderCounts.alice", 1), updateObject.get("$inc"));
+        assertEquals(new Document("firstMessageAt", sentAt), updateObject.get("$min"));
+        assertEquals(new Document("lastMessageAt", sentAt), updateObject.get("$max"));
+    }
+
+    @Test
+    void recordMessage_shouldOnlyCountWhenTimestampMissing() {
+        //GIVEN
+        MessageDto message = MessageDto.builder().threadId("alice-bob").senderId("bob").build();
+
+        //WHEN
+        repository.recordMessage(message);
+
+        //THEN
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(org.mockito.ArgumentMatchers.any(Query.class), update.capture(), eq(ThreadStatsDto.class));
+        assertNull(update.getValue().getUpdateObject().get("$min"));
+        assertNull(update.getValue().getUpdateObject().get("$max"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogBucketDto;
+import com.github.melihemreguler.messagingconsumer.dto.ActivityLogDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ActivityLogMigrationJobTest {
+
+    private MongoTemplate mongoTemplate;
+    private ActivityLogMigrationJob job;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        job = new ActivityLogMigrationJob(mongoTemplate);
+    }
+
+    @Test
+    void split_shouldGroupByDayAndCapBucketSize() {
+        //GIVEN
+        LocalDateTime day1 = LocalDateTime.of(2024, 1, 1, 8, 0);
+        LocalDateTime day2 = LocalDateTime.of(2024, 1, 2, 8, 0);
+        List<ActivityLogDto.ActivityEntry> logs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            logs.add(entry(day1.plusMinutes(i)));
+        }
+        logs.add(entry(day2));
+        ActivityLogDto legacy = new ActivityLogDto("legacy-id", "alice", logs);
+
+        //WHEN
+        List<ActivityLogBucketDto> buckets = ActivityLogMigrationJob.split(legacy, 2);
+
+        //THEN
+        assertEquals(4, buckets.size());
+        assertEquals(List.of("alice:2024-01-01:0", "alice:2024-01-01:1", "alice:2024-01-01:2", "alice:2024-01-02:0"),
+                buckets.stream().map(ActivityLogBucketDto::getId).toList());
+        assertEquals(List.of(2, 2, 1, 1), buckets.stream().map(ActivityLogBucketDto::getCount).toList());
+        assertEquals(day1.plusMinutes(2), buckets.get(1).getFirstAt());
+        assertEquals(day1.plusMinutes(3), buckets.get(1).getLastAt());
+        assertEquals(LocalDateTime.of(2024, 1, 2, 0, 0), buckets.get(3).getBucketStart());
+    }
+
+    @Test
+    void migrateUser_shouldSkipExistingBucketsAndRemoveLegacyDocument() {
+        //GIVEN
+        ActivityLogDto legacy = new ActivityLogDto("legacy-id", "alice",
+                new ArrayList<>(List.of(entry(LocalDateTime.of(2024, 1, 1, 8, 0)))));
+        when(mongoTemplate.insert(any(ActivityLogBucketDto.class))).thenThrow(new DuplicateKeyException("E11000"));
+
+        //WHEN
+        job.migrateUser(legacy);
+
+        //THEN
+        verify(mongoTemplate).insert(any(ActivityLogBucketDto.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(ActivityLogDto.class));
+    }
+
+    private static ActivityLogDto.ActivityEntry entry(LocalDateTime at) {
+        return new ActivityLogDto.ActivityEntry("127.0.0.1", "JUnit", true, at, null, "LOGIN_SUCCESS");
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.dto.ConversationDto;
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+import com.github.melihemreguler.messagingconsumer.dto.UserDto;
+import com.github.melihemreguler.messagingconsumer.repository.ConversationRepository;
+import com.github.melihemreguler.messagingconsumer.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConversationProjectionServiceTest {
+
+    private ConversationRepository conversationRepository;
+    private UserRepository userRepository;
+    private ConversationProjectionService service;
+
+    @BeforeEach
+    void setUp() {
+        conversationRepository = mock(ConversationRepository.class);
+        userRepository = mock(UserRepository.class);
+        service = new ConversationProjectionService(conversationRepository, userRepository);
+    }
+
+    @Test
+    void project_shouldUpsertEntryForBothParticipants() {
+        //GIVEN
+        MessageDto message = message("alice-bob", "alice", "Alice");
+
+        //WHEN
+        service.project(message, "bob", "Bob");
+
+        //THEN
+        ArgumentCaptor<ConversationDto> captor = ArgumentCaptor.forClass(ConversationDto.class);
+        verify(conversationRepository, times(2)).upsertIfNewer(captor.capture());
+        List<ConversationDto> written = captor.getAllValues();
+
+        ConversationDto senderSide = written.get(0);
+        assertEquals("alice:alice-bob", senderSide.getId());
+        assertEquals("bob", senderSide.getOtherUserId());
+        assertEquals("Bob", senderSide.getOtherUsername());
+        assertEquals(message.getTimestamp(), senderSide.getLastMessageAt());
+
+        ConversationDto recipientSide = written.get(1);
+        assertEquals("bob:alice-bob", recipientSide.getId());
+        assertEquals("alice", recipientSide.getOtherUserId());
+        assertEquals("Alice", recipientSide.getOtherUsername());
+        assertSame(message, recipientSide.getLastMessage());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void project_shouldResolveRecipientFromThreadIdForLegacyEvents() {
+        //GIVEN
+        MessageDto message = message("alice-bob", "bob", "Bob");
+        UserDto alice = new UserDto();
+        alice.setId("alice");
+        alice.setUsername("Alice");
+        when(userRepository.findById("alice")).thenReturn(Optional.of(alice));
+
+        //WHEN
+        service.project(message, null, null);
+
+        //THEN
+        verify(conversationRepository).upsertIfNewer(argThat(c ->
+                c.getUserId().equals("bob") && "alice".equals(c.getOtherUserId()) && "Alice".equals(c.getOtherUsername())));
+        verify(conversationRepository).upsertIfNewer(argThat(c ->
+                c.getUserId().equals("alice") && "Bob".equals(c.getOtherUsername())));
+    }
+
+    @Test
+    void otherParticipant_shouldReturnCounterpart() {
+        assertEquals("bob", ConversationProjectionService.otherParticipant("alice-bob", "alice"));
+        assertEquals("alice", ConversationProjectionService.otherParticipant("alice-bob", "bob"));
+    }
+
+    private static MessageDto message(String threadId, String senderId, String senderUsername) {
+        return MessageDto.builder()
+                .id("m1")
+                .threadId(threadId)
+                .senderId(senderId)
+                .senderUsername(senderUsername)
+                .content("hi")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import com.github.melihemreguler.messagingconsumer.service.DeadLetterReplayService.ReplayResult;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DeadLetterReplayServiceTest {
+    private static final String DLQ = "message.dlq";
+    private static final TopicPartition PARTITION = new TopicPartition(DLQ, 0);
+
+    private MockConsumer<String, byte[]> consumer;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private DeadLetterReplayService service;
+
+    @BeforeEach
+    void setUp() {
+        // Kept open so committed offsets can be inspected after the replay closes it.
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void close() {
+            }
+        };
+        consumer.updatePartitions(DLQ, List.of(new PartitionInfo(DLQ, 0, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+
+        ConsumerFactory<String, byte[]> consumerFactory = mock(ConsumerFactory.class);
+        doReturn(consumer).when(consumerFactory).createConsumer(eq("group-dlq-replay"), isNull(), isNull(), any());
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        service = new DeadLetterReplayService(consumerFactory, kafkaTemplate, "group", DLQ, "user.dlq", "session.dlq");
+    }
+
+    @Test
+    void givenDeadLetters_whenReplay_thenTheyGoBackToTheirOriginalTopicWithoutRetryHeaders() {
+        //GIVEN
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(deadLetter(0, "message.commands", "m1"));
+            consumer.addRecord(deadLetter(1, null, "orphan"));
+            consumer.addRecord(deadLetter(2, "message.commands", "m2"));
+        });
+
+        //WHEN
+        Optional<ReplayResult> result = service.replay("message-commands", 10);
+
+        //THEN
+        assertEquals(new ReplayResult(DLQ, 2, 1), result.orElseThrow());
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(2)).send(sent.capture());
+        assertEquals(List.of("m1", "m2"), sent.getAllValues().stream()
+                .map(record -> new String((byte[]) record.value(), StandardCharsets.UTF_8)).toList());
+        assertEquals("message.commands", sent.getValue().topic());
+        assertEquals("user1", sent.getValue().key());
+        assertFalse(sent.getValue().headers().iterator().hasNext());
+        assertEquals(3L, consumer.committed(PARTITION).offset());
+    }
+
+    @Test
+    void givenSmileEncodedDeadLetter_whenReplay_thenCodecHeadersAreKept() {
+        //GIVEN
+        ConsumerRecord<String, byte[]> deadLetter = deadLetter(0, "message.commands", "m1");
+        deadLetter.headers().add(KafkaConstants.CONTENT_TYPE_HEADER, "application/x-jackson-smile".getBytes());
+        deadLetter.headers().add(KafkaConstants.SCHEMA_VERSION_HEADER, "1".getBytes());
+        consumer.schedulePollTask(() -> consumer.addRecord(deadLetter));
+
+        //WHEN
+        service.replay("message-commands", 10);
+
+        //THEN
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertEquals("application/x-jackson-smile",
+                new String(sent.getValue().headers().lastHeader(KafkaConstants.CONTENT_TYPE_HEADER).value()));
+        assertEquals("1", new String(sent.getValue().headers().lastHeader(KafkaConstants.SCHEMA_VERSION_HEADER).value()));
+        assertNull(sent.getValue().headers().lastHeader(KafkaConstants.RETRY_COUNT_HEADER));
+    }
+
+    @Test
+    void givenMoreDeadLettersThanLimit_whenReplay_thenOnlyLimitIsReplayedAndCommitted() {
+        //GIVEN
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(deadLetter(0, "message.commands", "m1"));
+            consumer.addRecord(deadLetter(1, "message.commands", "m2"));
+        });
+
+        //WHEN
+        Optional<ReplayResult> result = service.replay("message-commands", 1);
+
+        //THEN
+        assertEquals(1, result.orElseThrow().replayed());
+        assertEquals(1L, consumer.committed(PARTITION).offset());
+    }
+
+    @Test
+    void givenFailedSend_whenReplay_thenOffsetsAreNotCommitted() {
+        //GIVEN
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        consumer.schedulePollTask(() -> consumer.addRecord(deadLetter(0, "message.commands", "m1")));
+
+        //WHEN //THEN
+        assertThrows(RuntimeException.class, () -> service.replay("message-commands", 10));
+        assertNull(consumer.committed(PARTITION));
+    }
+
+    @Test
+    void givenUnknownCommandType_whenReplay_thenEmpty() {
+        //GIVEN //WHEN //THEN
+        assertTrue(service.replay("unknown", 10).isEmpty());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    private static ConsumerRecord<String, byte[]> deadLetter(long offset, String originalTopic, String value) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(DLQ, 0, offset, "user1",
+                value.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaConstants.RETRY_COUNT_HEADER, "5".getBytes());
+        if (originalTopic != null) {
+            record.headers().add(KafkaConstants.ORIGINAL_TOPIC_HEADER, originalTopic.getBytes());
+        }
+        return record;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyOrderedExecutorTest {
+
+    private final KeyOrderedExecutor executor = new KeyOrderedExecutor(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void givenItemsForSeveralKeys_whenRunAll_thenEachKeyIsProcessedInOrder() {
+        //GIVEN
+        List<int[]> items = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            items.add(new int[]{i % 8, i});
+        }
+        Map<Integer, List<Integer>> seen = new ConcurrentHashMap<>();
+        //WHEN
+        executor.runAll(items, item -> "key-" + item[0],
+                item -> seen.computeIfAbsent(item[0], k -> new CopyOnWriteArrayList<>()).add(item[1]));
+        //THEN
+        assertEquals(8, seen.size());
+        seen.forEach((key, values) -> {
+            assertEquals(50, values.size());
+            for (int i = 1; i < values.size(); i++) {
+                assertTrue(values.get(i - 1) < values.get(i), "out of order for key " + key);
+            }
+        });
+    }
+
+    @Test
+    void givenFailingTask_whenRunAll_thenRemainingTasksCompleteAndFailureIsRethrown() {
+        //GIVEN
+        List<String> items = List.of("a", "b", "c", "d");
+        AtomicInteger completed = new AtomicInteger();
+        //WHEN
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+                executor.runAll(items, item -> item, item -> {
+                    if (item.equals("b")) {
+                        throw new IllegalStateException("boom");
+                    }
+                    completed.incrementAndGet();
+                }));
+        //THEN
+        assertEquals("boom", thrown.getMessage());
+        assertEquals(3, completed.get());
+    }
+}
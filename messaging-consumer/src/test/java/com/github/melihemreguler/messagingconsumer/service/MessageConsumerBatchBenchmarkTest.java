@@ -0,0 +1,113 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.melihemreguler.messagingconsumer.codec.EventCodecRegistry;
+import com.github.melihemreguler.messagingconsumer.codec.JsonEventCodec;
+import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
+import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
+import com.github.melihemreguler.messagingconsumer.model.MessageCommandEvent;
+import com.github.melihemreguler.messagingconsumer.repository.MessageRepository;
+import com.github.melihemreguler.messagingconsumer.repository.MessageRepositoryCustom;
+import com.github.melihemreguler.messagingconsumer.repository.ThreadStatsRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares single-record and batch consumption of message commands against a
+ * repository that charges a fixed round trip per call plus a small per-document
+ * cost. Run with {@code mvn test -Dtest=MessageConsumerBatchBenchmarkTest -Dbenchmark=true},
+ * optionally overriding {@code -Dbenchmark.rttMicros}, {@code -Dbenchmark.records}
+ * and {@code -Dbenchmark.batchSize}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MessageConsumerBatchBenchmarkTest {
+
+    private static final long RTT_MICROS = Long.getLong("benchmark.rttMicros", 1000);
+    private static final long PER_DOC_MICROS = Long.getLong("benchmark.perDocMicros", 10);
+    private static final int RECORDS = Integer.getInteger("benchmark.records", 5000);
+    private static final int BATCH_SIZE = Integer.getInteger("benchmark.batchSize", 500);
+
+    @Test
+    void compareSingleRecordAndBatchThroughput() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        List<byte[]> payloads = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            payloads.add(objectMapper.writeValueAsBytes(new MessageCommandEvent("SEND_MESSAGE", "user1-user2", "user1",
+                    "alice", "message " + i, LocalDateTime.now(), "user2", "bob")));
+        }
+
+        MessageConsumerService service = newService(objectMapper);
+
+        // Warm up both paths before measuring.
+        runSingle(service, payloads.subList(0, 200));
+        runBatch(service, payloads.subList(0, 200));
+
+        long singleNanos = runSingle(service, payloads);
+        long batchNanos = runBatch(service, payloads);
+
+        System.out.printf("Message consumption, %d records, %dus round trip, batch size %d%n", RECORDS, RTT_MICROS, BATCH_SIZE);
+        System.out.printf("  single-record: %,10.0f records/sec%n", RECORDS / (singleNanos / 1e9));
+        System.out.printf("  batch:         %,10.0f records/sec%n", RECORDS / (batchNanos / 1e9));
+    }
+
+    private static long runSingle(MessageConsumerService service, List<byte[]> payloads) {
+        long start = System.nanoTime();
+        for (byte[] payload : payloads) {
+            service.consumeMessageCommand(new ConsumerRecord<>("message-commands", 0, 0L, "user1", payload));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runBatch(MessageConsumerService service, List<byte[]> payloads) {
+        long start = System.nanoTime();
+        for (int from = 0; from < payloads.size(); from += BATCH_SIZE) {
+            List<ConsumerRecord<String, byte[]>> poll = new ArrayList<>(BATCH_SIZE);
+            for (byte[] payload : payloads.subList(from, Math.min(from + BATCH_SIZE, payloads.size()))) {
+                poll.add(new ConsumerRecord<>("message-commands", 0, 0L, "user1", payload));
+            }
+            service.consumeMessageCommandBatch(poll);
+        }
+        return System.nanoTime() - start;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MessageConsumerService newService(ObjectMapper objectMapper) {
+        MessageRepository messageRepository = mock(MessageRepository.class);
+        when(messageRepository.insertIfAbsent(any(MessageDto.class))).thenAnswer(invocation -> {
+            pause(RTT_MICROS + PER_DOC_MICROS);
+            return true;
+        });
+        when(messageRepository.insertAllUnordered(anyList())).thenAnswer(invocation -> {
+            List<MessageDto> messages = invocation.getArgument(0);
+            pause(RTT_MICROS + PER_DOC_MICROS * messages.size());
+            return MessageRepositoryCustom.BulkInsertResult.allInserted();
+        });
+        KafkaRetryConfig retryConfig = new KafkaRetryConfig();
+        retryConfig.setMaxRetry(5);
+        // Read-model updates are the same per message in both modes, so they are left free here.
+        return new MessageConsumerService(messageRepository, new RetryPublisher(mock(KafkaTemplate.class), retryConfig),
+                mock(RetryDelayGate.class), new EventCodecRegistry(List.of(new JsonEventCodec(objectMapper))), mock(ConversationProjectionService.class), mock(ThreadStatsRepository.class), new KeyOrderedExecutor(1),
+                mock(MessageEventPublisher.class));
+    }
+
+    private static void pause(long micros) {
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
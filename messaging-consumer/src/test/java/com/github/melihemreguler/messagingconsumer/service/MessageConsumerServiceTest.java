@@ -1,19 +1,30 @@
 package com.github.melihemreguler.messagingconsumer.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.melihemreguler.messagingconsumer.codec.EventCodecRegistry;
 import com.github.melihemreguler.messagingconsumer.dto.MessageDto;
 import com.github.melihemreguler.messagingconsumer.model.MessageCommandEvent;
 import com.github.melihemreguler.messagingconsumer.repository.MessageRepository;
+import com.github.melihemreguler.messagingconsumer.repository.MessageRepositoryCustom.BulkInsertResult;
+import com.github.melihemreguler.messagingconsumer.repository.ThreadStatsRepository;
 import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
 import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
 import com.github.melihemreguler.messagingconsumer.enums.MessageStatus;
-import com.github.melihemreguler.messagingconsumer.exception.MaxRetryExceededException;
 import com.github.melihemreguler.messagingconsumer.exception.UnknownMessageCommandException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -24,42 +35,79 @@ class MessageConsumerServiceTest {
         //GIVEN
         MessageCommandEvent event = new MessageCommandEvent("SEND_MESSAGE", "thread1", "user1", "username", "content", java.time.LocalDateTime.now());
         String message = "{\"command\":\"SEND_MESSAGE\"}";
-        when(objectMapper.readValue(message, MessageCommandEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(MessageCommandEvent.class))).thenReturn(event);
+
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
 
         //WHEN
-        service.consumeMessageCommandRetry(message, "0");
+        service.consumeMessageCommandRetry(retryRecord(message, 1), acknowledgment, mock(Consumer.class));
 
         //THEN
-        verify(messageRepository, atLeastOnce()).save(any());
+        verify(messageRepository, atLeastOnce()).insertIfAbsent(any());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void givenRetryRecordNotYetDue_whenConsumeMessageCommandRetry_thenItIsNeitherProcessedNorAcknowledged() {
+        //GIVEN
+        when(retryDelayGate.isDue(any(), any(), any())).thenReturn(false);
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        //WHEN
+        service.consumeMessageCommandRetry(retryRecord("{}", 1), acknowledgment, mock(Consumer.class));
+
+        //THEN
+        verifyNoInteractions(eventCodecs, messageRepository);
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void givenLastAttemptFails_whenConsumeMessageCommandRetry_thenRecordIsDeadLetteredAndAcknowledged() throws Exception {
+        //GIVEN
+        when(eventCodecs.decode(withValue("bad"), eq(MessageCommandEvent.class))).thenThrow(new RuntimeException("Parse error"));
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        //WHEN
+        service.consumeMessageCommandRetry(retryRecord("bad", 5), acknowledgment, mock(Consumer.class));
+
+        //THEN
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertEquals("test-message-dlq-topic", sent.getValue().topic());
+        assertEquals("key", sent.getValue().key());
+        verify(acknowledgment).acknowledge();
     }
     private MessageConsumerService service;
     private MessageRepository messageRepository;
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
     private KafkaRetryConfig retryConfig;
-    private ObjectMapper objectMapper;
+    private RetryDelayGate retryDelayGate;
+    private EventCodecRegistry eventCodecs;
+    private ConversationProjectionService conversationProjectionService;
+    private ThreadStatsRepository threadStatsRepository;
+    private MessageEventPublisher messageEventPublisher;
 
     @BeforeEach
     void setUp() {
         messageRepository = mock(MessageRepository.class);
         kafkaTemplate = mock(KafkaTemplate.class);
-        retryConfig = mock(KafkaRetryConfig.class);
-        objectMapper = mock(ObjectMapper.class);
-        when(retryConfig.getMaxRetry()).thenReturn(5);
-        service = new MessageConsumerService(messageRepository, kafkaTemplate, retryConfig, objectMapper);
-        // Set messageCommandsRetryTopic field via reflection for tests
-        try {
-            java.lang.reflect.Field topicField = MessageConsumerService.class.getDeclaredField("messageCommandsRetryTopic");
-            topicField.setAccessible(true);
-            topicField.set(service, "test-retry-topic");
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-        // Mock KafkaTemplate.send to return a mock CompletableFuture
-        java.util.concurrent.CompletableFuture mockFuture = mock(java.util.concurrent.CompletableFuture.class);
-        // Chain thenAccept and exceptionally to always return mockFuture
-        when(mockFuture.thenAccept(any())).thenReturn(mockFuture);
-        when(mockFuture.exceptionally(any())).thenReturn(mockFuture);
-        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(mockFuture);
+        retryConfig = new KafkaRetryConfig();
+        retryDelayGate = mock(RetryDelayGate.class);
+        eventCodecs = mock(EventCodecRegistry.class);
+        conversationProjectionService = mock(ConversationProjectionService.class);
+        threadStatsRepository = mock(ThreadStatsRepository.class);
+        messageEventPublisher = mock(MessageEventPublisher.class);
+        retryConfig.setMaxRetry(5);
+        when(retryDelayGate.isDue(any(), any(), any())).thenReturn(true);
+        service = new MessageConsumerService(messageRepository, new RetryPublisher(kafkaTemplate, retryConfig), retryDelayGate,
+                eventCodecs, conversationProjectionService,
+                threadStatsRepository, new KeyOrderedExecutor(1), messageEventPublisher);
+        // Set topic fields via reflection
+        setField("messageCommandsTopic", "test-message-topic");
+        setField("messageCommandsRetryTopic", "test-retry-topic");
+        setField("messageCommandsDeadLetterTopic", "test-message-dlq-topic");
+        // Batch listeners wait on their retry sends, so these have to complete
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @Test
@@ -67,33 +115,280 @@ class MessageConsumerServiceTest {
         //GIVEN
         MessageCommandEvent event = new MessageCommandEvent("SEND_MESSAGE", "thread1", "user1", "username", "content", java.time.LocalDateTime.now());
         String message = "{\"command\":\"SEND_MESSAGE\"}";
-        when(objectMapper.readValue(message, MessageCommandEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(MessageCommandEvent.class))).thenReturn(event);
         //WHEN
-        service.consumeMessageCommand(message, "0");
+        service.consumeMessageCommand(record(message));
         //THEN
-        verify(messageRepository, atLeastOnce()).save(any());
+        verify(messageRepository, atLeastOnce()).insertIfAbsent(any());
     }
 
     @Test
-    void givenUnknownCommand_whenConsume_thenThrowsAndRetries() throws Exception {
+    void givenUnknownCommand_whenConsume_thenRecordIsDeadLettered() throws Exception {
         //GIVEN
         MessageCommandEvent event = new MessageCommandEvent("UNKNOWN_COMMAND", "thread1", "user1", "username", "content", java.time.LocalDateTime.now());
         String message = "{\"command\":\"UNKNOWN_COMMAND\"}";
-        when(objectMapper.readValue(message, MessageCommandEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(MessageCommandEvent.class))).thenReturn(event);
         //WHEN
-        service.consumeMessageCommand(message, "0");
+        service.consumeMessageCommand(record(message));
         //THEN
-        verify(kafkaTemplate, atLeastOnce()).send(any(ProducerRecord.class));
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertEquals("test-message-dlq-topic", sent.getValue().topic());
+    }
+
+    @Test
+    void givenUnknownCommandHeader_whenConsume_thenRecordIsDeadLetteredWithoutDecoding() {
+        //GIVEN
+        ConsumerRecord<String, byte[]> record = record("opaque");
+        record.headers().add(KafkaConstants.COMMAND_HEADER, "EDIT_MESSAGE".getBytes(StandardCharsets.UTF_8));
+        //WHEN
+        service.consumeMessageCommand(record);
+        //THEN
+        verifyNoInteractions(eventCodecs, messageRepository);
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertEquals("test-message-dlq-topic", sent.getValue().topic());
     }
 
     @Test
     void givenException_whenConsume_thenRetries() throws Exception {
         //GIVEN
         String message = "invalid-json";
-        when(objectMapper.readValue(message, MessageCommandEvent.class)).thenThrow(new RuntimeException("Parse error"));
+        when(eventCodecs.decode(withValue(message), eq(MessageCommandEvent.class))).thenThrow(new RuntimeException("Parse error"));
         //WHEN
-        service.consumeMessageCommand(message, "0");
+        service.consumeMessageCommand(record(message));
         //THEN
         verify(kafkaTemplate, atLeastOnce()).send(any(ProducerRecord.class));
     }
+
+    @Test
+    void givenRedeliveredCommand_whenConsume_thenMessageIsStoredOnceAndReadModelsAreNotRepeated() throws Exception {
+        //GIVEN
+        MessageCommandEvent event = new MessageCommandEvent("SEND_MESSAGE", "user1-user2", "user1", "alice", "content",
+                java.time.LocalDateTime.now(), "user2", "bob", "650000000000000000000001");
+        String message = "{\"command\":\"SEND_MESSAGE\"}";
+        when(eventCodecs.decode(withValue(message), eq(MessageCommandEvent.class))).thenReturn(event);
+        when(messageRepository.insertIfAbsent(any())).thenReturn(true, false);
+
+        //WHEN
+        service.consumeMessageCommand(record(message));
+        service.consumeMessageCommand(record(message));
+
+        //THEN
+        ArgumentCaptor<MessageDto> inserted = ArgumentCaptor.forClass(MessageDto.class);
+        verify(messageRepository, times(2)).insertIfAbsent(inserted.capture());
+        assertEquals("650000000000000000000001", inserted.getValue().getId());
+        verify(threadStatsRepository, times(1)).recordMessage(any());
+        verify(conversationProjectionService, times(1)).project(any(MessageDto.class), eq("user2"), eq("bob"));
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        verify(messageEventPublisher, times(2)).publishStored(any());
+    }
+
+    @Test
+    void givenSavedMessage_whenProjectionFails_thenMessageIsNotRetried() throws Exception {
+        //GIVEN
+        MessageCommandEvent event = new MessageCommandEvent("SEND_MESSAGE", "user1-user2", "user1", "alice", "content",
+                java.time.LocalDateTime.now(), "user2", "bob");
+        String message = "{\"command\":\"SEND_MESSAGE\"}";
+        when(eventCodecs.decode(withValue(message), eq(MessageCommandEvent.class))).thenReturn(event);
+        when(messageRepository.insertIfAbsent(any())).thenReturn(true);
+        doThrow(new RuntimeException("mongo down")).when(conversationProjectionService)
+                .project(any(MessageDto.class), eq("user2"), eq("bob"));
+
+        //WHEN
+        service.consumeMessageCommand(record(message));
+
+        //THEN
+        verify(messageRepository, times(1)).insertIfAbsent(any());
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void givenSavedMessage_whenConsume_thenThreadStatsAreRecorded() throws Exception {
+        //GIVEN
+        MessageCommandEvent event = new MessageCommandEvent("SEND_MESSAGE", "user1-user2", "user1", "alice", "content",
+                java.time.LocalDateTime.now(), "user2", "bob");
+        String message = "{\"command\":\"SEND_MESSAGE\"}";
+        when(eventCodecs.decode(withValue(message), eq(MessageCommandEvent.class))).thenReturn(event);
+        when(messageRepository.insertIfAbsent(any())).thenReturn(true);
+
+        //WHEN
+        service.consumeMessageCommand(record(message));
+
+        //THEN
+        ArgumentCaptor<MessageDto> recorded = ArgumentCaptor.forClass(MessageDto.class);
+        verify(threadStatsRepository).recordMessage(recorded.capture());
+        assertEquals("user1-user2", recorded.getValue().getThreadId());
+        assertEquals("user1", recorded.getValue().getSenderId());
+    }
+
+    @Test
+    void givenSavedMessage_whenThreadStatsUpdateFails_thenMessageIsNotRetried() throws Exception {
+        //GIVEN
+        MessageCommandEvent event = new MessageCommandEvent("SEND_MESSAGE", "user1-user2", "user1", "alice", "content",
+                java.time.LocalDateTime.now(), "user2", "bob");
+        String message = "{\"command\":\"SEND_MESSAGE\"}";
+        when(eventCodecs.decode(withValue(message), eq(MessageCommandEvent.class))).thenReturn(event);
+        when(messageRepository.insertIfAbsent(any())).thenReturn(true);
+        doThrow(new RuntimeException("mongo down")).when(threadStatsRepository).recordMessage(any());
+
+        //WHEN
+        service.consumeMessageCommand(record(message));
+
+        //THEN
+        verify(conversationProjectionService).project(any(MessageDto.class), eq("user2"), eq("bob"));
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void givenBatch_whenConsumeMessageCommandBatch_thenInsertsAllWithOneBulkWrite() throws Exception {
+        //GIVEN
+        when(eventCodecs.decode(withValue("m1"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("hello"));
+        when(eventCodecs.decode(withValue("m2"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("world"));
+        when(messageRepository.insertAllUnordered(anyList())).thenReturn(BulkInsertResult.allInserted());
+
+        //WHEN
+        service.consumeMessageCommandBatch(List.of(record("m1"), record("m2")));
+
+        //THEN
+        ArgumentCaptor<List<MessageDto>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository).insertAllUnordered(inserted.capture());
+        assertEquals(List.of("hello", "world"), inserted.getValue().stream().map(MessageDto::getContent).toList());
+        verify(messageRepository, never()).insertIfAbsent(any());
+        verify(threadStatsRepository, times(2)).recordMessage(any());
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void givenRejectedAndUndecodableRecords_whenConsumeMessageCommandBatch_thenOnlyThoseAreRetried() throws Exception {
+        //GIVEN
+        when(eventCodecs.decode(withValue("bad"), eq(MessageCommandEvent.class))).thenThrow(new RuntimeException("Parse error"));
+        when(eventCodecs.decode(withValue("m1"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("stored"));
+        when(eventCodecs.decode(withValue("m2"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("rejected"));
+        when(messageRepository.insertAllUnordered(anyList())).thenReturn(new BulkInsertResult(Set.of(1), Set.of()));
+
+        //WHEN
+        service.consumeMessageCommandBatch(List.of(record("bad"), record("m1"), record("m2")));
+
+        //THEN
+        ArgumentCaptor<ProducerRecord> retried = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(2)).send(retried.capture());
+        assertEquals(List.of("bad", "m2"), retried.getAllValues().stream()
+                .map(sent -> new String((byte[]) sent.value(), StandardCharsets.UTF_8)).toList());
+        ArgumentCaptor<MessageDto> projected = ArgumentCaptor.forClass(MessageDto.class);
+        verify(threadStatsRepository, times(1)).recordMessage(projected.capture());
+        assertEquals("stored", projected.getValue().getContent());
+        ArgumentCaptor<ConsumerRecord<String, byte[]>> announced = ArgumentCaptor.forClass(ConsumerRecord.class);
+        verify(messageEventPublisher, times(1)).publishStored(announced.capture());
+        assertEquals("m1", new String(announced.getValue().value(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void givenAlreadyStoredMessagesInBatch_whenConsumeMessageCommandBatch_thenTheyAreNeitherRetriedNorProjected() throws Exception {
+        //GIVEN
+        when(eventCodecs.decode(withValue("m1"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("new"));
+        when(eventCodecs.decode(withValue("m2"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("redelivered"));
+        when(messageRepository.insertAllUnordered(anyList())).thenReturn(new BulkInsertResult(Set.of(), Set.of(1)));
+
+        //WHEN
+        service.consumeMessageCommandBatch(List.of(record("m1"), record("m2")));
+
+        //THEN
+        ArgumentCaptor<MessageDto> projected = ArgumentCaptor.forClass(MessageDto.class);
+        verify(threadStatsRepository, times(1)).recordMessage(projected.capture());
+        assertEquals("new", projected.getValue().getContent());
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        verify(messageEventPublisher, times(2)).publishStored(any());
+    }
+
+    @Test
+    void givenBulkWriteFailsAsWhole_whenConsumeMessageCommandBatch_thenExceptionPropagatesSoOffsetsAreNotCommitted() throws Exception {
+        //GIVEN
+        when(eventCodecs.decode(withValue("bad"), eq(MessageCommandEvent.class))).thenThrow(new RuntimeException("Parse error"));
+        when(eventCodecs.decode(withValue("m1"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("hello"));
+        when(messageRepository.insertAllUnordered(anyList()))
+                .thenThrow(new org.springframework.dao.DataAccessResourceFailureException("mongo down"));
+
+        //WHEN / THEN
+        assertThrows(org.springframework.dao.DataAccessResourceFailureException.class,
+                () -> service.consumeMessageCommandBatch(List.of(record("bad"), record("m1"))));
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void givenRetrySendFails_whenConsumeMessageCommandBatch_thenExceptionPropagatesAfterStoredMessagesAreProjected() throws Exception {
+        //GIVEN
+        when(eventCodecs.decode(withValue("bad"), eq(MessageCommandEvent.class))).thenThrow(new RuntimeException("Parse error"));
+        when(eventCodecs.decode(withValue("m1"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("hello"));
+        when(messageRepository.insertAllUnordered(anyList())).thenReturn(BulkInsertResult.allInserted());
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        //WHEN / THEN
+        assertThrows(IllegalStateException.class,
+                () -> service.consumeMessageCommandBatch(List.of(record("bad"), record("m1"))));
+        verify(threadStatsRepository, times(1)).recordMessage(any());
+        verify(messageEventPublisher, times(1)).publishStored(any());
+    }
+
+    @Test
+    void givenNewMessage_whenConsume_thenStoredEventIsPublishedAfterTheConversationIsProjected() throws Exception {
+        //GIVEN
+        when(eventCodecs.decode(withValue("m1"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("hello"));
+        when(messageRepository.insertIfAbsent(any())).thenReturn(true);
+
+        //WHEN
+        service.consumeMessageCommand(record("m1"));
+
+        //THEN
+        InOrder order = inOrder(conversationProjectionService, messageEventPublisher);
+        order.verify(conversationProjectionService).project(any(MessageDto.class), eq("user2"), eq("bob"));
+        order.verify(messageEventPublisher).publishStored(any());
+    }
+
+    @Test
+    void givenBatch_whenConsumeMessageCommandBatch_thenStoredEventsArePublishedAfterTheConversationsAreProjected() throws Exception {
+        //GIVEN
+        when(eventCodecs.decode(withValue("m1"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("hello"));
+        when(eventCodecs.decode(withValue("m2"), eq(MessageCommandEvent.class))).thenReturn(sendEvent("again"));
+        when(messageRepository.insertAllUnordered(anyList())).thenReturn(BulkInsertResult.allInserted());
+
+        //WHEN
+        service.consumeMessageCommandBatch(List.of(record("m1"), record("m2")));
+
+        //THEN
+        InOrder order = inOrder(conversationProjectionService, messageEventPublisher);
+        order.verify(conversationProjectionService, times(2)).project(any(MessageDto.class), eq("user2"), eq("bob"));
+        order.verify(messageEventPublisher, times(2)).publishStored(any());
+    }
+
+    private static MessageCommandEvent sendEvent(String content) {
+        return new MessageCommandEvent("SEND_MESSAGE", "user1-user2", "user1", "alice", content,
+                java.time.LocalDateTime.now(), "user2", "bob");
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String value) {
+        return new ConsumerRecord<>("message-commands", 0, 0L, "key", value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void setField(String name, String value) {
+        try {
+            java.lang.reflect.Field field = MessageConsumerService.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(service, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ConsumerRecord<String, byte[]> retryRecord(String value, int retryCount) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("retry-topic", 0, 0L, "key", value.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaConstants.RETRY_COUNT_HEADER, String.valueOf(retryCount).getBytes());
+        return record;
+    }
+
+    private static ConsumerRecord<String, byte[]> withValue(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return argThat(record -> record != null && Arrays.equals(bytes, record.value()));
+    }
 }
@@ -0,0 +1,55 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MessageEventPublisherTest {
+
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private MessageEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+        publisher = new MessageEventPublisher(kafkaTemplate);
+        java.lang.reflect.Field topic = MessageEventPublisher.class.getDeclaredField("messageEventsTopic");
+        topic.setAccessible(true);
+        topic.set(publisher, "message-events");
+    }
+
+    @Test
+    void givenRetriedCommand_whenPublishStored_thenEventKeepsKeyPayloadAndCodecHeadersOnly() {
+        //GIVEN
+        ConsumerRecord<String, byte[]> command = new ConsumerRecord<>("commands.retry", 0, 0L, "user1-user2",
+                "payload".getBytes(StandardCharsets.UTF_8));
+        command.headers().add(KafkaConstants.CONTENT_TYPE_HEADER, "application/x-jackson-smile".getBytes());
+        command.headers().add(KafkaConstants.COMMAND_HEADER, "SEND_MESSAGE".getBytes());
+        command.headers().add(KafkaConstants.RETRY_COUNT_HEADER, "2".getBytes());
+
+        //WHEN
+        publisher.publishStored(command);
+
+        //THEN
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        ProducerRecord<String, byte[]> event = sent.getValue();
+        assertEquals("message-events", event.topic());
+        assertEquals("user1-user2", event.key());
+        assertEquals("payload", new String(event.value(), StandardCharsets.UTF_8));
+        assertNotNull(event.headers().lastHeader(KafkaConstants.CONTENT_TYPE_HEADER));
+        assertNotNull(event.headers().lastHeader(KafkaConstants.COMMAND_HEADER));
+        assertNull(event.headers().lastHeader(KafkaConstants.RETRY_COUNT_HEADER));
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RetryDelayGateTest {
+    private static final TopicPartition PARTITION = new TopicPartition("commands.retry", 0);
+
+    private ListenerContainerPauseService pauseService;
+    private MessageListenerContainer container;
+    private Consumer<?, ?> consumer;
+    private RetryDelayGate gate;
+
+    @BeforeEach
+    void setUp() {
+        KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+        pauseService = mock(ListenerContainerPauseService.class);
+        container = mock(MessageListenerContainer.class);
+        consumer = mock(Consumer.class);
+        when(registry.getListenerContainer("retry")).thenReturn(container);
+        gate = new RetryDelayGate(registry, pauseService);
+    }
+
+    @Test
+    void givenRecordPastItsNotBefore_whenIsDue_thenTrue() {
+        //GIVEN
+        when(consumer.position(PARTITION)).thenReturn(11L);
+        //WHEN
+        boolean due = gate.isDue("retry", record(10, System.currentTimeMillis() - 1), consumer);
+        //THEN
+        assertTrue(due);
+        verifyNoInteractions(pauseService);
+    }
+
+    @Test
+    void givenRecordWithoutNotBefore_whenIsDue_thenTrue() {
+        //GIVEN
+        when(consumer.position(PARTITION)).thenReturn(11L);
+        //WHEN //THEN
+        assertTrue(gate.isDue("retry", new ConsumerRecord<>("commands.retry", 0, 10L, "key", "value".getBytes()), consumer));
+    }
+
+    @Test
+    void givenRecordNotYetDue_whenIsDue_thenPartitionIsRewoundAndPausedUntilDue() {
+        //GIVEN
+        when(consumer.position(PARTITION)).thenReturn(11L);
+        //WHEN
+        boolean due = gate.isDue("retry", record(10, System.currentTimeMillis() + 5_000), consumer);
+        //THEN
+        assertFalse(due);
+        verify(consumer).seek(PARTITION, 10L);
+        ArgumentCaptor<Duration> pause = ArgumentCaptor.forClass(Duration.class);
+        verify(pauseService).pausePartition(eq(container), eq(PARTITION), pause.capture());
+        assertTrue(pause.getValue().toMillis() > 4_000 && pause.getValue().toMillis() <= 5_000);
+    }
+
+    @Test
+    void givenPartitionAlreadyRewound_whenIsDueForLaterRecordOfSamePoll_thenSkippedWithoutSeeking() {
+        //GIVEN
+        when(consumer.position(PARTITION)).thenReturn(10L);
+        //WHEN
+        boolean due = gate.isDue("retry", record(11, System.currentTimeMillis() - 1), consumer);
+        //THEN
+        assertFalse(due);
+        verify(consumer, never()).seek(any(TopicPartition.class), anyLong());
+        verifyNoInteractions(pauseService);
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset, long notBefore) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("commands.retry", 0, offset, "key", "value".getBytes());
+        record.headers().add(KafkaConstants.NOT_BEFORE_HEADER, String.valueOf(notBefore).getBytes());
+        return record;
+    }
+}
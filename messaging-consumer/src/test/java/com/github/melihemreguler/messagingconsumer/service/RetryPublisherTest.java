@@ -0,0 +1,123 @@
+package com.github.melihemreguler.messagingconsumer.service;
+
+import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
+import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
+import com.github.melihemreguler.messagingconsumer.service.RetryPublisher.RetryRoute;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RetryPublisherTest {
+    private static final RetryRoute ROUTE = new RetryRoute("commands", "commands.retry", "commands.dlq");
+
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private RetryPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+        KafkaRetryConfig retryConfig = new KafkaRetryConfig();
+        retryConfig.setMaxRetry(5);
+        retryConfig.setTiers(3);
+        publisher = new RetryPublisher(kafkaTemplate, retryConfig);
+    }
+
+    @Test
+    void givenFirstFailure_whenPublish_thenRecordGoesToFirstTierWithNotBeforeHeader() {
+        //GIVEN
+        long before = System.currentTimeMillis();
+        //WHEN
+        publisher.publish(ROUTE, failed(0), new RuntimeException("boom"));
+        //THEN
+        ProducerRecord<String, byte[]> sent = captureSent();
+        assertEquals("commands.retry", sent.topic());
+        assertEquals("user1", sent.key());
+        assertEquals("1", header(sent, KafkaConstants.RETRY_COUNT_HEADER));
+        long notBefore = Long.parseLong(header(sent, KafkaConstants.NOT_BEFORE_HEADER));
+        assertTrue(notBefore >= before + 1_000);
+    }
+
+    @Test
+    void givenFourthFailure_whenPublish_thenRecordStaysOnLastTier() {
+        //GIVEN //WHEN
+        publisher.publish(ROUTE, failed(3), new RuntimeException("boom"));
+        //THEN
+        ProducerRecord<String, byte[]> sent = captureSent();
+        assertEquals("commands.retry.tier2", sent.topic());
+        assertEquals("4", header(sent, KafkaConstants.RETRY_COUNT_HEADER));
+    }
+
+    @Test
+    void givenRetriesExhausted_whenPublish_thenRecordIsDeadLetteredWithErrorMetadata() {
+        //GIVEN //WHEN
+        publisher.publish(ROUTE, failed(5), new IllegalStateException("mongo down"));
+        //THEN
+        ProducerRecord<String, byte[]> sent = captureSent();
+        assertEquals("commands.dlq", sent.topic());
+        assertEquals("payload", new String(sent.value(), StandardCharsets.UTF_8));
+        assertEquals("commands", header(sent, KafkaConstants.ORIGINAL_TOPIC_HEADER));
+        assertEquals(IllegalStateException.class.getName(), header(sent, KafkaConstants.ERROR_CLASS_HEADER));
+        assertEquals("mongo down", header(sent, KafkaConstants.ERROR_MESSAGE_HEADER));
+        assertNotNull(header(sent, KafkaConstants.FAILED_AT_HEADER));
+        assertNull(sent.headers().lastHeader(KafkaConstants.NOT_BEFORE_HEADER));
+    }
+
+    @Test
+    void givenSmileEncodedRecord_whenPublish_thenCodecAndRoutingHeadersAreCarriedOver() {
+        //GIVEN
+        ConsumerRecord<String, byte[]> failed = failed(0);
+        failed.headers().add(KafkaConstants.CONTENT_TYPE_HEADER, "application/x-jackson-smile".getBytes());
+        failed.headers().add(KafkaConstants.SCHEMA_VERSION_HEADER, "1".getBytes());
+        failed.headers().add(KafkaConstants.COMMAND_HEADER, "DELETE_SESSION".getBytes());
+        failed.headers().add(KafkaConstants.USER_ID_HEADER, "user1".getBytes());
+        //WHEN
+        publisher.publish(ROUTE, failed, new RuntimeException("boom"));
+        //THEN
+        ProducerRecord<String, byte[]> sent = captureSent();
+        assertEquals("application/x-jackson-smile", header(sent, KafkaConstants.CONTENT_TYPE_HEADER));
+        assertEquals("1", header(sent, KafkaConstants.SCHEMA_VERSION_HEADER));
+        assertEquals("DELETE_SESSION", header(sent, KafkaConstants.COMMAND_HEADER));
+        assertEquals("user1", header(sent, KafkaConstants.USER_ID_HEADER));
+    }
+
+    @Test
+    void givenFirstFailure_whenDeadLetter_thenRecordSkipsTheRetryTiers() {
+        //GIVEN //WHEN
+        publisher.deadLetter(ROUTE, failed(0), new IllegalArgumentException("unknown command"));
+        //THEN
+        ProducerRecord<String, byte[]> sent = captureSent();
+        assertEquals("commands.dlq", sent.topic());
+        assertEquals("0", header(sent, KafkaConstants.RETRY_COUNT_HEADER));
+        assertEquals(IllegalArgumentException.class.getName(), header(sent, KafkaConstants.ERROR_CLASS_HEADER));
+    }
+
+    private static ConsumerRecord<String, byte[]> failed(int retryCount) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("commands", 0, 0L, "user1",
+                "payload".getBytes(StandardCharsets.UTF_8));
+        if (retryCount > 0) {
+            record.headers().add(KafkaConstants.RETRY_COUNT_HEADER, String.valueOf(retryCount).getBytes());
+        }
+        return record;
+    }
+
+    private ProducerRecord<String, byte[]> captureSent() {
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        return sent.getValue();
+    }
+
+    private static String header(ProducerRecord<String, byte[]> record, String name) {
+        var header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value());
+    }
+}
@@ -1,53 +1,59 @@
 package com.github.melihemreguler.messagingconsumer.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.melihemreguler.messagingconsumer.codec.EventCodecRegistry;
 import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
 import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
 import com.github.melihemreguler.messagingconsumer.model.SessionEvent;
 import com.github.melihemreguler.messagingconsumer.enums.SessionCommand;
 import com.github.melihemreguler.messagingconsumer.strategy.session.SessionCommandStrategy;
 import com.github.melihemreguler.messagingconsumer.strategy.session.SessionCommandStrategyFactory;
-import com.github.melihemreguler.messagingconsumer.exception.MaxRetryExceededException;
 import com.github.melihemreguler.messagingconsumer.exception.UnknownSessionCommandException;
+import com.github.melihemreguler.messagingconsumer.repository.SessionRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class SessionConsumerServiceTest {
     private SessionConsumerService service;
-    private ObjectMapper objectMapper;
+    private EventCodecRegistry eventCodecs;
     private SessionCommandStrategyFactory strategyFactory;
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
     private KafkaRetryConfig retryConfig;
+    private RetryDelayGate retryDelayGate;
     private SessionCommandStrategy strategy;
+    private SessionRepository sessionRepository;
 
     @BeforeEach
     void setUp() {
-        objectMapper = mock(ObjectMapper.class);
+        eventCodecs = mock(EventCodecRegistry.class);
         strategyFactory = mock(SessionCommandStrategyFactory.class);
         kafkaTemplate = mock(KafkaTemplate.class);
-        retryConfig = mock(KafkaRetryConfig.class);
+        retryConfig = new KafkaRetryConfig();
+        retryDelayGate = mock(RetryDelayGate.class);
         strategy = mock(SessionCommandStrategy.class);
-        when(retryConfig.getMaxRetry()).thenReturn(3);
-        service = new SessionConsumerService(objectMapper, strategyFactory, kafkaTemplate, retryConfig);
-        // Set sessionCommandsRetryTopic field via reflection
-        try {
-            java.lang.reflect.Field topicField = SessionConsumerService.class.getDeclaredField("sessionCommandsRetryTopic");
-            topicField.setAccessible(true);
-            topicField.set(service, "test-session-retry-topic");
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-        java.util.concurrent.CompletableFuture mockFuture = mock(java.util.concurrent.CompletableFuture.class);
-        when(mockFuture.thenAccept(any())).thenReturn(mockFuture);
-        when(mockFuture.exceptionally(any())).thenReturn(mockFuture);
-        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(mockFuture);
+        sessionRepository = mock(SessionRepository.class);
+        retryConfig.setMaxRetry(3);
+        when(retryDelayGate.isDue(any(), any(), any())).thenReturn(true);
+        service = new SessionConsumerService(eventCodecs, strategyFactory, new RetryPublisher(kafkaTemplate, retryConfig), retryDelayGate,
+                new KeyOrderedExecutor(1), sessionRepository);
+        // Set topic fields via reflection
+        setField("sessionCommandsTopic", "test-session-topic");
+        setField("sessionCommandsRetryTopic", "test-session-retry-topic");
+        setField("sessionCommandsDeadLetterTopic", "test-session-dlq-topic");
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @Test
@@ -64,37 +70,63 @@ class SessionConsumerServiceTest {
             java.time.LocalDateTime.now() // timestamp
         );
         String message = "{\"command\":\"SAVE_SESSION\"}";
-        when(objectMapper.readValue(message, SessionEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(SessionEvent.class))).thenReturn(event);
         when(strategyFactory.getStrategy(eq(SessionCommand.fromString(event.getCommand())))).thenReturn(strategy);
         //WHEN
-        service.handleSessionEvent(message, "0");
+        service.handleSessionEvent(record(message));
         //THEN
         verify(strategy, times(1)).execute(event);
     }
 
     @Test
-    void givenUnknownCommand_whenHandleSessionEvent_thenRetries() throws Exception {
+    void givenUnknownCommand_whenHandleSessionEvent_thenRecordIsDeadLettered() throws Exception {
         //GIVEN
         SessionEvent event = new SessionEvent(
             "UNKNOWN", "hashedSessionId2", "user1",
             java.time.LocalDateTime.now().plusHours(1), "127.0.0.1", "Mozilla", java.time.LocalDateTime.now()
         );
         String message = "{\"command\":\"UNKNOWN\"}";
-        when(objectMapper.readValue(message, SessionEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(SessionEvent.class))).thenReturn(event);
         when(strategyFactory.getStrategy(any())).thenReturn(null);
         //WHEN
-        service.handleSessionEvent(message, "0");
+        service.handleSessionEvent(record(message));
         //THEN
-        verify(kafkaTemplate, atLeastOnce()).send(any(ProducerRecord.class));
+        assertEquals("test-session-dlq-topic", sentTopic());
+    }
+
+    @Test
+    void givenUnknownCommandHeader_whenHandleSessionEvent_thenRecordIsDeadLetteredWithoutDecoding() {
+        //GIVEN
+        ConsumerRecord<String, byte[]> record = withHeaders(record("opaque"), "RENAME_SESSION", "user1", null);
+        //WHEN
+        service.handleSessionEvent(record);
+        //THEN
+        verifyNoInteractions(eventCodecs, strategyFactory);
+        assertEquals("test-session-dlq-topic", sentTopic());
+    }
+
+    @Test
+    void givenDeleteCommandHeaders_whenHandleSessionEvent_thenStrategyRunsOnIdsWithoutDecoding() {
+        //GIVEN
+        when(strategyFactory.getStrategy(SessionCommand.DELETE_SESSION)).thenReturn(strategy);
+        ConsumerRecord<String, byte[]> record = withHeaders(record("opaque"), "DELETE_SESSION", "user1", "hash1");
+        //WHEN
+        service.handleSessionEvent(record);
+        //THEN
+        verifyNoInteractions(eventCodecs);
+        ArgumentCaptor<SessionEvent> executed = ArgumentCaptor.forClass(SessionEvent.class);
+        verify(strategy).execute(executed.capture());
+        assertEquals("user1", executed.getValue().getUserId());
+        assertEquals("hash1", executed.getValue().getHashedSessionId());
     }
 
     @Test
     void givenJsonException_whenHandleSessionEvent_thenRetries() throws Exception {
         //GIVEN
         String message = "invalid-json";
-        when(objectMapper.readValue(message, SessionEvent.class)).thenThrow(new RuntimeException("Parse error"));
+        when(eventCodecs.decode(withValue(message), eq(SessionEvent.class))).thenThrow(new RuntimeException("Parse error"));
         //WHEN
-        service.handleSessionEvent(message, "0");
+        service.handleSessionEvent(record(message));
         //THEN
         verify(kafkaTemplate, atLeastOnce()).send(any(ProducerRecord.class));
     }
@@ -107,24 +139,225 @@ class SessionConsumerServiceTest {
             java.time.LocalDateTime.now().plusHours(1), "127.0.0.1", "Mozilla", java.time.LocalDateTime.now()
         );
         String message = "{\"command\":\"SAVE_SESSION\"}";
-        when(objectMapper.readValue(message, SessionEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(SessionEvent.class))).thenReturn(event);
         when(strategyFactory.getStrategy(eq(SessionCommand.fromString(event.getCommand())))).thenReturn(strategy);
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
         //WHEN
-        service.handleSessionEventRetry(message, "1");
+        service.handleSessionEventRetry(retryRecord(message, 1), acknowledgment, mock(Consumer.class));
         //THEN
         verify(strategy, times(1)).execute(event);
+        verify(acknowledgment).acknowledge();
     }
 
     @Test
-    void givenMaxRetryExceeded_whenHandleSessionEvent_thenThrowsException() {
+    void givenMaxRetryExceeded_whenHandleSessionEvent_thenRecordIsDeadLettered() {
         //GIVEN
         String message = "msg";
         int retryCount = 3;
-        Exception error = new RuntimeException("fail");
-        when(retryConfig.getMaxRetry()).thenReturn(3);
-        //WHEN & THEN
-        assertThrows(MaxRetryExceededException.class, () ->
-            service.handleSessionEvent(message, String.valueOf(retryCount))
-        );
+        //WHEN
+        service.handleSessionEvent(retryRecord(message, retryCount));
+        //THEN
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertEquals("test-session-dlq-topic", sent.getValue().topic());
+    }
+
+    @Test
+    void givenBatchWithOneBadRecord_whenHandleSessionEventBatch_thenOthersAreBulkWrittenAndBadOneIsRetried() throws Exception {
+        //GIVEN
+        SessionEvent first = session("SAVE_SESSION", "hashedSessionId4", "user1");
+        SessionEvent second = session("SAVE_SESSION", "hashedSessionId5", "user2");
+        when(eventCodecs.decode(withValue("first"), eq(SessionEvent.class))).thenReturn(first);
+        when(eventCodecs.decode(withValue("second"), eq(SessionEvent.class))).thenReturn(second);
+        when(eventCodecs.decode(withValue("bad"), eq(SessionEvent.class))).thenThrow(new RuntimeException("Parse error"));
+        //WHEN
+        service.handleSessionEventBatch(List.of(record("first"), record("bad"), record("second")));
+        //THEN
+        verify(sessionRepository).applyAll(List.of(first, second));
+        verifyNoInteractions(strategy);
+        verify(kafkaTemplate, times(1)).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void givenSeveralCommandsForOneUser_whenHandleSessionEventBatch_thenSupersededOnesAreDropped() throws Exception {
+        //GIVEN
+        SessionEvent save = session("SAVE_SESSION", "hashOld", "user1");
+        SessionEvent upsert = session("UPSERT_SESSION", "hashNew", "user1");
+        SessionEvent firstTouch = session("UPDATE_SESSION", null, "user1");
+        SessionEvent secondTouch = session("UPDATE_SESSION", null, "user1");
+        secondTouch.setUserAgent(null);
+        SessionEvent otherUser = session("DELETE_SESSION", "hashOther", "user2");
+        when(eventCodecs.decode(withValue("save"), eq(SessionEvent.class))).thenReturn(save);
+        when(eventCodecs.decode(withValue("upsert"), eq(SessionEvent.class))).thenReturn(upsert);
+        when(eventCodecs.decode(withValue("touch1"), eq(SessionEvent.class))).thenReturn(firstTouch);
+        when(eventCodecs.decode(withValue("touch2"), eq(SessionEvent.class))).thenReturn(secondTouch);
+        when(eventCodecs.decode(withValue("other"), eq(SessionEvent.class))).thenReturn(otherUser);
+        //WHEN
+        service.handleSessionEventBatch(List.of(record("save"), record("other"), record("upsert"),
+                record("touch1"), record("touch2")));
+        //THEN
+        verify(sessionRepository).applyAll(List.of(upsert, secondTouch, otherUser));
+        assertEquals("Mozilla", secondTouch.getUserAgent());
+    }
+
+    @Test
+    void givenUpdatesForTwoSessionsOfOneUser_whenHandleSessionEventBatch_thenBothAreKeptWithLatestTimes() throws Exception {
+        //GIVEN
+        java.time.LocalDateTime later = java.time.LocalDateTime.now();
+        SessionEvent lateTouch = session("UPDATE_SESSION", "hashA", "user1");
+        lateTouch.setTimestamp(later);
+        SessionEvent earlyTouch = session("UPDATE_SESSION", "hashA", "user1");
+        earlyTouch.setTimestamp(later.minusMinutes(1));
+        SessionEvent otherSession = session("UPDATE_SESSION", "hashB", "user1");
+        when(eventCodecs.decode(withValue("late"), eq(SessionEvent.class))).thenReturn(lateTouch);
+        when(eventCodecs.decode(withValue("early"), eq(SessionEvent.class))).thenReturn(earlyTouch);
+        when(eventCodecs.decode(withValue("other"), eq(SessionEvent.class))).thenReturn(otherSession);
+        //WHEN
+        service.handleSessionEventBatch(List.of(record("late"), record("early"), record("other")));
+        //THEN
+        verify(sessionRepository).applyAll(List.of(earlyTouch, otherSession));
+        assertEquals(later, earlyTouch.getTimestamp());
+    }
+
+    @Test
+    void givenUnknownCommandInBatch_whenHandleSessionEventBatch_thenItIsDeadLetteredAndNotWritten() throws Exception {
+        //GIVEN
+        SessionEvent valid = session("SAVE_SESSION", "hash1", "user1");
+        SessionEvent unknown = session("UNKNOWN", "hash2", "user2");
+        when(eventCodecs.decode(withValue("valid"), eq(SessionEvent.class))).thenReturn(valid);
+        when(eventCodecs.decode(withValue("unknown"), eq(SessionEvent.class))).thenReturn(unknown);
+        //WHEN
+        service.handleSessionEventBatch(List.of(record("valid"), record("unknown")));
+        //THEN
+        verify(sessionRepository).applyAll(List.of(valid));
+        assertEquals("test-session-dlq-topic", sentTopic());
+    }
+
+    @Test
+    void givenRecordsWithHeaders_whenHandleSessionEventBatch_thenOnlyCommandsThatSurviveCoalescingAreDecoded() throws Exception {
+        //GIVEN
+        SessionEvent upsert = session("UPSERT_SESSION", "hashNew", "user1");
+        SessionEvent lateTouch = session("UPDATE_SESSION", "hashNew", "user1");
+        java.time.LocalDateTime later = lateTouch.getTimestamp();
+        SessionEvent earlyTouch = session("UPDATE_SESSION", "hashNew", "user1");
+        earlyTouch.setTimestamp(later.plusMinutes(1));
+        when(eventCodecs.decode(withValue("upsert"), eq(SessionEvent.class))).thenReturn(upsert);
+        when(eventCodecs.decode(withValue("touch1"), eq(SessionEvent.class))).thenReturn(earlyTouch);
+        when(eventCodecs.decode(withValue("touch2"), eq(SessionEvent.class))).thenReturn(lateTouch);
+        //WHEN
+        service.handleSessionEventBatch(List.of(
+                withHeaders(record("stale-touch"), "UPDATE_SESSION", "user1", "hashOld"),
+                withHeaders(record("stale-save"), "SAVE_SESSION", "user1", "hashOld"),
+                withHeaders(record("upsert"), "UPSERT_SESSION", "user1", "hashNew"),
+                withHeaders(record("touch1"), "UPDATE_SESSION", "user1", "hashNew"),
+                withHeaders(record("touch2"), "UPDATE_SESSION", "user1", "hashNew"),
+                withHeaders(record("logout"), "DELETE_SESSION", "user2", "hashOther")));
+        //THEN
+        verify(eventCodecs, never()).decode(withValue("stale-touch"), any());
+        verify(eventCodecs, never()).decode(withValue("stale-save"), any());
+        verify(eventCodecs, never()).decode(withValue("logout"), any());
+        ArgumentCaptor<List<SessionEvent>> written = ArgumentCaptor.forClass(List.class);
+        verify(sessionRepository).applyAll(written.capture());
+        assertEquals(List.of(upsert, lateTouch), written.getValue().subList(0, 2));
+        assertEquals(later.plusMinutes(1), lateTouch.getTimestamp());
+        assertEquals("hashOther", written.getValue().get(2).getHashedSessionId());
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void givenBulkWriteFails_whenHandleSessionEventBatch_thenCommandsAreAppliedIndividually() throws Exception {
+        //GIVEN
+        SessionEvent first = session("SAVE_SESSION", "hash1", "user1");
+        SessionEvent second = session("SAVE_SESSION", "hash2", "user2");
+        when(eventCodecs.decode(withValue("first"), eq(SessionEvent.class))).thenReturn(first);
+        when(eventCodecs.decode(withValue("second"), eq(SessionEvent.class))).thenReturn(second);
+        doThrow(new RuntimeException("bulk failed")).when(sessionRepository).applyAll(anyList());
+        when(strategyFactory.getStrategy(SessionCommand.SAVE_SESSION)).thenReturn(strategy);
+        doThrow(new RuntimeException("still failing")).when(strategy).execute(second);
+        //WHEN
+        service.handleSessionEventBatch(List.of(record("first"), record("second")));
+        //THEN
+        verify(strategy).execute(first);
+        verify(strategy).execute(second);
+        verify(kafkaTemplate, times(1)).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void givenRetrySendFailsAfterIndividualFallback_whenHandleSessionEventBatch_thenExceptionPropagates() throws Exception {
+        //GIVEN
+        SessionEvent first = session("SAVE_SESSION", "hash1", "user1");
+        SessionEvent second = session("SAVE_SESSION", "hash2", "user2");
+        when(eventCodecs.decode(withValue("first"), eq(SessionEvent.class))).thenReturn(first);
+        when(eventCodecs.decode(withValue("second"), eq(SessionEvent.class))).thenReturn(second);
+        doThrow(new RuntimeException("bulk failed")).when(sessionRepository).applyAll(anyList());
+        when(strategyFactory.getStrategy(SessionCommand.SAVE_SESSION)).thenReturn(strategy);
+        doThrow(new RuntimeException("still failing")).when(strategy).execute(second);
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        //WHEN / THEN
+        assertThrows(IllegalStateException.class,
+                () -> service.handleSessionEventBatch(List.of(record("first"), record("second"))));
+        verify(strategy).execute(first);
+    }
+
+    @Test
+    void givenDeadLetterSendFails_whenHandleSessionEventBatch_thenExceptionPropagatesAfterTheWrite() throws Exception {
+        //GIVEN
+        SessionEvent valid = session("SAVE_SESSION", "hash1", "user1");
+        SessionEvent unknown = session("UNKNOWN", "hash2", "user2");
+        when(eventCodecs.decode(withValue("valid"), eq(SessionEvent.class))).thenReturn(valid);
+        when(eventCodecs.decode(withValue("unknown"), eq(SessionEvent.class))).thenReturn(unknown);
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        //WHEN / THEN
+        assertThrows(IllegalStateException.class,
+                () -> service.handleSessionEventBatch(List.of(record("valid"), record("unknown"))));
+        verify(sessionRepository).applyAll(List.of(valid));
+    }
+
+    private String sentTopic() {
+        ArgumentCaptor<ProducerRecord> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        return sent.getValue().topic();
+    }
+
+    private static ConsumerRecord<String, byte[]> withHeaders(ConsumerRecord<String, byte[]> record, String command,
+                                                              String userId, String hashedSessionId) {
+        record.headers().add(KafkaConstants.COMMAND_HEADER, command.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaConstants.USER_ID_HEADER, userId.getBytes(StandardCharsets.UTF_8));
+        if (hashedSessionId != null) {
+            record.headers().add(KafkaConstants.SESSION_ID_HEADER, hashedSessionId.getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+
+    private static SessionEvent session(String command, String hashedSessionId, String userId) {
+        return new SessionEvent(command, hashedSessionId, userId,
+                java.time.LocalDateTime.now().plusHours(1), "127.0.0.1", "Mozilla", java.time.LocalDateTime.now());
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String value) {
+        return new ConsumerRecord<>("session-commands", 0, 0L, "key", value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void setField(String name, String value) {
+        try {
+            java.lang.reflect.Field field = SessionConsumerService.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(service, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ConsumerRecord<String, byte[]> retryRecord(String value, int retryCount) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("retry-topic", 0, 0L, "key", value.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaConstants.RETRY_COUNT_HEADER, String.valueOf(retryCount).getBytes());
+        return record;
+    }
+
+    private static ConsumerRecord<String, byte[]> withValue(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return argThat(record -> record != null && Arrays.equals(bytes, record.value()));
     }
 }
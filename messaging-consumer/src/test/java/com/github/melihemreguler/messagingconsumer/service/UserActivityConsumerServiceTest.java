@@ -1,50 +1,54 @@
 package com.github.melihemreguler.messagingconsumer.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.melihemreguler.messagingconsumer.codec.EventCodecRegistry;
 import com.github.melihemreguler.messagingconsumer.config.KafkaRetryConfig;
 import com.github.melihemreguler.messagingconsumer.constants.KafkaConstants;
 import com.github.melihemreguler.messagingconsumer.enums.UserActivityCommand;
 import com.github.melihemreguler.messagingconsumer.model.UserActivityEvent;
 import com.github.melihemreguler.messagingconsumer.strategy.user.UserActivityStrategy;
 import com.github.melihemreguler.messagingconsumer.strategy.user.UserActivityStrategyFactory;
-import com.github.melihemreguler.messagingconsumer.exception.MaxRetryExceededException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class UserActivityConsumerServiceTest {
     private UserActivityConsumerService service;
-    private ObjectMapper objectMapper;
+    private EventCodecRegistry eventCodecs;
     private UserActivityStrategyFactory strategyFactory;
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
     private KafkaRetryConfig retryConfig;
+    private RetryDelayGate retryDelayGate;
     private UserActivityStrategy strategy;
 
     @BeforeEach
     void setUp() {
-        objectMapper = mock(ObjectMapper.class);
+        eventCodecs = mock(EventCodecRegistry.class);
         strategyFactory = mock(UserActivityStrategyFactory.class);
         kafkaTemplate = mock(KafkaTemplate.class);
-        retryConfig = mock(KafkaRetryConfig.class);
+        retryConfig = new KafkaRetryConfig();
+        retryDelayGate = mock(RetryDelayGate.class);
         strategy = mock(UserActivityStrategy.class);
-        when(retryConfig.getMaxRetry()).thenReturn(3);
-        service = new UserActivityConsumerService(objectMapper, strategyFactory, kafkaTemplate, retryConfig);
-        // Set userCommandsRetryTopic field via reflection
-        try {
-            java.lang.reflect.Field topicField = UserActivityConsumerService.class.getDeclaredField("userCommandsRetryTopic");
-            topicField.setAccessible(true);
-            topicField.set(service, "test-user-retry-topic");
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-        java.util.concurrent.CompletableFuture mockFuture = mock(java.util.concurrent.CompletableFuture.class);
-        when(mockFuture.thenAccept(any())).thenReturn(mockFuture);
-        when(mockFuture.exceptionally(any())).thenReturn(mockFuture);
-        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(mockFuture);
+        retryConfig.setMaxRetry(3);
+        when(retryDelayGate.isDue(any(), any(), any())).thenReturn(true);
+        service = new UserActivityConsumerService(eventCodecs, strategyFactory, new RetryPublisher(kafkaTemplate, retryConfig), retryDelayGate,
+                new KeyOrderedExecutor(1));
+        // Set topic fields via reflection
+        setField("userCommandsTopic", "test-user-topic");
+        setField("userCommandsRetryTopic", "test-user-retry-topic");
+        setField("userCommandsDeadLetterTopic", "test-user-dlq-topic");
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @Test
@@ -62,16 +66,16 @@ class UserActivityConsumerServiceTest {
             "user1@example.com" // email
         );
         String message = "{\"command\":\"LOGIN_ATTEMPT\"}";
-        when(objectMapper.readValue(message, UserActivityEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(UserActivityEvent.class))).thenReturn(event);
         when(strategyFactory.getStrategy(eq(UserActivityCommand.fromString(event.getCommand())))).thenReturn(strategy);
         //WHEN
-        service.consumeUserActivity(message, "0");
+        service.consumeUserActivity(record(message));
         //THEN
         verify(strategy, times(1)).execute(event);
     }
 
     @Test
-    void givenUnknownCommand_whenConsumeUserActivity_thenRetries() throws Exception {
+    void givenUnknownCommand_whenConsumeUserActivity_thenRecordIsDeadLettered() throws Exception {
         //GIVEN
         UserActivityEvent event = new UserActivityEvent(
             "UNKNOWN", "username2", "user1",
@@ -79,21 +83,37 @@ class UserActivityConsumerServiceTest {
             java.time.LocalDateTime.now(), "Some failure", "user2@example.com"
         );
         String message = "{\"command\":\"UNKNOWN\"}";
-        when(objectMapper.readValue(message, UserActivityEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(UserActivityEvent.class))).thenReturn(event);
         when(strategyFactory.getStrategy(any())).thenReturn(null);
         //WHEN
-        service.consumeUserActivity(message, "0");
+        service.consumeUserActivity(record(message));
         //THEN
-        verify(kafkaTemplate, atLeastOnce()).send(any(ProducerRecord.class));
+        org.mockito.ArgumentCaptor<ProducerRecord> sent = org.mockito.ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertEquals("test-user-dlq-topic", sent.getValue().topic());
+    }
+
+    @Test
+    void givenUnknownCommandHeader_whenConsumeUserActivity_thenRecordIsDeadLetteredWithoutDecoding() {
+        //GIVEN
+        ConsumerRecord<String, byte[]> record = record("opaque");
+        record.headers().add(KafkaConstants.COMMAND_HEADER, "PASSWORD_RESET".getBytes(StandardCharsets.UTF_8));
+        //WHEN
+        service.consumeUserActivity(record);
+        //THEN
+        verifyNoInteractions(eventCodecs, strategyFactory);
+        org.mockito.ArgumentCaptor<ProducerRecord> sent = org.mockito.ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertEquals("test-user-dlq-topic", sent.getValue().topic());
     }
 
     @Test
     void givenJsonException_whenConsumeUserActivity_thenRetries() throws Exception {
         //GIVEN
         String message = "invalid-json";
-        when(objectMapper.readValue(message, UserActivityEvent.class)).thenThrow(new RuntimeException("Parse error"));
+        when(eventCodecs.decode(withValue(message), eq(UserActivityEvent.class))).thenThrow(new RuntimeException("Parse error"));
         //WHEN
-        service.consumeUserActivity(message, "0");
+        service.consumeUserActivity(record(message));
         //THEN
         verify(kafkaTemplate, atLeastOnce()).send(any(ProducerRecord.class));
     }
@@ -107,24 +127,140 @@ class UserActivityConsumerServiceTest {
             java.time.LocalDateTime.now(), null, "user3@example.com"
         );
         String message = "{\"command\":\"LOGIN_ATTEMPT\"}";
-        when(objectMapper.readValue(message, UserActivityEvent.class)).thenReturn(event);
+        when(eventCodecs.decode(withValue(message), eq(UserActivityEvent.class))).thenReturn(event);
         when(strategyFactory.getStrategy(eq(UserActivityCommand.fromString(event.getCommand())))).thenReturn(strategy);
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
         //WHEN
-        service.consumeUserActivityRetry(message, "1");
+        service.consumeUserActivityRetry(retryRecord(message, 1), acknowledgment, mock(Consumer.class));
         //THEN
         verify(strategy, times(1)).execute(event);
+        verify(acknowledgment).acknowledge();
     }
 
     @Test
-    void givenMaxRetryExceeded_whenConsumeUserActivity_thenThrowsException() {
+    void givenMaxRetryExceeded_whenConsumeUserActivity_thenRecordIsDeadLetteredWithErrorHeaders() {
         //GIVEN
         String message = "msg";
         int retryCount = 3;
-        Exception error = new RuntimeException("fail");
-        when(retryConfig.getMaxRetry()).thenReturn(3);
-        //WHEN & THEN
-        assertThrows(MaxRetryExceededException.class, () ->
-            service.consumeUserActivity(message, String.valueOf(retryCount))
-        );
+        //WHEN
+        service.consumeUserActivity(retryRecord(message, retryCount));
+        //THEN
+        org.mockito.ArgumentCaptor<ProducerRecord> sent = org.mockito.ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        ProducerRecord<String, byte[]> deadLetter = sent.getValue();
+        assertEquals("test-user-dlq-topic", deadLetter.topic());
+        assertEquals("msg", new String(deadLetter.value(), StandardCharsets.UTF_8));
+        assertEquals("test-user-topic",
+                new String(deadLetter.headers().lastHeader(KafkaConstants.ORIGINAL_TOPIC_HEADER).value()));
+        assertNotNull(deadLetter.headers().lastHeader(KafkaConstants.ERROR_CLASS_HEADER));
+    }
+
+    @Test
+    void givenBatchWithSeveralEventsPerUser_whenConsumeUserActivityBatch_thenEachUserIsWrittenOnce() throws Exception {
+        //GIVEN
+        UserActivityEvent alice1 = loginEvent("alice");
+        UserActivityEvent bob = loginEvent("bob");
+        UserActivityEvent alice2 = loginEvent("alice");
+        when(eventCodecs.decode(withValue("a1"), eq(UserActivityEvent.class))).thenReturn(alice1);
+        when(eventCodecs.decode(withValue("b1"), eq(UserActivityEvent.class))).thenReturn(bob);
+        when(eventCodecs.decode(withValue("a2"), eq(UserActivityEvent.class))).thenReturn(alice2);
+        when(strategyFactory.getStrategy(UserActivityCommand.LOGIN_ATTEMPT)).thenReturn(strategy);
+
+        //WHEN
+        service.consumeUserActivityBatch(List.of(record("a1"), record("b1"), record("a2")));
+
+        //THEN
+        verify(strategy).executeAll(List.of(alice1, alice2));
+        verify(strategy).executeAll(List.of(bob));
+        verify(strategy, never()).execute(any());
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void givenFailedUserWrite_whenConsumeUserActivityBatch_thenOnlyThatUsersRecordsAreRetried() throws Exception {
+        //GIVEN
+        UserActivityEvent alice = loginEvent("alice");
+        UserActivityEvent bob = loginEvent("bob");
+        when(eventCodecs.decode(withValue("a1"), eq(UserActivityEvent.class))).thenReturn(alice);
+        when(eventCodecs.decode(withValue("b1"), eq(UserActivityEvent.class))).thenReturn(bob);
+        when(strategyFactory.getStrategy(UserActivityCommand.LOGIN_ATTEMPT)).thenReturn(strategy);
+        doThrow(new RuntimeException("mongo down")).when(strategy).executeAll(List.of(alice));
+
+        //WHEN
+        service.consumeUserActivityBatch(List.of(record("a1"), record("b1")));
+
+        //THEN
+        org.mockito.ArgumentCaptor<ProducerRecord> retried = org.mockito.ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(1)).send(retried.capture());
+        assertEquals("a1", new String((byte[]) retried.getValue().value(), StandardCharsets.UTF_8));
+        verify(strategy).executeAll(List.of(bob));
+    }
+
+    @Test
+    void givenExhaustedRecordInBatch_whenConsumeUserActivityBatch_thenItIsDeadLetteredAndRestOfBatchIsProcessed() throws Exception {
+        //GIVEN
+        UserActivityEvent bob = loginEvent("bob");
+        when(eventCodecs.decode(withValue("bad"), eq(UserActivityEvent.class))).thenThrow(new RuntimeException("boom"));
+        when(eventCodecs.decode(withValue("b1"), eq(UserActivityEvent.class))).thenReturn(bob);
+        when(strategyFactory.getStrategy(UserActivityCommand.LOGIN_ATTEMPT)).thenReturn(strategy);
+        ConsumerRecord<String, byte[]> exhausted = record("bad");
+        exhausted.headers().add(KafkaConstants.RETRY_COUNT_HEADER, "3".getBytes());
+
+        //WHEN
+        service.consumeUserActivityBatch(List.of(exhausted, record("b1")));
+
+        //THEN
+        org.mockito.ArgumentCaptor<ProducerRecord> sent = org.mockito.ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(1)).send(sent.capture());
+        assertEquals("test-user-dlq-topic", sent.getValue().topic());
+        verify(strategy).executeAll(List.of(bob));
+    }
+
+    @Test
+    void givenRetrySendFailsForFailedUserWrite_whenConsumeUserActivityBatch_thenExceptionPropagates() throws Exception {
+        //GIVEN
+        UserActivityEvent alice = loginEvent("alice");
+        UserActivityEvent bob = loginEvent("bob");
+        when(eventCodecs.decode(withValue("a1"), eq(UserActivityEvent.class))).thenReturn(alice);
+        when(eventCodecs.decode(withValue("b1"), eq(UserActivityEvent.class))).thenReturn(bob);
+        when(strategyFactory.getStrategy(UserActivityCommand.LOGIN_ATTEMPT)).thenReturn(strategy);
+        doThrow(new RuntimeException("mongo down")).when(strategy).executeAll(List.of(alice));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        //WHEN / THEN
+        assertThrows(IllegalStateException.class,
+                () -> service.consumeUserActivityBatch(List.of(record("a1"), record("b1"))));
+        verify(strategy).executeAll(List.of(bob));
+    }
+
+    private static UserActivityEvent loginEvent(String userId) {
+        return new UserActivityEvent("LOGIN_ATTEMPT", userId, userId, "127.0.0.1", "Mozilla", true,
+                java.time.LocalDateTime.now(), null, null);
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String value) {
+        return new ConsumerRecord<>("user-commands", 0, 0L, "key", value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void setField(String name, String value) {
+        try {
+            java.lang.reflect.Field field = UserActivityConsumerService.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(service, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ConsumerRecord<String, byte[]> retryRecord(String value, int retryCount) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("retry-topic", 0, 0L, "key", value.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaConstants.RETRY_COUNT_HEADER, String.valueOf(retryCount).getBytes());
+        return record;
+    }
+
+    private static ConsumerRecord<String, byte[]> withValue(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return argThat(record -> record != null && Arrays.equals(bytes, record.value()));
     }
 }
@@ -8,8 +8,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.util.Optional;
-
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -26,19 +24,34 @@ class DeleteSessionStrategyTest {
     }
 
     @Test
-    void execute_shouldDeleteSessionIfExists() {
+    void execute_shouldDeleteSessionByHash() {
         //GIVEN
         SessionEvent event = new SessionEvent();
         event.setHashedSessionId("session123");
         event.setUserId("user1");
-        var sessionDto = mock(com.github.melihemreguler.messagingconsumer.dto.SessionDto.class);
-        when(sessionRepository.findByHashedSessionId("session123")).thenReturn(Optional.of(sessionDto));
+        when(sessionRepository.deleteByHashedSessionId("session123")).thenReturn(1L);
+
+        //WHEN
+        strategy.execute(event);
+
+        //THEN
+        verify(sessionRepository).deleteByHashedSessionId("session123");
+        verify(sessionRepository, never()).deleteByUserId(any());
+    }
+
+    @Test
+    void execute_shouldDeleteAllUserSessionsWhenHashIsMissing() {
+        //GIVEN
+        SessionEvent event = new SessionEvent();
+        event.setUserId("user1");
+        when(sessionRepository.deleteByUserId("user1")).thenReturn(2L);
 
         //WHEN
         strategy.execute(event);
 
         //THEN
-        verify(sessionRepository).delete(sessionDto);
+        verify(sessionRepository).deleteByUserId("user1");
+        verify(sessionRepository, never()).deleteByHashedSessionId(any());
     }
 
     @Test
@@ -47,13 +60,14 @@ class DeleteSessionStrategyTest {
         SessionEvent event = new SessionEvent();
         event.setHashedSessionId("session999");
         event.setUserId("user1");
-        when(sessionRepository.findByHashedSessionId("session999")).thenReturn(Optional.empty());
+        when(sessionRepository.deleteByHashedSessionId("session999")).thenReturn(0L);
 
         //WHEN
         strategy.execute(event);
 
         //THEN
-        verify(sessionRepository, never()).delete(any());
+        verify(sessionRepository).deleteByHashedSessionId("session999");
+        verify(sessionRepository, never()).deleteByUserId(any());
     }
 
     @Test
@@ -1,19 +1,13 @@
 package com.github.melihemreguler.messagingconsumer.strategy.session.impl;
 
-import com.github.melihemreguler.messagingconsumer.dto.SessionDto;
 import com.github.melihemreguler.messagingconsumer.model.SessionEvent;
 import com.github.melihemreguler.messagingconsumer.repository.SessionRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.List;
-
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -30,25 +24,20 @@ class UpdateSessionStrategyTest {
     }
 
     @Test
-    void execute_shouldUpdateLastAccessedIfSessionExists() {
+    void execute_shouldTouchSessionWithoutLoadingIt() {
         //GIVEN
         SessionEvent event = new SessionEvent();
         event.setUserId("user1");
         event.setIpAddress("127.0.0.1");
         event.setUserAgent("JUnit");
-        SessionDto session = spy(new SessionDto("session123", "user1", LocalDateTime.now().plusHours(1), "oldIp", "oldAgent"));
-        List<SessionDto> sessions = List.of(session);
-        when(sessionRepository.findByUserId("user1")).thenReturn(sessions);
-        when(sessionRepository.save(any(SessionDto.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(sessionRepository.touchUserSession(event)).thenReturn(true);
 
         //WHEN
         strategy.execute(event);
 
         //THEN
-        verify(session).updateLastAccessed();
-        verify(session).setIpAddress("127.0.0.1");
-        verify(session).setUserAgent("JUnit");
-        verify(sessionRepository).save(session);
+        verify(sessionRepository).touchUserSession(event);
+        verify(sessionRepository, never()).save(any());
     }
 
     @Test
@@ -56,12 +45,13 @@ class UpdateSessionStrategyTest {
         //GIVEN
         SessionEvent event = new SessionEvent();
         event.setUserId("user2");
-        when(sessionRepository.findByUserId("user2")).thenReturn(Collections.emptyList());
+        when(sessionRepository.touchUserSession(event)).thenReturn(false);
 
         //WHEN
         strategy.execute(event);
 
         //THEN
+        verify(sessionRepository).touchUserSession(event);
         verify(sessionRepository, never()).save(any());
     }
 
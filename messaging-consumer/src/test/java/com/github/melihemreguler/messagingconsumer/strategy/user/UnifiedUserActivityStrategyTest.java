@@ -2,7 +2,7 @@ package com.github.melihemreguler.messagingconsumer.strategy.user;
 
 import com.github.melihemreguler.messagingconsumer.dto.ActivityLogDto;
 import com.github.melihemreguler.messagingconsumer.model.UserActivityEvent;
-import com.github.melihemreguler.messagingconsumer.repository.ActivityLogRepository;
+import com.github.melihemreguler.messagingconsumer.repository.ActivityLogBucketRepository;
 import com.github.melihemreguler.messagingconsumer.strategy.user.impl.UnifiedUserActivityStrategy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,14 +12,17 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class UnifiedUserActivityStrategyTest {
     @Mock
-    private ActivityLogRepository activityLogRepository;
+    private ActivityLogBucketRepository activityLogBucketRepository;
 
     @InjectMocks
     private UnifiedUserActivityStrategy strategy;
@@ -39,25 +42,21 @@ class UnifiedUserActivityStrategyTest {
         event.setUserAgent("JUnit");
         event.setSuccessful(true);
         event.setTimestamp(LocalDateTime.now());
-        when(activityLogRepository.findByUserId("user1")).thenReturn(Optional.empty());
-        when(activityLogRepository.save(any(ActivityLogDto.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         //WHEN
         strategy.execute(event);
 
         //THEN
-        ArgumentCaptor<ActivityLogDto> captor = ArgumentCaptor.forClass(ActivityLogDto.class);
-        verify(activityLogRepository).save(captor.capture());
-        ActivityLogDto saved = captor.getValue();
-        assertEquals("user1", saved.getUserId());
-        assertEquals(1, saved.getLogs().size());
-        ActivityLogDto.ActivityEntry entry = saved.getLogs().get(0);
+        ArgumentCaptor<ActivityLogDto.ActivityEntry> captor = ArgumentCaptor.forClass(ActivityLogDto.ActivityEntry.class);
+        verify(activityLogBucketRepository).append(eq("user1"), captor.capture(), eq(200));
+        ActivityLogDto.ActivityEntry entry = captor.getValue();
         assertEquals("USER_CREATION", entry.getAction());
         assertTrue(entry.isSuccessful());
+        assertEquals("127.0.0.1", entry.getIpAddress());
     }
 
     @Test
-    void execute_shouldAppendLogForExistingUser() {
+    void execute_shouldAppendFailedLoginAttempt() {
         //GIVEN
         UserActivityEvent event = new UserActivityEvent();
         event.setUserId("user2");
@@ -67,27 +66,46 @@ class UnifiedUserActivityStrategyTest {
         event.setSuccessful(false);
         event.setFailureReason("Wrong password");
         event.setTimestamp(LocalDateTime.now());
-        ActivityLogDto existing = new ActivityLogDto();
-        existing.setUserId("user2");
-        existing.getLogs().add(new ActivityLogDto.ActivityEntry("127.0.0.2", "JUnit", true, LocalDateTime.now(), null, "LOGIN_ATTEMPT"));
-        when(activityLogRepository.findByUserId("user2")).thenReturn(Optional.of(existing));
-        when(activityLogRepository.save(any(ActivityLogDto.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         //WHEN
         strategy.execute(event);
 
         //THEN
-        ArgumentCaptor<ActivityLogDto> captor = ArgumentCaptor.forClass(ActivityLogDto.class);
-        verify(activityLogRepository).save(captor.capture());
-        ActivityLogDto saved = captor.getValue();
-        assertEquals("user2", saved.getUserId());
-        assertEquals(2, saved.getLogs().size());
-        ActivityLogDto.ActivityEntry entry = saved.getLogs().get(1);
-        assertEquals("LOGIN_ATTEMPT", entry.getAction());
+        ArgumentCaptor<ActivityLogDto.ActivityEntry> captor = ArgumentCaptor.forClass(ActivityLogDto.ActivityEntry.class);
+        verify(activityLogBucketRepository).append(eq("user2"), captor.capture(), anyInt());
+        ActivityLogDto.ActivityEntry entry = captor.getValue();
         assertFalse(entry.isSuccessful());
         assertEquals("Wrong password", entry.getFailureReason());
     }
 
+    @Test
+    void executeAll_shouldCoalesceEntriesPerUser() {
+        //GIVEN
+        UserActivityEvent alice1 = loginEvent("alice", true);
+        UserActivityEvent bob = loginEvent("bob", true);
+        UserActivityEvent alice2 = loginEvent("alice", false);
+
+        //WHEN
+        strategy.executeAll(List.of(alice1, bob, alice2));
+
+        //THEN
+        ArgumentCaptor<List<ActivityLogDto.ActivityEntry>> aliceEntries = ArgumentCaptor.forClass(List.class);
+        verify(activityLogBucketRepository).appendAll(eq("alice"), aliceEntries.capture(), eq(200));
+        assertEquals(List.of(true, false),
+                aliceEntries.getValue().stream().map(ActivityLogDto.ActivityEntry::isSuccessful).toList());
+        verify(activityLogBucketRepository).appendAll(eq("bob"), anyList(), eq(200));
+        verify(activityLogBucketRepository, never()).append(any(), any(), anyInt());
+    }
+
+    private static UserActivityEvent loginEvent(String userId, boolean successful) {
+        UserActivityEvent event = new UserActivityEvent();
+        event.setUserId(userId);
+        event.setCommand("LOGIN_ATTEMPT");
+        event.setSuccessful(successful);
+        event.setTimestamp(LocalDateTime.now());
+        return event;
+    }
+
     @Test
     void execute_shouldHandleNullEvent() {
         //GIVEN